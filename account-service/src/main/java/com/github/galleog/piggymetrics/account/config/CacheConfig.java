@@ -0,0 +1,36 @@
+package com.github.galleog.piggymetrics.account.config;
+
+import static com.github.galleog.piggymetrics.account.domain.Tables.ACCOUNTS;
+
+import com.github.galleog.piggymetrics.account.service.AccountCache;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.InvalidationBus;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration for in-process caches.
+ */
+@Configuration(proxyBeanMethods = false)
+public class CacheConfig {
+    @Bean
+    AccountCache accountCache(@Value("${account.cache.max-size}") long maxSize,
+                              @Value("${account.cache.ttl}") Duration ttl,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              InvalidationBus invalidationBus) {
+        var cache = new AccountCache(maxSize, ttl, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        invalidationBus.subscribe(ACCOUNTS.getName(), invalidation -> {
+            if (invalidation.isAll()) {
+                cache.evictAll();
+            } else {
+                invalidation.getKeys().forEach(cache::evict);
+            }
+        });
+        return cache;
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.galleog.piggymetrics.account.config;
+
+import static com.github.galleog.piggymetrics.account.domain.Tables.ACCOUNTS;
+import static com.github.galleog.piggymetrics.account.domain.Tables.ITEMS;
+import static com.github.galleog.piggymetrics.account.domain.Tables.SAVINGS;
+
+import com.github.galleog.piggymetrics.autoconfigure.jooq.JooqProperties;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.ShardRebalancer;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.ShardRebalancer.ShardedTable;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardRoutingConnectionFactory;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardingProperties;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import liquibase.integration.spring.SpringLiquibase;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.conf.Settings;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Configures migrating database shards and moving accounts between them.
+ */
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "spring.r2dbc.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+    @Bean
+    ShardRebalancer shardRebalancer(ShardRoutingConnectionFactory connectionFactory, JooqProperties properties,
+                                    ObjectProvider<Settings> settings) {
+        // outbox events aren't moved since they are relayed and deleted shortly after being written
+        return new ShardRebalancer(
+                connectionFactory.getShards(),
+                connectionFactory.getLocator().getRing(),
+                properties.getSqlDialect(),
+                settings.getIfAvailable(),
+                List.of(
+                        ShardedTable.of(ACCOUNTS, ACCOUNTS.NAME),
+                        ShardedTable.of(SAVINGS, SAVINGS.ACCOUNT_NAME),
+                        ShardedTable.of(ITEMS, ITEMS.ACCOUNT_NAME)
+                )
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.liquibase", name = "enabled", matchIfMissing = true)
+    InitializingBean shardMigrations(ShardingProperties sharding, LiquibaseProperties properties,
+                                     ResourceLoader resourceLoader) {
+        // Spring Boot migrates only the database of 'spring.liquibase.url', so the changelog is applied
+        // to every shard as well, and the service doesn't start if any of them fails to be migrated
+        return () -> {
+            for (var shard : sharding.getShards().entrySet()) {
+                logger.info("Migrating shard '{}'", shard.getKey());
+                var liquibase = new SpringLiquibase();
+                liquibase.setDataSource(shardDataSource(shard.getValue(), properties));
+                liquibase.setResourceLoader(resourceLoader);
+                liquibase.setChangeLog(properties.getChangeLog());
+                liquibase.setContexts(properties.getContexts());
+                liquibase.setLabels(properties.getLabels());
+                liquibase.setChangeLogParameters(properties.getParameters());
+                liquibase.setDefaultSchema(properties.getDefaultSchema());
+                liquibase.setLiquibaseSchema(properties.getLiquibaseSchema());
+                liquibase.setLiquibaseTablespace(properties.getLiquibaseTablespace());
+                liquibase.setDatabaseChangeLogTable(properties.getDatabaseChangeLogTable());
+                liquibase.setDatabaseChangeLogLockTable(properties.getDatabaseChangeLogLockTable());
+                liquibase.afterPropertiesSet();
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "account.sharding", name = "rebalance", havingValue = "true")
+    ApplicationListener<ApplicationReadyEvent> shardRebalancerStarter(ShardRebalancer rebalancer) {
+        // accounts are moved in the background, so the service doesn't wait for them to start serving requests;
+        // rebalancing is restartable, so it's continued by the next start if the service stops before it ends
+        return event -> rebalancer.rebalance()
+                .subscribe(count -> logger.info("{} accounts moved between shards", count),
+                        e -> logger.error("Failed to rebalance shards", e));
+    }
+
+    private static DataSource shardDataSource(String url, LiquibaseProperties properties) {
+        // the JDBC URL of a shard is built from its R2DBC URL, and the credentials missing in it
+        // are the ones Liquibase uses for the single database
+        var options = ConnectionFactoryOptions.parse(url);
+        var driver = options.getRequiredValue(ConnectionFactoryOptions.DRIVER);
+        if ("pool".equals(driver)) {
+            driver = options.getRequiredValue(ConnectionFactoryOptions.PROTOCOL);
+        }
+        var host = options.getRequiredValue(ConnectionFactoryOptions.HOST);
+        var port = options.getValue(ConnectionFactoryOptions.PORT);
+        var database = options.getRequiredValue(ConnectionFactoryOptions.DATABASE);
+        var password = options.getValue(ConnectionFactoryOptions.PASSWORD);
+        return DataSourceBuilder.create()
+                .type(SimpleDriverDataSource.class)
+                .driverClassName(properties.getDriverClassName())
+                .url("jdbc:" + driver + "://" + host + (port == null ? "" : ":" + port) + "/" + database)
+                .username(Objects.toString(options.getValue(ConnectionFactoryOptions.USER), properties.getUser()))
+                .password(password == null ? properties.getPassword() : password.toString())
+                .build();
+    }
+}
@@ -38,16 +38,21 @@ public class Account {
      * Additional note.
      */
     private String note;
+    /**
+     * Number of updates of the account.
+     */
+    private long version;
 
     @Builder
     @SuppressWarnings("unused")
     private Account(@NonNull String name, @NonNull @Singular Collection<Item> items,
-                    @NonNull Saving saving, @Nullable String note, @Nullable LocalDateTime updateTime) {
+                    @NonNull Saving saving, @Nullable String note, @Nullable LocalDateTime updateTime, long version) {
         setName(name);
         setItems(items);
         setSaving(saving);
         setNote(note);
         setUpdateTime(updateTime);
+        setVersion(version);
     }
 
     private void setName(String name) {
@@ -74,6 +79,11 @@ public class Account {
         this.updateTime = updateTime;
     }
 
+    private void setVersion(long version) {
+        Validate.isTrue(version >= 0);
+        this.version = version;
+    }
+
     @Override
     public String toString() {
         return new ToStringBuilder(this)
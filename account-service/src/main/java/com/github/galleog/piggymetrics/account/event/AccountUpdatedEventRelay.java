@@ -0,0 +1,310 @@
+package com.github.galleog.piggymetrics.account.event;
+
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.AccountUpdatedEvent;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.Item;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ItemKey;
+import com.github.galleog.piggymetrics.account.repository.OutboxEventRepository;
+import com.github.galleog.piggymetrics.account.service.AccountShards;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardContext;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimaps;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.SenderRecord;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Relay that publishes {@link AccountUpdatedEvent}s saved in the outbox to Kafka.
+ * Events are published in batches in the order they were saved and deleted from the outbox
+ * only after Kafka has acknowledged them, so every event is delivered at least once.
+ * If the debounce window is set, events of an account are published only after the account hasn't been
+ * updated for the window or its oldest event has waited for the maximum delay, and only the latest state
+ * of the account is published.
+ * <p/>
+ * Every shard has its own outbox with events of the accounts stored on it, and the outboxes are relayed one by one.
+ */
+@Slf4j
+@Component
+public class AccountUpdatedEventRelay {
+    /**
+     * Name of the gauge that shows how long the oldest unpublished event has been waiting in the outbox.
+     */
+    @VisibleForTesting
+    static final String LAG_METRIC = "account.outbox.lag";
+    /**
+     * Name of the counter of events that were merged into later events of the same account instead of being published.
+     */
+    @VisibleForTesting
+    static final String COALESCED_METRIC = "account.outbox.coalesced";
+
+    private static final String LOCK_NAME = "accountUpdatedEventRelay";
+    private static final Duration LAG_QUERY_TIMEOUT = Duration.ofSeconds(5);
+
+    private final String topic;
+    private final int batchSize;
+    private final Duration debounceWindow;
+    private final Duration maxDelay;
+    private final OutboxEventRepository outboxEventRepository;
+    private final ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate;
+    private final AccountShards accountShards;
+    private final TransactionalOperator operator;
+    private final Duration lockAtMostFor;
+    @Nullable
+    private final LockingTaskExecutor lockingTaskExecutor;
+    private final Counter coalescedCounter;
+
+    /**
+     * Constructs an object instance.
+     */
+    public AccountUpdatedEventRelay(@Value("${spring.kafka.producer.topic}") String topic,
+                                    @Value("${account.outbox.batch-size}") int batchSize,
+                                    @Value("${account.outbox.debounce.window}") Duration debounceWindow,
+                                    @Value("${account.outbox.debounce.max-delay}") Duration maxDelay,
+                                    OutboxEventRepository outboxEventRepository,
+                                    ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate,
+                                    AccountShards accountShards,
+                                    TransactionalOperator operator,
+                                    @Value("${account.outbox.lock-at-most-for}") Duration lockAtMostFor,
+                                    ObjectProvider<LockProvider> lockProvider,
+                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        Validate.isTrue(batchSize > 0);
+        Validate.isTrue(!lockAtMostFor.isNegative() && !lockAtMostFor.isZero());
+        Validate.isTrue(!debounceWindow.isNegative());
+        Validate.isTrue(maxDelay.compareTo(debounceWindow) >= 0);
+
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.debounceWindow = debounceWindow;
+        this.maxDelay = maxDelay;
+        this.outboxEventRepository = outboxEventRepository;
+        this.producerTemplate = producerTemplate;
+        this.accountShards = accountShards;
+        this.operator = operator;
+        this.lockAtMostFor = lockAtMostFor;
+        var provider = lockProvider.getIfAvailable();
+        this.lockingTaskExecutor = provider == null ? null : new DefaultLockingTaskExecutor(provider);
+
+        var registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder(LAG_METRIC, this, AccountUpdatedEventRelay::getLagSeconds)
+                .description("Time the oldest unpublished AccountUpdatedEvent has been waiting in the outbox")
+                .baseUnit("seconds")
+                .register(registry);
+        this.coalescedCounter = Counter.builder(COALESCED_METRIC)
+                .description("Number of AccountUpdatedEvents merged into later events of the same account")
+                .register(registry);
+    }
+
+    /**
+     * Publishes all events saved in the outboxes. A failed batch is left in the outbox and retried by the next run.
+     * <p/>
+     * Only one instance of the service relays events of a shard at a time, since events locked by another relay
+     * are skipped and later events of the same accounts could otherwise be published before them.
+     * Events of an account are saved in the outbox of its shard, so different shards are relayed independently.
+     */
+    @Scheduled(fixedDelayString = "${account.outbox.poll-delay}")
+    public void relay() {
+        for (var shard : accountShards.getNames()) {
+            if (lockingTaskExecutor == null) {
+                doRelay(shard);
+                continue;
+            }
+            // the lock keeps its name if sharding is disabled, so instances of the previous release respect it
+            var lockName = accountShards.isEnabled() ? LOCK_NAME + "-" + shard : LOCK_NAME;
+            lockingTaskExecutor.executeWithLock((Runnable) () -> doRelay(shard),
+                    new LockConfiguration(Instant.now(), lockName, lockAtMostFor, Duration.ZERO));
+        }
+    }
+
+    private void doRelay(String shard) {
+        try {
+            var count = relayBatch(shard)
+                    .expand(published -> published == batchSize ? relayBatch(shard) : Mono.empty())
+                    .reduce(0, Integer::sum)
+                    .block();
+            if (count != null && count > 0) {
+                logger.debug("{} AccountUpdatedEvents published from shard '{}'", count, shard);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to publish AccountUpdatedEvents from shard '" + shard + "'", e);
+        }
+    }
+
+    /**
+     * Publishes the oldest batch of events saved in the outbox of a shard.
+     *
+     * @param shard the name of the shard
+     * @return the number of published events
+     */
+    @VisibleForTesting
+    Mono<Integer> relayBatch(String shard) {
+        // events are locked until they are deleted, so a relay whose lock has expired can't publish them twice
+        return lockBatch()
+                .collectList()
+                .flatMap(this::publish)
+                .as(operator::transactional)
+                .contextWrite(ShardContext.routeTo(shard));
+    }
+
+    /**
+     * Gets the lag of the relay. It's read from the outboxes on every call, so a stuck relay shows a growing lag.
+     *
+     * @return the time in seconds the oldest event has been waiting in the outboxes of all shards,
+     * or {@link Double#NaN} if it can't be read
+     */
+    @VisibleForTesting
+    double getLagSeconds() {
+        try {
+            var oldest = Flux.fromIterable(accountShards.getNames())
+                    .flatMap(shard -> outboxEventRepository.getOldestCreateTime()
+                            .contextWrite(ShardContext.routeTo(shard)))
+                    .reduce((first, second) -> first.isBefore(second) ? first : second)
+                    .block(LAG_QUERY_TIMEOUT);
+            return oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now()).toMillis() / 1000.0;
+        } catch (RuntimeException e) {
+            logger.warn("Failed to get the time of the oldest AccountUpdatedEvent in the outbox", e);
+            return Double.NaN;
+        }
+    }
+
+    private Flux<OutboxEvent> lockBatch() {
+        if (debounceWindow.isZero()) {
+            return outboxEventRepository.lockOldest(batchSize);
+        }
+
+        var now = LocalDateTime.now();
+        return outboxEventRepository.lockOldestReady(batchSize, now.minus(debounceWindow), now.minus(maxDelay));
+    }
+
+    private Mono<Integer> publish(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        var ids = events.stream()
+                .map(OutboxEvent::getId)
+                .collect(ImmutableList.toImmutableList());
+        return producerTemplate.send(Flux.defer(() -> Flux.fromIterable(toSenderRecords(events))))
+                .doOnNext(result -> {
+                    if (result.exception() != null) {
+                        throw Exceptions.propagate(result.exception());
+                    }
+                }).count()
+                .flatMap(sent -> outboxEventRepository.delete(ids)
+                        .doOnNext(count -> coalescedCounter.increment(events.size() - sent))
+                ).thenReturn(events.size());
+    }
+
+    private List<SenderRecord<String, AccountUpdatedEvent, Long>> toSenderRecords(List<OutboxEvent> events) {
+        if (debounceWindow.isZero()) {
+            return events.stream()
+                    .map(event -> toSenderRecord(event.getId(), event.getAccountName(), parse(event)))
+                    .collect(ImmutableList.toImmutableList());
+        }
+
+        // events of an account are merged in the order they were saved
+        return Multimaps.index(events, OutboxEvent::getAccountName)
+                .asMap()
+                .entrySet()
+                .stream()
+                .map(entry -> {
+                    var accountEvents = ImmutableList.copyOf(entry.getValue());
+                    var merged = accountEvents.stream()
+                            .map(this::parse)
+                            .reduce(AccountUpdatedEventRelay::merge)
+                            .orElseThrow();
+                    return toSenderRecord(accountEvents.get(accountEvents.size() - 1).getId(), entry.getKey(), merged);
+                }).collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * Merges two consecutive events of an account into one that has the same effect.
+     * A delta merged with a preceding snapshot becomes a snapshot, and two merged deltas become a delta
+     * from the version the first of them applies to, so versions of published deltas don't have gaps.
+     *
+     * @param previous the earlier event
+     * @param next     the later event
+     * @return the merged event
+     */
+    @VisibleForTesting
+    static AccountUpdatedEvent merge(AccountUpdatedEvent previous, AccountUpdatedEvent next) {
+        if (!next.getDelta()) {
+            return next;
+        }
+
+        // a delta overrides the items it changes and drops the ones it removes
+        var items = new LinkedHashMap<ItemKey, Item>();
+        previous.getItemsList().forEach(item -> items.put(toItemKey(item), item));
+        next.getRemovedItemsList().forEach(items::remove);
+        next.getItemsList().forEach(item -> items.put(toItemKey(item), item));
+        var builder = next.toBuilder()
+                .clearItems()
+                .addAllItems(items.values())
+                .clearRemovedItems();
+        if (!previous.getDelta()) {
+            return builder.setDelta(false)
+                    .clearFromVersion()
+                    .build();
+        }
+
+        // the merged delta spans both updates, so consumers can check it continues the version they have
+        var removed = new LinkedHashSet<>(previous.getRemovedItemsList());
+        removed.addAll(next.getRemovedItemsList());
+        removed.removeAll(items.keySet());
+        return builder.addAllRemovedItems(removed)
+                .setFromVersion(getFromVersion(previous))
+                .build();
+    }
+
+    private static long getFromVersion(AccountUpdatedEvent delta) {
+        return delta.getFromVersion() != 0 ? delta.getFromVersion() : delta.getVersion() - 1;
+    }
+
+    private static ItemKey toItemKey(Item item) {
+        return ItemKey.newBuilder()
+                .setType(item.getType())
+                .setTitle(item.getTitle())
+                .build();
+    }
+
+    private AccountUpdatedEvent parse(OutboxEvent event) {
+        try {
+            return AccountUpdatedEvent.parseFrom(event.getPayload());
+        } catch (InvalidProtocolBufferException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private SenderRecord<String, AccountUpdatedEvent, Long> toSenderRecord(long id, String accountName,
+                                                                           AccountUpdatedEvent event) {
+        var record = new ProducerRecord<>(topic, accountName, event);
+        return SenderRecord.create(record, id);
+    }
+}
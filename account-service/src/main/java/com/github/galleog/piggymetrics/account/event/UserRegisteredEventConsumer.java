@@ -3,12 +3,18 @@ package com.github.galleog.piggymetrics.account.event;
 import com.github.galleog.piggymetrics.account.domain.Account;
 import com.github.galleog.piggymetrics.account.domain.Saving;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
+import com.github.galleog.piggymetrics.account.service.AccountCache;
+import com.github.galleog.piggymetrics.account.service.AccountShards;
 import com.github.galleog.piggymetrics.auth.grpc.UserRegisteredEventProto.UserRegisteredEvent;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardContext;
 import com.google.common.annotations.VisibleForTesting;
-import lombok.RequiredArgsConstructor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.javamoney.moneta.Money;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
@@ -17,6 +23,9 @@ import reactor.core.publisher.Mono;
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.function.Function;
 
 /**
@@ -24,31 +33,79 @@ import java.util.function.Function;
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class UserRegisteredEventConsumer implements Function<Flux<ConsumerRecord<String, UserRegisteredEvent>>, Mono<Void>> {
     @VisibleForTesting
     public static final CurrencyUnit BASE_CURRENCY = Monetary.getCurrency("USD");
 
+    private final int batchSize;
+    private final Duration batchTimeout;
     private final AccountRepository accountRepository;
+    private final AccountCache accountCache;
+    private final AccountShards accountShards;
     private final TransactionalOperator operator;
 
+    /**
+     * Constructs an object instance.
+     */
+    public UserRegisteredEventConsumer(@Value("${account.registration.batch-size}") int batchSize,
+                                       @Value("${account.registration.batch-timeout}") Duration batchTimeout,
+                                       AccountRepository accountRepository,
+                                       AccountCache accountCache,
+                                       AccountShards accountShards,
+                                       TransactionalOperator operator) {
+        Validate.isTrue(batchSize > 0);
+        Validate.isTrue(!batchTimeout.isNegative() && !batchTimeout.isZero());
+
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+        this.accountRepository = accountRepository;
+        this.accountCache = accountCache;
+        this.accountShards = accountShards;
+        this.operator = operator;
+    }
+
     @Override
     public Mono<Void> apply(Flux<ConsumerRecord<String, UserRegisteredEvent>> records) {
+        // events are grouped so that accounts are created by a few statements per batch
         return records.map(record -> record.value().getUserName())
                 .doOnNext(name -> logger.info("UserRegisteredEvent for user '{}' received", name))
-                .flatMap(this::doCreateAccount)
+                .bufferTimeout(batchSize, batchTimeout)
+                .concatMap(this::doCreateAccounts)
                 .then();
     }
 
-    private Mono<Account> doCreateAccount(String name) {
-        return accountRepository.getByName(name)
-                .doOnNext(account -> logger.warn("Account for user '{}' already exists", name))
-                .hasElement()
-                .filter(b -> !b)
-                .map(b -> newAccount(name))
-                .flatMap(accountRepository::save)
-                .doOnNext(account -> logger.info("Account for user '{}' created", account.getName()))
-                .as(operator::transactional);
+    private Mono<Void> doCreateAccounts(List<String> names) {
+        var distinctNames = ImmutableSet.copyOf(names);
+        var accounts = distinctNames.stream()
+                .map(this::newAccount)
+                .collect(ImmutableList.toImmutableList());
+        // redelivered events are skipped because existing accounts aren't inserted again,
+        // and accounts of every shard are inserted in a transaction on that shard
+        return accountShards.groupByShard(accounts, Account::getName)
+                .flatMapIterable(Map::entrySet)
+                .concatMap(group -> createAccounts(group.getKey(), group.getValue()))
+                .flatMapIterable(created -> created)
+                .collect(ImmutableSet.toImmutableSet())
+                .doOnNext(created -> distinctNames.forEach(name -> {
+                    if (created.contains(name)) {
+                        accountCache.evict(name);
+                        logger.info("Account for user '{}' created", name);
+                    } else {
+                        logger.warn("Account for user '{}' already exists", name);
+                    }
+                })).then();
+    }
+
+    private Mono<List<String>> createAccounts(String shard, List<Account> accounts) {
+        // an account located on the shard it's still to be moved from exists, and inserting it there
+        // concurrently with the move could recreate it after the move deletes it
+        var absent = accounts.stream()
+                .filter(account -> !accountShards.isMovePending(shard, account.getName()))
+                .collect(ImmutableList.toImmutableList());
+        return accountRepository.saveIfAbsent(absent)
+                .collectList()
+                .as(operator::transactional)
+                .contextWrite(ShardContext.routeTo(shard));
     }
 
     private Account newAccount(String name) {
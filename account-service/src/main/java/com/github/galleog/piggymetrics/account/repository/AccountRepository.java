@@ -2,10 +2,18 @@ package com.github.galleog.piggymetrics.account.repository;
 
 import com.github.galleog.piggymetrics.account.domain.Account;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+
 /**
  * Repository for {@link Account}.
+ * <p/>
+ * Items of an account keep the order they are saved in, both when the account is read and when it's returned
+ * by a method that saves it.
  */
 public interface AccountRepository {
     /**
@@ -16,6 +24,60 @@ public interface AccountRepository {
      */
     Mono<Account> getByName(@NonNull String name);
 
+    /**
+     * Gets accounts by their names.
+     *
+     * @param names the account names
+     * @return the accounts with the specified names ordered by name
+     */
+    Flux<Account> listByNames(@NonNull Collection<String> names);
+
+    /**
+     * Gets accounts whose names follow the specified one.
+     *
+     * @param startAfter the name the account names should be greater than,
+     *                   or {@code null} to start from the first account
+     * @param limit      the maximum number of accounts to get
+     * @return the accounts ordered by name
+     */
+    Flux<Account> listAfter(@Nullable String startAfter, int limit);
+
+    /**
+     * Gets accounts whose names follow the specified one and that were changed since the specified time.
+     *
+     * @param startAfter   the name the account names should be greater than,
+     *                     or {@code null} to start from the first account
+     * @param updatedSince the time the accounts should be changed at or after,
+     *                     or {@code null} to get accounts regardless of their update time
+     * @param limit        the maximum number of accounts to get
+     * @return the accounts ordered by name
+     */
+    Flux<Account> listAfter(@Nullable String startAfter, @Nullable LocalDateTime updatedSince, int limit);
+
+    /**
+     * Gets the time an account was last changed without reading its items and savings.
+     *
+     * @param name the account name
+     * @return the update time of the account with the specified name
+     */
+    Mono<LocalDateTime> getUpdateTimeByName(@NonNull String name);
+
+    /**
+     * Gets the version of an account without reading its items and savings.
+     *
+     * @param name the account name
+     * @return the version of the account with the specified name
+     */
+    Mono<Long> getVersionByName(@NonNull String name);
+
+    /**
+     * Locks accounts until the end of the current transaction.
+     *
+     * @param names the names of the accounts to lock
+     * @return the names of the locked accounts, the accounts that don't exist aren't returned
+     */
+    Flux<String> lockByNames(@NonNull Collection<String> names);
+
     /**
      * Saves an account.
      *
@@ -24,6 +86,24 @@ public interface AccountRepository {
      */
     Mono<Account> save(@NonNull Account account);
 
+    /**
+     * Saves accounts whose names aren't used yet and skips the others.
+     *
+     * @param accounts the accounts to save
+     * @return the names of the saved accounts
+     * @throws IllegalArgumentException if the accounts contain several ones with the same name
+     */
+    Flux<String> saveIfAbsent(@NonNull Collection<Account> accounts);
+
+    /**
+     * Saves accounts, creating the missing ones and replacing the existing ones with their items and savings.
+     *
+     * @param accounts the accounts to save
+     * @return the saved accounts ordered by name
+     * @throws IllegalArgumentException if the accounts contain several ones with the same name
+     */
+    Flux<Account> saveAll(@NonNull Collection<Account> accounts);
+
     /**
      * Updates an account.
      *
@@ -0,0 +1,69 @@
+package com.github.galleog.piggymetrics.account.repository;
+
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Repository for {@link OutboxEvent}.
+ */
+public interface OutboxEventRepository {
+    /**
+     * Saves an event.
+     *
+     * @param event the event to save
+     * @return the saved event
+     */
+    Mono<OutboxEvent> save(@NonNull OutboxEvent event);
+
+    /**
+     * Saves several events at once.
+     *
+     * @param events the events to save
+     * @return the number of saved events
+     */
+    Mono<Integer> saveAll(@NonNull Collection<OutboxEvent> events);
+
+    /**
+     * Gets the oldest events and locks them until the end of the current transaction.
+     * Events locked by a concurrent transaction are skipped instead of waited for, so the events
+     * are never read by two transactions at once.
+     *
+     * @param limit the maximum number of events to get
+     * @return the oldest events ordered by their identifiers
+     */
+    Flux<OutboxEvent> lockOldest(int limit);
+
+    /**
+     * Gets the oldest events of the accounts that are ready to be published and locks them
+     * until the end of the current transaction. An account is ready if its latest event was saved
+     * before the quiet time or its oldest event was saved before the due time. Events locked by
+     * a concurrent transaction are skipped.
+     *
+     * @param limit       the maximum number of events to get
+     * @param quietBefore the time the latest event of an account should be saved before
+     * @param dueBefore   the time the oldest event of an account should be saved before
+     *                    to be published regardless of its later events
+     * @return the oldest events of the ready accounts ordered by their identifiers
+     */
+    Flux<OutboxEvent> lockOldestReady(int limit, @NonNull LocalDateTime quietBefore, @NonNull LocalDateTime dueBefore);
+
+    /**
+     * Gets the time the oldest event was saved.
+     *
+     * @return the time the oldest event was saved, or an empty {@link Mono} if there are no events
+     */
+    Mono<LocalDateTime> getOldestCreateTime();
+
+    /**
+     * Deletes events.
+     *
+     * @param ids the identifiers of the events to delete
+     * @return the number of deleted events
+     */
+    Mono<Integer> delete(@NonNull Collection<Long> ids);
+}
@@ -4,21 +4,43 @@ import static com.github.galleog.piggymetrics.account.domain.Sequences.ITEM_SEQ;
 import static com.github.galleog.piggymetrics.account.domain.Tables.ACCOUNTS;
 import static com.github.galleog.piggymetrics.account.domain.Tables.ITEMS;
 import static com.github.galleog.piggymetrics.account.domain.Tables.SAVINGS;
+import static org.jooq.impl.DSL.excluded;
+import static org.jooq.impl.DSL.multiset;
+import static org.jooq.impl.DSL.noCondition;
+import static org.jooq.impl.DSL.row;
+import static org.jooq.impl.DSL.select;
+import static org.jooq.impl.DSL.selectFrom;
 import static org.jooq.impl.DSL.val;
 
 import com.github.galleog.piggymetrics.account.domain.Account;
 import com.github.galleog.piggymetrics.account.domain.Item;
+import com.github.galleog.piggymetrics.account.domain.ItemType;
 import com.github.galleog.piggymetrics.account.domain.Saving;
+import com.github.galleog.piggymetrics.account.domain.TimePeriod;
 import com.github.galleog.piggymetrics.account.domain.tables.records.AccountsRecord;
+import com.github.galleog.piggymetrics.account.domain.tables.records.ItemsRecord;
 import com.github.galleog.piggymetrics.account.domain.tables.records.SavingsRecord;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.SequenceIdAllocator;
 import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.InvalidationBus;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
-import lombok.RequiredArgsConstructor;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
 import org.javamoney.moneta.Money;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.Record;
+import org.jooq.Row3;
+import org.jooq.Row6;
+import org.jooq.Row9;
+import org.jooq.SelectOnConditionStep;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
@@ -26,28 +48,120 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 /**
  * Implementation of {@link AccountRepository} using <a href="https://www.jooq.org/">jOOQ</a>.
  */
 @Repository
-@RequiredArgsConstructor
 public class JooqAccountRepository implements AccountRepository {
+    /**
+     * Number of item identifiers reserved at once. Must be equal to the increment of the item sequence.
+     */
+    private static final int ITEM_ID_BLOCK_SIZE = 50;
+
     private final TransactionAwareJooqWrapper wrapper;
+    private final InvalidationBus invalidationBus;
+    private final SequenceIdAllocator itemIdAllocator;
+
+    // items are nested into their account, so every account is read as a single row
+    private final Field<List<Item>> accountItems = multiset(
+            selectFrom(ITEMS)
+                    .where(ITEMS.ACCOUNT_NAME.eq(ACCOUNTS.NAME))
+                    .orderBy(ITEMS.POSITION)
+    ).as(ITEMS.getName()).convertFrom(result -> result.map(this::toItem));
+
+    /**
+     * Constructs an object instance.
+     * Changed accounts are published to the invalidation bus under the name of the account table.
+     */
+    public JooqAccountRepository(TransactionAwareJooqWrapper wrapper, InvalidationBus invalidationBus) {
+        this.wrapper = wrapper;
+        this.invalidationBus = invalidationBus;
+        this.itemIdAllocator = new SequenceIdAllocator(wrapper, ITEM_SEQ, ITEM_ID_BLOCK_SIZE);
+    }
 
     @Override
     @Transactional(readOnly = true)
     public Mono<Account> getByName(@NonNull String name) {
         Validate.notNull(name);
+        return wrapper.withDSLContext(ctx ->
+                selectAccounts(ctx)
+                        .where(ACCOUNTS.NAME.eq(name))
+        ).map(this::toAccount);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<Account> listByNames(@NonNull Collection<String> names) {
+        Validate.noNullElements(names);
+        if (names.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return listAccounts(ACCOUNTS.NAME.in(names));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<Account> listAfter(@Nullable String startAfter, int limit) {
+        return listAfter(startAfter, null, limit);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<Account> listAfter(@Nullable String startAfter, @Nullable LocalDateTime updatedSince, int limit) {
+        Validate.isTrue(limit > 0);
+        var names = select(ACCOUNTS.NAME)
+                .from(ACCOUNTS)
+                .where(startAfter == null ? noCondition() : ACCOUNTS.NAME.gt(startAfter))
+                .and(updatedSince == null ? noCondition() : ACCOUNTS.UPDATE_TIME.ge(updatedSince))
+                .orderBy(ACCOUNTS.NAME)
+                .limit(limit);
+        return listAccounts(ACCOUNTS.NAME.in(names));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<LocalDateTime> getUpdateTimeByName(@NonNull String name) {
+        Validate.notNull(name);
+        return wrapper.withDSLContext(ctx ->
+                ctx.select(ACCOUNTS.UPDATE_TIME)
+                        .from(ACCOUNTS)
+                        .where(ACCOUNTS.NAME.eq(name))
+        ).map(record -> record.get(ACCOUNTS.UPDATE_TIME));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<Long> getVersionByName(@NonNull String name) {
+        Validate.notNull(name);
+        return wrapper.withDSLContext(ctx ->
+                ctx.select(ACCOUNTS.VERSION)
+                        .from(ACCOUNTS)
+                        .where(ACCOUNTS.NAME.eq(name))
+        ).map(record -> record.get(ACCOUNTS.VERSION));
+    }
+
+    @Override
+    @Transactional
+    public Flux<String> lockByNames(@NonNull Collection<String> names) {
+        Validate.noNullElements(names);
+        if (names.isEmpty()) {
+            return Flux.empty();
+        }
+
         return wrapper.withDSLContextMany(ctx ->
-                        ctx.select()
-                                .from(ACCOUNTS)
-                                .leftJoin(ITEMS).on(ITEMS.ACCOUNT_NAME.eq(ACCOUNTS.NAME))
-                                .join(SAVINGS).on(SAVINGS.ACCOUNT_NAME.eq(ACCOUNTS.NAME))
-                                .where(ACCOUNTS.NAME.eq(name))
-                ).collectList()
-                .mapNotNull(this::toAccount);
+                ctx.select(ACCOUNTS.NAME)
+                        .from(ACCOUNTS)
+                        .where(ACCOUNTS.NAME.in(names))
+                        .forUpdate()
+        ).map(record -> record.get(ACCOUNTS.NAME));
     }
 
     @Override
@@ -60,15 +174,83 @@ public class JooqAccountRepository implements AccountRepository {
                                 .name(record.getName())
                                 .note(record.getNote())
                                 .updateTime(record.getUpdateTime())
+                                .version(record.getVersion())
                 ).flatMap(builder ->
                         insertSavingSql(account)
                                 .map(record -> builder.saving(toSaving(record)))
                 ).flatMap(builder ->
-                        insertItemsRecords(account)
+                        toItemRows(account.getName(), account.getItems())
+                                .flatMapMany(this::saveItemsSql)
+                                .collectList()
                                 .map(items -> builder.items(items).build())
                 );
     }
 
+    @Override
+    @Transactional
+    public Flux<String> saveIfAbsent(@NonNull Collection<Account> accounts) {
+        Validate.noNullElements(accounts);
+        if (accounts.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // savings and items are inserted only for the accounts that didn't exist before
+        var byName = Maps.uniqueIndex(accounts, Account::getName);
+        return insertAccountsIfAbsentSql(byName.values())
+                .collectList()
+                .flatMapMany(names -> {
+                    var created = names.stream()
+                            .map(byName::get)
+                            .collect(ImmutableList.toImmutableList());
+                    var items = Flux.fromIterable(created)
+                            .concatMap(account -> toItemRows(account.getName(), account.getItems()))
+                            .flatMapIterable(rows -> rows)
+                            .collectList();
+                    return insertSavingsSql(created)
+                            .then(items)
+                            .flatMapMany(this::saveItemsSql)
+                            .thenMany(Flux.fromIterable(names));
+                });
+    }
+
+    @Override
+    @Transactional
+    public Flux<Account> saveAll(@NonNull Collection<Account> accounts) {
+        Validate.noNullElements(accounts);
+        if (accounts.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // every table is written by one statement, and the items of the existing accounts are replaced entirely
+        var byName = Maps.uniqueIndex(accounts, Account::getName);
+        var items = Flux.fromIterable(byName.values())
+                .concatMap(account -> toItemRows(account.getName(), account.getItems()))
+                .flatMapIterable(rows -> rows)
+                .collectList();
+        return upsertAccountsSql(byName.values())
+                .collectList()
+                .flatMap(stored -> upsertSavingsSql(byName.values())
+                        .collectMap(SavingsRecord::getAccountName, this::toSaving)
+                        .flatMap(savings -> deleteAccountItemsSql(byName.keySet())
+                                .then(items)
+                                .flatMapMany(this::upsertItemsSql)
+                                .sort(Comparator.comparing(ItemsRecord::getPosition))
+                                .collectMultimap(ItemsRecord::getAccountName, this::toItem)
+                                .map(saved -> stored.stream()
+                                        .sorted(Comparator.comparing(AccountsRecord::getName))
+                                        .map(record -> Account.builder()
+                                                .name(record.getName())
+                                                .items(saved.getOrDefault(record.getName(), ImmutableList.of()))
+                                                .saving(savings.get(record.getName()))
+                                                .note(record.getNote())
+                                                .updateTime(record.getUpdateTime())
+                                                .version(record.getVersion())
+                                                .build())
+                                        .collect(ImmutableList.toImmutableList())))
+                ).flatMap(saved -> invalidate(byName.keySet()).thenReturn(saved))
+                .flatMapIterable(saved -> saved);
+    }
+
     @Override
     @Transactional
     public Mono<Account> update(@NonNull Account account) {
@@ -79,16 +261,37 @@ public class JooqAccountRepository implements AccountRepository {
                                 .name(record.getName())
                                 .note(record.getNote())
                                 .updateTime(record.getUpdateTime())
+                                .version(record.getVersion())
                 ).flatMap(builder ->
                         updateSavingSql(account)
                                 .map(record -> builder.saving(toSaving(record)))
                 ).flatMap(builder ->
-                        deleteItemsSql(account.getName())
-                                .map(i -> builder)
-                ).flatMap(builder ->
-                        insertItemsRecords(account)
+                        selectItemsSql(account.getName())
+                                .collectList()
+                                .flatMap(stored -> updateItems(account, stored))
                                 .map(items -> builder.items(items).build())
-                );
+                ).flatMap(updated -> invalidate(List.of(updated.getName())).thenReturn(updated));
+    }
+
+    private Mono<Void> invalidate(Collection<String> names) {
+        // other instances evict the accounts only after the transaction is committed
+        return invalidationBus.publish(ACCOUNTS.getName(), names);
+    }
+
+    private Flux<Account> listAccounts(Condition condition) {
+        return wrapper.withDSLContextMany(ctx ->
+                selectAccounts(ctx)
+                        .where(condition)
+                        .orderBy(ACCOUNTS.NAME)
+        ).map(this::toAccount);
+    }
+
+    private SelectOnConditionStep<Record> selectAccounts(DSLContext ctx) {
+        return ctx.select(ACCOUNTS.fields())
+                .select(SAVINGS.fields())
+                .select(accountItems)
+                .from(ACCOUNTS)
+                .join(SAVINGS).on(SAVINGS.ACCOUNT_NAME.eq(ACCOUNTS.NAME));
     }
 
     private Mono<AccountsRecord> insertAccountSql(Account account) {
@@ -100,11 +303,46 @@ public class JooqAccountRepository implements AccountRepository {
         );
     }
 
+    private Flux<String> insertAccountsIfAbsentSql(Collection<Account> accounts) {
+        var rows = toAccountRows(accounts);
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.insertInto(ACCOUNTS, ACCOUNTS.NAME, ACCOUNTS.NOTE, ACCOUNTS.UPDATE_TIME)
+                        .valuesOfRows(rows)
+                        .onConflictDoNothing()
+                        .returning(ACCOUNTS.NAME)
+        ).map(AccountsRecord::getName);
+    }
+
+    private Flux<AccountsRecord> upsertAccountsSql(Collection<Account> accounts) {
+        var rows = toAccountRows(accounts);
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.insertInto(ACCOUNTS, ACCOUNTS.NAME, ACCOUNTS.NOTE, ACCOUNTS.UPDATE_TIME)
+                        .valuesOfRows(rows)
+                        .onConflict(ACCOUNTS.NAME)
+                        .doUpdate()
+                        .set(ACCOUNTS.NOTE, excluded(ACCOUNTS.NOTE))
+                        .set(ACCOUNTS.UPDATE_TIME, excluded(ACCOUNTS.UPDATE_TIME))
+                        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
+                        .returning()
+        );
+    }
+
+    private List<Row3<String, String, LocalDateTime>> toAccountRows(Collection<Account> accounts) {
+        var now = LocalDateTime.now();
+        return accounts.stream()
+                .map(account -> row(
+                        val(account.getName(), ACCOUNTS.NAME),
+                        val(account.getNote(), ACCOUNTS.NOTE),
+                        val(now, ACCOUNTS.UPDATE_TIME)
+                )).collect(ImmutableList.toImmutableList());
+    }
+
     private Mono<AccountsRecord> updateAccountSql(Account account) {
         return wrapper.withDSLContext(ctx ->
                 ctx.update(ACCOUNTS)
                         .set(ACCOUNTS.NOTE, account.getNote())
                         .set(ACCOUNTS.UPDATE_TIME, LocalDateTime.now())
+                        .set(ACCOUNTS.VERSION, ACCOUNTS.VERSION.plus(1))
                         .where(ACCOUNTS.NAME.eq(account.getName()))
                         .returning()
         );
@@ -131,6 +369,64 @@ public class JooqAccountRepository implements AccountRepository {
         );
     }
 
+    private Mono<Integer> insertSavingsSql(List<Account> accounts) {
+        if (accounts.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        var rows = toSavingRows(accounts);
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(
+                                SAVINGS,
+                                SAVINGS.ACCOUNT_NAME,
+                                SAVINGS.CURRENCY_CODE,
+                                SAVINGS.MONEY_AMOUNT,
+                                SAVINGS.INTEREST,
+                                SAVINGS.DEPOSIT,
+                                SAVINGS.CAPITALIZATION
+                        ).valuesOfRows(rows)
+        );
+    }
+
+    private Flux<SavingsRecord> upsertSavingsSql(Collection<Account> accounts) {
+        var rows = toSavingRows(accounts);
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.insertInto(
+                                SAVINGS,
+                                SAVINGS.ACCOUNT_NAME,
+                                SAVINGS.CURRENCY_CODE,
+                                SAVINGS.MONEY_AMOUNT,
+                                SAVINGS.INTEREST,
+                                SAVINGS.DEPOSIT,
+                                SAVINGS.CAPITALIZATION
+                        ).valuesOfRows(rows)
+                        .onConflict(SAVINGS.ACCOUNT_NAME)
+                        .doUpdate()
+                        .set(SAVINGS.CURRENCY_CODE, excluded(SAVINGS.CURRENCY_CODE))
+                        .set(SAVINGS.MONEY_AMOUNT, excluded(SAVINGS.MONEY_AMOUNT))
+                        .set(SAVINGS.INTEREST, excluded(SAVINGS.INTEREST))
+                        .set(SAVINGS.DEPOSIT, excluded(SAVINGS.DEPOSIT))
+                        .set(SAVINGS.CAPITALIZATION, excluded(SAVINGS.CAPITALIZATION))
+                        .returning()
+        );
+    }
+
+    private List<Row6<String, String, BigDecimal, BigDecimal, Boolean, Boolean>> toSavingRows(
+            Collection<Account> accounts) {
+        return accounts.stream()
+                .map(account -> {
+                    var saving = account.getSaving();
+                    return row(
+                            val(account.getName(), SAVINGS.ACCOUNT_NAME),
+                            val(saving.getMoneyAmount().getCurrency().getCurrencyCode(), SAVINGS.CURRENCY_CODE),
+                            val(saving.getMoneyAmount().getNumber().numberValue(BigDecimal.class), SAVINGS.MONEY_AMOUNT),
+                            val(saving.getInterest(), SAVINGS.INTEREST),
+                            val(saving.isDeposit(), SAVINGS.DEPOSIT),
+                            val(saving.isCapitalization(), SAVINGS.CAPITALIZATION)
+                    );
+                }).collect(ImmutableList.toImmutableList());
+    }
+
     private Mono<SavingsRecord> updateSavingSql(Account account) {
         return wrapper.withDSLContext(ctx ->
                 ctx.update(SAVINGS)
@@ -144,58 +440,171 @@ public class JooqAccountRepository implements AccountRepository {
         );
     }
 
-    private Mono<List<Item>> insertItemsRecords(Account account) {
-        return Flux.fromIterable(account.getItems())
-                .flatMap(item -> wrapper.withDSLContext(ctx ->
-                        ctx.insertInto(ITEMS)
-                                .columns(
-                                        ITEMS.ID,
-                                        ITEMS.ACCOUNT_NAME,
-                                        ITEMS.TITLE,
-                                        ITEMS.CURRENCY_CODE,
-                                        ITEMS.MONEY_AMOUNT,
-                                        ITEMS.PERIOD,
-                                        ITEMS.ICON,
-                                        ITEMS.ITEM_TYPE
-                                ).values(
-                                        ITEM_SEQ.nextval(),
-                                        val(account.getName()),
-                                        val(item.getTitle()),
-                                        val(item.getMoneyAmount().getCurrency().getCurrencyCode()),
-                                        val(item.getMoneyAmount().getNumber().numberValue(BigDecimal.class)),
-                                        val(item.getPeriod()),
-                                        val(item.getIcon()),
-                                        val(item.getType())
-                                ).returning()
-                )).map(this::toItem)
-                .collectList();
+    private Flux<ItemsRecord> selectItemsSql(String account) {
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.selectFrom(ITEMS)
+                        .where(ITEMS.ACCOUNT_NAME.eq(account))
+                        .orderBy(ITEMS.POSITION)
+        );
     }
 
-    private Mono<Integer> deleteItemsSql(String account) {
+    private Mono<List<Item>> updateItems(Account account, List<ItemsRecord> stored) {
+        // the account row is already locked by the update, so the stored items can't change concurrently
+        ListMultimap<Pair<ItemType, String>, Item> unmatched = ArrayListMultimap.create();
+        Map<Long, Integer> storedPositions = new HashMap<>();
+        stored.forEach(record -> {
+            var item = toItem(record);
+            unmatched.put(itemKey(item), item);
+            storedPositions.put(item.getId(), record.getPosition());
+        });
+
+        // the position of an item is its index in the account, and items are returned in that order
+        var items = account.getItems();
+        var result = new Item[items.size()];
+        var ids = new Long[items.size()];
+        for (var i = 0; i < items.size(); i++) {
+            var item = items.get(i);
+            // a stored item of the same type and title keeps its identifier
+            var candidates = unmatched.get(itemKey(item));
+            var match = candidates.stream()
+                    .filter(candidate -> isSameContent(candidate, item))
+                    .findFirst()
+                    .or(() -> candidates.stream().findFirst());
+            match.ifPresent(candidates::remove);
+            if (match.isPresent() && isSameContent(match.get(), item)
+                    && storedPositions.get(match.get().getId()) == i) {
+                result[i] = match.get();
+            } else {
+                ids[i] = match.map(Item::getId).orElse(null);
+            }
+        }
+
+        var written = IntStream.range(0, items.size())
+                .filter(i -> result[i] == null)
+                .boxed()
+                .collect(ImmutableList.toImmutableList());
+        var added = (int) written.stream()
+                .filter(i -> ids[i] == null)
+                .count();
+        var deletedIds = unmatched.values()
+                .stream()
+                .map(Item::getId)
+                .collect(ImmutableList.toImmutableList());
+        return deleteItemsSql(deletedIds)
+                .then(itemIdAllocator.nextIds(added))
+                .map(addedIds -> {
+                    var nextId = addedIds.iterator();
+                    return written.stream()
+                            .map(i -> toItemRow(
+                                    ids[i] == null ? nextId.next() : ids[i], account.getName(), items.get(i), i
+                            )).collect(ImmutableList.toImmutableList());
+                }).flatMapMany(this::upsertItemsSql)
+                .doOnNext(record -> result[record.getPosition()] = toItem(record))
+                .then(Mono.fromSupplier(() -> ImmutableList.copyOf(result)));
+    }
+
+    private Flux<Item> saveItemsSql(
+            List<Row9<Long, String, String, String, BigDecimal, TimePeriod, String, ItemType, Integer>> rows) {
+        // records are sorted by position, so the items are returned in the order of the account
+        return upsertItemsSql(rows)
+                .sort(Comparator.comparing(ItemsRecord::getPosition))
+                .map(this::toItem);
+    }
+
+    private Flux<ItemsRecord> upsertItemsSql(
+            List<Row9<Long, String, String, String, BigDecimal, TimePeriod, String, ItemType, Integer>> rows) {
+        if (rows.isEmpty()) {
+            return Flux.empty();
+        }
+
+        // new items are inserted and changed ones are updated by one statement
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.insertInto(
+                                ITEMS,
+                                ITEMS.ID,
+                                ITEMS.ACCOUNT_NAME,
+                                ITEMS.TITLE,
+                                ITEMS.CURRENCY_CODE,
+                                ITEMS.MONEY_AMOUNT,
+                                ITEMS.PERIOD,
+                                ITEMS.ICON,
+                                ITEMS.ITEM_TYPE,
+                                ITEMS.POSITION
+                        ).valuesOfRows(rows)
+                        .onConflict(ITEMS.ID)
+                        .doUpdate()
+                        .set(ITEMS.TITLE, excluded(ITEMS.TITLE))
+                        .set(ITEMS.CURRENCY_CODE, excluded(ITEMS.CURRENCY_CODE))
+                        .set(ITEMS.MONEY_AMOUNT, excluded(ITEMS.MONEY_AMOUNT))
+                        .set(ITEMS.PERIOD, excluded(ITEMS.PERIOD))
+                        .set(ITEMS.ICON, excluded(ITEMS.ICON))
+                        .set(ITEMS.ITEM_TYPE, excluded(ITEMS.ITEM_TYPE))
+                        .set(ITEMS.POSITION, excluded(ITEMS.POSITION))
+                        .returning()
+        );
+    }
+
+    private Mono<Integer> deleteItemsSql(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(0);
+        }
+
         return wrapper.withDSLContext(ctx ->
                 ctx.deleteFrom(ITEMS)
-                        .where(ITEMS.ACCOUNT_NAME.eq(account))
+                        .where(ITEMS.ID.in(ids))
         );
     }
 
-    private Account toAccount(List<Record> records) {
-        if (records.isEmpty()) {
-            return null;
-        }
+    private Mono<Integer> deleteAccountItemsSql(Collection<String> accounts) {
+        return wrapper.withDSLContext(ctx ->
+                ctx.deleteFrom(ITEMS)
+                        .where(ITEMS.ACCOUNT_NAME.in(accounts))
+        );
+    }
+
+    private Mono<List<Row9<Long, String, String, String, BigDecimal, TimePeriod, String, ItemType, Integer>>>
+            toItemRows(String account, List<Item> items) {
+        // identifiers of new items are generated on the client, so they are inserted by one statement
+        return itemIdAllocator.nextIds(items.size())
+                .map(ids -> IntStream.range(0, items.size())
+                        .mapToObj(i -> toItemRow(ids.get(i), account, items.get(i), i))
+                        .collect(ImmutableList.toImmutableList()));
+    }
 
-        var record = records.get(0);
+    private Row9<Long, String, String, String, BigDecimal, TimePeriod, String, ItemType, Integer> toItemRow(
+            Long id, String account, Item item, int position) {
+        return row(
+                val(id, ITEMS.ID),
+                val(account, ITEMS.ACCOUNT_NAME),
+                val(item.getTitle(), ITEMS.TITLE),
+                val(item.getMoneyAmount().getCurrency().getCurrencyCode(), ITEMS.CURRENCY_CODE),
+                val(item.getMoneyAmount().getNumber().numberValue(BigDecimal.class), ITEMS.MONEY_AMOUNT),
+                val(item.getPeriod(), ITEMS.PERIOD),
+                val(item.getIcon(), ITEMS.ICON),
+                val(item.getType(), ITEMS.ITEM_TYPE),
+                val(position, ITEMS.POSITION)
+        );
+    }
 
-        var items = records.stream()
-                .filter(r -> r.get(ITEMS.ID) != null)
-                .map(this::toItem)
-                .collect(ImmutableList.toImmutableList());
-        var saving = toSaving(record);
+    private static Pair<ItemType, String> itemKey(Item item) {
+        return Pair.of(item.getType(), item.getTitle());
+    }
+
+    private static boolean isSameContent(Item stored, Item item) {
+        return stored.getMoneyAmount().getCurrency().equals(item.getMoneyAmount().getCurrency())
+                && stored.getMoneyAmount().isEqualTo(item.getMoneyAmount())
+                && stored.getPeriod() == item.getPeriod()
+                && stored.getIcon().equals(item.getIcon());
+    }
+
+    private Account toAccount(Record record) {
         return Account.builder()
                 .name(record.get(ACCOUNTS.NAME))
-                .items(items)
-                .saving(saving)
+                .items(record.get(accountItems))
+                .saving(toSaving(record))
                 .note(record.get(ACCOUNTS.NOTE))
                 .updateTime(record.get(ACCOUNTS.UPDATE_TIME))
+                .version(record.get(ACCOUNTS.VERSION))
                 .build();
     }
 
@@ -0,0 +1,150 @@
+package com.github.galleog.piggymetrics.account.repository.jooq;
+
+import static com.github.galleog.piggymetrics.account.domain.Sequences.OUTBOX_EVENT_SEQ;
+import static com.github.galleog.piggymetrics.account.domain.Tables.OUTBOX_EVENTS;
+import static org.jooq.impl.DSL.max;
+import static org.jooq.impl.DSL.min;
+import static org.jooq.impl.DSL.row;
+import static org.jooq.impl.DSL.select;
+import static org.jooq.impl.DSL.val;
+
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.account.domain.tables.records.OutboxEventsRecord;
+import com.github.galleog.piggymetrics.account.repository.OutboxEventRepository;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.google.common.collect.ImmutableList;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.Validate;
+import org.jooq.Record1;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Implementation of {@link OutboxEventRepository} using <a href="https://www.jooq.org/">jOOQ</a>.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JooqOutboxEventRepository implements OutboxEventRepository {
+    private final TransactionAwareJooqWrapper wrapper;
+
+    @Override
+    @Transactional
+    public Mono<OutboxEvent> save(@NonNull OutboxEvent event) {
+        Validate.notNull(event);
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(OUTBOX_EVENTS)
+                        .columns(
+                                OUTBOX_EVENTS.ID,
+                                OUTBOX_EVENTS.ACCOUNT_NAME,
+                                OUTBOX_EVENTS.PAYLOAD,
+                                OUTBOX_EVENTS.CREATE_TIME
+                        ).values(
+                                OUTBOX_EVENT_SEQ.nextval(),
+                                val(event.getAccountName()),
+                                val(event.getPayload()),
+                                val(LocalDateTime.now())
+                        ).returning()
+        ).map(this::toOutboxEvent);
+    }
+
+    @Override
+    @Transactional
+    public Mono<Integer> saveAll(@NonNull Collection<OutboxEvent> events) {
+        Validate.noNullElements(events);
+        if (events.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        var now = LocalDateTime.now();
+        var rows = events.stream()
+                .map(event -> row(
+                        OUTBOX_EVENT_SEQ.nextval(),
+                        val(event.getAccountName(), OUTBOX_EVENTS.ACCOUNT_NAME),
+                        val(event.getPayload(), OUTBOX_EVENTS.PAYLOAD),
+                        val(now, OUTBOX_EVENTS.CREATE_TIME)
+                )).collect(ImmutableList.toImmutableList());
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(
+                                OUTBOX_EVENTS,
+                                OUTBOX_EVENTS.ID,
+                                OUTBOX_EVENTS.ACCOUNT_NAME,
+                                OUTBOX_EVENTS.PAYLOAD,
+                                OUTBOX_EVENTS.CREATE_TIME
+                        ).valuesOfRows(rows)
+        );
+    }
+
+    @Override
+    @Transactional
+    public Flux<OutboxEvent> lockOldest(int limit) {
+        Validate.isTrue(limit > 0);
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.selectFrom(OUTBOX_EVENTS)
+                        .orderBy(OUTBOX_EVENTS.ID)
+                        .limit(limit)
+                        .forUpdate()
+                        .skipLocked()
+        ).map(this::toOutboxEvent);
+    }
+
+    @Override
+    @Transactional
+    public Flux<OutboxEvent> lockOldestReady(int limit, @NonNull LocalDateTime quietBefore,
+                                             @NonNull LocalDateTime dueBefore) {
+        Validate.isTrue(limit > 0);
+        Validate.notNull(quietBefore);
+        Validate.notNull(dueBefore);
+
+        var readyAccounts = select(OUTBOX_EVENTS.ACCOUNT_NAME)
+                .from(OUTBOX_EVENTS)
+                .groupBy(OUTBOX_EVENTS.ACCOUNT_NAME)
+                .having(max(OUTBOX_EVENTS.CREATE_TIME).lt(quietBefore)
+                        .or(min(OUTBOX_EVENTS.CREATE_TIME).lt(dueBefore)));
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.selectFrom(OUTBOX_EVENTS)
+                        .where(OUTBOX_EVENTS.ACCOUNT_NAME.in(readyAccounts))
+                        .orderBy(OUTBOX_EVENTS.ID)
+                        .limit(limit)
+                        .forUpdate()
+                        .skipLocked()
+        ).map(this::toOutboxEvent);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<LocalDateTime> getOldestCreateTime() {
+        return wrapper.withDSLContext(ctx ->
+                ctx.select(min(OUTBOX_EVENTS.CREATE_TIME))
+                        .from(OUTBOX_EVENTS)
+        ).mapNotNull(Record1::value1);
+    }
+
+    @Override
+    @Transactional
+    public Mono<Integer> delete(@NonNull Collection<Long> ids) {
+        Validate.noNullElements(ids);
+        if (ids.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        return wrapper.withDSLContext(ctx ->
+                ctx.deleteFrom(OUTBOX_EVENTS)
+                        .where(OUTBOX_EVENTS.ID.in(ids))
+        );
+    }
+
+    private OutboxEvent toOutboxEvent(OutboxEventsRecord record) {
+        return OutboxEvent.builder()
+                .id(record.getId())
+                .accountName(record.getAccountName())
+                .payload(record.getPayload())
+                .createTime(record.getCreateTime())
+                .build();
+    }
+}
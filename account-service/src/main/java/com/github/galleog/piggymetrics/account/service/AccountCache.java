@@ -0,0 +1,87 @@
+package com.github.galleog.piggymetrics.account.service;
+
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.Account;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Bounded in-process cache of accounts.
+ * Accounts are cached as built response messages, so a hit returns them to clients without converting
+ * their items and savings again. Accounts changed by other instances of the service are evicted
+ * as soon as their invalidations are received, and the time to live bounds how long an account stays stale
+ * if its invalidation is lost.
+ */
+public class AccountCache {
+    /**
+     * Name of the cache in metrics.
+     */
+    public static final String CACHE_NAME = "accounts";
+
+    private final Cache<String, Account> cache;
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param maxSize       the maximum number of cached accounts
+     * @param ttl           the time an account is kept in the cache after it was put there
+     * @param meterRegistry the registry to publish cache metrics to
+     * @throws IllegalArgumentException if the maximum size or the time to live is negative
+     */
+    public AccountCache(long maxSize, @NonNull Duration ttl, @NonNull MeterRegistry meterRegistry) {
+        Validate.isTrue(maxSize >= 0);
+        Validate.isTrue(!ttl.isNegative());
+        Validate.notNull(meterRegistry);
+
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, this.cache, CACHE_NAME);
+    }
+
+    /**
+     * Gets a cached account.
+     *
+     * @param name the account name
+     * @return the cached account, or {@code null} if the account isn't cached
+     */
+    @Nullable
+    public Account get(@NonNull String name) {
+        return cache.getIfPresent(name);
+    }
+
+    /**
+     * Puts an account into the cache.
+     *
+     * @param account the account to cache
+     * @throws IllegalArgumentException if the account has no update time
+     */
+    public void put(@NonNull Account account) {
+        Validate.isTrue(account.hasUpdateTime());
+        cache.put(account.getName(), account);
+    }
+
+    /**
+     * Removes an account from the cache.
+     *
+     * @param name the account name
+     */
+    public void evict(@NonNull String name) {
+        cache.invalidate(name);
+    }
+
+    /**
+     * Removes all accounts from the cache.
+     */
+    public void evictAll() {
+        cache.invalidateAll();
+    }
+}
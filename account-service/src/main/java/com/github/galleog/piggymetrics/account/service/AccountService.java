@@ -7,29 +7,50 @@ import static com.github.galleog.protobuf.java.type.converter.Converters.timesta
 import com.github.galleog.piggymetrics.account.domain.Account;
 import com.github.galleog.piggymetrics.account.domain.Item;
 import com.github.galleog.piggymetrics.account.domain.ItemType;
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
 import com.github.galleog.piggymetrics.account.domain.Saving;
 import com.github.galleog.piggymetrics.account.domain.TimePeriod;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.AccountUpdatedEvent;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.BatchGetAccountsRequest;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.GetAccountRequest;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ImportAccountResult;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ImportStatus;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ListAccountsRequest;
 import com.github.galleog.piggymetrics.account.grpc.ReactorAccountServiceGrpc;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
+import com.github.galleog.piggymetrics.account.repository.OutboxEventRepository;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardContext;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Converter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
 import org.springframework.lang.NonNull;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.lang.Nullable;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.kafka.sender.SenderRecord;
-import reactor.kafka.sender.SenderResult;
 
 import javax.money.MonetaryException;
 import java.time.DateTimeException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -42,63 +63,354 @@ public class AccountService extends ReactorAccountServiceGrpc.AccountServiceImpl
     private static final Converter<Item, AccountServiceProto.Item> ITEM_CONVERTER = new ItemConverter();
     private static final Converter<Saving, AccountServiceProto.Saving> SAVING_CONVERTER = new SavingConverter();
 
-    private final String topic;
+    /**
+     * Maximum number of accounts read by one query.
+     */
+    @VisibleForTesting
+    static final int MAX_ACCOUNTS_PER_QUERY = 500;
+
+    private final boolean deltaEnabled;
+    private final int snapshotInterval;
+    private final int importBatchSize;
+    private final boolean verifyCacheHits;
     private final AccountRepository accountRepository;
-    private final ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate;
+    private final AccountCache accountCache;
+    private final OutboxEventRepository outboxEventRepository;
+    private final AccountShards accountShards;
+    private final TransactionalOperator operator;
 
     /**
      * Constructs an object instance.
+     * <p/>
+     * Accounts changed by other instances are evicted from the cache when their invalidations are received,
+     * and the whole cache is cleared when the invalidation bus reconnects, so cache hits are returned as is.
+     * If an invalidation is lost anyway, the account stays stale until the cache time to live expires.
+     * Verifying cache hits removes that window at the cost of a query per hit, so it should be enabled only
+     * if invalidations aren't reliably delivered between the instances.
+     *
+     * @param verifyCacheHits whether a cached account is checked against its stored update time before it's returned
      */
-    public AccountService(@Value("${spring.kafka.producer.topic}") String topic, AccountRepository accountRepository,
-                          ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate) {
-        this.topic = topic;
+    public AccountService(@Value("${account.events.delta-enabled}") boolean deltaEnabled,
+                          @Value("${account.events.snapshot-interval}") int snapshotInterval,
+                          @Value("${account.import.batch-size}") int importBatchSize,
+                          @Value("${account.cache.verify-hits}") boolean verifyCacheHits,
+                          AccountRepository accountRepository, AccountCache accountCache,
+                          OutboxEventRepository outboxEventRepository, AccountShards accountShards,
+                          TransactionalOperator operator) {
+        Validate.isTrue(snapshotInterval > 0);
+        Validate.isTrue(importBatchSize > 0);
+
+        this.deltaEnabled = deltaEnabled;
+        this.snapshotInterval = snapshotInterval;
+        this.importBatchSize = importBatchSize;
+        this.verifyCacheHits = verifyCacheHits;
         this.accountRepository = accountRepository;
-        this.producerTemplate = producerTemplate;
+        this.accountCache = accountCache;
+        this.outboxEventRepository = outboxEventRepository;
+        this.accountShards = accountShards;
+        this.operator = operator;
     }
 
     @Override
     public Mono<AccountServiceProto.Account> getAccount(Mono<GetAccountRequest> request) {
-        return request.map(GetAccountRequest::getName)
-                .flatMap(this::doGetAccount)
+        return request.flatMap(req -> accountShards.routeBy(req.getName(), () -> req.hasKnownVersion() ?
+                        doGetAccountIfModified(req.getName(), req.getKnownVersion().getValue()) :
+                        doGetAccount(req.getName()))
+                .switchIfEmpty(Mono.error(() -> notFound(req.getName()))));
+    }
+
+    @Override
+    public Flux<AccountServiceProto.Account> batchGetAccounts(Mono<BatchGetAccountsRequest> request) {
+        return request.flatMapMany(this::doBatchGetAccounts)
+                .map(ACCOUNT_CONVERTER::convert);
+    }
+
+    @Override
+    public Flux<AccountServiceProto.Account> listAccounts(Mono<ListAccountsRequest> request) {
+        return request.flatMapMany(this::doListAccounts)
                 .map(ACCOUNT_CONVERTER::convert);
     }
 
     @Override
-    @Transactional
     public Mono<AccountServiceProto.Account> updateAccount(Mono<AccountServiceProto.Account> request) {
+        // the shard of the account must be known when the transaction gets its connection
         return request.map(account -> ACCOUNT_CONVERTER.reverse().convert(account))
-                .flatMap(this::doUpdateAccount);
+                .flatMap(account -> accountShards.routeBy(account.getName(), () -> doUpdateAccount(account)
+                                .as(operator::transactional))
+                        .switchIfEmpty(Mono.error(() -> notFound(account.getName()))));
+    }
+
+    @Override
+    public Flux<ImportAccountResult> importAccounts(Flux<AccountServiceProto.Account> request) {
+        // every batch is written by a few statements in its own transaction
+        return request.buffer(importBatchSize)
+                .concatMap(this::doImportAccounts);
+    }
+
+    private Mono<AccountServiceProto.Account> doGetAccount(String name) {
+        var cached = accountCache.get(name);
+        if (cached == null) {
+            return loadAccount(name)
+                    .doOnNext(a -> logger.debug("Account for user '{}' found", name));
+        }
+        if (!verifyCacheHits) {
+            logger.debug("Account for user '{}' found in the cache", name);
+            return Mono.just(cached);
+        }
+
+        // the account may have been updated by another instance, so a cached copy is only used if it's still current
+        var account = accountRepository.getUpdateTimeByName(name)
+                .flatMap(updateTime -> timestampConverter().convert(updateTime).equals(cached.getUpdateTime()) ?
+                        Mono.just(cached) : loadAccount(name));
+        return account.doOnNext(a -> logger.debug("Account for user '{}' found", name));
     }
 
-    private Mono<Account> doGetAccount(String name) {
+    private Mono<AccountServiceProto.Account> doGetAccountIfModified(String name, long knownVersion) {
+        // only the version is read if the client already has the current state of the account
+        return accountRepository.getVersionByName(name)
+                .flatMap(version -> version == knownVersion ?
+                        Mono.just(AccountServiceProto.Account.newBuilder()
+                                .setName(name)
+                                .setVersion(version)
+                                .setNotModified(true)
+                                .build()) :
+                        doGetAccount(name));
+    }
+
+    private Flux<Account> doBatchGetAccounts(BatchGetAccountsRequest request) {
+        if (request.getLimit() < 0) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("Limit must not be negative")
+                    .asRuntimeException();
+        }
+
+        if (request.getNamesCount() == 0) {
+            var startAfter = StringUtils.isEmpty(request.getStartAfter()) ? null : request.getStartAfter();
+            var limit = request.getLimit() > 0 ? request.getLimit() : Long.MAX_VALUE;
+            // every shard may hold all of the first accounts, so each of them is read up to the limit
+            return accountShards.readAll(shard -> listAfter(startAfter, limit))
+                    .take(limit);
+        }
+
+        var names = request.getNamesList()
+                .stream()
+                .filter(StringUtils::isNotBlank)
+                .distinct()
+                .sorted()
+                .collect(ImmutableList.toImmutableList());
+        // names of every shard are sorted, so concatenating chunks keeps its accounts ordered by name
+        return accountShards.groupByShard(names, Function.identity())
+                .flatMapMany(groups -> accountShards.readAll(shard ->
+                        Flux.fromIterable(Lists.partition(groups.getOrDefault(shard, ImmutableList.of()),
+                                        MAX_ACCOUNTS_PER_QUERY))
+                                .concatMap(accountRepository::listByNames)));
+    }
+
+    private Flux<Account> doListAccounts(ListAccountsRequest request) {
+        if (request.getChunkSize() < 0) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("Chunk size must not be negative")
+                    .asRuntimeException();
+        }
+
+        var startAfter = StringUtils.isEmpty(request.getStartAfter()) ? null : request.getStartAfter();
+        var updatedSince = request.hasUpdatedSince() ?
+                timestampConverter().reverse().convert(request.getUpdatedSince()) : null;
+        var chunkSize = request.getChunkSize() > 0 ?
+                Math.min(request.getChunkSize(), MAX_ACCOUNTS_PER_QUERY) : MAX_ACCOUNTS_PER_QUERY;
+        return accountShards.readAll(shard -> listAfter(startAfter, chunkSize, Long.MAX_VALUE,
+                (after, limit) -> accountRepository.listAfter(after, updatedSince, limit)));
+    }
+
+    private Flux<Account> listAfter(@Nullable String startAfter, long remaining) {
+        return listAfter(startAfter, MAX_ACCOUNTS_PER_QUERY, remaining, accountRepository::listAfter);
+    }
+
+    private Flux<Account> listAfter(@Nullable String startAfter, int chunkSize, long remaining,
+                                    BiFunction<String, Integer, Flux<Account>> reader) {
+        // the next chunk is read only when the previous one has been consumed
+        var limit = (int) Math.min(remaining, chunkSize);
+        return reader.apply(startAfter, limit)
+                .collectList()
+                .flatMapMany(accounts -> {
+                    var chunk = Flux.fromIterable(accounts);
+                    if (accounts.size() < limit || accounts.size() == remaining) {
+                        return chunk;
+                    }
+                    var last = accounts.get(accounts.size() - 1).getName();
+                    return chunk.concatWith(Flux.defer(() ->
+                            listAfter(last, chunkSize, remaining - accounts.size(), reader)));
+                });
+    }
+
+    private Flux<ImportAccountResult> doImportAccounts(List<AccountServiceProto.Account> batch) {
+        // a later record of an account replaces the earlier ones as if they were imported one by one
+        var accounts = new LinkedHashMap<String, Account>();
+        var errors = new IdentityHashMap<AccountServiceProto.Account, String>();
+        for (var account : batch) {
+            try {
+                var converted = ACCOUNT_CONVERTER.reverse().convert(account);
+                accounts.put(converted.getName(), converted);
+            } catch (StatusRuntimeException e) {
+                errors.put(account, e.getStatus().getDescription());
+            }
+        }
+
+        // accounts of every shard are written in a transaction on that shard
+        return accountShards.groupByShard(accounts.values(), Account::getName)
+                .flatMapIterable(Map::entrySet)
+                .concatMap(group -> importToShard(group.getKey(), group.getValue()))
+                .collectMap(ImportAccountResult::getAccountName)
+                .flatMapIterable(results -> batch.stream()
+                        .map(account -> errors.containsKey(account) ?
+                                toImportResult(account.getName(), ImportStatus.INVALID, errors.get(account)).build() :
+                                results.get(account.getName()))
+                        .collect(ImmutableList.toImmutableList()));
+    }
+
+    private Flux<ImportAccountResult> importToShard(String shard, List<Account> accounts) {
+        return saveImportedAccounts(shard, accounts)
+                .contextWrite(ShardContext.routeTo(shard))
+                .flatMapIterable(versions -> toImportResults(accounts, account ->
+                        toImportResult(account.getName(), ImportStatus.IMPORTED, null)
+                                .setVersion(versions.get(account.getName()))))
+                .onErrorResume(e -> {
+                    // a failed shard doesn't stop the import, so the client can send its accounts again later
+                    logger.error("Failed to import " + accounts.size() + " accounts to shard '" + shard + "'", e);
+                    return Flux.fromIterable(toImportResults(accounts, account ->
+                            toImportResult(account.getName(), ImportStatus.FAILED, e.getMessage())));
+                });
+    }
+
+    private Mono<Map<String, Long>> saveImportedAccounts(String shard, List<Account> accounts) {
+        // accounts still to be moved from the shard are locked, so they aren't recreated on it after the move
+        var pending = accounts.stream()
+                .map(Account::getName)
+                .filter(name -> accountShards.isMovePending(shard, name))
+                .collect(ImmutableSet.toImmutableSet());
+        var locked = pending.isEmpty() ? Mono.empty() : accountRepository.lockByNames(pending)
+                .collect(ImmutableSet.toImmutableSet())
+                .filter(names -> names.size() == pending.size())
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException(
+                        "Some of accounts " + pending + " have been moved from shard '" + shard + "'")));
+        return locked.thenMany(Flux.defer(() -> accountRepository.saveAll(accounts)))
+                .collectList()
+                .flatMap(saved -> outboxEventRepository.saveAll(saved.stream()
+                                .map(account -> toEvent(null, account))
+                                .collect(ImmutableList.toImmutableList()))
+                        .thenReturn(saved))
+                .as(operator::transactional)
+                .map(saved -> {
+                    saved.forEach(account -> accountCache.evict(account.getName()));
+                    logger.info("{} accounts imported", saved.size());
+                    return saved.stream()
+                            .collect(ImmutableMap.toImmutableMap(Account::getName, Account::getVersion));
+                });
+    }
+
+    private static List<ImportAccountResult> toImportResults(
+            List<Account> accounts, Function<Account, ImportAccountResult.Builder> result) {
+        return accounts.stream()
+                .map(result)
+                .map(ImportAccountResult.Builder::build)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private static ImportAccountResult.Builder toImportResult(String accountName, ImportStatus status,
+                                                              @Nullable String error) {
+        return ImportAccountResult.newBuilder()
+                .setAccountName(accountName)
+                .setStatus(status)
+                .setError(StringUtils.defaultString(error));
+    }
+
+    private static StatusRuntimeException notFound(String name) {
+        return Status.NOT_FOUND
+                .withDescription("Account for user '" + name + "' not found")
+                .asRuntimeException();
+    }
+
+    private Mono<AccountServiceProto.Account> loadAccount(String name) {
+        // the built message is cached, so it isn't converted again until the account is changed
         return accountRepository.getByName(name)
-                .doOnNext(account -> logger.debug("Account for user '{}' found", name))
-                .switchIfEmpty(Mono.error(() -> Status.NOT_FOUND
-                        .withDescription("Account for user '" + name + "' not found")
-                        .asRuntimeException()));
+                .map(ACCOUNT_CONVERTER::convert)
+                .doOnNext(accountCache::put);
     }
 
     private Mono<AccountServiceProto.Account> doUpdateAccount(Account account) {
-        return accountRepository.update(account)
-                .switchIfEmpty(Mono.error(() -> Status.NOT_FOUND
-                        .withDescription("Account for user '" + account.getName() + "' not found")
-                        .asRuntimeException()))
-                .map(ACCOUNT_CONVERTER::convert)
-                .flatMap(this::sendEvent)
-                .map(SenderResult::correlationMetadata)
+        // the previous state of the account is only needed to calculate a delta event
+        var previous = deltaEnabled ? accountRepository.getByName(account.getName()).map(Optional::of) :
+                Mono.<Optional<Account>>empty();
+        return previous.defaultIfEmpty(Optional.empty())
+                .flatMap(prev -> accountRepository.update(account)
+                        .doOnNext(a -> accountCache.evict(a.getName()))
+                        .flatMap(a -> saveEvent(prev.orElse(null), a).thenReturn(a))
+                ).map(ACCOUNT_CONVERTER::convert)
                 .doOnNext(a -> logger.info("Account for user '{}' updated", a.getName()));
     }
 
-    private Mono<SenderResult<AccountServiceProto.Account>> sendEvent(AccountServiceProto.Account account) {
-        var event = AccountUpdatedEvent.newBuilder()
-                .setAccountName(account.getName())
-                .addAllItems(account.getItemsList())
-                .setSaving(account.getSaving())
-                .setNote(account.getNote())
+    private Mono<OutboxEvent> saveEvent(@Nullable Account previous, Account account) {
+        // the event is published by AccountUpdatedEventRelay after the transaction is committed
+        return outboxEventRepository.save(toEvent(previous, account));
+    }
+
+    private OutboxEvent toEvent(@Nullable Account previous, Account account) {
+        var current = ACCOUNT_CONVERTER.convert(account);
+        var builder = AccountUpdatedEvent.newBuilder()
+                .setAccountName(current.getName())
+                .setSaving(current.getSaving())
+                .setNote(current.getNote())
+                .setVersion(account.getVersion());
+        if (isDeltaApplicable(previous, account)) {
+            addItemChanges(builder, ACCOUNT_CONVERTER.convert(previous).getItemsList(), current.getItemsList());
+            builder.setFromVersion(previous.getVersion());
+        } else {
+            builder.addAllItems(current.getItemsList());
+        }
+
+        return OutboxEvent.builder()
+                .accountName(account.getName())
+                .payload(builder.build().toByteArray())
+                .build();
+    }
+
+    private boolean isDeltaApplicable(@Nullable Account previous, Account account) {
+        // a full snapshot is sent periodically and if another update might have happened after the previous state was read
+        return deltaEnabled && previous != null
+                && account.getVersion() == previous.getVersion() + 1
+                && account.getVersion() % snapshotInterval != 0
+                && hasUniqueItemKeys(previous) && hasUniqueItemKeys(account);
+    }
+
+    private static boolean hasUniqueItemKeys(Account account) {
+        return account.getItems()
+                .stream()
+                .map(item -> Pair.of(item.getType(), item.getTitle()))
+                .distinct()
+                .count() == account.getItems().size();
+    }
+
+    private static void addItemChanges(AccountUpdatedEvent.Builder builder, List<AccountServiceProto.Item> previous,
+                                       List<AccountServiceProto.Item> current) {
+        var previousItems = Maps.uniqueIndex(previous, AccountService::toItemKey);
+        var currentItems = Maps.uniqueIndex(current, AccountService::toItemKey);
+        currentItems.forEach((key, item) -> {
+            if (!item.equals(previousItems.get(key))) {
+                builder.addItems(item);
+            }
+        });
+        previousItems.keySet()
+                .stream()
+                .filter(key -> !currentItems.containsKey(key))
+                .forEach(builder::addRemovedItems);
+        builder.setDelta(true);
+    }
+
+    private static AccountServiceProto.ItemKey toItemKey(AccountServiceProto.Item item) {
+        return AccountServiceProto.ItemKey.newBuilder()
+                .setType(item.getType())
+                .setTitle(item.getTitle())
                 .build();
-        var record = new ProducerRecord<>(topic, account.getName(), event);
-        return producerTemplate.send(SenderRecord.create(record, account))
-                .doOnError(e -> logger.error("Failed to send AccountUpdatedEvent for user'" + account.getName() + "'", e));
     }
 
     private static final class AccountConverter extends Converter<Account, AccountServiceProto.Account> {
@@ -110,7 +422,8 @@ public class AccountService extends ReactorAccountServiceGrpc.AccountServiceImpl
                     .addAllItems(account.getItems().stream()
                             .map(ITEM_CONVERTER::convert)
                             .collect(Collectors.toList()))
-                    .setSaving(SAVING_CONVERTER.convert(account.getSaving()));
+                    .setSaving(SAVING_CONVERTER.convert(account.getSaving()))
+                    .setVersion(account.getVersion());
             if (account.getUpdateTime() != null) {
                 builder.setUpdateTime(timestampConverter().convert(account.getUpdateTime()));
             }
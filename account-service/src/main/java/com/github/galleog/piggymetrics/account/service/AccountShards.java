@@ -0,0 +1,161 @@
+package com.github.galleog.piggymetrics.account.service;
+
+import com.github.galleog.piggymetrics.account.domain.Account;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardContext;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardLocator;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardRoutingConnectionFactory;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Database shards accounts are stored on.
+ * <p/>
+ * Accounts are distributed over the shards by their names. If sharding is disabled, all accounts are stored
+ * in the single database, which is represented by one shard, and routing queries to it has no effect.
+ */
+@Component
+public class AccountShards {
+    /**
+     * Name of the only shard if sharding is disabled.
+     */
+    @VisibleForTesting
+    static final String SINGLE_SHARD = "default";
+
+    private static final Comparator<Account> BY_NAME = Comparator.comparing(Account::getName);
+
+    private final List<String> names;
+    @Nullable
+    private final ShardLocator locator;
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param connectionFactory the connection factory that routes queries to the shards, if sharding is enabled
+     */
+    public AccountShards(ObjectProvider<ShardRoutingConnectionFactory> connectionFactory) {
+        var factory = connectionFactory.getIfAvailable();
+        this.names = factory == null ? ImmutableList.of(SINGLE_SHARD) :
+                ImmutableList.copyOf(factory.getShards().keySet());
+        this.locator = factory == null ? null : factory.getLocator();
+    }
+
+    /**
+     * Checks if accounts are distributed over several shards.
+     */
+    public boolean isEnabled() {
+        return locator != null;
+    }
+
+    /**
+     * Gets the names of the shards.
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Checks if an account located on a shard is still to be moved to another one by rebalancing.
+     * Such an account is stored on the shard, since the shards of other accounts are located by the new ring.
+     *
+     * @param shard       the name of the shard the account is located on
+     * @param accountName the name of the account
+     * @return {@code true} if the account is to be moved to another shard
+     * @throws NullPointerException if any of the parameters is {@code null}
+     */
+    public boolean isMovePending(@NonNull String shard, @NonNull String accountName) {
+        Validate.notNull(shard);
+        Validate.notNull(accountName);
+        return locator != null && locator.isRebalancing() && !shard.equals(locator.getRing().getShard(accountName));
+    }
+
+    /**
+     * Routes the queries of a lookup to the shard of an account.
+     * <p/>
+     * While shards are rebalanced, the account may be moved after it's located, so a lookup that doesn't find it
+     * is repeated once on the shard it's located on again.
+     *
+     * @param accountName the name of the account
+     * @param lookup      the supplier of the lookup that completes empty if it doesn't find the account
+     * @param <T>         the type of the lookup result
+     * @return the routed lookup
+     * @throws NullPointerException if any of the parameters is {@code null}
+     */
+    public <T> Mono<T> routeBy(@NonNull String accountName, @NonNull Supplier<Mono<T>> lookup) {
+        Validate.notNull(accountName);
+        Validate.notNull(lookup);
+
+        var routed = Mono.defer(lookup).contextWrite(ShardContext.routeBy(accountName));
+        return locator != null && locator.isRebalancing() ? routed.switchIfEmpty(routed) : routed;
+    }
+
+    /**
+     * Groups values by the shards the accounts they belong to are stored on.
+     * Values of every shard keep their order in the specified collection.
+     *
+     * @param values      the values to group, e.g. accounts or their names
+     * @param accountName the function that gets the name of the account a value belongs to
+     * @param <T>         the type of the values
+     * @return the values grouped by the names of their shards
+     * @throws NullPointerException if any of the parameters is {@code null}
+     */
+    public <T> Mono<Map<String, List<T>>> groupByShard(@NonNull Collection<T> values,
+                                                       @NonNull Function<T, String> accountName) {
+        Validate.notNull(values);
+        Validate.notNull(accountName);
+
+        if (values.isEmpty()) {
+            return Mono.just(ImmutableMap.of());
+        }
+        if (locator == null) {
+            return Mono.just(ImmutableMap.of(SINGLE_SHARD, ImmutableList.copyOf(values)));
+        }
+
+        return Flux.fromIterable(values)
+                .flatMapSequential(value -> locator.locate(accountName.apply(value))
+                        .map(shard -> Pair.of(shard, value)))
+                .collectMultimap(Pair::getKey, Pair::getValue, LinkedHashMap::new)
+                .map(groups -> groups.entrySet()
+                        .stream()
+                        .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey,
+                                entry -> ImmutableList.copyOf(entry.getValue()))));
+    }
+
+    /**
+     * Reads accounts from all shards and merges them in the order of their names.
+     * <p/>
+     * Queries of the reader are routed to the shard it's called for, and it must return accounts
+     * of that shard ordered by name. An account read from two shards while it's being moved
+     * between them is returned once.
+     *
+     * @param reader the function that reads accounts from a shard by its name
+     * @return the accounts of all shards ordered by name
+     * @throws NullPointerException if the reader is {@code null}
+     */
+    @SuppressWarnings("unchecked")
+    public Flux<Account> readAll(@NonNull Function<String, Flux<Account>> reader) {
+        Validate.notNull(reader);
+
+        var sources = names.stream()
+                .map(shard -> reader.apply(shard).contextWrite(ShardContext.routeTo(shard)))
+                .toArray(Flux[]::new);
+        return Flux.<Account>mergeComparing(BY_NAME, sources)
+                .distinctUntilChanged(Account::getName);
+    }
+}
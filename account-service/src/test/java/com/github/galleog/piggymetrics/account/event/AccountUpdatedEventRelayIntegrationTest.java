@@ -0,0 +1,336 @@
+package com.github.galleog.piggymetrics.account.event;
+
+import static com.github.galleog.protobuf.java.type.converter.Converters.moneyConverter;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.AccountUpdatedEvent;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.Item;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ItemKey;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ItemType;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.TimePeriod;
+import com.github.galleog.piggymetrics.account.repository.OutboxEventRepository;
+import com.github.galleog.piggymetrics.account.service.AccountShards;
+import com.github.galleog.piggymetrics.autoconfigure.kafka.ReactiveKafkaAutoConfiguration;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.mguenther.kafka.junit.ExternalKafkaCluster;
+import net.mguenther.kafka.junit.KeyValue;
+import net.mguenther.kafka.junit.ReadKeyValues;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Integration tests for {@link AccountUpdatedEventRelay}.
+ */
+@Testcontainers
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@SpringBootTest(classes = AccountUpdatedEventRelayIntegrationTest.Config.class)
+class AccountUpdatedEventRelayIntegrationTest {
+    private static final DockerImageName KAFKA_IMAGE = DockerImageName.parse("confluentinc/cp-kafka:7.2.2");
+    private static final String ACCOUNT_1_NAME = "test1";
+    private static final String ACCOUNT_2_NAME = "test2";
+    private static final String NOTE_1 = "note1";
+    private static final String NOTE_2 = "note2";
+    private static final String GROCERY = "Grocery";
+    private static final String RENT = "Rent";
+    private static final String SALARY = "Salary";
+    private static final String USD = "USD";
+    private static final Duration LOCK_AT_MOST_FOR = Duration.ofMinutes(1);
+
+    @Container
+    private static final KafkaContainer kafkaContainer = new KafkaContainer(KAFKA_IMAGE);
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    private AccountShards accountShards;
+    @Autowired
+    private TransactionalOperator operator;
+    @Autowired
+    private AccountUpdatedEventRelay relay;
+    @Autowired
+    private ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate;
+    @Value("${spring.kafka.producer.topic}")
+    private String topic;
+
+    private ExternalKafkaCluster kafka;
+
+    @DynamicPropertySource
+    static void kafkaProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.bootstrap-servers", kafkaContainer::getBootstrapServers);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafka = ExternalKafkaCluster.at(kafkaContainer.getBootstrapServers());
+
+        when(operator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    /**
+     * Test for {@link AccountUpdatedEventRelay#relay()}.
+     */
+    @Test
+    void shouldPublishAndDeleteEvents() throws Exception {
+        var events = ImmutableList.of(
+                stubEvent(1L, ACCOUNT_1_NAME, NOTE_1),
+                stubEvent(2L, ACCOUNT_2_NAME, NOTE_1),
+                stubEvent(3L, ACCOUNT_1_NAME, NOTE_2)
+        );
+        when(outboxEventRepository.lockOldest(100)).thenReturn(Flux.fromIterable(events));
+        when(outboxEventRepository.delete(ImmutableList.of(1L, 2L, 3L))).thenReturn(Mono.just(3));
+
+        relay.relay();
+        when(outboxEventRepository.getOldestCreateTime()).thenReturn(Mono.empty());
+
+        var consumedRecords = kafka.read(ReadKeyValues.from(topic, byte[].class)
+                .with(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class));
+        assertThat(consumedRecords).hasSize(3);
+
+        var account1Notes = ImmutableList.<String>builder();
+        for (var record : consumedRecords) {
+            var event = AccountUpdatedEvent.parseFrom(record.getValue());
+            assertThat(event.getAccountName()).isEqualTo(record.getKey());
+            if (ACCOUNT_1_NAME.equals(record.getKey())) {
+                account1Notes.add(event.getNote());
+            }
+        }
+        assertThat(account1Notes.build()).containsExactly(NOTE_1, NOTE_2);
+        assertThat(relay.getLagSeconds()).isZero();
+    }
+
+    /**
+     * Test for {@link AccountUpdatedEventRelay#relay()} when an event can't be published.
+     */
+    @Test
+    void shouldKeepEventsWhenPublishingFails() {
+        var event = OutboxEvent.builder()
+                .id(1L)
+                .accountName(ACCOUNT_1_NAME)
+                .payload(new byte[]{(byte) 0xFF})
+                .createTime(LocalDateTime.now().minusMinutes(1))
+                .build();
+        when(outboxEventRepository.lockOldest(100)).thenReturn(Flux.just(event));
+
+        when(outboxEventRepository.getOldestCreateTime()).thenReturn(Mono.just(event.getCreateTime()));
+
+        relay.relay();
+
+        verify(outboxEventRepository, never()).delete(anyCollection());
+        assertThat(relay.getLagSeconds()).isGreaterThanOrEqualTo(60);
+    }
+
+    /**
+     * Test for {@link AccountUpdatedEventRelay#relay()} when events of an account are debounced.
+     */
+    @Test
+    void shouldPublishLatestStateOfDebouncedAccounts() throws Exception {
+        var debouncedTopic = "debounced-" + topic;
+        var registry = new SimpleMeterRegistry();
+        var beanFactory = new StaticListableBeanFactory(ImmutableMap.of("registry", registry));
+        var debouncedRelay = new AccountUpdatedEventRelay(debouncedTopic, 100, Duration.ofSeconds(1),
+                Duration.ofSeconds(10), outboxEventRepository, producerTemplate, accountShards, operator,
+                LOCK_AT_MOST_FOR,
+                beanFactory.getBeanProvider(LockProvider.class), beanFactory.getBeanProvider(MeterRegistry.class));
+
+        var grocery = stubItem(ItemType.EXPENSE, GROCERY, 10);
+        var rent = stubItem(ItemType.EXPENSE, RENT, 1200);
+        var salary = stubItem(ItemType.INCOME, SALARY, 3000);
+        var snapshot = AccountUpdatedEvent.newBuilder()
+                .setAccountName(ACCOUNT_1_NAME)
+                .setVersion(1)
+                .addItems(grocery)
+                .addItems(rent)
+                .build();
+        var delta = AccountUpdatedEvent.newBuilder()
+                .setAccountName(ACCOUNT_1_NAME)
+                .setVersion(2)
+                .setFromVersion(1)
+                .setNote(NOTE_2)
+                .setDelta(true)
+                .addItems(rent.toBuilder().setMoney(salary.getMoney()))
+                .addItems(salary)
+                .addRemovedItems(ItemKey.newBuilder()
+                        .setType(ItemType.EXPENSE)
+                        .setTitle(GROCERY))
+                .build();
+        var events = ImmutableList.of(
+                stubEvent(1L, snapshot),
+                stubEvent(2L, ACCOUNT_2_NAME, NOTE_1),
+                stubEvent(3L, delta)
+        );
+        when(outboxEventRepository.lockOldestReady(eq(100), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Flux.fromIterable(events));
+        when(outboxEventRepository.delete(ImmutableList.of(1L, 2L, 3L))).thenReturn(Mono.just(3));
+
+        debouncedRelay.relay();
+
+        var consumedRecords = kafka.read(ReadKeyValues.from(debouncedTopic, byte[].class)
+                .with(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class));
+        assertThat(consumedRecords).extracting(KeyValue::getKey)
+                .containsExactlyInAnyOrder(ACCOUNT_1_NAME, ACCOUNT_2_NAME);
+
+        var merged = consumedRecords.stream()
+                .filter(record -> ACCOUNT_1_NAME.equals(record.getKey()))
+                .findFirst()
+                .orElseThrow();
+        var event = AccountUpdatedEvent.parseFrom(merged.getValue());
+        assertThat(event.getVersion()).isEqualTo(2);
+        assertThat(event.getNote()).isEqualTo(NOTE_2);
+        assertThat(event.getDelta()).isFalse();
+        assertThat(event.getFromVersion()).isZero();
+        assertThat(event.getRemovedItemsList()).isEmpty();
+        assertThat(event.getItemsList()).containsExactly(rent.toBuilder().setMoney(salary.getMoney()).build(), salary);
+        assertThat(registry.counter(AccountUpdatedEventRelay.COALESCED_METRIC).count()).isEqualTo(1);
+    }
+
+    /**
+     * Test for {@link AccountUpdatedEventRelay#merge(AccountUpdatedEvent, AccountUpdatedEvent)} for two deltas.
+     */
+    @Test
+    void shouldMergeDeltas() {
+        var grocery = stubItem(ItemType.EXPENSE, GROCERY, 10);
+        var rent = stubItem(ItemType.EXPENSE, RENT, 1200);
+        var salary = stubItem(ItemType.INCOME, SALARY, 3000);
+        var groceryKey = ItemKey.newBuilder()
+                .setType(ItemType.EXPENSE)
+                .setTitle(GROCERY)
+                .build();
+        var rentKey = ItemKey.newBuilder()
+                .setType(ItemType.EXPENSE)
+                .setTitle(RENT)
+                .build();
+        var first = AccountUpdatedEvent.newBuilder()
+                .setAccountName(ACCOUNT_1_NAME)
+                .setVersion(2)
+                .setFromVersion(1)
+                .setDelta(true)
+                .addItems(salary)
+                .addRemovedItems(groceryKey)
+                .addRemovedItems(rentKey)
+                .build();
+        var second = AccountUpdatedEvent.newBuilder()
+                .setAccountName(ACCOUNT_1_NAME)
+                .setVersion(3)
+                .setFromVersion(2)
+                .setDelta(true)
+                .addItems(rent)
+                .addItems(grocery)
+                .addRemovedItems(ItemKey.newBuilder()
+                        .setType(ItemType.INCOME)
+                        .setTitle(SALARY))
+                .build();
+
+        var merged = AccountUpdatedEventRelay.merge(first, second);
+        assertThat(merged.getVersion()).isEqualTo(3);
+        assertThat(merged.getFromVersion()).isEqualTo(1);
+        assertThat(merged.getDelta()).isTrue();
+        assertThat(merged.getItemsList()).containsExactly(rent, grocery);
+        assertThat(merged.getRemovedItemsList()).containsExactly(ItemKey.newBuilder()
+                .setType(ItemType.INCOME)
+                .setTitle(SALARY)
+                .build());
+        assertThat(merged.getRemovedItemsList()).doesNotContain(groceryKey, rentKey);
+    }
+
+    private Item stubItem(ItemType type, String title, long amount) {
+        return Item.newBuilder()
+                .setType(type)
+                .setTitle(title)
+                .setMoney(moneyConverter().convert(Money.of(amount, USD)))
+                .setPeriod(TimePeriod.MONTH)
+                .build();
+    }
+
+    private OutboxEvent stubEvent(long id, AccountUpdatedEvent event) {
+        return OutboxEvent.builder()
+                .id(id)
+                .accountName(event.getAccountName())
+                .payload(event.toByteArray())
+                .createTime(LocalDateTime.now())
+                .build();
+    }
+
+    private OutboxEvent stubEvent(long id, String accountName, String note) {
+        var event = AccountUpdatedEvent.newBuilder()
+                .setAccountName(accountName)
+                .setNote(note)
+                .build();
+        return OutboxEvent.builder()
+                .id(id)
+                .accountName(accountName)
+                .payload(event.toByteArray())
+                .createTime(LocalDateTime.now())
+                .build();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @Import(AccountShards.class)
+    @ImportAutoConfiguration(ReactiveKafkaAutoConfiguration.class)
+    static class Config {
+        @Bean
+        OutboxEventRepository outboxEventRepository() {
+            return mock(OutboxEventRepository.class);
+        }
+
+        @Bean
+        TransactionalOperator operator() {
+            return mock(TransactionalOperator.class);
+        }
+
+        @Bean
+        AccountUpdatedEventRelay relay(@Value("${spring.kafka.producer.topic}") String topic,
+                                       @Value("${account.outbox.batch-size}") int batchSize,
+                                       @Value("${account.outbox.debounce.window}") Duration debounceWindow,
+                                       @Value("${account.outbox.debounce.max-delay}") Duration maxDelay,
+                                       OutboxEventRepository outboxEventRepository,
+                                       ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate,
+                                       AccountShards accountShards,
+                                       TransactionalOperator operator,
+                                       ObjectProvider<LockProvider> lockProvider,
+                                       ObjectProvider<MeterRegistry> meterRegistry) {
+            return new AccountUpdatedEventRelay(topic, batchSize, debounceWindow, maxDelay, outboxEventRepository,
+                    producerTemplate, accountShards, operator, LOCK_AT_MOST_FOR, lockProvider, meterRegistry);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.github.galleog.piggymetrics.account.event;
 import static com.github.galleog.piggymetrics.account.event.UserRegisteredEventConsumer.BASE_CURRENCY;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
@@ -15,8 +16,11 @@ import com.github.galleog.piggymetrics.account.config.ReactiveKafkaConfig;
 import com.github.galleog.piggymetrics.account.domain.Account;
 import com.github.galleog.piggymetrics.account.domain.Saving;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
+import com.github.galleog.piggymetrics.account.service.AccountCache;
+import com.github.galleog.piggymetrics.account.service.AccountShards;
 import com.github.galleog.piggymetrics.auth.grpc.UserRegisteredEventProto.UserRegisteredEvent;
 import com.github.galleog.piggymetrics.autoconfigure.kafka.ReactiveKafkaAutoConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.mguenther.kafka.junit.ExternalKafkaCluster;
 import net.mguenther.kafka.junit.KeyValue;
 import net.mguenther.kafka.junit.SendKeyValues;
@@ -44,6 +48,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.UUID;
 
 /**
@@ -64,6 +69,8 @@ class UserRegisteredEventConsumerIntegrationTest {
                     .setEmail("test@example.com")
                     .build()
     );
+    private static final int BATCH_SIZE = 10;
+    private static final Duration BATCH_TIMEOUT = Duration.ofMillis(100);
     private static final long TIMEOUT = 10000L;
 
     @Container
@@ -99,13 +106,13 @@ class UserRegisteredEventConsumerIntegrationTest {
     @Test
     @SuppressWarnings("unchecked")
     void shouldCreateAccount() throws InterruptedException {
-        when(accountRepository.getByName(USERNAME)).thenReturn(Mono.empty());
-        when(accountRepository.save(any(Account.class)))
-                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(accountRepository.saveIfAbsent(anyCollection())).thenReturn(Flux.just(USERNAME));
 
         sendEvent();
 
-        verify(accountRepository, timeout(TIMEOUT)).save(argThat(account -> {
+        verify(accountRepository, timeout(TIMEOUT)).saveIfAbsent(argThat(accounts -> {
+            assertThat(accounts).hasSize(1);
+            var account = accounts.iterator().next();
             assertThat(account.getName()).isEqualTo(USERNAME);
             assertThat(account.getSaving()).extracting(
                     Saving::getMoneyAmount, Saving::getInterest, Saving::isDeposit, Saving::isCapitalization
@@ -116,26 +123,36 @@ class UserRegisteredEventConsumerIntegrationTest {
         verify(operator, timeout(TIMEOUT)).transactional(any(Mono.class));
     }
 
+    /**
+     * Test for {@link UserRegisteredEventConsumer#apply(Flux)} when the same event is received several times.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCreateAccountOnceForDuplicateEvents() throws InterruptedException {
+        when(accountRepository.saveIfAbsent(anyCollection())).thenReturn(Flux.just(USERNAME));
+
+        kafka.send(SendKeyValues.to(topic, ImmutableList.of(EVENT, EVENT))
+                .with(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaProtobufSerializer.class));
+
+        verify(accountRepository, timeout(TIMEOUT)).saveIfAbsent(argThat(accounts -> {
+            assertThat(accounts).extracting(Account::getName).containsExactly(USERNAME);
+            return true;
+        }));
+        verify(operator, timeout(TIMEOUT)).transactional(any(Mono.class));
+    }
+
     /**
      * Test for {@link UserRegisteredEventConsumer#apply(Flux)} when an account with the same name already exists.
      */
     @Test
     @SuppressWarnings("unchecked")
     void shouldNotCreateAccountWhenAlreadyExists() throws InterruptedException {
-        var saving = Saving.builder()
-                .moneyAmount(Money.of(BigDecimal.TEN, BASE_CURRENCY))
-                .interest(BigDecimal.ZERO)
-                .build();
-        var account = Account.builder()
-                .name(USERNAME)
-                .saving(saving)
-                .build();
-        when(accountRepository.getByName(USERNAME)).thenReturn(Mono.just(account));
+        when(accountRepository.saveIfAbsent(anyCollection())).thenReturn(Flux.empty());
 
         sendEvent();
 
+        verify(accountRepository, timeout(TIMEOUT)).saveIfAbsent(anyCollection());
         verify(operator, timeout(TIMEOUT)).transactional(any(Mono.class));
-        verify(accountRepository, timeout(TIMEOUT).times(0)).save(any(Account.class));
     }
 
     private void sendEvent() throws InterruptedException {
@@ -144,7 +161,7 @@ class UserRegisteredEventConsumerIntegrationTest {
     }
 
     @Configuration(proxyBeanMethods = false)
-    @Import(ReactiveKafkaConfig.class)
+    @Import({ReactiveKafkaConfig.class, AccountShards.class})
     @ImportAutoConfiguration(ReactiveKafkaAutoConfiguration.class)
     static class Config {
         @Bean
@@ -158,8 +175,16 @@ class UserRegisteredEventConsumerIntegrationTest {
         }
 
         @Bean
-        UserRegisteredEventConsumer consumer(AccountRepository accountRepository, TransactionalOperator operator) {
-            return new UserRegisteredEventConsumer(accountRepository, operator);
+        AccountCache accountCache() {
+            return new AccountCache(10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        }
+
+        @Bean
+        UserRegisteredEventConsumer consumer(AccountRepository accountRepository, AccountCache accountCache,
+                                             AccountShards accountShards, TransactionalOperator operator) {
+            return new UserRegisteredEventConsumer(
+                    BATCH_SIZE, BATCH_TIMEOUT, accountRepository, accountCache, accountShards, operator
+            );
         }
     }
 }
\ No newline at end of file
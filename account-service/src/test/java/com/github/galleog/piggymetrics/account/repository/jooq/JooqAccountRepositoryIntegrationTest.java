@@ -20,6 +20,9 @@ import com.github.galleog.piggymetrics.account.domain.Saving;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
 import com.github.galleog.piggymetrics.autoconfigure.jooq.R2dbcJooqAutoConfiguration;
 import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.Invalidation;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.InvalidationBus;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.InvalidationProperties;
 import com.google.common.collect.ImmutableList;
 import com.ninja_squad.dbsetup.DbSetup;
 import com.ninja_squad.dbsetup.DbSetupTracker;
@@ -39,6 +42,7 @@ import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
@@ -49,8 +53,11 @@ import reactor.test.StepVerifier;
 
 import javax.sql.DataSource;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Integration tests for {@link JooqAccountRepository}.
@@ -93,6 +100,9 @@ class JooqAccountRepositoryIntegrationTest {
     private DataSource dataSource;
     @Autowired
     private TransactionAwareJooqWrapper wrapper;
+    @Autowired
+    private DatabaseClient databaseClient;
+    private InvalidationBus invalidationBus;
     private AccountRepository repository;
     private DataSourceDestination destination;
 
@@ -113,7 +123,8 @@ class JooqAccountRepositoryIntegrationTest {
 
     @BeforeEach
     void setUp() {
-        repository = new JooqAccountRepository(wrapper);
+        invalidationBus = new InvalidationBus(databaseClient, new InvalidationProperties());
+        repository = new JooqAccountRepository(wrapper, invalidationBus);
 
         destination = DataSourceDestination.with(dataSource);
     }
@@ -217,6 +228,7 @@ class JooqAccountRepositoryIntegrationTest {
                             .column(ITEMS.PERIOD.getName(), DAY.name())
                             .column(ITEMS.ICON.getName(), GROCERY_ICON)
                             .column(ITEMS.ITEM_TYPE.getName(), EXPENSE.name())
+                            .column(ITEMS.POSITION.getName(), 1)
                             .end()
                             .row()
                             .column(ITEMS.ID.getName(), VACATION_ID)
@@ -227,6 +239,7 @@ class JooqAccountRepositoryIntegrationTest {
                             .column(ITEMS.PERIOD.getName(), MONTH.name())
                             .column(ITEMS.ICON.getName(), VACATION_ICON)
                             .column(ITEMS.ITEM_TYPE.getName(), EXPENSE.name())
+                            .column(ITEMS.POSITION.getName(), 2)
                             .end()
                             .row()
                             .column(ITEMS.ID.getName(), SALARY_ID)
@@ -237,6 +250,7 @@ class JooqAccountRepositoryIntegrationTest {
                             .column(ITEMS.PERIOD.getName(), MONTH.name())
                             .column(ITEMS.ICON.getName(), SALARY_ICON)
                             .column(ITEMS.ITEM_TYPE.getName(), INCOME.name())
+                            .column(ITEMS.POSITION.getName(), 0)
                             .end()
                             .build()
             );
@@ -258,6 +272,7 @@ class JooqAccountRepositoryIntegrationTest {
                         assertThat(a.getName()).isEqualTo(ACCOUNT_1_NAME);
                         assertThat(a.getNote()).isNull();
                         assertThat(a.getUpdateTime()).isEqualTo(NOW);
+                        assertThat(a.getVersion()).isZero();
 
                         var saving = a.getSaving();
                         assertThat(saving.getMoneyAmount()).isEqualTo(Money.of(SAVING_AMOUNT, USD));
@@ -267,10 +282,10 @@ class JooqAccountRepositoryIntegrationTest {
 
                         assertThat(a.getItems()).extracting(
                                 Item::getId, Item::getTitle, Item::getMoneyAmount, Item::getPeriod, Item::getIcon, Item::getType
-                        ).containsExactlyInAnyOrder(
+                        ).containsExactly(
+                                tuple(SALARY_ID, SALARY, Money.of(SALARY_AMOUNT, USD), MONTH, SALARY_ICON, INCOME),
                                 tuple(GROCERY_ID, GROCERY, Money.of(GROCERY_AMOUNT, USD), DAY, GROCERY_ICON, EXPENSE),
-                                tuple(VACATION_ID, VACATION, Money.of(VACATION_AMOUNT, EUR), MONTH, VACATION_ICON, EXPENSE),
-                                tuple(SALARY_ID, SALARY, Money.of(SALARY_AMOUNT, USD), MONTH, SALARY_ICON, INCOME)
+                                tuple(VACATION_ID, VACATION, Money.of(VACATION_AMOUNT, EUR), MONTH, VACATION_ICON, EXPENSE)
                         );
                         return true;
                     }).verifyComplete();
@@ -312,6 +327,118 @@ class JooqAccountRepositoryIntegrationTest {
                     .as(StepVerifier::create)
                     .verifyComplete();
         }
+
+        /**
+         * Test for {@link JooqAccountRepository#listByNames(java.util.Collection)}.
+         */
+        @Test
+        void shouldListAccountsByNames() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listByNames(ImmutableList.of(ACCOUNT_2_NAME, "noname", ACCOUNT_1_NAME))
+                    .as(StepVerifier::create)
+                    .expectNextMatches(a -> {
+                        assertThat(a.getName()).isEqualTo(ACCOUNT_1_NAME);
+                        assertThat(a.getItems()).extracting(Item::getId)
+                                .containsExactly(GROCERY_ID, VACATION_ID, SALARY_ID);
+                        return true;
+                    }).expectNextMatches(a -> {
+                        assertThat(a.getName()).isEqualTo(ACCOUNT_2_NAME);
+                        assertThat(a.getItems()).isEmpty();
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#listAfter(String, int)}.
+         */
+        @Test
+        void shouldListAccountsAfterName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listAfter(null, 1)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(a -> {
+                        assertThat(a.getName()).isEqualTo(ACCOUNT_1_NAME);
+                        assertThat(a.getItems()).hasSize(3);
+                        return true;
+                    }).verifyComplete();
+
+            repository.listAfter(ACCOUNT_1_NAME, 10)
+                    .map(Account::getName)
+                    .as(StepVerifier::create)
+                    .expectNext(ACCOUNT_2_NAME)
+                    .verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#listAfter(String, LocalDateTime, int)}.
+         */
+        @Test
+        void shouldListAccountsUpdatedSince() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listAfter(ACCOUNT_1_NAME, NOW, 10)
+                    .map(Account::getName)
+                    .as(StepVerifier::create)
+                    .expectNext(ACCOUNT_2_NAME)
+                    .verifyComplete();
+
+            repository.listAfter(null, NOW.plusSeconds(1), 10)
+                    .as(StepVerifier::create)
+                    .verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#getUpdateTimeByName(String)}.
+         */
+        @Test
+        void shouldGetUpdateTimeByName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.getUpdateTimeByName(ACCOUNT_1_NAME)
+                    .as(StepVerifier::create)
+                    .expectNext(NOW)
+                    .verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#getUpdateTimeByName(String)} when there is no account with the specified name.
+         */
+        @Test
+        void shouldNotGetUpdateTimeByName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.getUpdateTimeByName("noname")
+                    .as(StepVerifier::create)
+                    .verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#getVersionByName(String)}.
+         */
+        @Test
+        void shouldGetVersionByName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.getVersionByName(ACCOUNT_1_NAME)
+                    .as(StepVerifier::create)
+                    .expectNext(0L)
+                    .verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#lockByNames(java.util.Collection)}.
+         */
+        @Test
+        void shouldLockByNames() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.lockByNames(ImmutableList.of(ACCOUNT_1_NAME, "noname"))
+                    .as(StepVerifier::create)
+                    .expectNext(ACCOUNT_1_NAME)
+                    .verifyComplete();
+        }
     }
 
     @Nested
@@ -367,7 +494,8 @@ class JooqAccountRepositoryIntegrationTest {
                                 .containsValues(income.getMoneyAmount().getNumberStripped(), expense.getMoneyAmount().getNumberStripped())
                                 .column(ITEMS.PERIOD.getName()).containsValues(MONTH.name(), YEAR.name())
                                 .column(ITEMS.ICON.getName()).containsValues(income.getIcon(), expense.getIcon())
-                                .column(ITEMS.ITEM_TYPE.getName()).containsValues(INCOME.name(), EXPENSE.name());
+                                .column(ITEMS.ITEM_TYPE.getName()).containsValues(INCOME.name(), EXPENSE.name())
+                                .column(ITEMS.POSITION.getName()).containsValues(0, 1);
 
                         assertThat(a.getName()).isEqualTo(ACCOUNT_1_NAME);
                         assertThat(a.getNote()).isEqualTo(NOTE);
@@ -381,13 +509,88 @@ class JooqAccountRepositoryIntegrationTest {
                         assertThat(a.getItems()).extracting(Item::getId).doesNotContainNull();
                         assertThat(a.getItems()).extracting(
                                 Item::getTitle, Item::getMoneyAmount, Item::getPeriod, Item::getIcon, Item::getType
-                        ).containsExactlyInAnyOrder(
+                        ).containsExactly(
                                 tuple(income.getTitle(), income.getMoneyAmount(), MONTH, income.getIcon(), INCOME),
                                 tuple(expense.getTitle(), expense.getMoneyAmount(), YEAR, expense.getIcon(), EXPENSE)
                         );
                         return true;
                     }).verifyComplete();
         }
+
+        /**
+         * Test for {@link JooqAccountRepository#saveIfAbsent(Collection)}.
+         */
+        @Test
+        void shouldSaveAccountsIfAbsent() {
+            var existing = stubAccount(ImmutableList.of(stubIncome()));
+            var account = Account.builder()
+                    .name(ACCOUNT_2_NAME)
+                    .items(ImmutableList.of(stubExpense()))
+                    .saving(stubSaving())
+                    .build();
+
+            repository.save(existing)
+                    .thenMany(repository.saveIfAbsent(ImmutableList.of(stubAccount(ImmutableList.of()), account)))
+                    .as(StepVerifier::create)
+                    .expectNext(ACCOUNT_2_NAME)
+                    .verifyComplete();
+
+            var accounts = new Table(dataSource, ACCOUNTS.getName());
+            Assertions.assertThat(accounts)
+                    .column(ACCOUNTS.NAME.getName()).containsValues(ACCOUNT_1_NAME, ACCOUNT_2_NAME);
+
+            var savings = new Table(dataSource, SAVINGS.getName());
+            Assertions.assertThat(savings)
+                    .column(SAVINGS.ACCOUNT_NAME.getName()).containsValues(ACCOUNT_1_NAME, ACCOUNT_2_NAME);
+
+            var items = new Table(dataSource, ITEMS.getName());
+            Assertions.assertThat(items)
+                    .column(ITEMS.ACCOUNT_NAME.getName()).containsValues(ACCOUNT_1_NAME, ACCOUNT_2_NAME)
+                    .column(ITEMS.TITLE.getName()).containsValues(stubIncome().getTitle(), stubExpense().getTitle());
+        }
+
+        /**
+         * Test for {@link JooqAccountRepository#saveAll(Collection)}.
+         */
+        @Test
+        void shouldSaveAllAccounts() {
+            var existing = stubAccount(ImmutableList.of(stubIncome()));
+            var replacement = Account.builder()
+                    .name(ACCOUNT_1_NAME)
+                    .items(ImmutableList.of(stubExpense()))
+                    .saving(stubSaving())
+                    .note(NOTE)
+                    .build();
+            var account = Account.builder()
+                    .name(ACCOUNT_2_NAME)
+                    .saving(stubSaving())
+                    .build();
+
+            repository.save(existing)
+                    .thenMany(repository.saveAll(ImmutableList.of(account, replacement)))
+                    .as(StepVerifier::create)
+                    .expectNextMatches(a -> {
+                        assertThat(a.getName()).isEqualTo(ACCOUNT_1_NAME);
+                        assertThat(a.getVersion()).isEqualTo(1);
+                        assertThat(a.getNote()).isEqualTo(NOTE);
+                        assertThat(a.getItems()).extracting(Item::getTitle).containsExactly(stubExpense().getTitle());
+                        return true;
+                    }).expectNextMatches(a -> {
+                        assertThat(a.getName()).isEqualTo(ACCOUNT_2_NAME);
+                        assertThat(a.getVersion()).isZero();
+                        assertThat(a.getItems()).isEmpty();
+                        return true;
+                    }).verifyComplete();
+
+            var savings = new Table(dataSource, SAVINGS.getName());
+            Assertions.assertThat(savings)
+                    .column(SAVINGS.ACCOUNT_NAME.getName()).containsValues(ACCOUNT_1_NAME, ACCOUNT_2_NAME);
+
+            var items = new Table(dataSource, ITEMS.getName());
+            Assertions.assertThat(items)
+                    .column(ITEMS.ACCOUNT_NAME.getName()).containsValues(ACCOUNT_1_NAME)
+                    .column(ITEMS.TITLE.getName()).containsValues(stubExpense().getTitle());
+        }
     }
 
     @Nested
@@ -427,6 +630,7 @@ class JooqAccountRepositoryIntegrationTest {
                             .column(ITEMS.PERIOD.getName(), DAY.name())
                             .column(ITEMS.ICON.getName(), GROCERY_ICON)
                             .column(ITEMS.ITEM_TYPE.getName(), EXPENSE.name())
+                            .column(ITEMS.POSITION.getName(), 0)
                             .end()
                             .row()
                             .column(ITEMS.ID.getName(), VACATION_ID)
@@ -437,6 +641,7 @@ class JooqAccountRepositoryIntegrationTest {
                             .column(ITEMS.PERIOD.getName(), MONTH.name())
                             .column(ITEMS.ICON.getName(), VACATION_ICON)
                             .column(ITEMS.ITEM_TYPE.getName(), EXPENSE.name())
+                            .column(ITEMS.POSITION.getName(), 1)
                             .end()
                             .row()
                             .column(ITEMS.ID.getName(), SALARY_ID)
@@ -447,6 +652,7 @@ class JooqAccountRepositoryIntegrationTest {
                             .column(ITEMS.PERIOD.getName(), MONTH.name())
                             .column(ITEMS.ICON.getName(), SALARY_ICON)
                             .column(ITEMS.ITEM_TYPE.getName(), INCOME.name())
+                            .column(ITEMS.POSITION.getName(), 2)
                             .end()
                             .build()
             );
@@ -460,8 +666,6 @@ class JooqAccountRepositoryIntegrationTest {
          */
         @Test
         void shouldUpdateToAccountWithItems() {
-            DB_SETUP_TRACKER.skipNextLaunch();
-
             var income = stubIncome();
             var expense = stubExpense();
             var account = stubAccount(ImmutableList.of(income, expense));
@@ -497,6 +701,7 @@ class JooqAccountRepositoryIntegrationTest {
                         assertThat(a.getName()).isEqualTo(account.getName());
                         assertThat(a.getNote()).isEqualTo(account.getNote());
                         assertThat(a.getUpdateTime()).isAfter(NOW);
+                        assertThat(a.getVersion()).isEqualTo(1);
 
                         assertThat(a.getItems()).extracting(Item::getId).doesNotContainNull();
                         assertThat(a.getSaving().getMoneyAmount()).isEqualTo(account.getSaving().getMoneyAmount());
@@ -510,17 +715,33 @@ class JooqAccountRepositoryIntegrationTest {
                                 tuple(income.getTitle(), income.getMoneyAmount(), MONTH, income.getIcon(), INCOME),
                                 tuple(expense.getTitle(), expense.getMoneyAmount(), YEAR, expense.getIcon(), EXPENSE)
                         );
+                        assertThat(a.getItems()).filteredOn(item -> income.getTitle().equals(item.getTitle()))
+                                .extracting(Item::getId).containsExactly(SALARY_ID);
                         return true;
                     }).verifyComplete();
         }
 
+        /**
+         * Test for {@link JooqAccountRepository#update(Account)} that publishes an invalidation of the account.
+         */
+        @Test
+        void shouldPublishInvalidationOfUpdatedAccount() {
+            var account = stubAccount(ImmutableList.of());
+
+            invalidationBus.listen(ACCOUNTS.getName())
+                    .as(StepVerifier::create)
+                    .expectNextMatches(Invalidation::isAll)
+                    .then(() -> repository.update(account).subscribe())
+                    .expectNextMatches(invalidation -> invalidation.getKeys().equals(Set.of(ACCOUNT_1_NAME)))
+                    .thenCancel()
+                    .verify(Duration.ofSeconds(10));
+        }
+
         /**
          * Test for {@link JooqAccountRepository#update(Account)} when the updated account has no items.
          */
         @Test
         void shouldUpdateToAccountWithoutItems() {
-            DB_SETUP_TRACKER.skipNextLaunch();
-
             var account = stubAccount(ImmutableList.of());
 
             repository.update(account)
@@ -558,6 +779,50 @@ class JooqAccountRepositoryIntegrationTest {
                     }).verifyComplete();
         }
 
+        /**
+         * Test for {@link JooqAccountRepository#update(Account)} when only some of the account items are changed.
+         */
+        @Test
+        void shouldUpdateChangedItemsOnly() {
+            var grocery = Item.builder()
+                    .title(GROCERY)
+                    .moneyAmount(Money.of(GROCERY_AMOUNT, USD))
+                    .period(DAY)
+                    .icon(GROCERY_ICON)
+                    .type(EXPENSE)
+                    .build();
+            var income = stubIncome();
+            var expense = stubExpense();
+            var account = stubAccount(ImmutableList.of(grocery, income, expense));
+
+            repository.update(account)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(a -> {
+                        var items = new Table(dataSource, ITEMS.getName());
+                        Assertions.assertThat(items)
+                                .hasNumberOfRows(3)
+                                .column(ITEMS.TITLE.getName()).containsValues(GROCERY, income.getTitle(), expense.getTitle())
+                                .column(ITEMS.POSITION.getName()).containsValues(0, 1, 2);
+
+                        // the salary is moved from the last position to the middle one
+                        assertThat(a.getItems()).extracting(
+                                Item::getTitle, Item::getMoneyAmount, Item::getPeriod, Item::getIcon, Item::getType
+                        ).containsExactly(
+                                tuple(GROCERY, grocery.getMoneyAmount(), DAY, GROCERY_ICON, EXPENSE),
+                                tuple(income.getTitle(), income.getMoneyAmount(), MONTH, income.getIcon(), INCOME),
+                                tuple(expense.getTitle(), expense.getMoneyAmount(), YEAR, expense.getIcon(), EXPENSE)
+                        );
+                        assertThat(a.getItems()).filteredOn(item -> GROCERY.equals(item.getTitle()))
+                                .extracting(Item::getId).containsExactly(GROCERY_ID);
+                        assertThat(a.getItems()).filteredOn(item -> SALARY.equals(item.getTitle()))
+                                .extracting(Item::getId).containsExactly(SALARY_ID);
+                        assertThat(a.getItems()).filteredOn(item -> expense.getTitle().equals(item.getTitle()))
+                                .extracting(Item::getId).doesNotContainNull()
+                                .doesNotContain(GROCERY_ID, VACATION_ID, SALARY_ID);
+                        return true;
+                    }).verifyComplete();
+        }
+
         /**
          * Test for {@link JooqAccountRepository#update(Account)} when no account with the specified name exists.
          */
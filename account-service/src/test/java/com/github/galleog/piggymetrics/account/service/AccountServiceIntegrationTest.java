@@ -5,87 +5,64 @@ import static com.github.galleog.protobuf.java.type.converter.Converters.moneyCo
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.github.galleog.piggymetrics.account.domain.Account;
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.AccountUpdatedEvent;
 import com.github.galleog.piggymetrics.account.grpc.ReactorAccountServiceGrpc;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
-import com.github.galleog.piggymetrics.autoconfigure.kafka.ReactiveKafkaAutoConfiguration;
+import com.github.galleog.piggymetrics.account.repository.OutboxEventRepository;
 import com.google.common.collect.ImmutableList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import net.devh.boot.grpc.client.autoconfigure.GrpcClientAutoConfiguration;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import net.devh.boot.grpc.server.autoconfigure.GrpcServerAutoConfiguration;
 import net.devh.boot.grpc.server.autoconfigure.GrpcServerFactoryAutoConfiguration;
-import net.mguenther.kafka.junit.ExternalKafkaCluster;
-import net.mguenther.kafka.junit.ReadKeyValues;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.common.serialization.ByteArrayDeserializer;
 import org.javamoney.moneta.Money;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
-import org.springframework.test.context.DynamicPropertyRegistry;
-import org.springframework.test.context.DynamicPropertySource;
-import org.testcontainers.containers.KafkaContainer;
-import org.testcontainers.junit.jupiter.Container;
-import org.testcontainers.junit.jupiter.Testcontainers;
-import org.testcontainers.utility.DockerImageName;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 /**
  * Integration tests for {@link AccountService}.
  */
-@Testcontainers
 @DirtiesContext
 @ActiveProfiles("test")
 @SpringBootTest(classes = AccountServiceIntegrationTest.Config.class)
 class AccountServiceIntegrationTest {
     private static final String ACCOUNT_SERVICE = "account-service";
-    private static final DockerImageName KAFKA_IMAGE = DockerImageName.parse("confluentinc/cp-kafka:7.2.2");
     private static final String USD = "USD";
     private static final String NAME = "test";
     private static final String NOTE = "note";
 
-    @Container
-    private static final KafkaContainer kafkaContainer = new KafkaContainer(KAFKA_IMAGE);
-
     @Autowired
     private AccountRepository accountRepository;
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
     @GrpcClient(ACCOUNT_SERVICE)
     private ReactorAccountServiceGrpc.ReactorAccountServiceStub accountServiceStub;
-    @Value("${spring.kafka.producer.topic}")
-    private String topic;
-
-    private ExternalKafkaCluster kafka;
-
-    @DynamicPropertySource
-    static void kafkaProperties(DynamicPropertyRegistry registry) {
-        registry.add("spring.kafka.bootstrap-servers", kafkaContainer::getBootstrapServers);
-    }
-
-    @BeforeEach
-    void setUp() {
-        kafka = ExternalKafkaCluster.at(kafkaContainer.getBootstrapServers());
-    }
 
     /**
-     * Test should call the gRPC service and publish an {@link AccountUpdatedEvent}.
+     * Test should call the gRPC service and save an {@link AccountUpdatedEvent} into the outbox.
      */
     @Test
-    void shouldCallServiceAndPublishEvent() throws Exception {
+    void shouldCallServiceAndSaveEvent() throws Exception {
         var money = Money.of(BigDecimal.ZERO, USD);
         var saving = AccountServiceProto.Saving.newBuilder()
                 .setMoney(moneyConverter().convert(money))
@@ -100,17 +77,18 @@ class AccountServiceIntegrationTest {
 
         when(accountRepository.update(any(Account.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(outboxEventRepository.save(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
         accountServiceStub.updateAccount(account)
                 .as(StepVerifier::create)
                 .expectNextCount(1)
                 .verifyComplete();
 
-        var consumedRecords = kafka.read(ReadKeyValues.from(topic, byte[].class)
-                .with(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class));
-        assertThat(consumedRecords).hasSize(1);
-        assertThat(consumedRecords.get(0).getKey()).isEqualTo(NAME);
-        assertThat(AccountUpdatedEvent.parseFrom(consumedRecords.get(0).getValue())).extracting(
+        var captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventRepository).save(captor.capture());
+        assertThat(captor.getValue().getAccountName()).isEqualTo(NAME);
+        assertThat(AccountUpdatedEvent.parseFrom(captor.getValue().getPayload())).extracting(
                 AccountUpdatedEvent::getAccountName,
                 AccountUpdatedEvent::getItemsCount,
                 AccountUpdatedEvent::getSaving,
@@ -119,8 +97,8 @@ class AccountServiceIntegrationTest {
     }
 
     @Configuration(proxyBeanMethods = false)
+    @Import(AccountShards.class)
     @ImportAutoConfiguration({
-            ReactiveKafkaAutoConfiguration.class,
             GrpcServerAutoConfiguration.class,
             GrpcServerFactoryAutoConfiguration.class,
             GrpcClientAutoConfiguration.class
@@ -132,9 +110,29 @@ class AccountServiceIntegrationTest {
         }
 
         @Bean
-        AccountService accountService(@Value("${spring.kafka.producer.topic}") String topic, AccountRepository accountRepository,
-                                      ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate) {
-            return new AccountService(topic, accountRepository, producerTemplate);
+        OutboxEventRepository outboxEventRepository() {
+            return mock(OutboxEventRepository.class);
+        }
+
+        @Bean
+        AccountCache accountCache() {
+            return new AccountCache(10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        }
+
+        @Bean
+        @SuppressWarnings("unchecked")
+        TransactionalOperator transactionalOperator() {
+            var operator = mock(TransactionalOperator.class);
+            when(operator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+            return operator;
+        }
+
+        @Bean
+        AccountService accountService(AccountRepository accountRepository, AccountCache accountCache,
+                                      OutboxEventRepository outboxEventRepository, AccountShards accountShards,
+                                      TransactionalOperator operator) {
+            return new AccountService(false, 10, 100, false, accountRepository, accountCache, outboxEventRepository,
+                    accountShards, operator);
         }
     }
 }
\ No newline at end of file
@@ -6,44 +6,60 @@ import static com.github.galleog.piggymetrics.account.domain.TimePeriod.DAY;
 import static com.github.galleog.piggymetrics.account.domain.TimePeriod.MONTH;
 import static com.github.galleog.protobuf.java.type.converter.Converters.bigDecimalConverter;
 import static com.github.galleog.protobuf.java.type.converter.Converters.moneyConverter;
+import static com.github.galleog.protobuf.java.type.converter.Converters.timestampConverter;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.argThat;
-import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.never;
-import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.github.galleog.piggymetrics.account.domain.Account;
 import com.github.galleog.piggymetrics.account.domain.Item;
+import com.github.galleog.piggymetrics.account.domain.OutboxEvent;
 import com.github.galleog.piggymetrics.account.domain.Saving;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.AccountUpdatedEvent;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.BatchGetAccountsRequest;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.GetAccountRequest;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ImportStatus;
+import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ListAccountsRequest;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.ItemType;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto.TimePeriod;
 import com.github.galleog.piggymetrics.account.repository.AccountRepository;
+import com.github.galleog.piggymetrics.account.repository.OutboxEventRepository;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardRoutingConnectionFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.Int64Value;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
-import lombok.RequiredArgsConstructor;
-import org.apache.kafka.clients.producer.RecordMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.commons.lang3.StringUtils;
 import org.javamoney.moneta.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentMatchers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.kafka.sender.SenderOptions;
-import reactor.kafka.sender.SenderRecord;
-import reactor.kafka.sender.SenderResult;
 import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Tests for {@link AccountService}.
@@ -52,13 +68,16 @@ import java.math.BigDecimal;
 class AccountServiceTest {
     private static final String USD = "USD";
     private static final String NAME = "test";
-    private static final String TOPIC = "test-topic";
+    private static final String OTHER_NAME = "other";
+    private static final int SNAPSHOT_INTERVAL = 10;
+    private static final int IMPORT_BATCH_SIZE = 2;
     private static final Mono<GetAccountRequest> GET_ACCOUNT_REQUEST = Mono.just(
             GetAccountRequest.newBuilder()
                     .setName(NAME)
                     .build()
     );
     private static final String NOTE = "note";
+    private static final LocalDateTime UPDATE_TIME = LocalDateTime.now().minusDays(1);
     private static final Item GROCERY = Item.builder()
             .title("Grocery")
             .moneyAmount(Money.of(10, USD))
@@ -80,13 +99,28 @@ class AccountServiceTest {
 
     @Mock
     private AccountRepository accountRepository;
-    private ReactiveKafkaProducerTemplate<String, AccountUpdatedEvent> producerTemplate;
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+    @Mock
+    private TransactionalOperator operator;
+    @Captor
+    private ArgumentCaptor<OutboxEvent> eventCaptor;
+    @Captor
+    private ArgumentCaptor<Collection<OutboxEvent>> eventsCaptor;
+    private AccountCache accountCache;
+    private AccountShards accountShards;
     private AccountService accountService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
-        producerTemplate = spy(new ReactiveKafkaProducerTemplate<>(SenderOptions.create()));
-        accountService = new AccountService(TOPIC, accountRepository, producerTemplate);
+        lenient().when(operator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        accountCache = new AccountCache(10, Duration.ofMinutes(1), new SimpleMeterRegistry());
+        accountShards = new AccountShards(new StaticListableBeanFactory()
+                .getBeanProvider(ShardRoutingConnectionFactory.class));
+        accountService = new AccountService(false, SNAPSHOT_INTERVAL, IMPORT_BATCH_SIZE, false, accountRepository,
+                accountCache, outboxEventRepository, accountShards, operator);
     }
 
     /**
@@ -134,6 +168,150 @@ class AccountServiceTest {
                 }).verifyComplete();
     }
 
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} when the client already has the current version of the account.
+     */
+    @Test
+    void shouldNotGetAccountIfNotModified() {
+        when(accountRepository.getVersionByName(NAME)).thenReturn(Mono.just(3L));
+
+        accountService.getAccount(Mono.just(GetAccountRequest.newBuilder()
+                        .setName(NAME)
+                        .setKnownVersion(Int64Value.of(3))
+                        .build()))
+                .as(StepVerifier::create)
+                .expectNext(AccountServiceProto.Account.newBuilder()
+                        .setName(NAME)
+                        .setVersion(3)
+                        .setNotModified(true)
+                        .build())
+                .verifyComplete();
+
+        verify(accountRepository, never()).getByName(NAME);
+    }
+
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} when the account has changed since the version the client has.
+     */
+    @Test
+    void shouldGetAccountIfModified() {
+        when(accountRepository.getVersionByName(NAME)).thenReturn(Mono.just(0L));
+        when(accountRepository.getByName(NAME)).thenReturn(Mono.just(stubAccount()));
+
+        accountService.getAccount(Mono.just(GetAccountRequest.newBuilder()
+                        .setName(NAME)
+                        .setKnownVersion(Int64Value.of(3))
+                        .build()))
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> {
+                    assertThat(a.getNotModified()).isFalse();
+                    assertThat(a.getVersion()).isZero();
+                    assertThat(a.getItemsCount()).isEqualTo(2);
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} with a known version when no account is found.
+     */
+    @Test
+    void shouldFailToGetAccountIfModifiedWhenNotFound() {
+        when(accountRepository.getVersionByName(NAME)).thenReturn(Mono.empty());
+
+        accountService.getAccount(Mono.just(GetAccountRequest.newBuilder()
+                        .setName(NAME)
+                        .setKnownVersion(Int64Value.of(3))
+                        .build()))
+                .as(StepVerifier::create)
+                .verifyErrorSatisfies(t -> {
+                    assertThat(t).isInstanceOf(StatusRuntimeException.class);
+                    assertThat(Status.fromThrowable(t).getCode()).isEqualTo(Status.Code.NOT_FOUND);
+                });
+    }
+
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} when the account is cached.
+     */
+    @Test
+    void shouldGetCachedAccount() {
+        var account = toCachedAccountProto(stubAccount());
+        accountCache.put(account);
+
+        accountService.getAccount(GET_ACCOUNT_REQUEST)
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> a == account)
+                .verifyComplete();
+
+        verify(accountRepository, never()).getByName(NAME);
+        verify(accountRepository, never()).getUpdateTimeByName(NAME);
+    }
+
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} when cache hits are verified
+     * and the cached account hasn't been changed.
+     */
+    @Test
+    void shouldGetVerifiedCachedAccount() {
+        var account = toCachedAccountProto(stubAccount());
+        accountCache.put(account);
+        when(accountRepository.getUpdateTimeByName(NAME)).thenReturn(Mono.just(UPDATE_TIME));
+
+        verifyingAccountService().getAccount(GET_ACCOUNT_REQUEST)
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> a == account)
+                .verifyComplete();
+
+        verify(accountRepository, never()).getByName(NAME);
+    }
+
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} when cache hits are verified
+     * and the cached account has been changed by another instance.
+     */
+    @Test
+    void shouldReloadStaleCachedAccount() {
+        accountCache.put(toCachedAccountProto(stubAccount()));
+        var updateTime = UPDATE_TIME.plusHours(1);
+        var account = Account.builder()
+                .name(NAME)
+                .item(SALARY)
+                .saving(SAVING)
+                .updateTime(updateTime)
+                .build();
+        when(accountRepository.getUpdateTimeByName(NAME)).thenReturn(Mono.just(updateTime));
+        when(accountRepository.getByName(NAME)).thenReturn(Mono.just(account));
+
+        verifyingAccountService().getAccount(GET_ACCOUNT_REQUEST)
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> {
+                    assertThat(a.getItemsList()).extracting(AccountServiceProto.Item::getTitle)
+                            .containsExactly(SALARY.getTitle());
+                    return true;
+                }).verifyComplete();
+
+        assertThat(accountCache.get(NAME)).isNotNull()
+                .extracting(AccountServiceProto.Account::getUpdateTime)
+                .isEqualTo(timestampConverter().convert(updateTime));
+    }
+
+    /**
+     * Test for {@link AccountService#getAccount(Mono)} that puts the loaded account into the cache.
+     */
+    @Test
+    void shouldCacheLoadedAccount() {
+        var account = stubAccount();
+        when(accountRepository.getByName(NAME)).thenReturn(Mono.just(account));
+
+        accountService.getAccount(GET_ACCOUNT_REQUEST)
+                .then(accountService.getAccount(GET_ACCOUNT_REQUEST))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(accountRepository, times(1)).getByName(NAME);
+        verify(accountRepository, never()).getUpdateTimeByName(NAME);
+    }
+
     /**
      * Test for {@link AccountService#getAccount(Mono)} when no account is found.
      */
@@ -149,18 +327,148 @@ class AccountServiceTest {
                 });
     }
 
+    /**
+     * Test for {@link AccountService#batchGetAccounts(Mono)} when account names are specified.
+     */
+    @Test
+    void shouldBatchGetAccountsByNames() {
+        var account = stubAccount();
+        when(accountRepository.listByNames(ImmutableList.of(OTHER_NAME, NAME))).thenReturn(Flux.just(account));
+
+        var request = BatchGetAccountsRequest.newBuilder()
+                .addNames(OTHER_NAME)
+                .addNames(NAME)
+                .addNames(NAME)
+                .addNames(" ")
+                .build();
+        accountService.batchGetAccounts(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> a.getName().equals(NAME))
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountService#batchGetAccounts(Mono)} when accounts are read by a name range in several chunks.
+     */
+    @Test
+    void shouldBatchGetAccountsByNameRange() {
+        var limit = AccountService.MAX_ACCOUNTS_PER_QUERY + 1;
+        var firstChunk = IntStream.range(0, AccountService.MAX_ACCOUNTS_PER_QUERY)
+                .mapToObj(i -> stubAccount(String.format("%s%04d", NAME, i)))
+                .collect(ImmutableList.toImmutableList());
+        var lastName = firstChunk.get(firstChunk.size() - 1).getName();
+        when(accountRepository.listAfter(NAME, AccountService.MAX_ACCOUNTS_PER_QUERY))
+                .thenReturn(Flux.fromIterable(firstChunk));
+        when(accountRepository.listAfter(lastName, 1)).thenReturn(Flux.just(stubAccount(OTHER_NAME)));
+
+        var request = BatchGetAccountsRequest.newBuilder()
+                .setStartAfter(NAME)
+                .setLimit(limit)
+                .build();
+        accountService.batchGetAccounts(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextCount(AccountService.MAX_ACCOUNTS_PER_QUERY)
+                .expectNextMatches(a -> a.getName().equals(OTHER_NAME))
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountService#batchGetAccounts(Mono)} when the last chunk isn't full.
+     */
+    @Test
+    void shouldBatchGetAllAccounts() {
+        when(accountRepository.listAfter(null, AccountService.MAX_ACCOUNTS_PER_QUERY))
+                .thenReturn(Flux.just(stubAccount()));
+
+        accountService.batchGetAccounts(Mono.just(BatchGetAccountsRequest.getDefaultInstance()))
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> a.getName().equals(NAME))
+                .verifyComplete();
+
+        verify(accountRepository, times(1)).listAfter(any(), anyInt());
+    }
+
+    /**
+     * Test for {@link AccountService#batchGetAccounts(Mono)} when the limit is negative.
+     */
+    @Test
+    void shouldFailToBatchGetAccountsWhenLimitNegative() {
+        var request = BatchGetAccountsRequest.newBuilder()
+                .setLimit(-1)
+                .build();
+        accountService.batchGetAccounts(Mono.just(request))
+                .as(StepVerifier::create)
+                .verifyErrorSatisfies(t -> {
+                    assertThat(t).isInstanceOf(StatusRuntimeException.class);
+                    assertThat(Status.fromThrowable(t).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+                });
+    }
+
+    /**
+     * Test for {@link AccountService#listAccounts(Mono)}.
+     */
+    @Test
+    void shouldListAccountsInChunks() {
+        var chunkSize = 2;
+        when(accountRepository.listAfter(null, UPDATE_TIME, chunkSize))
+                .thenReturn(Flux.just(stubAccount(), stubAccount(OTHER_NAME)));
+        when(accountRepository.listAfter(OTHER_NAME, UPDATE_TIME, chunkSize))
+                .thenReturn(Flux.just(stubAccount("third")));
+
+        var request = ListAccountsRequest.newBuilder()
+                .setChunkSize(chunkSize)
+                .setUpdatedSince(timestampConverter().convert(UPDATE_TIME))
+                .build();
+        accountService.listAccounts(Mono.just(request))
+                .map(AccountServiceProto.Account::getName)
+                .as(StepVerifier::create)
+                .expectNext(NAME, OTHER_NAME, "third")
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountService#listAccounts(Mono)} when the chunk size exceeds the maximum.
+     */
+    @Test
+    void shouldLimitChunkSizeOfListedAccounts() {
+        when(accountRepository.listAfter(NAME, null, AccountService.MAX_ACCOUNTS_PER_QUERY))
+                .thenReturn(Flux.just(stubAccount(OTHER_NAME)));
+
+        var request = ListAccountsRequest.newBuilder()
+                .setStartAfter(NAME)
+                .setChunkSize(AccountService.MAX_ACCOUNTS_PER_QUERY + 1)
+                .build();
+        accountService.listAccounts(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextMatches(a -> a.getName().equals(OTHER_NAME))
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountService#listAccounts(Mono)} when the chunk size is negative.
+     */
+    @Test
+    void shouldFailToListAccountsWhenChunkSizeNegative() {
+        var request = ListAccountsRequest.newBuilder()
+                .setChunkSize(-1)
+                .build();
+        accountService.listAccounts(Mono.just(request))
+                .as(StepVerifier::create)
+                .verifyErrorSatisfies(t -> {
+                    assertThat(t).isInstanceOf(StatusRuntimeException.class);
+                    assertThat(Status.fromThrowable(t).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+                });
+    }
+
     /**
      * Test for {@link AccountService#updateAccount(Mono)}.
      */
     @Test
-    @SuppressWarnings("unchecked")
-    void shouldUpdateAccount() {
+    void shouldUpdateAccount() throws Exception {
         when(accountRepository.update(any(Account.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
-        doAnswer(invocation -> {
-            var record = (SenderRecord<String, AccountUpdatedEvent, AccountServiceProto.Account>) invocation.getArgument(0);
-            return Mono.just(new MockSenderResult(record.correlationMetadata()));
-        }).when(producerTemplate).send(any(SenderRecord.class));
+        when(outboxEventRepository.save(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
         var savingAmount = Money.of(1500, USD);
         var interest = BigDecimal.valueOf(3.32);
@@ -196,11 +504,15 @@ class AccountServiceTest {
                 .setNote(NOTE)
                 .build();
 
+        accountCache.put(toCachedAccountProto(stubAccount()));
+
         accountService.updateAccount(Mono.just(account))
                 .as(StepVerifier::create)
                 .expectNextMatches(a -> assertAccount(a, saving, rent, meal))
                 .verifyComplete();
 
+        assertThat(accountCache.get(NAME)).isNull();
+
         verify(accountRepository).update(argThat(a -> {
             assertThat(a.getName()).isEqualTo(NAME);
             assertThat(a.getItems()).extracting(
@@ -217,23 +529,119 @@ class AccountServiceTest {
             return true;
         }));
 
-        verify(producerTemplate)
-                .send(ArgumentMatchers.<SenderRecord<String, AccountUpdatedEvent, AccountServiceProto.Account>>argThat(record -> {
-                    assertThat(record.key()).isEqualTo(NAME);
-                    assertThat(record.value().getAccountName()).isEqualTo(NAME);
-                    assertThat(record.value().getItemsList()).containsExactlyInAnyOrder(rent, meal);
-                    assertThat(record.value().getSaving()).isEqualTo(saving);
-                    assertThat(record.value().getNote()).isEqualTo(NOTE);
-                    assertAccount(record.correlationMetadata(), saving, rent, meal);
-                    return true;
-                }));
+        verify(outboxEventRepository).save(eventCaptor.capture());
+        assertThat(eventCaptor.getValue().getAccountName()).isEqualTo(NAME);
+        var event = AccountUpdatedEvent.parseFrom(eventCaptor.getValue().getPayload());
+        assertThat(event.getAccountName()).isEqualTo(NAME);
+        assertThat(event.getItemsList()).containsExactlyInAnyOrder(rent, meal);
+        assertThat(event.getSaving()).isEqualTo(saving);
+        assertThat(event.getNote()).isEqualTo(NOTE);
+    }
+
+    /**
+     * Test for {@link AccountService#updateAccount(Mono)} when delta events are enabled.
+     */
+    @Test
+    void shouldSaveDeltaEvent() throws Exception {
+        var grocery = Item.builder()
+                .title(GROCERY.getTitle())
+                .moneyAmount(Money.of(20, USD))
+                .period(DAY)
+                .icon(GROCERY.getIcon())
+                .type(EXPENSE)
+                .build();
+        var rent = Item.builder()
+                .title("Rent")
+                .moneyAmount(Money.of(1200, USD))
+                .period(MONTH)
+                .icon("home")
+                .type(EXPENSE)
+                .build();
+        var updated = Account.builder()
+                .name(NAME)
+                .item(grocery)
+                .item(rent)
+                .saving(SAVING)
+                .updateTime(LocalDateTime.now())
+                .version(2)
+                .build();
+        when(accountRepository.getByName(NAME)).thenReturn(Mono.just(stubAccount(NAME, 1)));
+        when(accountRepository.update(any(Account.class))).thenReturn(Mono.just(updated));
+        when(outboxEventRepository.save(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        deltaAccountService().updateAccount(Mono.just(toAccountProto(updated)))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(outboxEventRepository).save(eventCaptor.capture());
+        var event = AccountUpdatedEvent.parseFrom(eventCaptor.getValue().getPayload());
+        assertThat(event.getDelta()).isTrue();
+        assertThat(event.getVersion()).isEqualTo(2);
+        assertThat(event.getFromVersion()).isEqualTo(1);
+        assertThat(event.getItemsList()).extracting(AccountServiceProto.Item::getTitle)
+                .containsExactlyInAnyOrder(grocery.getTitle(), rent.getTitle());
+        assertThat(event.getRemovedItemsList()).containsExactly(
+                AccountServiceProto.ItemKey.newBuilder()
+                        .setType(ItemType.INCOME)
+                        .setTitle(SALARY.getTitle())
+                        .build()
+        );
+    }
+
+    /**
+     * Test for {@link AccountService#updateAccount(Mono)} when the account might have been changed
+     * after its previous state was read.
+     */
+    @Test
+    void shouldSaveSnapshotEventWhenVersionSkipped() throws Exception {
+        var updated = stubAccount(NAME, 3);
+        when(accountRepository.getByName(NAME)).thenReturn(Mono.just(stubAccount(NAME, 1)));
+        when(accountRepository.update(any(Account.class))).thenReturn(Mono.just(updated));
+        when(outboxEventRepository.save(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        deltaAccountService().updateAccount(Mono.just(toAccountProto(updated)))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(outboxEventRepository).save(eventCaptor.capture());
+        var event = AccountUpdatedEvent.parseFrom(eventCaptor.getValue().getPayload());
+        assertThat(event.getDelta()).isFalse();
+        assertThat(event.getVersion()).isEqualTo(3);
+        assertThat(event.getItemsList()).extracting(AccountServiceProto.Item::getTitle)
+                .containsExactlyInAnyOrder(GROCERY.getTitle(), SALARY.getTitle());
+        assertThat(event.getRemovedItemsList()).isEmpty();
+    }
+
+    /**
+     * Test for {@link AccountService#updateAccount(Mono)} when a periodic snapshot is due.
+     */
+    @Test
+    void shouldSaveSnapshotEventPeriodically() throws Exception {
+        var updated = stubAccount(NAME, SNAPSHOT_INTERVAL);
+        when(accountRepository.getByName(NAME)).thenReturn(Mono.just(stubAccount(NAME, SNAPSHOT_INTERVAL - 1)));
+        when(accountRepository.update(any(Account.class))).thenReturn(Mono.just(updated));
+        when(outboxEventRepository.save(any(OutboxEvent.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        deltaAccountService().updateAccount(Mono.just(toAccountProto(updated)))
+                .as(StepVerifier::create)
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(outboxEventRepository).save(eventCaptor.capture());
+        var event = AccountUpdatedEvent.parseFrom(eventCaptor.getValue().getPayload());
+        assertThat(event.getDelta()).isFalse();
+        assertThat(event.getItemsCount()).isEqualTo(2);
     }
 
     /**
      * Test for {@link AccountService#updateAccount(Mono)} when the account to be updated isn't found.
      */
     @Test
-    @SuppressWarnings("unchecked")
     void shouldFailToUpdateAccountWhenNotFound() {
         when(accountRepository.update(any(Account.class))).thenReturn(Mono.empty());
 
@@ -254,14 +662,13 @@ class AccountServiceTest {
                     assertThat(Status.fromThrowable(t).getCode()).isEqualTo(Status.Code.NOT_FOUND);
                 });
 
-        verify(producerTemplate, never()).send(any(SenderRecord.class));
+        verify(outboxEventRepository, never()).save(any(OutboxEvent.class));
     }
 
     /**
      * Test for {@link AccountService#updateAccount(Mono)} when account data are invalid.
      */
     @Test
-    @SuppressWarnings("unchecked")
     void shouldFailToUpdateAccountWhenDataInvalid() {
         var saving = AccountServiceProto.Saving.newBuilder()
                 .setDeposit(true)
@@ -280,15 +687,150 @@ class AccountServiceTest {
                 }).verify();
 
         verify(accountRepository, never()).update(any());
-        verify(producerTemplate, never()).send(any(SenderRecord.class));
+        verify(outboxEventRepository, never()).save(any(OutboxEvent.class));
+    }
+
+    /**
+     * Test for {@link AccountService#importAccounts(Flux)}.
+     */
+    @Test
+    void shouldImportAccounts() throws Exception {
+        when(accountRepository.saveAll(anyCollection()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Collection<Account>>getArgument(0))
+                        .map(account -> stubAccount(account.getName(), 1)));
+        when(outboxEventRepository.saveAll(anyCollection()))
+                .thenAnswer(invocation -> Mono.just(invocation.<Collection<OutboxEvent>>getArgument(0).size()));
+
+        accountCache.put(toCachedAccountProto(stubAccount()));
+        var invalid = AccountServiceProto.Account.newBuilder()
+                .setName(StringUtils.EMPTY)
+                .setSaving(toAccountProto(stubAccount()).getSaving())
+                .build();
+        var accounts = Flux.just(toAccountProto(stubAccount()), invalid, toAccountProto(stubAccount(OTHER_NAME)));
+
+        accountService.importAccounts(accounts)
+                .as(StepVerifier::create)
+                .expectNextMatches(result -> NAME.equals(result.getAccountName())
+                        && result.getStatus() == ImportStatus.IMPORTED && result.getVersion() == 1)
+                .expectNextMatches(result -> result.getStatus() == ImportStatus.INVALID
+                        && StringUtils.isNotEmpty(result.getError()))
+                .expectNextMatches(result -> OTHER_NAME.equals(result.getAccountName())
+                        && result.getStatus() == ImportStatus.IMPORTED && result.getVersion() == 1)
+                .verifyComplete();
+
+        assertThat(accountCache.get(NAME)).isNull();
+
+        verify(accountRepository).saveAll(argThat(a -> a.size() == 1
+                && NAME.equals(a.iterator().next().getName())));
+        verify(accountRepository).saveAll(argThat(a -> a.size() == 1
+                && OTHER_NAME.equals(a.iterator().next().getName())));
+        verify(outboxEventRepository, times(2)).saveAll(eventsCaptor.capture());
+        var event = AccountUpdatedEvent.parseFrom(eventsCaptor.getAllValues().get(0).iterator().next().getPayload());
+        assertThat(event.getAccountName()).isEqualTo(NAME);
+        assertThat(event.getDelta()).isFalse();
+        assertThat(event.getItemsCount()).isEqualTo(2);
+        assertThat(event.getVersion()).isEqualTo(1);
+    }
+
+    /**
+     * Test for {@link AccountService#importAccounts(Flux)} when a batch fails to be written.
+     */
+    @Test
+    void shouldContinueImportAfterFailedBatch() {
+        when(accountRepository.saveAll(anyCollection()))
+                .thenReturn(Flux.error(new IllegalStateException("Test")))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Collection<Account>>getArgument(0)));
+        when(outboxEventRepository.saveAll(anyCollection())).thenReturn(Mono.just(1));
+
+        var third = stubAccount("third");
+        var accounts = Flux.just(stubAccount(), stubAccount(OTHER_NAME), third)
+                .map(this::toAccountProto);
+
+        accountService.importAccounts(accounts)
+                .as(StepVerifier::create)
+                .expectNextMatches(result -> NAME.equals(result.getAccountName())
+                        && result.getStatus() == ImportStatus.FAILED && "Test".equals(result.getError()))
+                .expectNextMatches(result -> OTHER_NAME.equals(result.getAccountName())
+                        && result.getStatus() == ImportStatus.FAILED)
+                .expectNextMatches(result -> third.getName().equals(result.getAccountName())
+                        && result.getStatus() == ImportStatus.IMPORTED)
+                .verifyComplete();
+
+        verify(outboxEventRepository).saveAll(anyCollection());
+    }
+
+    /**
+     * Test for {@link AccountService#importAccounts(Flux)} when an account is sent several times within a batch.
+     */
+    @Test
+    void shouldImportLastDataOfRepeatedAccount() {
+        when(accountRepository.saveAll(anyCollection()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Collection<Account>>getArgument(0)));
+        when(outboxEventRepository.saveAll(anyCollection())).thenReturn(Mono.just(1));
+
+        var first = toAccountProto(stubAccount());
+        var second = first.toBuilder()
+                .setNote(NOTE)
+                .build();
+
+        accountService.importAccounts(Flux.just(first, second))
+                .as(StepVerifier::create)
+                .expectNextCount(2)
+                .verifyComplete();
+
+        verify(accountRepository).saveAll(argThat(a -> a.size() == 1 && NOTE.equals(a.iterator().next().getNote())));
     }
 
     private Account stubAccount() {
+        return stubAccount(NAME);
+    }
+
+    private Account stubAccount(String name) {
+        return stubAccount(name, 0);
+    }
+
+    private Account stubAccount(String name, long version) {
         return Account.builder()
-                .name(NAME)
+                .name(name)
                 .item(GROCERY)
                 .item(SALARY)
                 .saving(SAVING)
+                .updateTime(UPDATE_TIME)
+                .version(version)
+                .build();
+    }
+
+    private AccountService deltaAccountService() {
+        return new AccountService(true, SNAPSHOT_INTERVAL, IMPORT_BATCH_SIZE, false, accountRepository, accountCache,
+                outboxEventRepository, accountShards, operator);
+    }
+
+    private AccountService verifyingAccountService() {
+        return new AccountService(false, SNAPSHOT_INTERVAL, IMPORT_BATCH_SIZE, true, accountRepository, accountCache,
+                outboxEventRepository, accountShards, operator);
+    }
+
+    private AccountServiceProto.Account toAccountProto(Account account) {
+        return AccountServiceProto.Account.newBuilder()
+                .setName(account.getName())
+                .addAllItems(account.getItems().stream()
+                        .map(item -> AccountServiceProto.Item.newBuilder()
+                                .setType(ItemType.valueOf(item.getType().name()))
+                                .setTitle(item.getTitle())
+                                .setMoney(moneyConverter().convert(item.getMoneyAmount()))
+                                .setPeriod(TimePeriod.valueOf(item.getPeriod().name()))
+                                .setIcon(item.getIcon())
+                                .build())
+                        .collect(Collectors.toList()))
+                .setSaving(AccountServiceProto.Saving.newBuilder()
+                        .setMoney(moneyConverter().convert(account.getSaving().getMoneyAmount()))
+                        .setInterest(bigDecimalConverter().convert(account.getSaving().getInterest())))
+                .build();
+    }
+
+    private AccountServiceProto.Account toCachedAccountProto(Account account) {
+        return toAccountProto(account).toBuilder()
+                .setUpdateTime(timestampConverter().convert(account.getUpdateTime()))
                 .build();
     }
 
@@ -301,24 +843,4 @@ class AccountServiceTest {
         assertThat(account.getNote()).isEqualTo(NOTE);
         return true;
     }
-
-    @RequiredArgsConstructor
-    private static class MockSenderResult implements SenderResult<AccountServiceProto.Account> {
-        private final AccountServiceProto.Account account;
-
-        @Override
-        public RecordMetadata recordMetadata() {
-            return null;
-        }
-
-        @Override
-        public Exception exception() {
-            return null;
-        }
-
-        @Override
-        public AccountServiceProto.Account correlationMetadata() {
-            return this.account;
-        }
-    }
 }
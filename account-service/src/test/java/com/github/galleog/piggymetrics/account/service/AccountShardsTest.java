@@ -0,0 +1,151 @@
+package com.github.galleog.piggymetrics.account.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.github.galleog.piggymetrics.account.domain.Account;
+import com.github.galleog.piggymetrics.account.domain.Saving;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ConsistentHashRing;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardLocator;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardRoutingConnectionFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.r2dbc.spi.ConnectionFactory;
+import org.javamoney.moneta.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for {@link AccountShards}.
+ */
+class AccountShardsTest {
+    private static final String SHARD_1 = "shard1";
+    private static final String SHARD_2 = "shard2";
+    private static final Saving SAVING = Saving.builder()
+            .moneyAmount(Money.of(BigDecimal.ZERO, "USD"))
+            .interest(BigDecimal.ZERO)
+            .build();
+
+    /**
+     * Test for {@link AccountShards#groupByShard(java.util.Collection, Function)} if sharding is disabled.
+     */
+    @Test
+    void shouldPutAllAccountsOnSingleShardIfShardingDisabled() {
+        var accountShards = new AccountShards(new StaticListableBeanFactory()
+                .getBeanProvider(ShardRoutingConnectionFactory.class));
+        assertThat(accountShards.isEnabled()).isFalse();
+        assertThat(accountShards.getNames()).containsExactly(AccountShards.SINGLE_SHARD);
+
+        accountShards.groupByShard(ImmutableList.of("b", "a"), Function.identity())
+                .as(StepVerifier::create)
+                .expectNext(ImmutableMap.of(AccountShards.SINGLE_SHARD, ImmutableList.of("b", "a")))
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountShards#groupByShard(java.util.Collection, Function)}.
+     */
+    @Test
+    void shouldGroupAccountsByShard() {
+        var ring = new ConsistentHashRing(ImmutableList.of(SHARD_1, SHARD_2), 160);
+        var accountShards = shardedAccountShards(ring);
+        assertThat(accountShards.isEnabled()).isTrue();
+        assertThat(accountShards.getNames()).containsExactly(SHARD_1, SHARD_2);
+
+        var names = IntStream.range(0, 100)
+                .mapToObj(i -> "user" + i)
+                .collect(ImmutableList.toImmutableList());
+        accountShards.groupByShard(names, Function.identity())
+                .as(StepVerifier::create)
+                .expectNextMatches(groups -> {
+                    assertThat(groups.values()).flatExtracting(group -> group)
+                            .containsExactlyInAnyOrderElementsOf(names);
+                    groups.forEach((shard, group) -> {
+                        assertThat(group).allMatch(name -> shard.equals(ring.getShard(name)));
+                        assertThat(group).isSortedAccordingTo((a, b) -> names.indexOf(a) - names.indexOf(b));
+                    });
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountShards#readAll(Function)}.
+     */
+    @Test
+    void shouldMergeAccountsOfShardsByName() {
+        var accountShards = shardedAccountShards(new ConsistentHashRing(ImmutableList.of(SHARD_1, SHARD_2), 160));
+        var accounts = ImmutableMap.of(
+                SHARD_1, ImmutableList.of(stubAccount("a"), stubAccount("c"), stubAccount("d")),
+                // the account 'c' is being moved to the second shard
+                SHARD_2, ImmutableList.of(stubAccount("b"), stubAccount("c"), stubAccount("e"))
+        );
+
+        accountShards.readAll(shard -> Flux.fromIterable(accounts.get(shard)))
+                .map(Account::getName)
+                .as(StepVerifier::create)
+                .expectNext("a", "b", "c", "d", "e")
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link AccountShards#routeBy(String, java.util.function.Supplier)} if shards are being rebalanced
+     * and the account is moved after it's located.
+     */
+    @Test
+    void shouldRepeatLookupThatMissesAccountWhileRebalancing() {
+        var ring = new ConsistentHashRing(ImmutableList.of(SHARD_1, SHARD_2), 160);
+        var previousRing = new ConsistentHashRing(ImmutableList.of(SHARD_1), 160);
+        var shards = ImmutableMap.of(SHARD_1, mock(ConnectionFactory.class), SHARD_2, mock(ConnectionFactory.class));
+        var accountShards = accountShards(new ShardRoutingConnectionFactory(shards, SHARD_1,
+                new ShardLocator(ring, previousRing, shards, "select 1")));
+
+        var lookups = new AtomicInteger();
+        accountShards.routeBy("a", () -> lookups.incrementAndGet() == 1 ? Mono.empty() : Mono.just("a"))
+                .as(StepVerifier::create)
+                .expectNext("a")
+                .verifyComplete();
+        assertThat(lookups).hasValue(2);
+    }
+
+    /**
+     * Test for {@link AccountShards#routeBy(String, java.util.function.Supplier)} if shards aren't being rebalanced.
+     */
+    @Test
+    void shouldNotRepeatLookupThatMissesAccount() {
+        var accountShards = shardedAccountShards(new ConsistentHashRing(ImmutableList.of(SHARD_1, SHARD_2), 160));
+
+        var lookups = new AtomicInteger();
+        accountShards.routeBy("a", () -> {
+                    lookups.incrementAndGet();
+                    return Mono.empty();
+                }).as(StepVerifier::create)
+                .verifyComplete();
+        assertThat(lookups).hasValue(1);
+    }
+
+    private static AccountShards shardedAccountShards(ConsistentHashRing ring) {
+        return accountShards(new ShardRoutingConnectionFactory(
+                ImmutableMap.of(SHARD_1, mock(ConnectionFactory.class), SHARD_2, mock(ConnectionFactory.class)),
+                SHARD_1, new ShardLocator(ring)));
+    }
+
+    private static AccountShards accountShards(ShardRoutingConnectionFactory connectionFactory) {
+        var beanFactory = new StaticListableBeanFactory(ImmutableMap.of("connectionFactory", connectionFactory));
+        return new AccountShards(beanFactory.getBeanProvider(ShardRoutingConnectionFactory.class));
+    }
+
+    private static Account stubAccount(String name) {
+        return Account.builder()
+                .name(name)
+                .saving(SAVING)
+                .build();
+    }
+}
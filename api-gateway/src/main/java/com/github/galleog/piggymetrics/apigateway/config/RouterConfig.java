@@ -22,7 +22,7 @@ public class RouterConfig {
     @Bean
     public RouterFunction<ServerResponse> routeAccountRequests(AccountHandler handler) {
         return route().path("/accounts", builder ->
-                builder.GET("/demo", request -> handler.getDemoAccount())
+                builder.GET("/demo", handler::getDemoAccount)
                         .GET("/current", handler::getCurrentAccount)
                         .PUT("/current", contentType(MediaType.APPLICATION_JSON), handler::updateCurrentAccount)
         ).build();
@@ -13,9 +13,14 @@ import com.github.galleog.piggymetrics.apigateway.model.account.Item;
 import com.github.galleog.piggymetrics.apigateway.model.account.Saving;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Converter;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.protobuf.Int64Value;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
@@ -24,6 +29,10 @@ import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
@@ -35,6 +44,8 @@ public class AccountHandler {
     @VisibleForTesting
     static final String ACCOUNT_SERVICE = "account-service";
 
+    private static final String WEAK_ETAG_PREFIX = "W/";
+    private static final int ETAG_HASH_BYTES = 8;
     private static final Converter<Item, AccountServiceProto.Item> ITEM_CONVERTER = new ItemConverter();
     private static final Converter<Saving, AccountServiceProto.Saving> SAVING_CONVERTER = new SavingConverter();
 
@@ -44,20 +55,22 @@ public class AccountHandler {
     /**
      * Returns the demo account.
      *
-     * @return the found account
+     * @param request the server request
+     * @return the found account, or {@link HttpStatus#NOT_MODIFIED} if it matches the {@code If-None-Match} header
      */
-    public Mono<ServerResponse> getDemoAccount() {
-        return getAccountByName(Mono.just(DEMO_ACCOUNT));
+    public Mono<ServerResponse> getDemoAccount(ServerRequest request) {
+        return getAccountByName(Mono.just(DEMO_ACCOUNT), request);
     }
 
     /**
      * Gets the account of the current principal.
      *
      * @param request the server request
-     * @return the account of the current principal
+     * @return the account of the current principal,
+     * or {@link HttpStatus#NOT_MODIFIED} if it matches the {@code If-None-Match} header
      */
     public Mono<ServerResponse> getCurrentAccount(ServerRequest request) {
-        return getAccountByName(getCurrentUser(request));
+        return getAccountByName(getCurrentUser(request), request);
     }
 
     /**
@@ -79,16 +92,58 @@ public class AccountHandler {
                 .body(account, Account.class);
     }
 
-    private Mono<ServerResponse> getAccountByName(Mono<String> userName) {
-        Mono<Account> account = userName.map(name ->
-                        AccountServiceProto.GetAccountRequest.newBuilder()
-                                .setName(name)
-                                .build()
-                ).transformDeferredContextual((req, ctx) -> accountServiceStub.getAccount(req.contextWrite(ctx)))
-                .map(this::toAccount);
-        return ServerResponse.ok()
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(account, Account.class);
+    private Mono<ServerResponse> getAccountByName(Mono<String> userName, ServerRequest request) {
+        var eTags = request.headers().header(HttpHeaders.IF_NONE_MATCH);
+        return userName.map(name -> {
+                    var builder = AccountServiceProto.GetAccountRequest.newBuilder()
+                            .setName(name);
+                    // account-service doesn't read the account if the client already has its current version
+                    getKnownVersion(name, eTags).ifPresent(version -> builder.setKnownVersion(Int64Value.of(version)));
+                    return builder.build();
+                }).transformDeferredContextual((req, ctx) -> accountServiceStub.getAccount(req.contextWrite(ctx)))
+                .flatMap(account -> {
+                    var eTag = toETag(account.getName(), account.getVersion());
+                    if (account.getNotModified()) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED)
+                                .eTag(eTag)
+                                .build();
+                    }
+                    return ServerResponse.ok()
+                            .eTag(eTag)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(toAccount(account));
+                });
+    }
+
+    /**
+     * Gets the weak entity tag of a version of an account.
+     * It contains a hash of the account name, so a response cached for one user
+     * is practically never taken for the account of another one. The hash is truncated to 64 bits,
+     * so collisions are possible in principle but unlikely enough to be ignored.
+     *
+     * @param name    the account name
+     * @param version the account version
+     * @return the entity tag
+     */
+    @VisibleForTesting
+    static String toETag(String name, long version) {
+        return WEAK_ETAG_PREFIX + eTagPrefix(name) + version + "\"";
+    }
+
+    private static Optional<Long> getKnownVersion(String name, List<String> headers) {
+        var prefix = eTagPrefix(name);
+        return headers.stream()
+                .flatMap(header -> Arrays.stream(StringUtils.split(header, ',')))
+                .map(tag -> StringUtils.removeStart(tag.trim(), WEAK_ETAG_PREFIX))
+                .filter(tag -> tag.startsWith(prefix) && tag.endsWith("\""))
+                .map(tag -> NumberUtils.toLong(tag.substring(prefix.length(), tag.length() - 1), -1))
+                .filter(version -> version >= 0)
+                .findFirst();
+    }
+
+    private static String eTagPrefix(String name) {
+        var hash = Hashing.sha256().hashString(name, StandardCharsets.UTF_8).asBytes();
+        return "\"" + BaseEncoding.base16().lowerCase().encode(hash, 0, ETAG_HASH_BYTES) + "-";
     }
 
     private AccountServiceProto.Account toAccountProto(String name, Account account) {
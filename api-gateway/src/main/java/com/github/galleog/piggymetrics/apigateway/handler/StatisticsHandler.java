@@ -30,18 +30,24 @@ import reactor.core.publisher.Mono;
 public class StatisticsHandler {
     @VisibleForTesting
     static final String STATISTICS_SERVICE = "statistics-service";
+    @VisibleForTesting
+    static final String DENSE_PARAM = "dense";
 
     @GrpcClient(STATISTICS_SERVICE)
     private ReactorStatisticsServiceGrpc.ReactorStatisticsServiceStub statisticsServiceStub;
 
     /**
      * Gets statistical metrics for the current user.
+     * If the {@code dense} query parameter is {@code true}, a data point is returned for every day.
      *
      * @param request the server request
      * @return a list of data points for the current user
      */
     public Mono<ServerResponse> getCurrentAccountStatistics(ServerRequest request) {
-        return getStatistics(getCurrentUser(request));
+        var dense = request.queryParam(DENSE_PARAM)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+        return getStatistics(getCurrentUser(request), dense);
     }
 
     /**
@@ -50,13 +56,14 @@ public class StatisticsHandler {
      * @return a list of data points for the demo account
      */
     public Mono<ServerResponse> getDemoStatistics() {
-        return getStatistics(Mono.just(DEMO_ACCOUNT));
+        return getStatistics(Mono.just(DEMO_ACCOUNT), false);
     }
 
-    private Mono<ServerResponse> getStatistics(Mono<String> userName) {
+    private Mono<ServerResponse> getStatistics(Mono<String> userName, boolean dense) {
         Mono<StatisticsServiceProto.ListDataPointsRequest> request = userName.map(name ->
                 StatisticsServiceProto.ListDataPointsRequest.newBuilder()
                         .setAccountName(name)
+                        .setDense(dense)
                         .build()
         );
         Flux<DataPoint> flux = request.as(statisticsServiceStub::listDataPoints)
@@ -23,6 +23,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -46,6 +47,7 @@ class AccountRequestRouterTest extends BaseRouterTest {
     private static final Money SALARY_AMOUNT = Money.of(BigDecimal.valueOf(910000, 2), CURRENCY);
     private static final String SALARY_ICON = "wallet";
     private static final LocalDateTime UPDATE_TIME = LocalDateTime.now();
+    private static final long VERSION = 3;
 
     @Captor
     private ArgumentCaptor<Mono<AccountServiceProto.GetAccountRequest>> getAccountRequestCaptor;
@@ -106,11 +108,60 @@ class AccountRequestRouterTest extends BaseRouterTest {
                 .get()
                 .uri("/accounts/current")
                 .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, AccountHandler.toETag(ACCOUNT_NAME, VERSION));
+
+        getAccountRequestCaptor.getValue()
+                .as(StepVerifier::create)
+                .expectNextMatches(value -> ACCOUNT_NAME.equals(value.getName()) && !value.hasKnownVersion())
+                .verifyComplete();
+    }
+
+    /**
+     * Test for GET /accounts/current when the account isn't modified since the version the client has.
+     */
+    @Test
+    void shouldNotGetAccountOfCurrentUserIfNotModified() {
+        var account = AccountServiceProto.Account.newBuilder()
+                .setName(ACCOUNT_NAME)
+                .setVersion(VERSION)
+                .setNotModified(true)
+                .build();
+        doReturn(Mono.just(account)).when(accountService).getAccount(getAccountRequestCaptor.capture());
+
+        webClient.mutateWith(mockJwt(ACCOUNT_NAME))
+                .get()
+                .uri("/accounts/current")
+                .ifNoneMatch(AccountHandler.toETag(ACCOUNT_NAME, VERSION))
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, AccountHandler.toETag(ACCOUNT_NAME, VERSION))
+                .expectBody().isEmpty();
+
+        getAccountRequestCaptor.getValue()
+                .as(StepVerifier::create)
+                .expectNextMatches(value -> ACCOUNT_NAME.equals(value.getName())
+                        && value.getKnownVersion().getValue() == VERSION)
+                .verifyComplete();
+    }
+
+    /**
+     * Test for GET /accounts/current when the entity tag belongs to another account.
+     */
+    @Test
+    void shouldIgnoreETagOfAnotherAccount() {
+        doReturn(Mono.just(stubAccountProto(ACCOUNT_NAME))).when(accountService).getAccount(getAccountRequestCaptor.capture());
+
+        webClient.mutateWith(mockJwt(ACCOUNT_NAME))
+                .get()
+                .uri("/accounts/current")
+                .ifNoneMatch(AccountHandler.toETag(DEMO_ACCOUNT, VERSION))
+                .exchange()
                 .expectStatus().isOk();
 
         getAccountRequestCaptor.getValue()
                 .as(StepVerifier::create)
-                .expectNextMatches(value -> ACCOUNT_NAME.equals(value.getName()))
+                .expectNextMatches(value -> !value.hasKnownVersion())
                 .verifyComplete();
     }
 
@@ -264,6 +315,7 @@ class AccountRequestRouterTest extends BaseRouterTest {
                 .setSaving(stubSavingProto())
                 .setUpdateTime(timestampConverter().convert(UPDATE_TIME))
                 .setNote(ACCOUNT_NOTE)
+                .setVersion(VERSION)
                 .build();
     }
 
@@ -90,7 +90,32 @@ public class StatisticsRequestRouterTest extends BaseRouterTest {
 
         requestCaptor.getValue()
                 .as(StepVerifier::create)
-                .expectNextMatches(req -> ACCOUNT_NAME.equals(req.getAccountName()))
+                .expectNextMatches(req -> ACCOUNT_NAME.equals(req.getAccountName()) && !req.getDense())
+                .verifyComplete();
+    }
+
+    /**
+     * Test for GET /statistics/current?dense=true.
+     */
+    @Test
+    void shouldGetDenseStatisticsForCurrentUser() {
+        doReturn(Flux.just(
+                stubDataPointProto(ACCOUNT_NAME, WEEK_AGO, ImmutableList.of(salary()), SAVING_AMOUNT)
+        )).when(statisticsService).listDataPoints(requestCaptor.capture());
+
+        webClient.mutateWith(mockJwt(ACCOUNT_NAME))
+                .get()
+                .uri(builder -> builder.path("/statistics/current")
+                        .queryParam(StatisticsHandler.DENSE_PARAM, true)
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(DataPoint.class)
+                .hasSize(1);
+
+        requestCaptor.getValue()
+                .as(StepVerifier::create)
+                .expectNextMatches(req -> ACCOUNT_NAME.equals(req.getAccountName()) && req.getDense())
                 .verifyComplete();
     }
 
@@ -0,0 +1,104 @@
+package com.github.galleog.piggymetrics.notification.config;
+
+import com.github.galleog.piggymetrics.notification.mail.PooledJavaMailSender;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration for sending email notifications.
+ */
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+@EnableConfigurationProperties(MailProperties.class)
+public class EmailConfig {
+    /**
+     * Name of the executor that sends email in metrics.
+     */
+    public static final String EMAIL_EXECUTOR_NAME = "email-sender";
+
+    private static final String THREAD_NAME_PREFIX = EMAIL_EXECUTOR_NAME + "-";
+
+    /**
+     * Scheduler for blocking email sends, so SMTP I/O never blocks threads of reactive pipelines.
+     * The number of its threads limits the number of concurrent sends, and at most {@code queueCapacity}
+     * sends wait for a thread. Sends submitted when the queue is full are rejected, and the returned
+     * publishers fail with {@link java.util.concurrent.RejectedExecutionException}, so recipients
+     * that haven't been notified are retried by the next scheduled run. The executor is shut down
+     * when the scheduler is disposed on context close.
+     */
+    @Bean(destroyMethod = "dispose")
+    Scheduler emailScheduler(@Value("${email.send.concurrency}") int concurrency,
+                             @Value("${email.send.queue-capacity}") int queueCapacity,
+                             ObjectProvider<MeterRegistry> meterRegistry) {
+        Validate.isTrue(concurrency > 0);
+        Validate.isTrue(queueCapacity > 0);
+
+        var executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        var monitored = ExecutorServiceMetrics.monitor(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                executor, EMAIL_EXECUTOR_NAME);
+        return Schedulers.fromExecutorService(monitored, EMAIL_EXECUTOR_NAME);
+    }
+
+    /**
+     * Mail sender that reuses connections to the mail server. It's configured by the {@code spring.mail}
+     * properties the same way as the sender created by Spring Boot.
+     */
+    @Bean
+    PooledJavaMailSender mailSender(MailProperties properties,
+                                    @Value("${email.smtp.pool-size}") int poolSize,
+                                    @Value("${email.smtp.max-idle-time}") Duration maxIdleTime) {
+        var sender = new PooledJavaMailSender(poolSize, maxIdleTime);
+        sender.setHost(properties.getHost());
+        if (properties.getPort() != null) {
+            sender.setPort(properties.getPort());
+        }
+        sender.setUsername(properties.getUsername());
+        sender.setPassword(properties.getPassword());
+        sender.setProtocol(properties.getProtocol());
+        if (properties.getDefaultEncoding() != null) {
+            sender.setDefaultEncoding(properties.getDefaultEncoding().name());
+        }
+        if (!properties.getProperties().isEmpty()) {
+            var javaMailProperties = new Properties();
+            javaMailProperties.putAll(properties.getProperties());
+            sender.setJavaMailProperties(javaMailProperties);
+        }
+        return sender;
+    }
+
+    private static ThreadFactory threadFactory() {
+        // virtual threads are only available since Java 21, so they are looked up reflectively
+        try {
+            var builderClass = Class.forName("java.lang.Thread$Builder");
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_NAME_PREFIX, 0L);
+            logger.info("Email is sent by virtual threads");
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.info("Email is sent by platform threads since virtual threads aren't supported");
+            var threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+            threadFactory.setDaemon(true);
+            return threadFactory;
+        }
+    }
+}
@@ -46,6 +46,16 @@ public class NotificationSettings {
         return this.getNotifyDate() != null;
     }
 
+    /**
+     * Gets the date after which the notification should be sent again.
+     *
+     * @return the date of the next notification, or {@code null} if the recipient hasn't been notified yet
+     */
+    @Nullable
+    public LocalDate getNextNotifyDate() {
+        return isNotified() ? getNotifyDate().plusDays(getFrequency().getKey()) : null;
+    }
+
     /**
      * Returns new notification settings with the notified date set to the current date.
      *
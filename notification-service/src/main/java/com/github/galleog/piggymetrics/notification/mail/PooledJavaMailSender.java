@@ -0,0 +1,182 @@
+package com.github.galleog.piggymetrics.notification.mail;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.Nullable;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link JavaMailSenderImpl} that keeps authenticated connections to the mail server open and reuses them
+ * for subsequent messages instead of connecting and authenticating on every {@code send} call.
+ * <p/>
+ * Every {@code send} call holds a single connection, so messages passed to one call are sent over
+ * the same connection. At most {@code poolSize} connections are open at the same time, and callers
+ * wait for a connection if all of them are in use. Connections that have been idle for longer than
+ * {@code maxIdleTime} are reopened since mail servers drop idle clients.
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private final Semaphore permits;
+    private final long maxIdleNanos;
+    // the most recently used connection is taken first, so the others expire when the load drops
+    private final Deque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+    private volatile boolean destroyed;
+
+    /**
+     * Constructs a new instance of the sender.
+     *
+     * @param poolSize    the maximum number of open connections
+     * @param maxIdleTime the time after which an idle connection is reopened
+     * @throws NullPointerException     if the maximum idle time is {@code null}
+     * @throws IllegalArgumentException if the pool size or the maximum idle time isn't positive
+     */
+    public PooledJavaMailSender(int poolSize, @NonNull Duration maxIdleTime) {
+        Validate.isTrue(poolSize > 0);
+        Validate.isTrue(!maxIdleTime.isNegative() && !maxIdleTime.isZero());
+
+        this.permits = new Semaphore(poolSize, true);
+        this.maxIdleNanos = maxIdleTime.toNanos();
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages) throws MailException {
+        acquirePermit();
+
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        PooledTransport transport = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                if (transport == null) {
+                    try {
+                        transport = obtain();
+                    } catch (AuthenticationFailedException e) {
+                        throw new MailAuthenticationException(e);
+                    } catch (Exception e) {
+                        // all remaining messages failed
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(original(mimeMessages, originalMessages, j), e);
+                        }
+                        throw new MailSendException("Mail server connection failed", e, failedMessages);
+                    }
+                }
+
+                try {
+                    send(transport.getTransport(), mimeMessages[i]);
+                } catch (Exception e) {
+                    failedMessages.put(original(mimeMessages, originalMessages, i), e);
+                    // the connection is dropped if it has been lost, so the next message is sent over a new one
+                    if (!transport.getTransport().isConnected()) {
+                        close(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            release(transport);
+            permits.release();
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        destroyed = true;
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            close(transport);
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while waiting for a mail server connection", e);
+        }
+    }
+
+    private PooledTransport obtain() throws MessagingException {
+        PooledTransport transport;
+        while ((transport = idle.pollFirst()) != null) {
+            var expired = System.nanoTime() - transport.getReleasedAt() >= maxIdleNanos;
+            if (!expired && transport.getTransport().isConnected()) {
+                return transport;
+            }
+            close(transport);
+        }
+        return new PooledTransport(connectTransport());
+    }
+
+    private void release(@Nullable PooledTransport transport) {
+        if (transport == null) {
+            return;
+        }
+        if (destroyed) {
+            close(transport);
+            return;
+        }
+        transport.setReleasedAt(System.nanoTime());
+        idle.offerFirst(transport);
+    }
+
+    private static void send(Transport transport, MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        var messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            // preserve the explicitly specified message id
+            message.setHeader(HEADER_MESSAGE_ID, messageId);
+        }
+        var addresses = message.getAllRecipients();
+        transport.sendMessage(message, addresses != null ? addresses : new Address[0]);
+    }
+
+    private static Object original(MimeMessage[] mimeMessages, @Nullable Object[] originalMessages, int i) {
+        return originalMessages != null ? originalMessages[i] : mimeMessages[i];
+    }
+
+    private static void close(PooledTransport transport) {
+        try {
+            transport.getTransport().close();
+        } catch (MessagingException e) {
+            logger.debug("Failed to close mail server connection", e);
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class PooledTransport {
+        private final Transport transport;
+        @Setter
+        private long releasedAt;
+    }
+}
@@ -41,7 +41,7 @@ public interface RecipientRepository {
      *
      * @param type the notification type
      * @param date the date where recipients should be notified
-     * @return the found recipients
+     * @return the found recipients ordered by their usernames
      */
     Flux<Recipient> readyToNotify(@NonNull NotificationType type, @NonNull LocalDate date);
 }
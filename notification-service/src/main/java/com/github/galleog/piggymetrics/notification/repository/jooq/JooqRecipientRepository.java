@@ -3,6 +3,7 @@ package com.github.galleog.piggymetrics.notification.repository.jooq;
 import static com.github.galleog.piggymetrics.notification.domain.Tables.RECIPIENTS;
 import static com.github.galleog.piggymetrics.notification.domain.Tables.RECIPIENT_NOTIFICATIONS;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static org.jooq.impl.DSL.noCondition;
 import static org.jooq.impl.DSL.select;
 
 import com.github.galleog.piggymetrics.notification.domain.Frequency;
@@ -14,10 +15,11 @@ import com.github.galleog.piggymetrics.notification.repository.RecipientReposito
 import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
-import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.Validate;
 import org.jooq.Record;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
@@ -31,9 +33,28 @@ import java.util.Map;
  * Implementation of {@link RecipientRepository} using <a href="https://www.jooq.org/">jOOQ</a>.
  */
 @Repository
-@RequiredArgsConstructor
 public class JooqRecipientRepository implements RecipientRepository {
+    /**
+     * Next notification date of recipients that haven't been notified yet, so they are notified at once.
+     */
+    private static final LocalDate NOT_NOTIFIED_NEXT_DATE = LocalDate.EPOCH;
+
     private final TransactionAwareJooqWrapper wrapper;
+    private final int chunkSize;
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param wrapper   the wrapper to execute queries
+     * @param chunkSize the maximum number of recipients read by a single query of {@link #readyToNotify}
+     * @throws IllegalArgumentException if the chunk size isn't positive
+     */
+    public JooqRecipientRepository(TransactionAwareJooqWrapper wrapper,
+                                   @Value("${recipients.ready-to-notify.chunk-size}") int chunkSize) {
+        Validate.isTrue(chunkSize > 0);
+        this.wrapper = wrapper;
+        this.chunkSize = chunkSize;
+    }
 
     @Override
     @Transactional(readOnly = true)
@@ -82,31 +103,45 @@ public class JooqRecipientRepository implements RecipientRepository {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public Flux<Recipient> readyToNotify(@NonNull NotificationType type, @NonNull LocalDate date) {
         Validate.notNull(type);
         Validate.notNull(date);
 
-        return readyToNotifySql(type, date)
+        // recipients are read in chunks ordered by username, and the next chunk starts after the last read recipient,
+        // so only one chunk is kept in memory and no transaction is held open between chunks
+        return readyToNotify(type, date, null)
+                .expand(chunk -> chunk.size() < chunkSize ? Mono.empty() :
+                        readyToNotify(type, date, chunk.get(chunk.size() - 1).getUsername()))
+                .concatMapIterable(chunk -> chunk);
+    }
+
+    private Mono<List<Recipient>> readyToNotify(NotificationType type, LocalDate date, @Nullable String startAfter) {
+        // a chunk is read by a single statement, so it runs in its own short transaction
+        return readyToNotifySql(type, date, startAfter)
                 .bufferUntilChanged(record -> record.get(RECIPIENTS.USERNAME))
-                .map(this::toRecipient);
+                .map(this::toRecipient)
+                .collectList();
     }
 
-    private Flux<Record> readyToNotifySql(NotificationType type, LocalDate date) {
+    private Flux<Record> readyToNotifySql(NotificationType type, LocalDate date, @Nullable String startAfter) {
+        // a chunk is found by a scan of the index on (notification_type, username, next_notify_date) of active rows
+        // that starts after the last read username and stops at the chunk size, so due dates are checked in the index
         return wrapper.withDSLContextMany(ctx ->
                 ctx.select()
                         .from(RECIPIENTS)
                         .leftJoin(RECIPIENT_NOTIFICATIONS).on(RECIPIENT_NOTIFICATIONS.USERNAME.eq(RECIPIENTS.USERNAME))
                         .where(RECIPIENTS.USERNAME.in(
-                                select(RECIPIENTS.USERNAME).from(RECIPIENTS)
-                                        .join(RECIPIENT_NOTIFICATIONS)
-                                        .on(RECIPIENT_NOTIFICATIONS.USERNAME.eq(RECIPIENTS.USERNAME))
+                                select(RECIPIENT_NOTIFICATIONS.USERNAME)
+                                        .from(RECIPIENT_NOTIFICATIONS)
                                         .where(RECIPIENT_NOTIFICATIONS.NOTIFICATION_TYPE.eq(type))
                                         .and(RECIPIENT_NOTIFICATIONS.ACTIVE.eq(true))
-                                        .and(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.isNull()
-                                                .or((RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.plus(RECIPIENT_NOTIFICATIONS.FREQUENCY)
-                                                        .lessThan(date))))
+                                        .and(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.lessThan(date))
+                                        .and(startAfter == null ? noCondition() :
+                                                RECIPIENT_NOTIFICATIONS.USERNAME.gt(startAfter))
+                                        .orderBy(RECIPIENT_NOTIFICATIONS.USERNAME)
+                                        .limit(chunkSize)
                         ))
+                        .orderBy(RECIPIENTS.USERNAME)
         );
     }
 
@@ -137,13 +172,15 @@ public class JooqRecipientRepository implements RecipientRepository {
                                         RECIPIENT_NOTIFICATIONS.NOTIFICATION_TYPE,
                                         RECIPIENT_NOTIFICATIONS.ACTIVE,
                                         RECIPIENT_NOTIFICATIONS.FREQUENCY,
-                                        RECIPIENT_NOTIFICATIONS.NOTIFY_DATE
+                                        RECIPIENT_NOTIFICATIONS.NOTIFY_DATE,
+                                        RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE
                                 ).values(
                                         recipient.getUsername(),
                                         entry.getKey(),
                                         entry.getValue().isActive(),
                                         entry.getValue().getFrequency().getKey(),
-                                        entry.getValue().getNotifyDate()
+                                        entry.getValue().getNotifyDate(),
+                                        toNextNotifyDate(entry.getValue())
                                 ).returning()
                 )).map(record ->
                         Maps.immutableEntry(
@@ -154,6 +191,12 @@ public class JooqRecipientRepository implements RecipientRepository {
                 .map(ImmutableMap::copyOf);
     }
 
+    private static LocalDate toNextNotifyDate(NotificationSettings settings) {
+        // the column is never null, so all due notifications are found by a range scan of its index
+        var date = settings.getNextNotifyDate();
+        return date == null ? NOT_NOTIFIED_NEXT_DATE : date;
+    }
+
     private Mono<Integer> deleteNotificationsSql(String username) {
         return wrapper.withDSLContext(ctx ->
                 ctx.deleteFrom(RECIPIENT_NOTIFICATIONS)
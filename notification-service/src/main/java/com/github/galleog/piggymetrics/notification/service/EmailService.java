@@ -2,21 +2,35 @@ package com.github.galleog.piggymetrics.notification.service;
 
 import com.github.galleog.piggymetrics.notification.domain.NotificationType;
 import com.github.galleog.piggymetrics.notification.domain.Recipient;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
 import lombok.NonNull;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.core.env.Environment;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.lang.Nullable;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import javax.mail.MessagingException;
-import java.text.MessageFormat;
+import javax.mail.internet.MimeMessage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Service to send email notification to recipients.
@@ -24,10 +38,32 @@ import java.text.MessageFormat;
 @Slf4j
 @Service
 @RefreshScope
-@RequiredArgsConstructor
 public class EmailService {
     private final JavaMailSender mailSender;
     private final Environment env;
+    private final Scheduler emailScheduler;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    // the service is refresh scoped, so templates are recompiled after the application properties are reloaded
+    private final Map<NotificationType, NotificationTemplate> templates = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new instance of the service.
+     *
+     * @param mailSender     the sender of email messages
+     * @param env            the environment to get notification subjects and texts from
+     * @param emailScheduler the scheduler to send email messages on
+     * @param rateLimit      the maximum number of email messages sent per second
+     */
+    public EmailService(JavaMailSender mailSender, Environment env, Scheduler emailScheduler,
+                        @Value("${email.send.rate-limit}") double rateLimit) {
+        this.mailSender = mailSender;
+        this.env = env;
+        this.emailScheduler = emailScheduler;
+        this.rateLimiter = RateLimiter.create(rateLimit);
+        // a batch never takes more permits than are issued per second, so messages aren't sent in long bursts
+        this.batchSize = Math.max(1, (int) rateLimit);
+    }
 
     /**
      * Sends an email notification to a recipient.
@@ -42,27 +78,110 @@ public class EmailService {
      */
     public void send(@NonNull NotificationType type, @NonNull Recipient recipient, @Nullable String attachment)
             throws MessagingException {
+        mailSender.send(createMessage(type, recipient, attachment));
+        logger.info("Email notification of type {} sent to {}", type, recipient.getEmail());
+    }
+
+    /**
+     * Sends email notifications of the same type to several recipients.
+     * <p/>
+     * Notifications are sent in batches of at most as many messages as the rate limit allows per second,
+     * and every batch is sent over a single mail server connection after it gets a permit for each message.
+     * Notifications that can't be sent are logged and don't prevent sending the others.
+     *
+     * @param type     the notification type
+     * @param messages the recipients to send the notification to paired with optional attachments
+     * @return the recipients the notification has been sent to
+     * @throws NullPointerException if the notification type or messages are {@code null}, or contain {@code null}
+     * @throws MailException        if no notification can be sent, e.g. if authentication fails
+     */
+    public List<Recipient> sendAll(@NonNull NotificationType type, @NonNull List<Pair<Recipient, String>> messages) {
+        Validate.notNull(type);
+        Validate.noNullElements(messages);
+
+        // failed messages are reported by the mail sender, and MimeMessage is compared by identity
+        Map<MimeMessage, Recipient> recipients = new LinkedHashMap<>();
+        for (var message : messages) {
+            var recipient = message.getLeft();
+            try {
+                recipients.put(createMessage(type, recipient, message.getRight()), recipient);
+            } catch (MessagingException | RuntimeException e) {
+                logger.error("Email notification of type " + type + " to " + recipient.getEmail() + " failed", e);
+            }
+        }
+        if (recipients.isEmpty()) {
+            return List.of();
+        }
+
+        var batches = Lists.partition(new ArrayList<>(recipients.keySet()), batchSize);
+        for (var i = 0; i < batches.size(); i++) {
+            var batch = batches.get(i);
+            rateLimiter.acquire(batch.size());
+            try {
+                mailSender.send(batch.toArray(MimeMessage[]::new));
+            } catch (MailException e) {
+                var failedMessages = e instanceof MailSendException ?
+                        ((MailSendException) e).getFailedMessages() : Map.<Object, Exception>of();
+                if (!failedMessages.isEmpty()) {
+                    failedMessages.forEach((message, ex) -> {
+                        var recipient = recipients.remove(message);
+                        logger.error("Email notification of type " + type + " to " + recipient.getEmail() + " failed",
+                                ex);
+                    });
+                    continue;
+                }
+                if (i == 0) {
+                    throw e;
+                }
+
+                // the recipients of the previous batches have been notified, so they are returned anyway
+                logger.error("Email notification of type " + type + " failed", e);
+                batches.subList(i, batches.size()).forEach(unsent -> unsent.forEach(recipients::remove));
+                break;
+            }
+        }
+
+        logger.info("Email notification of type {} sent to {} recipients", type, recipients.size());
+        return List.copyOf(recipients.values());
+    }
+
+    /**
+     * Sends email notifications of the same type to several recipients asynchronously.
+     * <p/>
+     * The notifications are sent on the dedicated email scheduler not faster than the configured rate limit,
+     * so the calling thread is never blocked by SMTP I/O.
+     *
+     * @param type     the notification type
+     * @param messages the recipients to send the notification to paired with optional attachments
+     * @return the recipients the notification has been sent to
+     * @see #sendAll(NotificationType, List)
+     */
+    public Flux<Recipient> sendAllAsync(@NonNull NotificationType type,
+                                        @NonNull List<Pair<Recipient, String>> messages) {
+        return Mono.fromCallable(() -> sendAll(type, messages))
+                .subscribeOn(emailScheduler)
+                .flatMapIterable(Function.identity());
+    }
+
+    private MimeMessage createMessage(NotificationType type, Recipient recipient, @Nullable String attachment)
+            throws MessagingException {
         Validate.notNull(type);
         Validate.notNull(recipient);
 
-        var filename = type.getAttachment() != null ? env.getProperty(type.getAttachment()) : null;
+        var template = templates.computeIfAbsent(type, t -> NotificationTemplate.compile(t, env));
+        var filename = template.getAttachmentFilename();
         Validate.validState(StringUtils.isNotBlank(filename) || StringUtils.isAllBlank(filename, attachment),
                 "If an attachment is specified then its filename must not be blank");
 
-        var subject = env.getRequiredProperty(type.getSubject());
-        var text = MessageFormat.format(env.getRequiredProperty(type.getText()), recipient.getUsername());
-
         var message = mailSender.createMimeMessage();
         var helper = new MimeMessageHelper(message, true);
         helper.setTo(recipient.getEmail());
-        helper.setSubject(subject);
-        helper.setText(text);
+        helper.setSubject(template.getSubject());
+        helper.setText(template.renderText(recipient.getUsername()));
 
         if (StringUtils.isNotBlank(attachment)) {
             helper.addAttachment(filename, new ByteArrayResource(attachment.getBytes()));
         }
-
-        mailSender.send(message);
-        logger.info("Email notification of type {} sent to {}", type, recipient.getEmail());
+        return message;
     }
 }
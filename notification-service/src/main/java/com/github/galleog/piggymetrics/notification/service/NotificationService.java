@@ -3,37 +3,58 @@ package com.github.galleog.piggymetrics.notification.service;
 import com.github.galleog.piggymetrics.account.grpc.AccountServiceProto;
 import com.github.galleog.piggymetrics.account.grpc.ReactorAccountServiceGrpc;
 import com.github.galleog.piggymetrics.notification.domain.NotificationType;
+import com.github.galleog.piggymetrics.notification.domain.Recipient;
 import com.github.galleog.piggymetrics.notification.repository.RecipientRepository;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.protobuf.util.JsonFormat;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Service to sent email notifications scheduled using cron-like expressions.
  */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class NotificationService {
     @VisibleForTesting
     static final String ACCOUNT_SERVICE = "account-service";
 
     private final RecipientRepository recipientRepository;
     private final EmailService emailService;
+    private final int sendConcurrency;
+    private final int sendBatchSize;
 
     @VisibleForTesting
     @GrpcClient(ACCOUNT_SERVICE)
     ReactorAccountServiceGrpc.ReactorAccountServiceStub accountServiceStub;
 
+    /**
+     * Constructs a new instance of the service.
+     *
+     * @param recipientRepository the repository of recipients
+     * @param emailService        the service to send email notifications
+     * @param sendConcurrency     the maximum number of batches of notifications sent concurrently
+     * @param sendBatchSize       the maximum number of notifications sent over one mail server connection at once
+     */
+    public NotificationService(RecipientRepository recipientRepository, EmailService emailService,
+                               @Value("${email.send.concurrency}") int sendConcurrency,
+                               @Value("${email.send.batch-size}") int sendBatchSize) {
+        this.recipientRepository = recipientRepository;
+        this.emailService = emailService;
+        this.sendConcurrency = sendConcurrency;
+        this.sendBatchSize = sendBatchSize;
+    }
+
     /**
      * Sends backup notifications to recipients that should be notified according to their notification settings.
      * <p/>
@@ -48,18 +69,16 @@ public class NotificationService {
                                         AccountServiceProto.GetAccountRequest.newBuilder()
                                                 .setName(recipient.getUsername())
                                                 .build()
-                                ).doOnNext(account -> {
-                                    try {
-                                        emailService.send(NotificationType.BACKUP, recipient,
-                                                JsonFormat.printer().print(account));
-                                    } catch (Exception e) {
-                                        throw Exceptions.propagate(e);
-                                    }
-                                }).doOnError(e ->
+                                ).flatMap(account -> Mono.fromCallable(() ->
+                                        Pair.of(recipient, JsonFormat.printer().print(account))))
+                                .doOnError(e ->
                                         logger.error("Backup notification for user '" + recipient.getUsername() + "' failed", e))
-                                .onErrorResume(e -> Mono.empty())
-                                .flatMap(account -> recipientRepository.update(recipient.markNotified(NotificationType.BACKUP)))
-                ).count()
+                                .onErrorResume(e -> Mono.empty()),
+                        sendConcurrency
+                ).buffer(sendBatchSize)
+                .flatMap(batch -> sendAll(NotificationType.BACKUP, batch), sendConcurrency)
+                .flatMap(recipient -> recipientRepository.update(recipient.markNotified(NotificationType.BACKUP)))
+                .count()
                 .subscribe(count -> logger.info("Backup notification sent to {} recipients", count));
     }
 
@@ -70,19 +89,18 @@ public class NotificationService {
     @SchedulerLock(name = "remindNotifications")
     public void sendRemindNotifications() {
         recipientRepository.readyToNotify(NotificationType.REMIND, LocalDate.now())
-                .flatMap(recipient ->
-                        Mono.just(recipient)
-                                .doOnNext(r -> {
-                                    try {
-                                        emailService.send(NotificationType.REMIND, r, null);
-                                    } catch (Exception e) {
-                                        throw Exceptions.propagate(e);
-                                    }
-                                }).doOnError(e ->
-                                        logger.error("Reminder notification for user '" + recipient.getUsername() + "' failed", e))
-                                .onErrorResume(e -> Mono.empty())
-                ).flatMap(recipient -> recipientRepository.update(recipient.markNotified(NotificationType.REMIND)))
+                .map(recipient -> Pair.of(recipient, (String) null))
+                .buffer(sendBatchSize)
+                .flatMap(batch -> sendAll(NotificationType.REMIND, batch), sendConcurrency)
+                .flatMap(recipient -> recipientRepository.update(recipient.markNotified(NotificationType.REMIND)))
                 .count()
                 .subscribe(count -> logger.info("Reminder notification sent to {} recipients", count));
     }
+
+    private Flux<Recipient> sendAll(NotificationType type, List<Pair<Recipient, String>> batch) {
+        return emailService.sendAllAsync(type, batch)
+                .doOnError(e -> logger.error("Notification of type " + type + " to " + batch.size()
+                        + " recipients failed", e))
+                .onErrorResume(e -> Flux.empty());
+    }
 }
@@ -0,0 +1,84 @@
+package com.github.galleog.piggymetrics.notification.service;
+
+import com.github.galleog.piggymetrics.notification.domain.NotificationType;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.commons.lang3.Validate;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+
+import java.text.MessageFormat;
+
+/**
+ * Template of email notifications of a type compiled from the application properties.
+ * <p/>
+ * The {@link MessageFormat} pattern of the text is parsed once and split into literal segments around
+ * the recipient's username, so rendering a text only appends strings to a presized buffer.
+ */
+final class NotificationTemplate {
+    private static final String USERNAME_MARKER = "\uFFFF";
+
+    @Getter
+    private final String subject;
+    @Getter
+    @Nullable
+    private final String attachmentFilename;
+    private final String[] segments;
+    private final int segmentsLength;
+
+    /**
+     * Constructs a new template.
+     *
+     * @param subject            the subject of notifications
+     * @param pattern            the {@link MessageFormat} pattern of the text with the username as argument {@code 0}
+     * @param attachmentFilename the optional filename of attachments
+     * @throws NullPointerException     if the subject or the pattern is {@code null}
+     * @throws IllegalArgumentException if the pattern is invalid
+     * @throws IllegalStateException    if the pattern formats the username as anything but a string
+     */
+    NotificationTemplate(@NonNull String subject, @NonNull String pattern, @Nullable String attachmentFilename) {
+        var format = new MessageFormat(pattern);
+        var formats = format.getFormatsByArgumentIndex();
+        Validate.validState(formats.length == 0 || formats[0] == null, "Username must be formatted as a string");
+        Validate.validState(!pattern.contains(USERNAME_MARKER), "Pattern must not contain '\\uFFFF'");
+
+        this.subject = subject;
+        this.attachmentFilename = attachmentFilename;
+        // quotes are unescaped and other arguments are resolved here, so only the username is left to insert
+        this.segments = format.format(new Object[]{USERNAME_MARKER}).split(USERNAME_MARKER, -1);
+        var length = 0;
+        for (var segment : segments) {
+            length += segment.length();
+        }
+        this.segmentsLength = length;
+    }
+
+    /**
+     * Compiles the template of notifications of a type.
+     *
+     * @param type the notification type
+     * @param env  the environment to get the subject, text, and attachment filename from
+     * @return the compiled template
+     * @throws IllegalStateException if the subject or text isn't set, or the text is invalid
+     */
+    static NotificationTemplate compile(@NonNull NotificationType type, @NonNull Environment env) {
+        var filename = type.getAttachment() != null ? env.getProperty(type.getAttachment()) : null;
+        return new NotificationTemplate(env.getRequiredProperty(type.getSubject()),
+                env.getRequiredProperty(type.getText()), filename);
+    }
+
+    /**
+     * Renders the text of a notification.
+     *
+     * @param username the username of the recipient
+     * @return the rendered text
+     */
+    String renderText(@NonNull String username) {
+        var text = new StringBuilder(segmentsLength + username.length() * (segments.length - 1));
+        text.append(segments[0]);
+        for (int i = 1; i < segments.length; i++) {
+            text.append(username).append(segments[i]);
+        }
+        return text.toString();
+    }
+}
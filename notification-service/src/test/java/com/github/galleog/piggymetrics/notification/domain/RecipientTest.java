@@ -10,6 +10,7 @@ import static org.assertj.core.api.Assertions.tuple;
 
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDate;
 import java.util.Map;
 
 /**
@@ -47,10 +48,11 @@ class RecipientTest {
                 Map.Entry::getKey,
                 entry -> entry.getValue().isActive(),
                 entry -> entry.getValue().getFrequency(),
-                entry -> entry.getValue().isNotified()
+                entry -> entry.getValue().isNotified(),
+                entry -> entry.getValue().getNextNotifyDate()
         ).containsExactlyInAnyOrder(
-                tuple(BACKUP, false, MONTHLY, false),
-                tuple(REMIND, true, WEEKLY, true)
+                tuple(BACKUP, false, MONTHLY, false, null),
+                tuple(REMIND, true, WEEKLY, true, LocalDate.now().plusDays(WEEKLY.getKey()))
         );
     }
 
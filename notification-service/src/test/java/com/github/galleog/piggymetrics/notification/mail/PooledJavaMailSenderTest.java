@@ -0,0 +1,93 @@
+package com.github.galleog.piggymetrics.notification.mail;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mail.MailSendException;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.time.Duration;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests for {@link PooledJavaMailSender}.
+ */
+@ExtendWith(MockitoExtension.class)
+class PooledJavaMailSenderTest {
+    private static final Duration MAX_IDLE_TIME = Duration.ofMinutes(1);
+
+    private final AtomicInteger connections = new AtomicInteger();
+    @Mock
+    private Transport transport;
+    private PooledJavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() {
+        mailSender = new PooledJavaMailSender(1, MAX_IDLE_TIME) {
+            @Override
+            protected Transport connectTransport() {
+                connections.incrementAndGet();
+                return transport;
+            }
+        };
+    }
+
+    /**
+     * Test for {@link PooledJavaMailSender#send(MimeMessage...)} when a connection is reused.
+     */
+    @Test
+    void shouldReuseConnectionForSubsequentMessages() throws Exception {
+        when(transport.isConnected()).thenReturn(true);
+
+        mailSender.send(message("test1@example.com"), message("test2@example.com"));
+        mailSender.send(message("test3@example.com"));
+
+        assertThat(connections).hasValue(1);
+        verify(transport, times(3)).sendMessage(any(Message.class), any(Address[].class));
+
+        mailSender.destroy();
+        verify(transport).close();
+    }
+
+    /**
+     * Test for {@link PooledJavaMailSender#send(MimeMessage...)} when a connection has been lost.
+     */
+    @Test
+    void shouldReconnectIfConnectionLost() throws Exception {
+        var failed = message("test1@example.com");
+        doThrow(MessagingException.class).when(transport).sendMessage(failed, failed.getAllRecipients());
+        when(transport.isConnected()).thenReturn(false);
+
+        var sent = message("test2@example.com");
+        assertThatExceptionOfType(MailSendException.class)
+                .isThrownBy(() -> mailSender.send(failed, sent))
+                .satisfies(e -> assertThat(e.getFailedMessages()).containsOnlyKeys(failed));
+
+        assertThat(connections).hasValue(2);
+        verify(transport).sendMessage(sent, sent.getAllRecipients());
+    }
+
+    private static MimeMessage message(String to) throws MessagingException {
+        var message = new MimeMessage(Session.getDefaultInstance(new Properties()));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(to));
+        message.setText(to);
+        return message;
+    }
+}
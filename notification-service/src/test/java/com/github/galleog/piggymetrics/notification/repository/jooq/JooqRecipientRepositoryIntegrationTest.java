@@ -68,6 +68,8 @@ class JooqRecipientRepositoryIntegrationTest {
     private static final LocalDate DAY_AGO = LocalDate.now().minusDays(1);
     private static final LocalDate QUARTER_AGO = LocalDate.now().minusDays(Frequency.QUARTERLY.getKey() + 1);
     private static final LocalDate WEEKLY_AGO = LocalDate.now().minusDays(Frequency.WEEKLY.getKey() + 1);
+    private static final LocalDate NOT_NOTIFIED_NEXT_DATE = LocalDate.EPOCH;
+    private static final int CHUNK_SIZE = 1;
 
     private static final DbSetupTracker DB_SETUP_TRACKER = new DbSetupTracker();
 
@@ -99,7 +101,7 @@ class JooqRecipientRepositoryIntegrationTest {
 
     @BeforeEach
     void setUp() {
-        repository = new JooqRecipientRepository(wrapper);
+        repository = new JooqRecipientRepository(wrapper, CHUNK_SIZE);
 
         destination = DataSourceDestination.with(dataSource);
     }
@@ -149,6 +151,8 @@ class JooqRecipientRepositoryIntegrationTest {
                             .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName(), true)
                             .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName(), Frequency.QUARTERLY.getKey())
                             .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName(), QUARTER_AGO)
+                            .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName(),
+                                    QUARTER_AGO.plusDays(Frequency.QUARTERLY.getKey()))
                             .end()
                             .row()
                             .column(RECIPIENT_NOTIFICATIONS.USERNAME.getName(), USERNAME_2)
@@ -156,6 +160,8 @@ class JooqRecipientRepositoryIntegrationTest {
                             .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName(), true)
                             .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName(), Frequency.MONTHLY.getKey())
                             .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName(), WEEKLY_AGO)
+                            .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName(),
+                                    WEEKLY_AGO.plusDays(Frequency.MONTHLY.getKey()))
                             .end()
                             .row()
                             .column(RECIPIENT_NOTIFICATIONS.USERNAME.getName(), USERNAME_1)
@@ -163,6 +169,8 @@ class JooqRecipientRepositoryIntegrationTest {
                             .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName(), false)
                             .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName(), Frequency.WEEKLY.getKey())
                             .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName(), WEEKLY_AGO)
+                            .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName(),
+                                    WEEKLY_AGO.plusDays(Frequency.WEEKLY.getKey()))
                             .end()
                             .row()
                             .column(RECIPIENT_NOTIFICATIONS.USERNAME.getName(), USERNAME_2)
@@ -170,6 +178,7 @@ class JooqRecipientRepositoryIntegrationTest {
                             .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName(), true)
                             .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName(), Frequency.WEEKLY.getKey())
                             .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName(), null)
+                            .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName(), NOT_NOTIFIED_NEXT_DATE)
                             .end()
                             .build()
             );
@@ -282,6 +291,21 @@ class JooqRecipientRepositoryIntegrationTest {
                     }).verifyComplete();
         }
 
+        /**
+         * Test for {@link JooqRecipientRepository#readyToNotify(NotificationType, LocalDate)}
+         * when the recipients are read in several chunks.
+         */
+        @Test
+        void shouldFindRecipientsReadyToBackupInChunks() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.readyToNotify(BACKUP, LocalDate.now().plusYears(1))
+                    .map(Recipient::getUsername)
+                    .as(StepVerifier::create)
+                    .expectNext(USERNAME_1, USERNAME_2)
+                    .verifyComplete();
+        }
+
         /**
          * Test for {@link JooqRecipientRepository#readyToNotify(NotificationType, LocalDate)}
          * for {@link NotificationType#BACKUP} when all recipients have been notified recently.
@@ -347,7 +371,10 @@ class JooqRecipientRepositoryIntegrationTest {
                                 .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName())
                                 .containsValues(Frequency.MONTHLY.getKey(), Frequency.WEEKLY.getKey())
                                 .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName())
-                                .containsValues(toDateValue(WEEKLY_AGO), toDateValue(DAY_AGO));
+                                .containsValues(toDateValue(WEEKLY_AGO), toDateValue(DAY_AGO))
+                                .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName())
+                                .containsValues(toDateValue(WEEKLY_AGO.plusDays(Frequency.MONTHLY.getKey())),
+                                        toDateValue(DAY_AGO.plusDays(Frequency.WEEKLY.getKey())));
 
                         assertThat(r.getUsername()).isEqualTo(USERNAME_1);
                         assertThat(r.getEmail()).isEqualTo(EMAIL_1);
@@ -387,6 +414,8 @@ class JooqRecipientRepositoryIntegrationTest {
                             .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName(), true)
                             .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName(), Frequency.QUARTERLY.getKey())
                             .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName(), QUARTER_AGO)
+                            .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName(),
+                                    QUARTER_AGO.plusDays(Frequency.QUARTERLY.getKey()))
                             .end()
                             .row()
                             .column(RECIPIENT_NOTIFICATIONS.USERNAME.getName(), USERNAME_1)
@@ -394,6 +423,8 @@ class JooqRecipientRepositoryIntegrationTest {
                             .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName(), false)
                             .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName(), Frequency.WEEKLY.getKey())
                             .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName(), WEEKLY_AGO)
+                            .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName(),
+                                    WEEKLY_AGO.plusDays(Frequency.WEEKLY.getKey()))
                             .end()
                             .build()
             );
@@ -440,7 +471,10 @@ class JooqRecipientRepositoryIntegrationTest {
                                 .containsValues(BACKUP.name(), REMIND.name())
                                 .column(RECIPIENT_NOTIFICATIONS.ACTIVE.getName()).containsValues(false, true)
                                 .column(RECIPIENT_NOTIFICATIONS.FREQUENCY.getName()).containsValues(Frequency.MONTHLY.getKey(), Frequency.WEEKLY.getKey())
-                                .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName()).containsValues(toDateValue(WEEKLY_AGO), toDateValue(DAY_AGO));
+                                .column(RECIPIENT_NOTIFICATIONS.NOTIFY_DATE.getName()).containsValues(toDateValue(WEEKLY_AGO), toDateValue(DAY_AGO))
+                                .column(RECIPIENT_NOTIFICATIONS.NEXT_NOTIFY_DATE.getName())
+                                .containsValues(toDateValue(WEEKLY_AGO.plusDays(Frequency.MONTHLY.getKey())),
+                                        toDateValue(DAY_AGO.plusDays(Frequency.WEEKLY.getKey())));
 
                         assertThat(r.getUsername()).isEqualTo(USERNAME_1);
                         assertThat(r.getEmail()).isEqualTo(EMAIL_2);
@@ -2,6 +2,9 @@ package com.github.galleog.piggymetrics.notification.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -9,6 +12,7 @@ import com.github.galleog.piggymetrics.notification.domain.NotificationType;
 import com.github.galleog.piggymetrics.notification.domain.Recipient;
 import lombok.Cleanup;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,13 +22,19 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.simplejavamail.converter.internal.mimemessage.MimeMessageParser;
 import org.springframework.core.env.Environment;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mock.env.MockEnvironment;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
 
 import javax.mail.Address;
+import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.internet.MimeMessage;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -39,6 +49,9 @@ class EmailServiceTest {
     private static final String TEXT = "text";
     private static final String ATTACHMENT_FILENAME = "attachment.json";
     private static final String ATTACHMENT = "{\"name\":\"test\"}";
+    private static final String OTHER_USERNAME = "other";
+    private static final String OTHER_EMAIL = "other@example.com";
+    private static final double RATE_LIMIT = 100;
 
     @Mock
     private JavaMailSender mailSender;
@@ -63,7 +76,7 @@ class EmailServiceTest {
         when(mailSender.createMimeMessage())
                 .thenReturn(new MimeMessage(Session.getDefaultInstance(new Properties())));
 
-        var emailService = new EmailService(mailSender, mockEnvironment());
+        var emailService = newEmailService(mockEnvironment());
         emailService.send(NotificationType.BACKUP, recipient, ATTACHMENT);
         verify(mailSender).send(messageCaptor.capture());
 
@@ -89,7 +102,7 @@ class EmailServiceTest {
         when(mailSender.createMimeMessage())
                 .thenReturn(new MimeMessage(Session.getDefaultInstance(new Properties())));
 
-        var emailService = new EmailService(mailSender, mockEnvironment());
+        var emailService = newEmailService(mockEnvironment());
         emailService.send(NotificationType.BACKUP, recipient, null);
         verify(mailSender).send(messageCaptor.capture());
         assertThat(MimeMessageParser.parseMimeMessage(messageCaptor.getValue()).getAttachmentList()).isEmpty();
@@ -101,7 +114,7 @@ class EmailServiceTest {
      */
     @Test
     void shouldFailToSendEmailIfAttachmentFilenameEmptyButAttachmentPassed() {
-        var emailService = new EmailService(mailSender, mockEnvironment());
+        var emailService = newEmailService(mockEnvironment());
         assertThatExceptionOfType(IllegalStateException.class)
                 .isThrownBy(() -> emailService.send(NotificationType.REMIND, recipient, ATTACHMENT));
     }
@@ -115,11 +128,119 @@ class EmailServiceTest {
         var env = new MockEnvironment()
                 .withProperty(NotificationType.BACKUP.getSubject(), SUBJECT)
                 .withProperty(NotificationType.BACKUP.getText(), TEXT);
-        var emailService = new EmailService(mailSender, env);
+        var emailService = newEmailService(env);
         assertThatExceptionOfType(IllegalStateException.class)
                 .isThrownBy(() -> emailService.send(NotificationType.BACKUP, recipient, ATTACHMENT));
     }
 
+    /**
+     * Test for {@link EmailService#sendAllAsync(NotificationType, List)}.
+     */
+    @Test
+    void shouldSendAllEmailsAsynchronously() throws Exception {
+        when(mailSender.createMimeMessage())
+                .thenAnswer(invocation -> new MimeMessage(Session.getDefaultInstance(new Properties())));
+        var other = Recipient.builder()
+                .username(OTHER_USERNAME)
+                .email(OTHER_EMAIL)
+                .build();
+
+        var emailService = new EmailService(mailSender, mockEnvironment(), Schedulers.single(), RATE_LIMIT);
+        emailService.sendAllAsync(NotificationType.REMIND, List.of(Pair.of(recipient, null), Pair.of(other, null)))
+                .as(StepVerifier::create)
+                .expectNext(recipient, other)
+                .verifyComplete();
+
+        verify(mailSender).send(messageCaptor.capture(), messageCaptor.capture());
+        assertThat(messageCaptor.getAllValues())
+                .extracting(message -> message.getAllRecipients()[0].toString())
+                .containsExactly(EMAIL, OTHER_EMAIL);
+    }
+
+    /**
+     * Test for {@link EmailService#sendAll(NotificationType, List)} when some emails can't be sent.
+     */
+    @Test
+    void shouldSendAllEmailsEvenWhenErrorsOccurForSomeRecipients() {
+        when(mailSender.createMimeMessage())
+                .thenAnswer(invocation -> new MimeMessage(Session.getDefaultInstance(new Properties())));
+        doAnswer(invocation -> {
+            throw new MailSendException(Map.of(invocation.getArgument(0), new MessagingException()));
+        }).when(mailSender).send(any(MimeMessage.class), any(MimeMessage.class));
+        var rejected = Recipient.builder()
+                .username(OTHER_USERNAME)
+                .email(OTHER_EMAIL)
+                .build();
+        var invalid = Recipient.builder()
+                .username("invalid")
+                .email("invalid@example.com")
+                .build();
+
+        var sent = newEmailService(mockEnvironment()).sendAll(NotificationType.REMIND, List.of(
+                Pair.of(rejected, null), Pair.of(invalid, ATTACHMENT), Pair.of(recipient, null)
+        ));
+        assertThat(sent).containsExactly(recipient);
+    }
+
+    /**
+     * Test for {@link EmailService#sendAll(NotificationType, List)} when there are more emails
+     * than the rate limit allows per second.
+     */
+    @Test
+    void shouldSendEmailsInBatchesBoundedByRateLimit() {
+        when(mailSender.createMimeMessage())
+                .thenAnswer(invocation -> new MimeMessage(Session.getDefaultInstance(new Properties())));
+        var others = stubOtherRecipients();
+
+        var emailService = new EmailService(mailSender, mockEnvironment(), Schedulers.immediate(), 2);
+        var sent = emailService.sendAll(NotificationType.REMIND, List.of(
+                Pair.of(recipient, null), Pair.of(others.get(0), null), Pair.of(others.get(1), null)
+        ));
+        assertThat(sent).containsExactly(recipient, others.get(0), others.get(1));
+
+        verify(mailSender).send(messageCaptor.capture(), messageCaptor.capture());
+        verify(mailSender).send(messageCaptor.capture());
+        assertThat(messageCaptor.getAllValues())
+                .extracting(message -> message.getAllRecipients()[0].toString())
+                .containsExactly(EMAIL, OTHER_EMAIL, others.get(1).getEmail());
+    }
+
+    /**
+     * Test for {@link EmailService#sendAll(NotificationType, List)} when a batch can't be sent
+     * after the previous ones have been sent.
+     */
+    @Test
+    void shouldReturnRecipientsOfSentBatchesIfNextBatchFails() {
+        when(mailSender.createMimeMessage())
+                .thenAnswer(invocation -> new MimeMessage(Session.getDefaultInstance(new Properties())));
+        doThrow(new MailAuthenticationException("Authentication failed"))
+                .when(mailSender).send(any(MimeMessage.class));
+        var others = stubOtherRecipients();
+
+        var emailService = new EmailService(mailSender, mockEnvironment(), Schedulers.immediate(), 2);
+        var sent = emailService.sendAll(NotificationType.REMIND, List.of(
+                Pair.of(recipient, null), Pair.of(others.get(0), null), Pair.of(others.get(1), null)
+        ));
+        assertThat(sent).containsExactly(recipient, others.get(0));
+    }
+
+    private List<Recipient> stubOtherRecipients() {
+        return List.of(
+                Recipient.builder()
+                        .username(OTHER_USERNAME)
+                        .email(OTHER_EMAIL)
+                        .build(),
+                Recipient.builder()
+                        .username("another")
+                        .email("another@example.com")
+                        .build()
+        );
+    }
+
+    private EmailService newEmailService(Environment env) {
+        return new EmailService(mailSender, env, Schedulers.immediate(), RATE_LIMIT);
+    }
+
     private Environment mockEnvironment() {
         return new MockEnvironment()
                 .withProperty(NotificationType.BACKUP.getSubject(), SUBJECT)
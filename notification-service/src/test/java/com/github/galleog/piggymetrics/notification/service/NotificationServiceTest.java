@@ -2,10 +2,9 @@ package com.github.galleog.piggymetrics.notification.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -17,6 +16,7 @@ import com.github.galleog.piggymetrics.notification.domain.NotificationSettings;
 import com.github.galleog.piggymetrics.notification.domain.NotificationType;
 import com.github.galleog.piggymetrics.notification.domain.Recipient;
 import com.github.galleog.piggymetrics.notification.repository.RecipientRepository;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,6 +28,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.util.List;
 
 /**
  * Tests for {@link NotificationService}.
@@ -36,6 +37,8 @@ import java.time.LocalDate;
 class NotificationServiceTest {
     private static final String SUCCESSFUL = "successful";
     private static final String FAILED = "failed";
+    private static final int SEND_CONCURRENCY = 2;
+    private static final int SEND_BATCH_SIZE = 1;
     private final LocalDate date = LocalDate.now().minusDays(3);
     @Mock
     private RecipientRepository recipientRepository;
@@ -51,7 +54,8 @@ class NotificationServiceTest {
 
     @BeforeEach
     void setUp() {
-        notificationService = new NotificationService(recipientRepository, emailService);
+        notificationService =
+                new NotificationService(recipientRepository, emailService, SEND_CONCURRENCY, SEND_BATCH_SIZE);
         notificationService.accountServiceStub = accountServiceStub;
 
         var backup = NotificationSettings.builder()
@@ -85,14 +89,19 @@ class NotificationServiceTest {
      * Test for {@link NotificationService#sendBackupNotifications()}.
      */
     @Test
-    void shouldSendBackupNotificationsEvenWhenErrorsOccurForSomeRecipients() throws Exception {
+    void shouldSendBackupNotificationsEvenWhenErrorsOccurForSomeRecipients() {
         when(accountServiceStub.getAccount(getAccountRequestCaptor.capture()))
                 .thenReturn(Mono.just(AccountServiceProto.Account.getDefaultInstance()));
-        doThrow(RuntimeException.class).when(emailService).send(eq(NotificationType.BACKUP), eq(failed), anyString());
+        when(emailService.sendAllAsync(eq(NotificationType.BACKUP), anyList()))
+                .thenAnswer(invocation -> failForFailedRecipient(invocation.getArgument(1)));
 
         notificationService.sendBackupNotifications();
 
-        verify(emailService).send(eq(NotificationType.BACKUP), eq(successful), anyString());
+        verify(emailService).sendAllAsync(eq(NotificationType.BACKUP), argThat(batch -> {
+            assertThat(batch).hasSize(1);
+            assertThat(batch.get(0).getRight()).isNotBlank();
+            return batch.get(0).getLeft() == successful;
+        }));
         verify(recipientRepository).update(argThat(arg -> {
             assertThat(arg.getUsername()).isEqualTo(SUCCESSFUL);
             assertThat(arg.getNotifications().get(NotificationType.BACKUP).getNotifyDate()).isAfter(date);
@@ -110,12 +119,12 @@ class NotificationServiceTest {
      * Test for {@link NotificationService#sendRemindNotifications()}.
      */
     @Test
-    void shouldSendRemindNotificationsEvenWhenErrorsOccurForSomeRecipients() throws Exception {
-        doThrow(RuntimeException.class).when(emailService).send(NotificationType.REMIND, failed, null);
+    void shouldSendRemindNotificationsEvenWhenErrorsOccurForSomeRecipients() {
+        when(emailService.sendAllAsync(eq(NotificationType.REMIND), anyList()))
+                .thenAnswer(invocation -> failForFailedRecipient(invocation.getArgument(1)));
 
         notificationService.sendRemindNotifications();
 
-        verify(emailService).send(NotificationType.REMIND, successful, null);
         verify(recipientRepository).update(argThat(arg -> {
             assertThat(arg.getUsername()).isEqualTo(SUCCESSFUL);
             assertThat(arg.getNotifications().get(NotificationType.BACKUP).getNotifyDate()).isEqualTo(date);
@@ -124,4 +133,31 @@ class NotificationServiceTest {
         }));
         verify(recipientRepository, never()).update(failed);
     }
-}
\ No newline at end of file
+
+    /**
+     * Test for {@link NotificationService#sendRemindNotifications()} when notifications are sent in batches.
+     */
+    @Test
+    void shouldSendRemindNotificationsInBatches() {
+        notificationService = new NotificationService(recipientRepository, emailService, SEND_CONCURRENCY, 2);
+        when(emailService.sendAllAsync(eq(NotificationType.REMIND), anyList()))
+                .thenReturn(Flux.just(successful));
+
+        notificationService.sendRemindNotifications();
+
+        verify(emailService).sendAllAsync(eq(NotificationType.REMIND), argThat(batch -> {
+            assertThat(batch).extracting(Pair::getLeft).containsExactly(failed, successful);
+            assertThat(batch).extracting(Pair::getRight).containsOnlyNulls();
+            return true;
+        }));
+        verify(recipientRepository).update(argThat(arg -> arg.getUsername().equals(SUCCESSFUL)));
+        verify(recipientRepository, never()).update(failed);
+    }
+
+    private Flux<Recipient> failForFailedRecipient(List<Pair<Recipient, String>> batch) {
+        if (batch.stream().anyMatch(message -> message.getLeft() == failed)) {
+            return Flux.error(new RuntimeException());
+        }
+        return Flux.fromIterable(batch).map(Pair::getLeft);
+    }
+}
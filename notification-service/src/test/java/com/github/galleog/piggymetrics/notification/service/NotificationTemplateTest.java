@@ -0,0 +1,59 @@
+package com.github.galleog.piggymetrics.notification.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.github.galleog.piggymetrics.notification.domain.NotificationType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+/**
+ * Tests for {@link NotificationTemplate}.
+ */
+class NotificationTemplateTest {
+    private static final String SUBJECT = "subject";
+    private static final String USERNAME = "test";
+
+    /**
+     * Test for {@link NotificationTemplate#renderText(String)}.
+     */
+    @Test
+    void shouldRenderTextWithUsername() {
+        var template = new NotificationTemplate(SUBJECT, "Hey, {0}! We''ve missed you, {0}.", null);
+        assertThat(template.renderText(USERNAME)).isEqualTo("Hey, test! We've missed you, test.");
+    }
+
+    /**
+     * Test for {@link NotificationTemplate#renderText(String)} when the text doesn't contain the username.
+     */
+    @Test
+    void shouldRenderTextWithoutUsername() {
+        var template = new NotificationTemplate(SUBJECT, "It''s time to check your budget", null);
+        assertThat(template.renderText(USERNAME)).isEqualTo("It's time to check your budget");
+    }
+
+    /**
+     * Test for {@link NotificationTemplate#compile(NotificationType, org.springframework.core.env.Environment)}.
+     */
+    @Test
+    void shouldCompileTemplateFromEnvironment() {
+        var env = new MockEnvironment()
+                .withProperty(NotificationType.BACKUP.getSubject(), SUBJECT)
+                .withProperty(NotificationType.BACKUP.getText(), "Howdy, {0}")
+                .withProperty(NotificationType.BACKUP.getAttachment(), "backup.json");
+
+        var template = NotificationTemplate.compile(NotificationType.BACKUP, env);
+        assertThat(template.getSubject()).isEqualTo(SUBJECT);
+        assertThat(template.getAttachmentFilename()).isEqualTo("backup.json");
+        assertThat(template.renderText(USERNAME)).isEqualTo("Howdy, test");
+    }
+
+    /**
+     * Test for {@link NotificationTemplate} when the username is formatted as a number.
+     */
+    @Test
+    void shouldFailToCompileTemplateIfUsernameFormattedAsNumber() {
+        assertThatExceptionOfType(IllegalStateException.class)
+                .isThrownBy(() -> new NotificationTemplate(SUBJECT, "Hey, {0,number}", null));
+    }
+}
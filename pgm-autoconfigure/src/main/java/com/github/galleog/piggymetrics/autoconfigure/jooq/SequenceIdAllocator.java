@@ -0,0 +1,140 @@
+package com.github.galleog.piggymetrics.autoconfigure.jooq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.jooq.Sequence;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Allocator of identifiers that reserves blocks of them from a database sequence using the pooled-lo algorithm.
+ * A value of the sequence is the first identifier of a block, so the sequence increment must be equal
+ * to the block size. Identifiers of the current block are handed out without locking, and the next
+ * block is reserved in the background when the current one is half used.
+ */
+@Slf4j
+public class SequenceIdAllocator {
+    private static final Duration INFINITE = Duration.ofMillis(Long.MAX_VALUE);
+
+    private final TransactionAwareJooqWrapper wrapper;
+    private final Sequence<Long> sequence;
+    private final int blockSize;
+    private final AtomicReference<Block> current = new AtomicReference<>(new Block(0, 0));
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param wrapper   the wrapper to execute queries
+     * @param sequence  the sequence to reserve identifiers from
+     * @param blockSize the number of identifiers reserved at once, must be equal to the sequence increment
+     * @throws NullPointerException     if the wrapper or the sequence is {@code null}
+     * @throws IllegalArgumentException if the block size isn't positive
+     */
+    public SequenceIdAllocator(@NonNull TransactionAwareJooqWrapper wrapper, @NonNull Sequence<Long> sequence,
+                               int blockSize) {
+        Validate.notNull(wrapper);
+        Validate.notNull(sequence);
+        Validate.isTrue(blockSize > 0);
+
+        this.wrapper = wrapper;
+        this.sequence = sequence;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Gets the next identifier.
+     *
+     * @return the allocated identifier
+     */
+    public Mono<Long> nextId() {
+        return nextIds(1).map(ids -> ids.get(0));
+    }
+
+    /**
+     * Gets the specified number of identifiers.
+     *
+     * @param count the number of identifiers to allocate
+     * @return the allocated identifiers
+     * @throws IllegalArgumentException if the number of identifiers is negative
+     */
+    public Mono<List<Long>> nextIds(int count) {
+        Validate.isTrue(count >= 0);
+        if (count == 0) {
+            return Mono.just(Collections.emptyList());
+        }
+        return Mono.defer(() -> allocate(new ArrayList<>(count), count));
+    }
+
+    private Mono<List<Long>> allocate(List<Long> ids, int count) {
+        var block = current.get();
+        block.take(ids, count - ids.size());
+        if (block.remaining() <= blockSize / 2) {
+            block.successor();
+        }
+        if (ids.size() == count) {
+            return Mono.just(Collections.unmodifiableList(ids));
+        }
+
+        // only one of the callers that exhausted the block installs its successor
+        return block.successor()
+                .flatMap(next -> {
+                    current.compareAndSet(block, next);
+                    return allocate(ids, count);
+                });
+    }
+
+    private Mono<Block> reserveBlock() {
+        return wrapper.withDSLContext(ctx -> ctx.select(sequence.nextval()))
+                .map(record -> {
+                    var start = record.value1();
+                    return new Block(start, start + blockSize);
+                });
+    }
+
+    private final class Block {
+        private final long end;
+        private final AtomicLong cursor;
+        private final AtomicReference<Mono<Block>> successor = new AtomicReference<>();
+
+        Block(long start, long end) {
+            this.end = end;
+            this.cursor = new AtomicLong(start);
+        }
+
+        void take(List<Long> ids, int count) {
+            // the cursor may pass the end, but identifiers beyond it are never handed out
+            var from = cursor.getAndAdd(count);
+            for (var id = from; id < Math.min(from + count, end); id++) {
+                ids.add(id);
+            }
+        }
+
+        long remaining() {
+            return Math.max(end - cursor.get(), 0);
+        }
+
+        Mono<Block> successor() {
+            var next = successor.get();
+            if (next != null) {
+                return next;
+            }
+
+            // a failed reservation isn't cached, so it's retried by the next caller
+            var reserved = reserveBlock().cache(block -> INFINITE, e -> Duration.ZERO, () -> Duration.ZERO);
+            if (!successor.compareAndSet(null, reserved)) {
+                return successor.get();
+            }
+            // the block is reserved in the background outside of any transaction of the caller
+            reserved.subscribe(block -> {
+            }, e -> logger.warn("Failed to reserve identifiers from sequence " + sequence.getName(), e));
+            return reserved;
+        }
+    }
+}
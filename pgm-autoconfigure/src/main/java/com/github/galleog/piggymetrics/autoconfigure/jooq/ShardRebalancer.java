@@ -0,0 +1,215 @@
+package com.github.galleog.piggymetrics.autoconfigure.jooq;
+
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ConsistentHashRing;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record1;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.conf.Settings;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Tool that moves rows to the shards their keys belong to after shards are added or removed.
+ * <p/>
+ * Keys are moved one by one while the shards keep serving other keys. The row of a key in the first table
+ * is locked on its current shard until the key is moved, so concurrent writes of the key wait for the move.
+ * Rows are inserted into the new shard before they are deleted from the current one, and rows that already
+ * exist on the new shard are skipped, so an interrupted rebalancing can be started again.
+ * Generated identifiers must be unique across all shards.
+ * <p/>
+ * Keys are scanned once, and instances that still use the previous ring may write keys to their previous shards
+ * after they have been scanned. So rebalancing must be run again after all instances have switched to the new ring,
+ * and the previous ring may be dropped only when that run moves no keys.
+ */
+@Slf4j
+public class ShardRebalancer {
+    private static final int SCAN_CHUNK_SIZE = 500;
+
+    private final ConsistentHashRing ring;
+    private final List<ShardedTable> tables;
+    private final Map<String, TransactionAwareJooqWrapper> wrappers;
+    private final Map<String, TransactionalOperator> operators;
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param shards     the connection factories of the shards by their names
+     * @param ring       the ring of the shards after rebalancing
+     * @param sqlDialect the SQL dialect of the shards
+     * @param settings   the jOOQ settings
+     * @param tables     the tables to move rows of, a table referenced by others must precede them
+     * @throws NullPointerException     if the shards, the ring, the dialect, or the tables are {@code null}
+     * @throws IllegalArgumentException if no table is specified or a shard of the ring has no connection factory
+     */
+    public ShardRebalancer(@NonNull Map<String, ConnectionFactory> shards, @NonNull ConsistentHashRing ring,
+                           @NonNull SQLDialect sqlDialect, @Nullable Settings settings,
+                           @NonNull List<ShardedTable> tables) {
+        Validate.notNull(ring);
+        Validate.notNull(sqlDialect);
+        Validate.notEmpty(tables);
+        Validate.noNullElements(tables);
+        Validate.isTrue(shards.keySet().containsAll(ring.getShards()));
+
+        this.ring = ring;
+        this.tables = List.copyOf(tables);
+        this.wrappers = shards.entrySet()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getKey,
+                        entry -> new TransactionAwareJooqWrapper(
+                                DatabaseClient.create(entry.getValue()), sqlDialect, settings
+                        )
+                ));
+        this.operators = shards.entrySet()
+                .stream()
+                .collect(Collectors.toUnmodifiableMap(
+                        Map.Entry::getKey,
+                        entry -> TransactionalOperator.create(new R2dbcTransactionManager(entry.getValue()))
+                ));
+    }
+
+    /**
+     * Moves the keys of all shards that belong to other shards.
+     *
+     * @return the number of moved keys, zero if all keys are already stored on their shards
+     */
+    public Mono<Long> rebalance() {
+        return Flux.fromIterable(wrappers.keySet())
+                .concatMap(this::rebalance)
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> rebalance(String shard) {
+        return scanKeys(shard, null)
+                .filter(key -> !ring.getShard(key).equals(shard))
+                .concatMap(key -> move(key, shard, ring.getShard(key)))
+                .count()
+                .doOnNext(count -> logger.info("{} keys moved from shard '{}'", count, shard));
+    }
+
+    private Flux<String> scanKeys(String shard, @Nullable String startAfter) {
+        // keys are read by chunks, and the moved ones don't affect the position of the next chunk
+        var root = tables.get(0);
+        return wrappers.get(shard).withDSLContextMany(ctx ->
+                        ctx.select(root.getKey())
+                                .from(root.getTable())
+                                .where(startAfter == null ? root.getKey().isNotNull() : root.getKey().gt(startAfter))
+                                .orderBy(root.getKey())
+                                .limit(SCAN_CHUNK_SIZE)
+                ).map(record -> record.get(root.getKey()))
+                .collectList()
+                .flatMapMany(keys -> {
+                    var chunk = Flux.fromIterable(keys);
+                    return keys.size() < SCAN_CHUNK_SIZE ? chunk :
+                            chunk.concatWith(Flux.defer(() -> scanKeys(shard, keys.get(keys.size() - 1))));
+                });
+    }
+
+    private Mono<Void> move(String key, String source, String target) {
+        var from = wrappers.get(source);
+        var to = wrappers.get(target);
+        return lock(from, key)
+                .thenMany(Flux.fromIterable(tables).concatMap(table -> select(from, table, key)))
+                .collectList()
+                .flatMap(rows -> Flux.range(0, tables.size())
+                        .concatMap(i -> insert(to, tables.get(i), rows.get(i)))
+                        .then()
+                        .as(operators.get(target)::transactional))
+                .then(delete(from, key))
+                .as(operators.get(source)::transactional)
+                .doOnSuccess(v -> logger.debug("Key '{}' moved from shard '{}' to shard '{}'", key, source, target));
+    }
+
+    private Mono<Record1<String>> lock(TransactionAwareJooqWrapper wrapper, String key) {
+        var root = tables.get(0);
+        return wrapper.withDSLContext(ctx ->
+                ctx.select(root.getKey())
+                        .from(root.getTable())
+                        .where(root.getKey().eq(key))
+                        .forUpdate()
+        );
+    }
+
+    private Mono<List<Record>> select(TransactionAwareJooqWrapper wrapper, ShardedTable table, String key) {
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.select()
+                        .from(table.getTable())
+                        .where(table.getKey().eq(key))
+        ).collectList();
+    }
+
+    private Mono<Integer> insert(TransactionAwareJooqWrapper wrapper, ShardedTable table, List<Record> records) {
+        if (records.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(table.getTable())
+                        .columns(records.get(0).fields())
+                        .valuesOfRecords(records)
+                        .onConflictDoNothing()
+        );
+    }
+
+    private Mono<Void> delete(TransactionAwareJooqWrapper wrapper, String key) {
+        // rows that reference others are deleted first
+        var reversed = new ArrayList<>(tables);
+        Collections.reverse(reversed);
+        return Flux.fromIterable(reversed)
+                .concatMap(table -> wrapper.withDSLContext(ctx ->
+                        ctx.deleteFrom(table.getTable())
+                                .where(table.getKey().eq(key))
+                )).then();
+    }
+
+    /**
+     * Table whose rows are stored on the shard of their key.
+     */
+    public static final class ShardedTable {
+        private final Table<?> table;
+        private final Field<String> key;
+
+        private ShardedTable(Table<?> table, Field<String> key) {
+            this.table = table;
+            this.key = key;
+        }
+
+        /**
+         * Creates a sharded table.
+         *
+         * @param table the table
+         * @param key   the column of the table that contains the keys rows are routed by
+         * @return the created sharded table
+         * @throws NullPointerException if the table or the column is {@code null}
+         */
+        public static ShardedTable of(@NonNull Table<?> table, @NonNull Field<String> key) {
+            Validate.notNull(table);
+            Validate.notNull(key);
+            return new ShardedTable(table, key);
+        }
+
+        Table<?> getTable() {
+            return table;
+        }
+
+        Field<String> getKey() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Consistent hash ring that maps keys to shards.
+ * Every shard is placed on the ring many times, so keys are spread evenly among the shards,
+ * and adding or removing a shard moves only the keys that belong to it.
+ */
+public class ConsistentHashRing {
+    private final Set<String> shards;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param shards       the names of the shards
+     * @param virtualNodes the number of points every shard has on the ring
+     * @throws NullPointerException     if the shard names are {@code null}
+     * @throws IllegalArgumentException if no shard is specified or the number of points isn't positive
+     */
+    public ConsistentHashRing(@NonNull Collection<String> shards, int virtualNodes) {
+        Validate.notEmpty(shards);
+        Validate.noNullElements(shards);
+        Validate.isTrue(virtualNodes > 0);
+
+        this.shards = Collections.unmodifiableSet(new LinkedHashSet<>(shards));
+        for (var shard : this.shards) {
+            for (var i = 0; i < virtualNodes; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    /**
+     * Gets the names of the shards.
+     */
+    public Set<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * Gets the shard a key belongs to.
+     *
+     * @param key the key
+     * @return the name of the shard
+     * @throws NullPointerException if the key is {@code null}
+     */
+    public String getShard(@NonNull String key) {
+        Validate.notNull(key);
+        var entry = ring.ceilingEntry(hash(key));
+        return (entry == null ? ring.firstEntry() : entry).getValue();
+    }
+
+    private static long hash(String value) {
+        try {
+            // MD5 isn't used for security here, but its output is spread evenly for similar keys
+            var digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Notification that entries of a cache have been changed by another transaction and must be evicted.
+ */
+@Getter
+@ToString
+public final class Invalidation {
+    /**
+     * Name of the cache.
+     */
+    private final String cache;
+    /**
+     * Keys of the changed entries.
+     */
+    private final Set<String> keys;
+    /**
+     * Whether all entries must be evicted since notifications may have been lost.
+     */
+    private final boolean all;
+
+    private Invalidation(String cache, Set<String> keys, boolean all) {
+        this.cache = cache;
+        this.keys = keys;
+        this.all = all;
+    }
+
+    /**
+     * Creates an invalidation of the specified entries.
+     *
+     * @param cache the name of the cache
+     * @param keys  the keys of the entries
+     * @return the created invalidation
+     * @throws NullPointerException     if the cache name or the keys are {@code null}
+     * @throws IllegalArgumentException if a key is {@code null}
+     */
+    public static Invalidation of(@NonNull String cache, @NonNull Collection<String> keys) {
+        Validate.notNull(cache);
+        Validate.noNullElements(keys);
+        return new Invalidation(cache, Set.copyOf(keys), false);
+    }
+
+    /**
+     * Creates an invalidation of all entries.
+     *
+     * @param cache the name of the cache
+     * @return the created invalidation
+     * @throws NullPointerException if the cache name is {@code null}
+     */
+    public static Invalidation all(@NonNull String cache) {
+        Validate.notNull(cache);
+        return new Invalidation(cache, Set.of(), true);
+    }
+}
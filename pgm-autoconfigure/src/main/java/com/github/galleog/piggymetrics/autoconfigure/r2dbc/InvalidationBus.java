@@ -0,0 +1,249 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import io.r2dbc.postgresql.api.Notification;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Bus that keeps in-process caches of several instances of a service coherent using
+ * PostgreSQL <a href="https://www.postgresql.org/docs/current/sql-notify.html">LISTEN/NOTIFY</a>.
+ * <p/>
+ * Invalidations are published as notifications within the current transaction, so PostgreSQL delivers them
+ * to all instances only after the transaction is committed, and drops them if it's rolled back.
+ * All instances listen for notifications on a single connection that is reopened if it's lost.
+ * Notifications sent while no connection is open are lost, so every cache is cleared after
+ * the connection is reopened.
+ */
+@Slf4j
+public class InvalidationBus implements DisposableBean {
+    /**
+     * Maximum length of a notification payload in bytes.
+     */
+    static final int MAX_PAYLOAD_LENGTH = 7999;
+
+    private static final char SEPARATOR = '\n';
+    private static final Pattern CHANNEL_PATTERN = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final String NOTIFY_SQL =
+            "SELECT pg_notify(:channel, payload) FROM unnest(CAST(:payloads AS TEXT[])) AS payload";
+    private static final Invalidation RESET = Invalidation.all(StringUtils.EMPTY);
+
+    private final DatabaseClient databaseClient;
+    private final String channel;
+    private final Flux<List<Invalidation>> invalidations;
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param databaseClient the database client to send notifications and open the listening connection with
+     * @param properties     the properties of the bus
+     * @throws NullPointerException     if the database client or the properties are {@code null}
+     * @throws IllegalArgumentException if the channel isn't a lower case identifier or the batch size isn't positive
+     */
+    public InvalidationBus(@NonNull DatabaseClient databaseClient, @NonNull InvalidationProperties properties) {
+        Validate.notNull(databaseClient);
+        Validate.isTrue(CHANNEL_PATTERN.matcher(properties.getChannel()).matches());
+        Validate.isTrue(properties.getBatchSize() > 0);
+
+        this.databaseClient = databaseClient;
+        this.channel = properties.getChannel();
+        // all subscribers share the connection that is closed when the last of them is disposed
+        this.invalidations = receive(databaseClient.getConnectionFactory())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, properties.getMinBackoff())
+                        .maxBackoff(properties.getMaxBackoff())
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> logger.warn("Listening for cache invalidations on channel '"
+                                + channel + "' failed", signal.failure())))
+                .bufferTimeout(properties.getBatchSize(), properties.getBatchWindow())
+                .onBackpressureBuffer()
+                .publish()
+                .refCount();
+    }
+
+    /**
+     * Publishes an invalidation of cache entries. The invalidation is received by all instances
+     * after the current transaction is committed.
+     *
+     * @param cache the name of the cache
+     * @param keys  the keys of the changed entries
+     * @return an empty {@link Mono} that completes when the invalidation is published
+     * @throws NullPointerException     if the cache name or the keys are {@code null}
+     * @throws IllegalArgumentException if the cache name is blank, or a key is {@code null},
+     *                                  contains a line break, or is too long
+     */
+    public Mono<Void> publish(@NonNull String cache, @NonNull Collection<String> keys) {
+        Validate.notBlank(cache);
+        Validate.isTrue(cache.indexOf(SEPARATOR) < 0);
+        Validate.noNullElements(keys);
+        Validate.isTrue(keys.stream().noneMatch(key -> key.indexOf(SEPARATOR) >= 0));
+        if (keys.isEmpty()) {
+            return Mono.empty();
+        }
+
+        // keys are packed into as few notifications as possible, and all of them are sent by one statement
+        var payloads = toPayloads(cache, keys);
+        return databaseClient.sql(NOTIFY_SQL)
+                .bind("channel", channel)
+                .bind("payloads", payloads.toArray(String[]::new))
+                .then();
+    }
+
+    /**
+     * Listens for invalidations of a cache. Invalidations received at nearly the same time are merged.
+     *
+     * @param cache the name of the cache
+     * @return the invalidations of the cache
+     * @throws NullPointerException if the cache name is {@code null}
+     */
+    public Flux<Invalidation> listen(@NonNull String cache) {
+        Validate.notNull(cache);
+        return invalidations.<Invalidation>handle((batch, sink) -> {
+            var invalidation = merge(cache, batch);
+            if (invalidation != null) {
+                sink.next(invalidation);
+            }
+        });
+    }
+
+    /**
+     * Subscribes a listener to invalidations of a cache until the bus is destroyed.
+     * Exceptions thrown by the listener are logged and don't cancel the subscription.
+     *
+     * @param cache    the name of the cache
+     * @param listener the listener to call for every invalidation
+     * @return the subscription to the invalidations
+     * @throws NullPointerException if the cache name or the listener is {@code null}
+     */
+    public Disposable subscribe(@NonNull String cache, @NonNull Consumer<Invalidation> listener) {
+        Validate.notNull(listener);
+        var subscription = listen(cache)
+                .doOnNext(invalidation -> {
+                    try {
+                        listener.accept(invalidation);
+                    } catch (RuntimeException e) {
+                        logger.error("Failed to apply invalidation " + invalidation, e);
+                    }
+                }).subscribe();
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    @Override
+    public void destroy() {
+        subscriptions.dispose();
+    }
+
+    private Flux<Invalidation> receive(ConnectionFactory connectionFactory) {
+        // the connection is held while there are subscribers, and a completed stream means it's closed
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> {
+                    var postgresqlConnection = unwrap(connection);
+                    return postgresqlConnection.createStatement("LISTEN " + channel)
+                            .execute()
+                            .flatMap(PostgresqlResult::getRowsUpdated)
+                            .then()
+                            .doOnSuccess(v -> logger.info("Listening for cache invalidations on channel '{}'", channel))
+                            .thenMany(Flux.just(RESET)
+                                    .concatWith(postgresqlConnection.getNotifications()
+                                            .filter(notification -> channel.equals(notification.getName()))
+                                            .<Invalidation>handle((notification, sink) -> {
+                                                var invalidation = parse(notification);
+                                                if (invalidation != null) {
+                                                    sink.next(invalidation);
+                                                }
+                                            })));
+                },
+                Connection::close
+        ).concatWith(Mono.error(() -> new IllegalStateException("Listening connection closed")));
+    }
+
+    private static PostgresqlConnection unwrap(Connection connection) {
+        Object target = connection;
+        while (!(target instanceof PostgresqlConnection) && target instanceof Wrapped) {
+            target = ((Wrapped<?>) target).unwrap();
+        }
+        if (!(target instanceof PostgresqlConnection)) {
+            throw new IllegalStateException("Connection " + connection + " isn't a PostgreSQL connection");
+        }
+        return (PostgresqlConnection) target;
+    }
+
+    static List<String> toPayloads(String cache, Collection<String> keys) {
+        List<String> payloads = new ArrayList<>();
+        var cacheLength = utf8Length(cache);
+        var payload = new StringBuilder(cache);
+        var length = cacheLength;
+        for (var key : new LinkedHashSet<>(keys)) {
+            var keyLength = utf8Length(key) + 1;
+            Validate.isTrue(cacheLength + keyLength <= MAX_PAYLOAD_LENGTH, "Key is too long: %s", key);
+            if (length + keyLength > MAX_PAYLOAD_LENGTH) {
+                payloads.add(payload.toString());
+                payload = new StringBuilder(cache);
+                length = cacheLength;
+            }
+            payload.append(SEPARATOR).append(key);
+            length += keyLength;
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    static Invalidation parse(String payload) {
+        var parts = StringUtils.splitPreserveAllTokens(payload, SEPARATOR);
+        return Invalidation.of(parts[0], Arrays.asList(parts).subList(1, parts.length));
+    }
+
+    @Nullable
+    private static Invalidation parse(Notification notification) {
+        var payload = notification.getParameter();
+        if (StringUtils.isEmpty(payload)) {
+            logger.warn("Invalidation without payload received on channel '{}'", notification.getName());
+            return null;
+        }
+        return parse(payload);
+    }
+
+    @Nullable
+    private static Invalidation merge(String cache, List<Invalidation> batch) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (var invalidation : batch) {
+            if (invalidation == RESET) {
+                return Invalidation.all(cache);
+            }
+            if (invalidation.getCache().equals(cache)) {
+                keys.addAll(invalidation.getKeys());
+            }
+        }
+        return keys.isEmpty() ? null : Invalidation.of(cache, keys);
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
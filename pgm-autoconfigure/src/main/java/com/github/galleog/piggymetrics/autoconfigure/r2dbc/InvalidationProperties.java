@@ -0,0 +1,40 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for cache invalidations sent through PostgreSQL {@code LISTEN/NOTIFY}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("spring.r2dbc.invalidation")
+public class InvalidationProperties {
+    /**
+     * Whether cache invalidations are sent between instances of the service.
+     */
+    private boolean enabled;
+    /**
+     * Notification channel. Must be a lower case SQL identifier.
+     */
+    private String channel = "cache_invalidation";
+    /**
+     * Maximum number of received notifications merged into a single invalidation of a cache.
+     */
+    private int batchSize = 100;
+    /**
+     * Maximum time received notifications are collected before they are merged.
+     */
+    private Duration batchWindow = Duration.ofMillis(50);
+    /**
+     * Minimum delay before listening for notifications again after the connection is lost.
+     */
+    private Duration minBackoff = Duration.ofSeconds(1);
+    /**
+     * Maximum delay before listening for notifications again after the connection is lost.
+     */
+    private Duration maxBackoff = Duration.ofMinutes(1);
+}
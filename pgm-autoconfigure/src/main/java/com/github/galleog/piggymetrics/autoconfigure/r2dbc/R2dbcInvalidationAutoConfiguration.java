@@ -0,0 +1,30 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Auto-configuration for {@link InvalidationBus} that sends cache invalidations through PostgreSQL.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(PostgresqlConnection.class)
+@ConditionalOnBean(DatabaseClient.class)
+@ConditionalOnProperty(prefix = "spring.r2dbc.invalidation", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(InvalidationProperties.class)
+@AutoConfigureAfter(R2dbcAutoConfiguration.class)
+public class R2dbcInvalidationAutoConfiguration {
+    @Bean
+    @ConditionalOnMissingBean
+    public InvalidationBus invalidationBus(DatabaseClient databaseClient, InvalidationProperties properties) {
+        return new InvalidationBus(databaseClient, properties);
+    }
+}
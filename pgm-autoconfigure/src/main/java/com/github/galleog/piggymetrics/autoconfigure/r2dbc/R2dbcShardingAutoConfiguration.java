@@ -0,0 +1,45 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.commons.lang3.Validate;
+import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Auto-configuration for R2DBC {@link ConnectionFactory} that routes connections to several database shards.
+ * It replaces the connection factory of {@link R2dbcAutoConfiguration}, so database clients and transaction
+ * managers built on it work with the shards.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(ConnectionFactory.class)
+@ConditionalOnProperty(prefix = "spring.r2dbc.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+@AutoConfigureBefore(R2dbcAutoConfiguration.class)
+public class R2dbcShardingAutoConfiguration {
+    @Bean
+    @ConditionalOnMissingBean(ConnectionFactory.class)
+    public ShardRoutingConnectionFactory shardRoutingConnectionFactory(ShardingProperties properties) {
+        Validate.notEmpty(properties.getShards());
+
+        Map<String, ConnectionFactory> shards = new LinkedHashMap<>();
+        properties.getShards().forEach((name, url) -> shards.put(name, ConnectionFactories.get(url)));
+        var ring = new ConsistentHashRing(shards.keySet(), properties.getVirtualNodes());
+        if (properties.getPreviousShards().isEmpty()) {
+            return new ShardRoutingConnectionFactory(shards, properties.getDefaultShard(), new ShardLocator(ring));
+        }
+
+        var previousRing = new ConsistentHashRing(properties.getPreviousShards(), properties.getVirtualNodes());
+        var locator = new ShardLocator(ring, previousRing, shards, properties.getProbeQuery());
+        return new ShardRoutingConnectionFactory(shards, properties.getDefaultShard(), locator);
+    }
+}
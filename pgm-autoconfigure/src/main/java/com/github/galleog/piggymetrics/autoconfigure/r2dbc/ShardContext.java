@@ -0,0 +1,54 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Helpers to choose the shard database connections are obtained from by {@link ShardRoutingConnectionFactory}.
+ * The shard is chosen by the Reactor context of the subscriber, so it must be set downstream
+ * of the place where a transaction is started or a connection is obtained.
+ */
+public final class ShardContext {
+    private static final String ROUTING_KEY = ShardContext.class.getName() + ".routingKey";
+    private static final String SHARD = ShardContext.class.getName() + ".shard";
+
+    private ShardContext() {
+    }
+
+    /**
+     * Routes queries to the shard the specified key belongs to.
+     *
+     * @param key the key, e.g. the name of an account
+     * @return the function to pass to {@code contextWrite}
+     * @throws NullPointerException if the key is {@code null}
+     */
+    public static Function<Context, Context> routeBy(@NonNull String key) {
+        Validate.notNull(key);
+        return ctx -> ctx.put(ROUTING_KEY, key);
+    }
+
+    /**
+     * Routes queries to the specified shard regardless of the routing key.
+     *
+     * @param shard the name of the shard
+     * @return the function to pass to {@code contextWrite}
+     * @throws NullPointerException if the shard name is {@code null}
+     */
+    public static Function<Context, Context> routeTo(@NonNull String shard) {
+        Validate.notNull(shard);
+        return ctx -> ctx.put(SHARD, shard);
+    }
+
+    static Optional<String> getRoutingKey(ContextView ctx) {
+        return ctx.getOrEmpty(ROUTING_KEY);
+    }
+
+    static Optional<String> getShard(ContextView ctx) {
+        return ctx.getOrEmpty(SHARD);
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Locator of the shard a key is stored on.
+ * <p/>
+ * While shards are rebalanced, the ring of the shards before rebalancing is also specified. A key whose shard
+ * differs in the two rings stays on its previous shard until it's moved, which is checked by the probe query
+ * executed on the shards. It allows instances of a service to switch to the new ring before the keys are moved.
+ * A key that is stored on neither shard is located on its new shard, so keys written for the first time
+ * during rebalancing never have to be moved.
+ * <p/>
+ * A key may be moved after it has been located on its previous shard, so a query that doesn't find a key
+ * while {@link #isRebalancing() rebalancing} should locate it again and be repeated once. Rebalancing must be
+ * run again after all instances have switched to the new ring, and the previous ring may be dropped only when
+ * that run moves no keys, since instances still using the previous ring can write keys to their previous shards.
+ */
+public class ShardLocator {
+    private final ConsistentHashRing ring;
+    @Nullable
+    private final ConsistentHashRing previousRing;
+    private final Map<String, ConnectionFactory> shards;
+    @Nullable
+    private final String probeQuery;
+
+    /**
+     * Constructs a locator that maps keys to shards by the ring only.
+     *
+     * @param ring the ring of the shards
+     * @throws NullPointerException if the ring is {@code null}
+     */
+    public ShardLocator(@NonNull ConsistentHashRing ring) {
+        Validate.notNull(ring);
+
+        this.ring = ring;
+        this.previousRing = null;
+        this.shards = Map.of();
+        this.probeQuery = null;
+    }
+
+    /**
+     * Constructs a locator for shards being rebalanced.
+     *
+     * @param ring         the ring of the shards after rebalancing
+     * @param previousRing the ring of the shards before rebalancing
+     * @param shards       the connection factories of the shards by their names
+     * @param probeQuery   the query that returns a row if its only parameter, the key, is stored on the shard
+     * @throws NullPointerException     if any of the parameters is {@code null}
+     * @throws IllegalArgumentException if the probe query is blank or a shard of the rings has no connection factory
+     */
+    public ShardLocator(@NonNull ConsistentHashRing ring, @NonNull ConsistentHashRing previousRing,
+                        @NonNull Map<String, ConnectionFactory> shards, @NonNull String probeQuery) {
+        Validate.notNull(ring);
+        Validate.notNull(previousRing);
+        Validate.isTrue(shards.keySet().containsAll(ring.getShards()));
+        Validate.isTrue(shards.keySet().containsAll(previousRing.getShards()));
+        Validate.notBlank(probeQuery);
+
+        this.ring = ring;
+        this.previousRing = previousRing;
+        this.shards = Map.copyOf(shards);
+        this.probeQuery = probeQuery;
+    }
+
+    /**
+     * Gets the ring of the shards.
+     */
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * Checks if keys are being moved between shards, i.e. the ring of the shards before rebalancing is specified.
+     */
+    public boolean isRebalancing() {
+        return previousRing != null;
+    }
+
+    /**
+     * Gets the shard a key is stored on.
+     *
+     * @param key the key
+     * @return the name of the shard
+     * @throws NullPointerException if the key is {@code null}
+     */
+    public Mono<String> locate(@NonNull String key) {
+        var shard = ring.getShard(key);
+        if (previousRing == null) {
+            return Mono.just(shard);
+        }
+
+        var previous = previousRing.getShard(key);
+        if (StringUtils.equals(shard, previous)) {
+            return Mono.just(shard);
+        }
+
+        // the new shard is probed first, so a key moved between the two probes is found on it
+        return isStoredOn(shard, key)
+                .flatMap(moved -> moved ? Mono.just(false) : isStoredOn(previous, key))
+                .map(pending -> pending ? previous : shard);
+    }
+
+    private Mono<Boolean> isStoredOn(String shard, String key) {
+        return Mono.usingWhen(
+                shards.get(shard).create(),
+                con -> Flux.from(con.createStatement(probeQuery)
+                                .bind(0, key)
+                                .execute())
+                        .flatMap(result -> result.map((row, metadata) -> Boolean.TRUE))
+                        .hasElements(),
+                Connection::close
+        );
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+import org.springframework.r2dbc.connection.lookup.AbstractRoutingConnectionFactory;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link ConnectionFactory} that obtains connections from one of several shards.
+ * The shard is chosen by {@link ShardContext} of the subscriber, and queries that aren't routed
+ * are sent to the default shard.
+ * <p/>
+ * Transactions of {@code R2dbcTransactionManager} and {@code DatabaseClient} work with this factory
+ * as with a single database, so a transaction started with a routing key runs entirely on the shard of the key.
+ */
+public class ShardRoutingConnectionFactory extends AbstractRoutingConnectionFactory {
+    private final Map<String, ConnectionFactory> shards;
+    private final ShardLocator locator;
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param shards       the connection factories of the shards by their names
+     * @param defaultShard the name of the shard for queries that aren't routed
+     * @param locator      the locator of the shard keys are stored on
+     * @throws NullPointerException     if any of the parameters is {@code null}
+     * @throws IllegalArgumentException if the default shard or a shard of the locator has no connection factory
+     */
+    public ShardRoutingConnectionFactory(@NonNull Map<String, ConnectionFactory> shards, @NonNull String defaultShard,
+                                         @NonNull ShardLocator locator) {
+        Validate.notNull(locator);
+        Validate.isTrue(shards.containsKey(defaultShard));
+        Validate.isTrue(shards.keySet().containsAll(locator.getRing().getShards()));
+
+        this.shards = Collections.unmodifiableMap(new LinkedHashMap<>(shards));
+        this.locator = locator;
+        setTargetConnectionFactories(this.shards);
+        setDefaultTargetConnectionFactory(shards.get(defaultShard));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Gets the connection factories of the shards by their names.
+     */
+    public Map<String, ConnectionFactory> getShards() {
+        return shards;
+    }
+
+    /**
+     * Gets the locator of the shard keys are stored on.
+     */
+    public ShardLocator getLocator() {
+        return locator;
+    }
+
+    @Override
+    protected Mono<Object> determineCurrentLookupKey() {
+        return Mono.deferContextual(ctx -> ShardContext.getShard(ctx)
+                .map(Mono::just)
+                .or(() -> ShardContext.getRoutingKey(ctx).map(locator::locate))
+                .orElse(Mono.empty())
+                .cast(Object.class));
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration properties for R2DBC connections to several database shards.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("spring.r2dbc.sharding")
+public class ShardingProperties {
+    /**
+     * Whether connections are obtained from the shards instead of the single database.
+     */
+    private boolean enabled;
+    /**
+     * R2DBC connection URLs of the shards by their names.
+     */
+    private Map<String, String> shards = new LinkedHashMap<>();
+    /**
+     * Name of the shard for queries that aren't routed by a key.
+     */
+    private String defaultShard;
+    /**
+     * Number of points every shard has on the hash ring.
+     */
+    private int virtualNodes = 160;
+    /**
+     * Names of the shards before rebalancing. Set only while keys are moved to the added shards,
+     * and removed only after a rebalancing started when all instances use the new shards has moved no keys.
+     */
+    private List<String> previousShards = new ArrayList<>();
+    /**
+     * Query that returns a row if its only parameter, a key, is stored on the shard it's executed on.
+     * Required if the previous shards are set.
+     */
+    private String probeQuery;
+}
@@ -0,0 +1,91 @@
+package com.github.galleog.piggymetrics.autoconfigure.jooq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.sequence;
+
+import org.jooq.impl.SQLDataType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.EmbeddedDataSourceConfiguration;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.AutoConfigureDataR2dbc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Collection;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Integration tests for {@link SequenceIdAllocator}.
+ */
+@AutoConfigureDataR2dbc
+@ImportAutoConfiguration(R2dbcJooqAutoConfiguration.class)
+@SpringBootTest(classes = SequenceIdAllocatorIntegrationTest.Config.class)
+class SequenceIdAllocatorIntegrationTest {
+    private static final String SEQUENCE_NAME = "test_seq";
+    private static final int BLOCK_SIZE = 10;
+
+    @Autowired
+    private TransactionAwareJooqWrapper wrapper;
+
+    private SequenceIdAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        allocator = new SequenceIdAllocator(wrapper, sequence(name(SEQUENCE_NAME), SQLDataType.BIGINT), BLOCK_SIZE);
+    }
+
+    /**
+     * Test for {@link SequenceIdAllocator#nextIds(int)} when identifiers span several blocks.
+     */
+    @Test
+    void shouldAllocateIdsFromSeveralBlocks() {
+        allocator.nextIds(25)
+                .as(StepVerifier::create)
+                .expectNextMatches(ids -> {
+                    var first = ids.get(0);
+                    assertThat(ids).containsExactlyElementsOf(
+                            LongStream.range(first, first + 25).boxed().collect(Collectors.toList())
+                    );
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link SequenceIdAllocator#nextIds(int)} when identifiers are allocated concurrently.
+     */
+    @Test
+    void shouldAllocateUniqueIdsConcurrently() {
+        Flux.range(0, 100)
+                .flatMap(i -> allocator.nextIds(3))
+                .flatMapIterable(ids -> ids)
+                .collectList()
+                .as(StepVerifier::create)
+                .expectNextMatches(ids -> {
+                    assertThat(ids).hasSize(300).doesNotHaveDuplicates();
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link SequenceIdAllocator#nextIds(int)} when no identifiers are requested.
+     */
+    @Test
+    void shouldAllocateNoIds() {
+        allocator.nextIds(0)
+                .as(StepVerifier::create)
+                .expectNextMatches(Collection::isEmpty)
+                .verifyComplete();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @Import(EmbeddedDataSourceConfiguration.class)
+    static class Config {
+    }
+}
@@ -0,0 +1,287 @@
+package com.github.galleog.piggymetrics.autoconfigure.jooq;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.table;
+
+import com.github.galleog.piggymetrics.autoconfigure.jooq.ShardRebalancer.ShardedTable;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ConsistentHashRing;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardContext;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardLocator;
+import com.github.galleog.piggymetrics.autoconfigure.r2dbc.ShardRoutingConnectionFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import org.jooq.SQLDialect;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+/**
+ * Integration tests for {@link ShardRebalancer} and routing queries by {@link ShardLocator}
+ * to two shards while keys are moved from the first one to the added second one.
+ */
+@Testcontainers
+class ShardRebalancerIntegrationTest {
+    private static final String POSTGRES_IMAGE = "postgres:13.8-alpine";
+    private static final String SHARD_1 = "shard1";
+    private static final String SHARD_2 = "shard2";
+    private static final int VIRTUAL_NODES = 160;
+    private static final String PROBE_QUERY = "SELECT 1 FROM owners WHERE name = $1";
+    private static final String INSERT_ITEM = "INSERT INTO items (id, owner_name, title) VALUES (:id, :name, :title)";
+    private static final ConsistentHashRing RING = new ConsistentHashRing(List.of(SHARD_1, SHARD_2), VIRTUAL_NODES);
+    private static final ConsistentHashRing PREVIOUS_RING = new ConsistentHashRing(List.of(SHARD_1), VIRTUAL_NODES);
+    private static final List<ShardedTable> TABLES = ImmutableList.of(
+            ShardedTable.of(table(name("owners")), field(name("name"), String.class)),
+            ShardedTable.of(table(name("savings")), field(name("owner_name"), String.class)),
+            ShardedTable.of(table(name("items")), field(name("owner_name"), String.class))
+    );
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresql1 = new PostgreSQLContainer<>(POSTGRES_IMAGE);
+    @Container
+    private static final PostgreSQLContainer<?> postgresql2 = new PostgreSQLContainer<>(POSTGRES_IMAGE);
+
+    private static Map<String, ConnectionFactory> shards;
+    private static Map<String, DatabaseClient> clients;
+
+    private final AtomicLong itemIds = new AtomicLong();
+    private ShardRebalancer rebalancer;
+    private DatabaseClient routingClient;
+
+    @BeforeAll
+    static void setUpShards() {
+        shards = ImmutableMap.of(SHARD_1, connectionFactory(postgresql1), SHARD_2, connectionFactory(postgresql2));
+        clients = ImmutableMap.of(
+                SHARD_1, DatabaseClient.create(shards.get(SHARD_1)),
+                SHARD_2, DatabaseClient.create(shards.get(SHARD_2))
+        );
+        Flux.fromIterable(clients.values())
+                .concatMap(client -> Flux.just(
+                                "CREATE TABLE owners (name VARCHAR(20) PRIMARY KEY)",
+                                "CREATE TABLE savings (owner_name VARCHAR(20) PRIMARY KEY REFERENCES owners (name), " +
+                                        "amount NUMERIC(20, 2) NOT NULL)",
+                                "CREATE TABLE items (id BIGINT PRIMARY KEY, " +
+                                        "owner_name VARCHAR(20) NOT NULL REFERENCES owners (name), " +
+                                        "title VARCHAR(20) NOT NULL)"
+                        ).concatMap(sql -> client.sql(sql).then()))
+                .blockLast();
+    }
+
+    private static ConnectionFactory connectionFactory(PostgreSQLContainer<?> postgresql) {
+        return ConnectionFactories.get(String.format("r2dbc:postgresql://%s:%s@%s:%s/%s",
+                postgresql.getUsername(), postgresql.getPassword(), postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgresql.getDatabaseName()));
+    }
+
+    @BeforeEach
+    void setUp() {
+        Flux.fromIterable(clients.values())
+                .concatMap(client -> Flux.just("DELETE FROM items", "DELETE FROM savings", "DELETE FROM owners")
+                        .concatMap(sql -> client.sql(sql).then()))
+                .blockLast();
+
+        rebalancer = new ShardRebalancer(shards, RING, SQLDialect.POSTGRES, null, TABLES);
+        var locator = new ShardLocator(RING, PREVIOUS_RING, shards, PROBE_QUERY);
+        routingClient = DatabaseClient.create(new ShardRoutingConnectionFactory(shards, SHARD_1, locator));
+    }
+
+    /**
+     * Test for {@link ShardRebalancer#rebalance()} when a key is moved with the rows of all tables.
+     */
+    @Test
+    void shouldMoveKeyWithItsRows() {
+        var moved = keyOf(SHARD_2, 0);
+        var kept = keyOf(SHARD_1, 0);
+        insertOwner(clients.get(SHARD_1), moved, 2).block();
+        insertOwner(clients.get(SHARD_1), kept, 1).block();
+
+        rebalancer.rebalance()
+                .as(StepVerifier::create)
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertRows(SHARD_1, moved, 0, 0, 0);
+        assertRows(SHARD_2, moved, 1, 1, 2);
+        assertRows(SHARD_1, kept, 1, 1, 1);
+        assertRows(SHARD_2, kept, 0, 0, 0);
+    }
+
+    /**
+     * Test for {@link ShardRebalancer#rebalance()} when a move was interrupted after the rows had been copied
+     * to the new shard but before they were deleted from the previous one.
+     */
+    @Test
+    void shouldCompleteInterruptedMove() {
+        var key = keyOf(SHARD_2, 0);
+        insertOwner(clients.get(SHARD_1), key, 2).block();
+        copyRows(key).block();
+
+        rebalancer.rebalance()
+                .as(StepVerifier::create)
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertRows(SHARD_1, key, 0, 0, 0);
+        assertRows(SHARD_2, key, 1, 1, 2);
+
+        rebalancer.rebalance()
+                .as(StepVerifier::create)
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    /**
+     * Test for routing queries by {@link ShardLocator} before and after a key is moved.
+     */
+    @Test
+    void shouldRouteToShardKeyIsStoredOn() {
+        var key = keyOf(SHARD_2, 0);
+        insertOwner(clients.get(SHARD_1), key, 1).block();
+
+        countItems(key)
+                .as(StepVerifier::create)
+                .expectNext(1L)
+                .verifyComplete();
+
+        rebalancer.rebalance().block();
+
+        countItems(key)
+                .as(StepVerifier::create)
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
+    /**
+     * Test for routing keys registered while other keys are moved.
+     */
+    @Test
+    void shouldStoreKeysRegisteredDuringRebalancingOnNewShards() {
+        var existing = IntStream.range(0, 20)
+                .mapToObj(i -> keyOf(SHARD_2, i))
+                .collect(ImmutableList.toImmutableList());
+        var registered = IntStream.range(20, 40)
+                .mapToObj(i -> keyOf(i % 2 == 0 ? SHARD_1 : SHARD_2, i))
+                .collect(ImmutableList.toImmutableList());
+        Flux.fromIterable(existing)
+                .concatMap(key -> insertOwner(clients.get(SHARD_1), key, 1))
+                .blockLast();
+
+        var registration = Flux.fromIterable(registered)
+                .concatMap(key -> insertOwner(routingClient, key, 1).contextWrite(ShardContext.routeBy(key)))
+                .then(Mono.just(0L));
+        Flux.merge(rebalancer.rebalance(), registration)
+                .reduce(Long::sum)
+                .as(StepVerifier::create)
+                .expectNext((long) existing.size())
+                .verifyComplete();
+
+        existing.forEach(key -> assertRows(SHARD_2, key, 1, 1, 1));
+        registered.forEach(key -> assertRows(RING.getShard(key), key, 1, 1, 1));
+        assertThat(count(SHARD_1, "owners", "name", null)).isEqualTo(registered.size() / 2);
+    }
+
+    /**
+     * Test for {@link ShardRebalancer#rebalance()} run again after an instance that still uses the previous ring
+     * has written a key to its previous shard.
+     */
+    @Test
+    void shouldMoveKeyWrittenByPreviousRingWhenRunAgain() {
+        rebalancer.rebalance().block();
+
+        var key = keyOf(SHARD_2, 0);
+        insertOwner(clients.get(SHARD_1), key, 1).block();
+
+        rebalancer.rebalance()
+                .as(StepVerifier::create)
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertRows(SHARD_1, key, 0, 0, 0);
+        assertRows(SHARD_2, key, 1, 1, 1);
+    }
+
+    private static String keyOf(String shard, int index) {
+        // keys of the first shard are kept by the new ring too, the others are moved to the second shard
+        return IntStream.iterate(0, i -> i + 1)
+                .mapToObj(i -> "key" + i)
+                .filter(key -> shard.equals(RING.getShard(key)))
+                .skip(index)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private Mono<Void> insertOwner(DatabaseClient client, String key, int items) {
+        return client.sql("INSERT INTO owners (name) VALUES (:name)")
+                .bind("name", key)
+                .then()
+                .then(client.sql("INSERT INTO savings (owner_name, amount) VALUES (:name, 100)")
+                        .bind("name", key)
+                        .then())
+                .thenMany(Flux.range(0, items)
+                        .concatMap(i -> client.sql(INSERT_ITEM)
+                                .bind("id", itemIds.incrementAndGet())
+                                .bind("name", key)
+                                .bind("title", "item" + i)
+                                .then()))
+                .then();
+    }
+
+    private Mono<Void> copyRows(String key) {
+        var from = clients.get(SHARD_1);
+        var to = clients.get(SHARD_2);
+        return to.sql("INSERT INTO owners (name) VALUES (:name)")
+                .bind("name", key)
+                .then()
+                .then(to.sql("INSERT INTO savings (owner_name, amount) VALUES (:name, 100)")
+                        .bind("name", key)
+                        .then())
+                .thenMany(from.sql("SELECT id, title FROM items WHERE owner_name = :name")
+                        .bind("name", key)
+                        .map(row -> ImmutableMap.of("id", row.get("id", Long.class), "title", row.get("title")))
+                        .all())
+                .concatMap(item -> to.sql(INSERT_ITEM)
+                        .bind("id", item.get("id"))
+                        .bind("name", key)
+                        .bind("title", item.get("title"))
+                        .then())
+                .then();
+    }
+
+    private Mono<Long> countItems(String key) {
+        return routingClient.sql("SELECT count(*) FROM items WHERE owner_name = :name")
+                .bind("name", key)
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .contextWrite(ShardContext.routeBy(key));
+    }
+
+    private static void assertRows(String shard, String key, long owners, long savings, long items) {
+        assertThat(count(shard, "owners", "name", key)).isEqualTo(owners);
+        assertThat(count(shard, "savings", "owner_name", key)).isEqualTo(savings);
+        assertThat(count(shard, "items", "owner_name", key)).isEqualTo(items);
+    }
+
+    private static long count(String shard, String table, String column, String key) {
+        var sql = "SELECT count(*) FROM " + table + (key == null ? "" : " WHERE " + column + " = :key");
+        var spec = clients.get(shard).sql(sql);
+        return (key == null ? spec : spec.bind("key", key))
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .block();
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for {@link ConsistentHashRing}.
+ */
+class ConsistentHashRingTest {
+    private static final int VIRTUAL_NODES = 160;
+    private static final int KEYS = 10000;
+    private static final List<String> SHARDS = List.of("shard1", "shard2", "shard3");
+
+    /**
+     * Test for {@link ConsistentHashRing#getShard(String)} that spreads keys among all shards.
+     */
+    @Test
+    void shouldSpreadKeysEvenly() {
+        var ring = new ConsistentHashRing(SHARDS, VIRTUAL_NODES);
+        var counts = keys().stream()
+                .collect(Collectors.groupingBy(ring::getShard, Collectors.counting()));
+
+        assertThat(counts).containsOnlyKeys(SHARDS);
+        assertThat(counts.values()).allSatisfy(count ->
+                assertThat(count).isBetween(KEYS / SHARDS.size() * 3 / 4L, KEYS / SHARDS.size() * 5 / 4L));
+    }
+
+    /**
+     * Test for {@link ConsistentHashRing#getShard(String)} that moves keys only to an added shard.
+     */
+    @Test
+    void shouldMoveKeysOnlyToAddedShard() {
+        var ring = new ConsistentHashRing(SHARDS, VIRTUAL_NODES);
+        var extended = new ConsistentHashRing(List.of("shard1", "shard2", "shard3", "shard4"), VIRTUAL_NODES);
+
+        var moved = keys().stream()
+                .filter(key -> !ring.getShard(key).equals(extended.getShard(key)))
+                .collect(Collectors.toList());
+        assertThat(moved).isNotEmpty()
+                .extracting(extended::getShard)
+                .containsOnly("shard4");
+    }
+
+    /**
+     * Test for {@link ConsistentHashRing#getShard(String)} that maps keys regardless of the order of shards.
+     */
+    @Test
+    void shouldNotDependOnOrderOfShards() {
+        var ring = new ConsistentHashRing(SHARDS, VIRTUAL_NODES);
+        var reversed = new ConsistentHashRing(List.of("shard3", "shard2", "shard1"), VIRTUAL_NODES);
+
+        assertThat(keys()).allSatisfy(key -> assertThat(reversed.getShard(key)).isEqualTo(ring.getShard(key)));
+    }
+
+    /**
+     * Test for {@link ConsistentHashRing} without shards.
+     */
+    @Test
+    void shouldFailToCreateRingWithoutShards() {
+        assertThatThrownBy(() -> new ConsistentHashRing(List.of(), VIRTUAL_NODES))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static List<String> keys() {
+        return IntStream.range(0, KEYS)
+                .mapToObj(i -> "user" + i)
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Tests for {@link InvalidationBus}.
+ */
+class InvalidationBusTest {
+    private static final String CACHE = "accounts";
+
+    /**
+     * Test for {@link InvalidationBus#toPayloads(String, java.util.Collection)} and
+     * {@link InvalidationBus#parse(String)}.
+     */
+    @Test
+    void shouldParsePublishedPayload() {
+        var payloads = InvalidationBus.toPayloads(CACHE, List.of("test1", "test2", "test1"));
+
+        assertThat(payloads).hasSize(1);
+        var invalidation = InvalidationBus.parse(payloads.get(0));
+        assertThat(invalidation.getCache()).isEqualTo(CACHE);
+        assertThat(invalidation.getKeys()).containsExactlyInAnyOrder("test1", "test2");
+        assertThat(invalidation.isAll()).isFalse();
+    }
+
+    /**
+     * Test for {@link InvalidationBus#toPayloads(String, java.util.Collection)} when keys don't fit
+     * into a single notification.
+     */
+    @Test
+    void shouldSplitKeysIntoSeveralPayloads() {
+        var keys = IntStream.range(0, 1000)
+                .mapToObj(i -> StringUtils.leftPad(Integer.toString(i), 20, 'x'))
+                .collect(Collectors.toList());
+
+        var payloads = InvalidationBus.toPayloads(CACHE, keys);
+
+        assertThat(payloads).hasSizeGreaterThan(1)
+                .allSatisfy(payload -> assertThat(payload.getBytes(StandardCharsets.UTF_8))
+                        .hasSizeLessThanOrEqualTo(InvalidationBus.MAX_PAYLOAD_LENGTH));
+        assertThat(payloads.stream().flatMap(payload -> InvalidationBus.parse(payload).getKeys().stream()))
+                .containsExactlyInAnyOrderElementsOf(keys);
+    }
+
+    /**
+     * Test for {@link InvalidationBus#toPayloads(String, java.util.Collection)} when a key is too long.
+     */
+    @Test
+    void shouldFailToPublishTooLongKey() {
+        var key = StringUtils.repeat('x', InvalidationBus.MAX_PAYLOAD_LENGTH);
+        assertThatThrownBy(() -> InvalidationBus.toPayloads(CACHE, List.of(key)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+/**
+ * Tests for {@link R2dbcInvalidationAutoConfiguration}.
+ */
+class R2dbcInvalidationAutoConfigurationTest {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(
+                    AutoConfigurations.of(R2dbcInvalidationAutoConfiguration.class, R2dbcAutoConfiguration.class)
+            );
+
+    /**
+     * Test for the auto-configuration when invalidations aren't enabled.
+     */
+    @Test
+    void shouldNotCreateInvalidationBusWhenDisabled() {
+        contextRunner.run(context -> assertThat(context).doesNotHaveBean(InvalidationBus.class));
+    }
+
+    /**
+     * Test for succeeded auto-configuration.
+     */
+    @Test
+    void shouldCreateInvalidationBus() {
+        contextRunner.withPropertyValues("spring.r2dbc.invalidation.enabled=true")
+                .run(context -> assertThat(context).hasSingleBean(InvalidationBus.class));
+    }
+
+    /**
+     * Test for failed auto-configuration with an invalid channel.
+     */
+    @Test
+    void shouldFailToCreateInvalidationBusWithInvalidChannel() {
+        contextRunner.withPropertyValues(
+                "spring.r2dbc.invalidation.enabled=true",
+                "spring.r2dbc.invalidation.channel=Invalid-Channel"
+        ).run(context -> assertThat(context).hasFailed());
+    }
+}
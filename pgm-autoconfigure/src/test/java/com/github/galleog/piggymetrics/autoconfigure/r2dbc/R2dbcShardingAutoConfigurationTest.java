@@ -0,0 +1,77 @@
+package com.github.galleog.piggymetrics.autoconfigure.r2dbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+/**
+ * Tests for {@link R2dbcShardingAutoConfiguration}.
+ */
+class R2dbcShardingAutoConfigurationTest {
+    private static final String SHARD_1 = "shard1";
+    private static final String SHARD_2 = "shard2";
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(
+                    AutoConfigurations.of(R2dbcShardingAutoConfiguration.class, R2dbcAutoConfiguration.class)
+            );
+
+    /**
+     * Test for the auto-configuration when sharding isn't enabled.
+     */
+    @Test
+    void shouldNotCreateShardRoutingConnectionFactoryWhenShardingDisabled() {
+        contextRunner.run(context -> {
+            assertThat(context).doesNotHaveBean(ShardRoutingConnectionFactory.class);
+            assertThat(context).hasSingleBean(ConnectionFactory.class);
+        });
+    }
+
+    /**
+     * Test for the auto-configuration that routes queries to the shards.
+     */
+    @Test
+    void shouldRouteQueriesToShards() {
+        contextRunner.withPropertyValues(
+                "spring.r2dbc.sharding.enabled=true",
+                "spring.r2dbc.sharding.default-shard=" + SHARD_1,
+                "spring.r2dbc.sharding.shards." + SHARD_1 + "=r2dbc:h2:mem:///" + SHARD_1 + "?DB_CLOSE_DELAY=-1",
+                "spring.r2dbc.sharding.shards." + SHARD_2 + "=r2dbc:h2:mem:///" + SHARD_2 + "?DB_CLOSE_DELAY=-1"
+        ).run(context -> {
+            assertThat(context).hasSingleBean(ConnectionFactory.class);
+            var connectionFactory = context.getBean(ShardRoutingConnectionFactory.class);
+            assertThat(connectionFactory.getShards()).containsOnlyKeys(SHARD_1, SHARD_2);
+
+            var client = DatabaseClient.create(connectionFactory);
+            client.sql("CREATE TABLE routed (name VARCHAR(10))")
+                    .then()
+                    .contextWrite(ShardContext.routeTo(SHARD_2))
+                    .as(StepVerifier::create)
+                    .verifyComplete();
+
+            // the table exists only on the second shard, and unrouted queries are sent to the first one
+            countRouted(client)
+                    .contextWrite(ShardContext.routeTo(SHARD_2))
+                    .as(StepVerifier::create)
+                    .expectNext(0L)
+                    .verifyComplete();
+            countRouted(client)
+                    .as(StepVerifier::create)
+                    .expectError()
+                    .verify();
+        });
+    }
+
+    private static Mono<Long> countRouted(DatabaseClient client) {
+        return client.sql("SELECT COUNT(*) AS total FROM routed")
+                .map(row -> row.get("total", Long.class))
+                .one();
+    }
+}
@@ -1,3 +1,5 @@
 CREATE TABLE test (
     name VARCHAR(10) PRIMARY KEY
-);
\ No newline at end of file
+);
+
+CREATE SEQUENCE test_seq START WITH 1 INCREMENT BY 10;
\ No newline at end of file
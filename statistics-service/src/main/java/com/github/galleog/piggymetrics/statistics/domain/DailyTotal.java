@@ -0,0 +1,55 @@
+package com.github.galleog.piggymetrics.statistics.domain;
+
+import com.google.common.collect.ImmutableMap;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.lang.NonNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Entity for totals of incomes, expenses, and savings of all accounts on one date.
+ */
+@Getter
+public class DailyTotal {
+    /**
+     * Date of the totals.
+     */
+    private LocalDate date;
+
+    /**
+     * Sums of the statistics of all accounts that have a data point on the date.
+     */
+    private Map<StatisticalMetric, BigDecimal> statistics;
+
+    @Builder
+    @SuppressWarnings("unused")
+    private DailyTotal(@NonNull LocalDate date, @NonNull @Singular Map<StatisticalMetric, BigDecimal> statistics) {
+        setDate(date);
+        setStatistics(statistics);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("date", DateTimeFormatter.ISO_DATE.format(getDate()))
+                .append("statistics", getStatistics())
+                .build();
+    }
+
+    private void setDate(LocalDate date) {
+        Validate.notNull(date);
+        this.date = date;
+    }
+
+    private void setStatistics(Map<StatisticalMetric, BigDecimal> statistics) {
+        Validate.notNull(statistics);
+        this.statistics = ImmutableMap.copyOf(statistics);
+    }
+}
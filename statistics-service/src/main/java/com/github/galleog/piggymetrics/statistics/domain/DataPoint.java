@@ -5,6 +5,7 @@ import static com.github.galleog.piggymetrics.statistics.domain.ItemType.INCOME;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Singular;
@@ -18,6 +19,7 @@ import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Entity for daily time series data points containing the current account state.
@@ -44,13 +46,28 @@ public class DataPoint {
      */
     private Map<StatisticalMetric, BigDecimal> statistics;
 
+    /**
+     * Baselines of the statistics calculated from the data points of the preceding dates.
+     * They are set only for data points read from the repository.
+     */
+    private Map<StatisticalMetric, MetricBaseline> baselines;
+
+    /**
+     * Statistics whose anomalies have already been reported for the date of this data point.
+     */
+    private Set<StatisticalMetric> reportedAnomalies;
+
     @Builder
     private DataPoint(@NonNull String accountName, @NonNull LocalDate date, @NonNull @Singular Collection<ItemMetric> metrics,
-                      @NonNull @Singular Map<StatisticalMetric, BigDecimal> statistics) {
+                      @NonNull @Singular Map<StatisticalMetric, BigDecimal> statistics,
+                      @NonNull @Singular Map<StatisticalMetric, MetricBaseline> baselines,
+                      @NonNull @Singular Collection<StatisticalMetric> reportedAnomalies) {
         setAccountName(accountName);
         setDate(date);
         setMetrics(metrics);
         setStatistics(statistics);
+        setBaselines(baselines);
+        setReportedAnomalies(reportedAnomalies);
     }
 
     /**
@@ -116,4 +133,16 @@ public class DataPoint {
                 .allMatch(amount -> amount.signum() >= 0));
         this.statistics = ImmutableMap.copyOf(statistics);
     }
+
+    private void setBaselines(Map<StatisticalMetric, MetricBaseline> baselines) {
+        Validate.notNull(baselines);
+        Validate.isTrue(statistics.keySet().containsAll(baselines.keySet()));
+        this.baselines = ImmutableMap.copyOf(baselines);
+    }
+
+    private void setReportedAnomalies(Collection<StatisticalMetric> reportedAnomalies) {
+        Validate.noNullElements(reportedAnomalies);
+        Validate.isTrue(statistics.keySet().containsAll(reportedAnomalies));
+        this.reportedAnomalies = Sets.immutableEnumSet(reportedAnomalies);
+    }
 }
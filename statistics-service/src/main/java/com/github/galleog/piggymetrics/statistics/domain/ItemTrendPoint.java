@@ -0,0 +1,62 @@
+package com.github.galleog.piggymetrics.statistics.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.lang.NonNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Value of a single income or expense item on a data point date.
+ */
+@Getter
+public class ItemTrendPoint {
+    /**
+     * Date of the data point the value belongs to.
+     */
+    private LocalDate date;
+    /**
+     * Item type.
+     */
+    private ItemType type;
+    /**
+     * Normalized monetary amount of the item.
+     */
+    private BigDecimal moneyAmount;
+
+    @Builder
+    @SuppressWarnings("unused")
+    private ItemTrendPoint(@NonNull LocalDate date, @NonNull ItemType type, @NonNull BigDecimal moneyAmount) {
+        setDate(date);
+        setType(type);
+        setMoneyAmount(moneyAmount);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("date", DateTimeFormatter.ISO_DATE.format(getDate()))
+                .append("type", getType())
+                .build();
+    }
+
+    private void setDate(LocalDate date) {
+        Validate.notNull(date);
+        this.date = date;
+    }
+
+    private void setType(ItemType type) {
+        Validate.notNull(type);
+        this.type = type;
+    }
+
+    private void setMoneyAmount(BigDecimal moneyAmount) {
+        Validate.notNull(moneyAmount);
+        Validate.isTrue(moneyAmount.signum() == 1);
+        this.moneyAmount = moneyAmount;
+    }
+}
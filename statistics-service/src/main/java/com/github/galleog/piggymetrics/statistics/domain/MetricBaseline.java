@@ -0,0 +1,67 @@
+package com.github.galleog.piggymetrics.statistics.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+
+/**
+ * Value object for exponentially weighted moving average and variance of a statistical metric of an account.
+ * <p/>
+ * It's stored with the statistic of every data point and calculated from the last values of the metric
+ * on the dates before the data point date, so the metric is sampled once a day and its history is never re-read.
+ */
+@Getter
+public class MetricBaseline {
+    /**
+     * Exponentially weighted moving average of the metric.
+     */
+    private double mean;
+    /**
+     * Exponentially weighted moving variance of the metric.
+     */
+    private double variance;
+    /**
+     * Number of values the baseline is calculated from.
+     */
+    private int samples;
+
+    @Builder
+    @SuppressWarnings("unused")
+    private MetricBaseline(double mean, double variance, int samples) {
+        setMean(mean);
+        setVariance(variance);
+        setSamples(samples);
+    }
+
+    /**
+     * Gets the standard deviation of the metric.
+     */
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("mean", getMean())
+                .append("variance", getVariance())
+                .append("samples", getSamples())
+                .build();
+    }
+
+    private void setMean(double mean) {
+        Validate.isTrue(Double.isFinite(mean));
+        this.mean = mean;
+    }
+
+    private void setVariance(double variance) {
+        Validate.isTrue(Double.isFinite(variance) && variance >= 0);
+        this.variance = variance;
+    }
+
+    private void setSamples(int samples) {
+        Validate.isTrue(samples >= 0);
+        this.samples = samples;
+    }
+}
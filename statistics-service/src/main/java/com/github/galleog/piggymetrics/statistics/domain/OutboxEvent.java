@@ -0,0 +1,70 @@
+package com.github.galleog.piggymetrics.statistics.domain;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Entity for an event on an account that is saved in the same transaction as the change it reports
+ * and published to Kafka later.
+ */
+@Getter
+public class OutboxEvent {
+    /**
+     * Identifier of the event. Events of the same account are published in the order of their identifiers.
+     */
+    private Long id;
+    /**
+     * Name of the account the event belongs to.
+     */
+    private String accountName;
+    /**
+     * Serialized event.
+     */
+    private byte[] payload;
+    /**
+     * Date when the event was created.
+     */
+    private LocalDateTime createTime;
+
+    @Builder
+    @SuppressWarnings("unused")
+    private OutboxEvent(@Nullable Long id, @NonNull String accountName, @NonNull byte[] payload,
+                        @Nullable LocalDateTime createTime) {
+        setId(id);
+        setAccountName(accountName);
+        setPayload(payload);
+        setCreateTime(createTime);
+    }
+
+    @Override
+    public String toString() {
+        return new ToStringBuilder(this)
+                .append("id", getId())
+                .append("accountName", getAccountName())
+                .build();
+    }
+
+    private void setId(Long id) {
+        this.id = id;
+    }
+
+    private void setAccountName(String accountName) {
+        Validate.notBlank(accountName);
+        this.accountName = accountName;
+    }
+
+    private void setPayload(byte[] payload) {
+        Validate.notNull(payload);
+        this.payload = payload;
+    }
+
+    private void setCreateTime(LocalDateTime createTime) {
+        this.createTime = createTime;
+    }
+}
@@ -9,12 +9,16 @@ import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
 import com.github.galleog.piggymetrics.statistics.domain.ItemMetric;
 import com.github.galleog.piggymetrics.statistics.domain.ItemType;
 import com.github.galleog.piggymetrics.statistics.domain.TimePeriod;
+import com.github.galleog.piggymetrics.statistics.repository.AccountVersionRepository;
 import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
+import com.github.galleog.piggymetrics.statistics.service.AnomalyDetectionService;
 import com.github.galleog.piggymetrics.statistics.service.MonetaryConversionService;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.reactive.TransactionalOperator;
@@ -24,10 +28,17 @@ import reactor.core.publisher.Mono;
 import javax.money.CurrencyUnit;
 import javax.money.Monetary;
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Consumer of events on account updates.
+ * <p/>
+ * Events on the same account are applied one by one in the order of their versions. A snapshot is applied
+ * if it's later than the version the statistics are up to date with, and a delta only if it follows that version,
+ * since its items are merged with the latest data point. Any other event is skipped, and the statistics
+ * catch up with the account when its next snapshot arrives.
  */
 @Slf4j
 @Component
@@ -38,32 +49,102 @@ public class AccountUpdatedEventConsumer implements Function<Flux<ConsumerRecord
 
     private final MonetaryConversionService conversionService;
     private final DataPointRepository dataPointRepository;
+    private final AccountVersionRepository accountVersionRepository;
+    private final AnomalyDetectionService anomalyDetectionService;
     private final TransactionalOperator operator;
 
     @Override
     public Mono<Void> apply(Flux<ConsumerRecord<String, AccountUpdatedEvent>> records) {
-        return records.map(ConsumerRecord::value)
-                .doOnNext(event -> logger.info("AccountUpdatedEvent for account '{}' received", event.getAccountName()))
-                .flatMap(this::doUpdateStatistics)
+        // events are keyed by account name, so ordering events of a partition orders events of every account;
+        // the number of groups is bounded by the number of assigned partitions
+        return records.groupBy(ConsumerRecord::partition)
+                .flatMap(partition -> partition.map(ConsumerRecord::value)
+                        .doOnNext(event -> logger.info("AccountUpdatedEvent for account '{}' received",
+                                event.getAccountName()))
+                        .concatMap(this::doUpdateStatistics), Integer.MAX_VALUE)
                 .then();
     }
 
     private Mono<DataPoint> doUpdateStatistics(AccountUpdatedEvent event) {
-        var metrics = event.getItemsList()
-                .stream()
-                .map(this::toNormalizedMetric)
-                .collect(ImmutableList.toImmutableList());
         var saving = conversionService.convert(
                 moneyConverter().reverse().convert(event.getSaving().getMoney()), BASE_CURRENCY
         ).getNumber().numberValue(BigDecimal.class);
-        var dataPoint = updateStatistics(event.getAccountName(), metrics, saving);
 
+        return advanceVersion(event)
+                .filter(Boolean::booleanValue)
+                .flatMap(advanced -> toMetrics(event))
+                .map(metrics -> updateStatistics(event.getAccountName(), metrics, saving))
+                .flatMap(this::saveDataPoint)
+                .flatMap(dp -> anomalyDetectionService.detect(dp).thenReturn(dp))
+                .as(operator::transactional);
+    }
+
+    private Mono<Boolean> advanceVersion(AccountUpdatedEvent event) {
+        if (!event.getDelta()) {
+            return accountVersionRepository.advance(event.getAccountName(), event.getVersion())
+                    .doOnNext(advanced -> {
+                        if (!advanced) {
+                            logger.info("Stale AccountUpdatedEvent for account '{}' with version {} skipped",
+                                    event.getAccountName(), event.getVersion());
+                        }
+                    });
+        }
+
+        // a delta that doesn't specify the version it's based on contains the changes of one update
+        var fromVersion = event.getFromVersion() != 0 ? event.getFromVersion() : event.getVersion() - 1;
+        return accountVersionRepository.compareAndSet(event.getAccountName(), fromVersion, event.getVersion())
+                .doOnNext(advanced -> {
+                    if (!advanced) {
+                        logger.warn("Delta AccountUpdatedEvent for account '{}' from version {} to {} skipped "
+                                        + "since it doesn't follow the applied version; waiting for the next snapshot",
+                                event.getAccountName(), fromVersion, event.getVersion());
+                    }
+                });
+    }
+
+    private Mono<DataPoint> saveDataPoint(DataPoint dataPoint) {
         return dataPointRepository.update(dataPoint)
                 .doOnNext(dp -> logger.info("Statistics for the account '{}' updated at {}", dp.getAccountName(), dp.getDate()))
                 .switchIfEmpty(Mono.defer(() -> dataPointRepository.save(dataPoint)
                         .doOnNext(dp ->
                                 logger.info("Statistics for the account '{}' created at {}", dp.getAccountName(), dp.getDate()))
-                )).as(operator::transactional);
+                ));
+    }
+
+    private Mono<List<ItemMetric>> toMetrics(AccountUpdatedEvent event) {
+        var metrics = event.getItemsList()
+                .stream()
+                .map(this::toNormalizedMetric)
+                .collect(ImmutableList.toImmutableList());
+        if (!event.getDelta()) {
+            return Mono.just(metrics);
+        }
+
+        // a delta is applied to the items of the latest data point; unchanged items keep their normalized amounts
+        var changedKeys = Stream.concat(
+                metrics.stream().map(metric -> Pair.of(metric.getType(), metric.getTitle())),
+                event.getRemovedItemsList()
+                        .stream()
+                        .map(key -> Pair.of(ItemType.valueOf(key.getType().name()), key.getTitle()))
+        ).collect(ImmutableSet.toImmutableSet());
+        return dataPointRepository.getLatestByAccountName(event.getAccountName())
+                .map(DataPoint::getMetrics)
+                .defaultIfEmpty(ImmutableList.of())
+                .map(previous -> ImmutableList.<ItemMetric>builder()
+                        .addAll(previous.stream()
+                                .filter(metric -> !changedKeys.contains(Pair.of(metric.getType(), metric.getTitle())))
+                                .map(this::copyMetric)
+                                .iterator())
+                        .addAll(metrics)
+                        .build());
+    }
+
+    private ItemMetric copyMetric(ItemMetric metric) {
+        return ItemMetric.builder()
+                .type(metric.getType())
+                .title(metric.getTitle())
+                .moneyAmount(metric.getMoneyAmount())
+                .build();
     }
 
     private ItemMetric toNormalizedMetric(AccountServiceProto.Item item) {
@@ -0,0 +1,112 @@
+package com.github.galleog.piggymetrics.statistics.event;
+
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.statistics.grpc.StatisticsServiceProto.AnomalyDetectedEvent;
+import com.github.galleog.piggymetrics.statistics.repository.OutboxEventRepository;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.protobuf.InvalidProtocolBufferException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.reactive.ReactiveKafkaProducerTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.kafka.sender.SenderRecord;
+
+import java.util.List;
+
+/**
+ * Relay that publishes {@link AnomalyDetectedEvent}s saved in the outbox to Kafka.
+ * Events are published in batches in the order they were saved and deleted from the outbox
+ * only after Kafka has acknowledged them, so every event is delivered at least once.
+ */
+@Slf4j
+@Component
+public class AnomalyDetectedEventRelay {
+    private final String topic;
+    private final int batchSize;
+    private final OutboxEventRepository outboxEventRepository;
+    private final ReactiveKafkaProducerTemplate<String, AnomalyDetectedEvent> producerTemplate;
+    private final TransactionalOperator operator;
+
+    /**
+     * Constructs an object instance.
+     */
+    public AnomalyDetectedEventRelay(@Value("${spring.kafka.producer.topic}") String topic,
+                                     @Value("${statistics.outbox.batch-size}") int batchSize,
+                                     OutboxEventRepository outboxEventRepository,
+                                     ReactiveKafkaProducerTemplate<String, AnomalyDetectedEvent> producerTemplate,
+                                     TransactionalOperator operator) {
+        Validate.isTrue(batchSize > 0);
+
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.outboxEventRepository = outboxEventRepository;
+        this.producerTemplate = producerTemplate;
+        this.operator = operator;
+    }
+
+    /**
+     * Publishes all events saved in the outbox. A failed batch is left in the outbox and retried by the next run.
+     */
+    @Scheduled(fixedDelayString = "${statistics.outbox.poll-delay}")
+    public void relay() {
+        try {
+            var count = relayBatch()
+                    .expand(published -> published == batchSize ? relayBatch() : Mono.empty())
+                    .reduce(0, Integer::sum)
+                    .block();
+            if (count != null && count > 0) {
+                logger.debug("{} AnomalyDetectedEvents published", count);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to publish AnomalyDetectedEvents", e);
+        }
+    }
+
+    /**
+     * Publishes the oldest batch of events.
+     *
+     * @return the number of published events
+     */
+    @VisibleForTesting
+    Mono<Integer> relayBatch() {
+        // events are locked until they are deleted, so concurrent relays never publish them twice
+        return outboxEventRepository.lockOldest(batchSize)
+                .collectList()
+                .flatMap(this::publish)
+                .as(operator::transactional);
+    }
+
+    private Mono<Integer> publish(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        var ids = events.stream()
+                .map(OutboxEvent::getId)
+                .collect(ImmutableList.toImmutableList());
+        return producerTemplate.send(Flux.defer(() -> Flux.fromIterable(events).map(this::toSenderRecord)))
+                .doOnNext(result -> {
+                    if (result.exception() != null) {
+                        throw Exceptions.propagate(result.exception());
+                    }
+                }).then(outboxEventRepository.delete(ids))
+                .thenReturn(events.size());
+    }
+
+    private SenderRecord<String, AnomalyDetectedEvent, Long> toSenderRecord(OutboxEvent event) {
+        try {
+            var value = AnomalyDetectedEvent.parseFrom(event.getPayload());
+            return SenderRecord.create(new ProducerRecord<>(topic, event.getAccountName(), value), event.getId());
+        } catch (InvalidProtocolBufferException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.galleog.piggymetrics.statistics.repository;
+
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Mono;
+
+/**
+ * Repository for the versions of accounts the statistics are up to date with.
+ * Every method updates the version only if it's applicable and locks it until the end of the transaction,
+ * so events on the same account are never applied concurrently.
+ */
+public interface AccountVersionRepository {
+    /**
+     * Sets the version of an account if the account doesn't have a version yet or its version is less than the new one.
+     *
+     * @param accountName the account name
+     * @param version     the new version
+     * @return {@code true} if the version is set,
+     * or {@code false} if the account already has the same or a later version
+     */
+    Mono<Boolean> advance(@NonNull String accountName, long version);
+
+    /**
+     * Sets the version of an account if its current version is equal to the expected one.
+     *
+     * @param accountName the account name
+     * @param expected    the expected current version
+     * @param version     the new version
+     * @return {@code true} if the version is set, or {@code false} if the account doesn't have the expected version
+     */
+    Mono<Boolean> compareAndSet(@NonNull String accountName, long expected, long version);
+}
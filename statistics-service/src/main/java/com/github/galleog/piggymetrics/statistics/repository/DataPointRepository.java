@@ -1,11 +1,16 @@
 package com.github.galleog.piggymetrics.statistics.repository;
 
+import com.github.galleog.piggymetrics.statistics.domain.DailyTotal;
 import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
+import com.github.galleog.piggymetrics.statistics.domain.ItemTrendPoint;
+import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Optional;
 
 /**
@@ -22,6 +27,14 @@ public interface DataPointRepository {
      */
     Mono<DataPoint> getByAccountNameAndDate(@NonNull String accountName, @NonNull LocalDate date);
 
+    /**
+     * Gets the latest data point of an account.
+     *
+     * @param accountName the account name
+     * @return the data point of the account with the latest date
+     */
+    Mono<DataPoint> getLatestByAccountName(@NonNull String accountName);
+
     /**
      * Finds all data points associated with the specified account.
      *
@@ -31,7 +44,50 @@ public interface DataPointRepository {
     Flux<DataPoint> listByAccountName(String accountName);
 
     /**
-     * Saves a data point.
+     * Finds daily data points of the specified account from its first data point up to the current date.
+     * Days without a stored data point repeat the state of the latest preceding one, so nothing is persisted for them.
+     *
+     * @param accountName the account name
+     * @return the stream of data points for every day ordered by date
+     */
+    Flux<DataPoint> listDenseByAccountName(@NonNull String accountName);
+
+    /**
+     * Finds all data points associated with the specified accounts within an optional date range.
+     *
+     * @param accountNames the account names
+     * @param startDate    the first date of the data points, inclusive, or {@code null} if the range has no lower bound
+     * @param endDate      the last date of the data points, inclusive, or {@code null} if the range has no upper bound
+     * @return the stream of found data points ordered by account name and date
+     */
+    Flux<DataPoint> listByAccountNames(@NonNull Collection<String> accountNames, @Nullable LocalDate startDate,
+                                       @Nullable LocalDate endDate);
+
+    /**
+     * Finds values of an income or expense item of the specified account within an optional date range.
+     *
+     * @param accountName the account name
+     * @param title       the item title
+     * @param startDate   the first date of the values, inclusive, or {@code null} if the range has no lower bound
+     * @param endDate     the last date of the values, inclusive, or {@code null} if the range has no upper bound
+     * @return the stream of found item values ordered by date
+     */
+    Flux<ItemTrendPoint> listItemTrend(@NonNull String accountName, @NonNull String title, @Nullable LocalDate startDate,
+                                       @Nullable LocalDate endDate);
+
+    /**
+     * Finds totals of all accounts per day within an optional date range.
+     * The totals are maintained when data points are saved or updated, so they aren't summed up on reading.
+     *
+     * @param startDate the first date of the totals, inclusive, or {@code null} if the range has no lower bound
+     * @param endDate   the last date of the totals, inclusive, or {@code null} if the range has no upper bound
+     * @return the stream of found totals ordered by date
+     */
+    Flux<DailyTotal> listDailyTotals(@Nullable LocalDate startDate, @Nullable LocalDate endDate);
+
+    /**
+     * Saves a data point and adds its statistics to the totals of its date.
+     * The baselines of the statistics are calculated from the latest data point of a preceding date.
      *
      * @param dataPoint the data point to save
      * @return the saved data point
@@ -39,11 +95,26 @@ public interface DataPointRepository {
     Mono<DataPoint> save(@NonNull DataPoint dataPoint);
 
     /**
-     * Updates a data point.
+     * Updates a data point and adjusts the totals of its date by the change of its statistics.
+     * The baselines of the statistics are calculated from the latest data point of a preceding date,
+     * so they don't change when a data point is updated. Anomalies already reported for the data point date
+     * stay reported.
      *
      * @param dataPoint the data point to update
      * @return the updated data point, or {@link Optional#empty()}
      * if there is no data point with the specified account name and date
      */
     Mono<DataPoint> update(@NonNull DataPoint dataPoint);
+
+    /**
+     * Marks anomalies of statistics as reported for the date of a data point,
+     * so they aren't reported again when the data point is updated on the same date.
+     *
+     * @param accountName the account name of the data point
+     * @param date        the data point date
+     * @param metrics     the statistical metrics whose anomalies are reported
+     * @return the number of marked statistics
+     */
+    Mono<Integer> markAnomaliesReported(@NonNull String accountName, @NonNull LocalDate date,
+                                        @NonNull Collection<StatisticalMetric> metrics);
 }
@@ -0,0 +1,39 @@
+package com.github.galleog.piggymetrics.statistics.repository;
+
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import org.springframework.lang.NonNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Repository for {@link OutboxEvent}.
+ */
+public interface OutboxEventRepository {
+    /**
+     * Saves several events at once.
+     *
+     * @param events the events to save
+     * @return the number of saved events
+     */
+    Mono<Integer> saveAll(@NonNull Collection<OutboxEvent> events);
+
+    /**
+     * Gets the oldest events and locks them until the end of the current transaction.
+     * Events locked by a concurrent transaction are skipped instead of waited for, so the events
+     * are never read by two transactions at once.
+     *
+     * @param limit the maximum number of events to get
+     * @return the oldest events ordered by their identifiers
+     */
+    Flux<OutboxEvent> lockOldest(int limit);
+
+    /**
+     * Deletes events.
+     *
+     * @param ids the identifiers of the events to delete
+     * @return the number of deleted events
+     */
+    Mono<Integer> delete(@NonNull Collection<Long> ids);
+}
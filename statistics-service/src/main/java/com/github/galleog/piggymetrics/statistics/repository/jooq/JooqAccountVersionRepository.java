@@ -0,0 +1,50 @@
+package com.github.galleog.piggymetrics.statistics.repository.jooq;
+
+import static com.github.galleog.piggymetrics.statistics.domain.Tables.ACCOUNT_VERSIONS;
+import static org.jooq.impl.DSL.excluded;
+
+import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.github.galleog.piggymetrics.statistics.repository.AccountVersionRepository;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Mono;
+
+/**
+ * Implementation of {@link AccountVersionRepository} using <a href="https://www.jooq.org/">jOOQ</a>.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JooqAccountVersionRepository implements AccountVersionRepository {
+    private final TransactionAwareJooqWrapper wrapper;
+
+    @Override
+    @Transactional
+    public Mono<Boolean> advance(@NonNull String accountName, long version) {
+        Validate.notNull(accountName);
+        // the conflicting row is locked even if it isn't updated
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(ACCOUNT_VERSIONS)
+                        .columns(ACCOUNT_VERSIONS.ACCOUNT_NAME, ACCOUNT_VERSIONS.VERSION)
+                        .values(accountName, version)
+                        .onConflict(ACCOUNT_VERSIONS.ACCOUNT_NAME)
+                        .doUpdate()
+                        .set(ACCOUNT_VERSIONS.VERSION, excluded(ACCOUNT_VERSIONS.VERSION))
+                        .where(ACCOUNT_VERSIONS.VERSION.lt(excluded(ACCOUNT_VERSIONS.VERSION)))
+        ).map(count -> count > 0);
+    }
+
+    @Override
+    @Transactional
+    public Mono<Boolean> compareAndSet(@NonNull String accountName, long expected, long version) {
+        Validate.notNull(accountName);
+        return wrapper.withDSLContext(ctx ->
+                ctx.update(ACCOUNT_VERSIONS)
+                        .set(ACCOUNT_VERSIONS.VERSION, version)
+                        .where(ACCOUNT_VERSIONS.ACCOUNT_NAME.eq(accountName)
+                                .and(ACCOUNT_VERSIONS.VERSION.eq(expected)))
+        ).map(count -> count > 0);
+    }
+}
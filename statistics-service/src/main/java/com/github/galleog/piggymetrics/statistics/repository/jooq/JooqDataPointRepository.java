@@ -1,26 +1,53 @@
 package com.github.galleog.piggymetrics.statistics.repository.jooq;
 
 import static com.github.galleog.piggymetrics.statistics.domain.Sequences.ITEM_METRIC_SEQ;
+import static com.github.galleog.piggymetrics.statistics.domain.Tables.DAILY_TOTALS;
 import static com.github.galleog.piggymetrics.statistics.domain.Tables.DATA_POINTS;
 import static com.github.galleog.piggymetrics.statistics.domain.Tables.ITEM_METRICS;
 import static com.github.galleog.piggymetrics.statistics.domain.Tables.STATISTICAL_METRICS;
+import static org.jooq.impl.DSL.coalesce;
+import static org.jooq.impl.DSL.currentLocalDate;
+import static org.jooq.impl.DSL.excluded;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.inline;
+import static org.jooq.impl.DSL.max;
+import static org.jooq.impl.DSL.min;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.noCondition;
+import static org.jooq.impl.DSL.orderBy;
+import static org.jooq.impl.DSL.row;
+import static org.jooq.impl.DSL.select;
+import static org.jooq.impl.DSL.selectOne;
+import static org.jooq.impl.DSL.table;
+import static org.jooq.impl.DSL.trueCondition;
 import static org.jooq.impl.DSL.val;
+import static org.jooq.impl.DSL.when;
 
+import com.github.galleog.piggymetrics.statistics.domain.DailyTotal;
 import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
 import com.github.galleog.piggymetrics.statistics.domain.ItemMetric;
+import com.github.galleog.piggymetrics.statistics.domain.ItemTrendPoint;
+import com.github.galleog.piggymetrics.statistics.domain.MetricBaseline;
 import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
+import com.github.galleog.piggymetrics.statistics.domain.tables.records.DailyTotalsRecord;
 import com.github.galleog.piggymetrics.statistics.domain.tables.records.DataPointsRecord;
 import com.github.galleog.piggymetrics.statistics.domain.tables.records.ItemMetricsRecord;
 import com.github.galleog.piggymetrics.statistics.domain.tables.records.StatisticalMetricsRecord;
 import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.SequenceIdAllocator;
 import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
-import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.Validate;
+import org.jooq.DSLContext;
 import org.jooq.Record;
+import org.jooq.SelectOnConditionStep;
+import org.jooq.impl.SQLDataType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
@@ -28,16 +55,50 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Implementation of {@link DataPointRepository} using <a href="https://www.jooq.org/">jOOQ</a>.
  */
 @Repository
-@RequiredArgsConstructor
 public class JooqDataPointRepository implements DataPointRepository {
+    private static final String DAYS = "days";
+    private static final String DAY = "day";
+    private static final String SOURCE_DATE = "source_date";
+    private static final String PREVIOUS = "previous";
+    private static final String ONE = "one";
+    /**
+     * Number of item metric identifiers reserved at once. Must be equal to the increment of the item metric sequence.
+     */
+    private static final int ITEM_METRIC_ID_BLOCK_SIZE = 50;
+
+    private final double smoothingFactor;
     private final TransactionAwareJooqWrapper wrapper;
+    private final SequenceIdAllocator itemMetricIdAllocator;
+
+    /**
+     * Constructs an object instance.
+     *
+     * @param smoothingFactor the weight of a new sample in the baselines of the statistics,
+     *                        from 0 exclusive to 1 inclusive
+     * @param wrapper         the jOOQ wrapper
+     * @throws IllegalArgumentException if the smoothing factor is out of range
+     */
+    public JooqDataPointRepository(@Value("${statistics.anomaly.smoothing-factor}") double smoothingFactor,
+                                   TransactionAwareJooqWrapper wrapper) {
+        Validate.isTrue(smoothingFactor > 0 && smoothingFactor <= 1);
+
+        this.smoothingFactor = smoothingFactor;
+        this.wrapper = wrapper;
+        this.itemMetricIdAllocator = new SequenceIdAllocator(wrapper, ITEM_METRIC_SEQ, ITEM_METRIC_ID_BLOCK_SIZE);
+    }
 
     @Override
     @Transactional(readOnly = true)
@@ -45,33 +106,146 @@ public class JooqDataPointRepository implements DataPointRepository {
         Validate.notNull(accountName);
         Validate.notNull(date);
         return wrapper.withDSLContextMany(ctx ->
-                        ctx.select()
-                                .from(DATA_POINTS)
-                                .leftJoin(ITEM_METRICS).on(ITEM_METRICS.ACCOUNT_NAME.eq(DATA_POINTS.ACCOUNT_NAME)
-                                        .and(ITEM_METRICS.DATA_POINT_DATE.eq(DATA_POINTS.DATA_POINT_DATE)))
-                                .join(STATISTICAL_METRICS).on(STATISTICAL_METRICS.ACCOUNT_NAME.eq(DATA_POINTS.ACCOUNT_NAME)
-                                        .and(STATISTICAL_METRICS.DATA_POINT_DATE.eq(DATA_POINTS.DATA_POINT_DATE)))
+                        selectDataPoints(ctx)
                                 .where(DATA_POINTS.ACCOUNT_NAME.eq(accountName).and(DATA_POINTS.DATA_POINT_DATE.eq(date)))
                 ).collectList()
                 .mapNotNull(this::toDataPoint);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Mono<DataPoint> getLatestByAccountName(@NonNull String accountName) {
+        Validate.notNull(accountName);
+        var latestDate = select(max(DATA_POINTS.DATA_POINT_DATE))
+                .from(DATA_POINTS)
+                .where(DATA_POINTS.ACCOUNT_NAME.eq(accountName));
+        return wrapper.withDSLContextMany(ctx ->
+                        selectDataPoints(ctx)
+                                .where(DATA_POINTS.ACCOUNT_NAME.eq(accountName).and(DATA_POINTS.DATA_POINT_DATE.eq(latestDate)))
+                ).collectList()
+                .mapNotNull(this::toDataPoint);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Flux<DataPoint> listByAccountName(@NonNull String accountName) {
         Validate.notNull(accountName);
         return wrapper.withDSLContextMany(ctx ->
-                        ctx.select()
-                                .from(DATA_POINTS)
-                                .leftJoin(ITEM_METRICS).on(ITEM_METRICS.ACCOUNT_NAME.eq(DATA_POINTS.ACCOUNT_NAME)
-                                        .and(ITEM_METRICS.DATA_POINT_DATE.eq(DATA_POINTS.DATA_POINT_DATE)))
-                                .join(STATISTICAL_METRICS).on(STATISTICAL_METRICS.ACCOUNT_NAME.eq(DATA_POINTS.ACCOUNT_NAME)
-                                        .and(STATISTICAL_METRICS.DATA_POINT_DATE.eq(DATA_POINTS.DATA_POINT_DATE)))
+                        selectDataPoints(ctx)
                                 .where(DATA_POINTS.ACCOUNT_NAME.eq(accountName))
                 ).bufferUntilChanged(record -> record.get(DATA_POINTS.DATA_POINT_DATE))
                 .map(this::toDataPoint);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<DataPoint> listDenseByAccountName(@NonNull String accountName) {
+        Validate.notNull(accountName);
+
+        // every day from the first data point up to today paired with the latest data point date not after it
+        var firstDate = select(min(DATA_POINTS.DATA_POINT_DATE))
+                .from(DATA_POINTS)
+                .where(DATA_POINTS.ACCOUNT_NAME.eq(accountName))
+                .<LocalDate>asField();
+        var series = table("generate_series({0}, {1}, interval '1 day')", firstDate, currentLocalDate())
+                .as("series", "ts");
+        var seriesDay = field(name("series", "ts"), LocalDateTime.class).cast(LocalDate.class);
+        var days = name(DAYS).fields(DAY, SOURCE_DATE).as(
+                select(seriesDay, max(DATA_POINTS.DATA_POINT_DATE).over(orderBy(seriesDay)))
+                        .from(series)
+                        .leftJoin(DATA_POINTS).on(DATA_POINTS.ACCOUNT_NAME.eq(accountName)
+                                .and(DATA_POINTS.DATA_POINT_DATE.eq(seriesDay)))
+        );
+        var day = field(name(DAYS, DAY), LocalDate.class);
+        var sourceDate = field(name(DAYS, SOURCE_DATE), LocalDate.class);
+
+        return wrapper.withDSLContextMany(ctx ->
+                        ctx.with(days)
+                                .select(
+                                        day,
+                                        ITEM_METRICS.ID,
+                                        ITEM_METRICS.ITEM_TYPE,
+                                        ITEM_METRICS.TITLE,
+                                        ITEM_METRICS.MONEY_AMOUNT,
+                                        STATISTICAL_METRICS.STATISTICAL_METRIC,
+                                        STATISTICAL_METRICS.MONEY_AMOUNT,
+                                        STATISTICAL_METRICS.MEAN,
+                                        STATISTICAL_METRICS.VARIANCE,
+                                        STATISTICAL_METRICS.SAMPLES,
+                                        STATISTICAL_METRICS.ANOMALY_REPORTED
+                                ).from(days)
+                                .leftJoin(ITEM_METRICS).on(ITEM_METRICS.ACCOUNT_NAME.eq(accountName)
+                                        .and(ITEM_METRICS.DATA_POINT_DATE.eq(sourceDate)))
+                                .join(STATISTICAL_METRICS).on(STATISTICAL_METRICS.ACCOUNT_NAME.eq(accountName)
+                                        .and(STATISTICAL_METRICS.DATA_POINT_DATE.eq(sourceDate)))
+                                .orderBy(day)
+                ).bufferUntilChanged(record -> record.get(day))
+                .map(records -> toDataPoint(accountName, records.get(0).get(day), records));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<DataPoint> listByAccountNames(@NonNull Collection<String> accountNames, @Nullable LocalDate startDate,
+                                              @Nullable LocalDate endDate) {
+        Validate.noNullElements(accountNames);
+        var condition = DATA_POINTS.ACCOUNT_NAME.in(accountNames)
+                .and(startDate == null ? noCondition() : DATA_POINTS.DATA_POINT_DATE.ge(startDate))
+                .and(endDate == null ? noCondition() : DATA_POINTS.DATA_POINT_DATE.le(endDate));
+        return wrapper.withDSLContextMany(ctx ->
+                        selectDataPoints(ctx)
+                                .where(condition)
+                                .orderBy(DATA_POINTS.ACCOUNT_NAME, DATA_POINTS.DATA_POINT_DATE)
+                ).bufferUntilChanged(record -> record.into(DATA_POINTS.ACCOUNT_NAME, DATA_POINTS.DATA_POINT_DATE))
+                .map(this::toDataPoint);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<ItemTrendPoint> listItemTrend(@NonNull String accountName, @NonNull String title,
+                                              @Nullable LocalDate startDate, @Nullable LocalDate endDate) {
+        Validate.notNull(accountName);
+        Validate.notNull(title);
+        // served by the index on (account_name, title, data_point_date)
+        var condition = ITEM_METRICS.ACCOUNT_NAME.eq(accountName)
+                .and(ITEM_METRICS.TITLE.eq(title))
+                .and(startDate == null ? noCondition() : ITEM_METRICS.DATA_POINT_DATE.ge(startDate))
+                .and(endDate == null ? noCondition() : ITEM_METRICS.DATA_POINT_DATE.le(endDate));
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.select(ITEM_METRICS.DATA_POINT_DATE, ITEM_METRICS.ITEM_TYPE, ITEM_METRICS.MONEY_AMOUNT)
+                        .from(ITEM_METRICS)
+                        .where(condition)
+                        .orderBy(ITEM_METRICS.DATA_POINT_DATE)
+        ).map(record ->
+                ItemTrendPoint.builder()
+                        .date(record.get(ITEM_METRICS.DATA_POINT_DATE))
+                        .type(record.get(ITEM_METRICS.ITEM_TYPE))
+                        .moneyAmount(record.get(ITEM_METRICS.MONEY_AMOUNT))
+                        .build()
+        );
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<DailyTotal> listDailyTotals(@Nullable LocalDate startDate, @Nullable LocalDate endDate) {
+        var condition = (startDate == null ? noCondition() : DAILY_TOTALS.DATA_POINT_DATE.ge(startDate))
+                .and(endDate == null ? noCondition() : DAILY_TOTALS.DATA_POINT_DATE.le(endDate));
+        return wrapper.withDSLContextMany(ctx ->
+                        ctx.selectFrom(DAILY_TOTALS)
+                                .where(condition)
+                                .orderBy(DAILY_TOTALS.DATA_POINT_DATE)
+                ).bufferUntilChanged(record -> record.get(DAILY_TOTALS.DATA_POINT_DATE))
+                .map(records ->
+                        DailyTotal.builder()
+                                .date(records.get(0).getDataPointDate())
+                                .statistics(records.stream()
+                                        .collect(ImmutableMap.toImmutableMap(
+                                                DailyTotalsRecord::getStatisticalMetric,
+                                                DailyTotalsRecord::getMoneyAmount
+                                        )))
+                                .build()
+                );
+    }
+
     @Override
     @Transactional
     public Mono<DataPoint> save(@NonNull DataPoint dataPoint) {
@@ -85,8 +259,10 @@ public class JooqDataPointRepository implements DataPointRepository {
                         insertItemMetrics(dataPoint)
                                 .map(builder::metrics)
                 ).flatMap(builder ->
-                        insertStatistics(dataPoint)
-                                .map(statistics -> builder.statistics(statistics).build())
+                        insertStatistics(dataPoint, ImmutableSet.of())
+                                .flatMap(records ->
+                                        updateDailyTotals(dataPoint.getDate(), ImmutableMap.of(), toStatistics(records))
+                                                .thenReturn(toDataPoint(builder, records)))
                 );
     }
 
@@ -110,14 +286,44 @@ public class JooqDataPointRepository implements DataPointRepository {
                 insertItemMetrics(dataPoint)
                         .map(builder::metrics)
         ).flatMap(builder ->
-                deleteStatisticsSql(dataPoint)
-                        .map(i -> builder)
-        ).flatMap(builder ->
-                insertStatistics(dataPoint)
-                        .map(statistics -> builder.statistics(statistics).build())
+                deleteStatistics(dataPoint)
+                        .flatMap(oldRecords -> insertStatistics(dataPoint, toReportedAnomalies(oldRecords))
+                                .flatMap(records ->
+                                        updateDailyTotals(
+                                                dataPoint.getDate(), toStatistics(oldRecords), toStatistics(records)
+                                        ).thenReturn(toDataPoint(builder, records))))
+        );
+    }
+
+    @Override
+    @Transactional
+    public Mono<Integer> markAnomaliesReported(@NonNull String accountName, @NonNull LocalDate date,
+                                               @NonNull Collection<StatisticalMetric> metrics) {
+        Validate.notNull(accountName);
+        Validate.notNull(date);
+        Validate.noNullElements(metrics);
+        if (metrics.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        return wrapper.withDSLContext(ctx ->
+                ctx.update(STATISTICAL_METRICS)
+                        .set(STATISTICAL_METRICS.ANOMALY_REPORTED, true)
+                        .where(STATISTICAL_METRICS.ACCOUNT_NAME.eq(accountName)
+                                .and(STATISTICAL_METRICS.DATA_POINT_DATE.eq(date))
+                                .and(STATISTICAL_METRICS.STATISTICAL_METRIC.in(metrics)))
         );
     }
 
+    private SelectOnConditionStep<Record> selectDataPoints(DSLContext ctx) {
+        return ctx.select()
+                .from(DATA_POINTS)
+                .leftJoin(ITEM_METRICS).on(ITEM_METRICS.ACCOUNT_NAME.eq(DATA_POINTS.ACCOUNT_NAME)
+                        .and(ITEM_METRICS.DATA_POINT_DATE.eq(DATA_POINTS.DATA_POINT_DATE)))
+                .join(STATISTICAL_METRICS).on(STATISTICAL_METRICS.ACCOUNT_NAME.eq(DATA_POINTS.ACCOUNT_NAME)
+                        .and(STATISTICAL_METRICS.DATA_POINT_DATE.eq(DATA_POINTS.DATA_POINT_DATE)));
+    }
+
     private Mono<DataPointsRecord> insertDataPointSql(DataPoint dataPoint) {
         return wrapper.withDSLContext(ctx ->
                 ctx.insertInto(DATA_POINTS)
@@ -128,24 +334,33 @@ public class JooqDataPointRepository implements DataPointRepository {
     }
 
     private Mono<List<ItemMetric>> insertItemMetrics(DataPoint dataPoint) {
-        return Flux.fromIterable(dataPoint.getMetrics())
-                .flatMap(itemMetric -> wrapper.withDSLContext(ctx ->
-                        ctx.insertInto(ITEM_METRICS)
-                                .columns(
+        var metrics = ImmutableList.copyOf(dataPoint.getMetrics());
+        if (metrics.isEmpty()) {
+            return Mono.just(ImmutableList.of());
+        }
+
+        // identifiers are generated on the client, so all metrics are inserted by one statement
+        return itemMetricIdAllocator.nextIds(metrics.size())
+                .map(ids -> IntStream.range(0, metrics.size())
+                        .mapToObj(i -> row(
+                                val(ids.get(i), ITEM_METRICS.ID),
+                                val(dataPoint.getAccountName(), ITEM_METRICS.ACCOUNT_NAME),
+                                val(dataPoint.getDate(), ITEM_METRICS.DATA_POINT_DATE),
+                                val(metrics.get(i).getTitle(), ITEM_METRICS.TITLE),
+                                val(metrics.get(i).getMoneyAmount(), ITEM_METRICS.MONEY_AMOUNT),
+                                val(metrics.get(i).getType(), ITEM_METRICS.ITEM_TYPE)
+                        )).collect(ImmutableList.toImmutableList())
+                ).flatMapMany(rows -> wrapper.withDSLContextMany(ctx ->
+                        ctx.insertInto(
+                                        ITEM_METRICS,
                                         ITEM_METRICS.ID,
                                         ITEM_METRICS.ACCOUNT_NAME,
                                         ITEM_METRICS.DATA_POINT_DATE,
                                         ITEM_METRICS.TITLE,
                                         ITEM_METRICS.MONEY_AMOUNT,
                                         ITEM_METRICS.ITEM_TYPE
-                                ).values(
-                                        ITEM_METRIC_SEQ.nextval(),
-                                        val(dataPoint.getAccountName()),
-                                        val(dataPoint.getDate()),
-                                        val(itemMetric.getTitle()),
-                                        val(itemMetric.getMoneyAmount()),
-                                        val(itemMetric.getType())
-                                ).returning()
+                                ).valuesOfRows(rows)
+                                .returning()
                 )).map(this::toItemMetric)
                 .collectList();
     }
@@ -158,43 +373,133 @@ public class JooqDataPointRepository implements DataPointRepository {
         );
     }
 
-    private Mono<Map<StatisticalMetric, BigDecimal>> insertStatistics(DataPoint dataPoint) {
+    private Mono<List<StatisticalMetricsRecord>> insertStatistics(DataPoint dataPoint,
+                                                                  Set<StatisticalMetric> reportedAnomalies) {
         return Flux.fromIterable(dataPoint.getStatistics().entrySet())
-                .flatMap(entry -> wrapper.withDSLContext(ctx ->
-                        ctx.insertInto(STATISTICAL_METRICS)
-                                .columns(
-                                        STATISTICAL_METRICS.ACCOUNT_NAME,
-                                        STATISTICAL_METRICS.DATA_POINT_DATE,
-                                        STATISTICAL_METRICS.STATISTICAL_METRIC,
-                                        STATISTICAL_METRICS.MONEY_AMOUNT
-                                ).values(
-                                        dataPoint.getAccountName(),
-                                        dataPoint.getDate(),
-                                        entry.getKey(),
-                                        entry.getValue()
-                                ).returning()
-                )).map(record ->
-                        Maps.immutableEntry(
-                                record.getStatisticalMetric(),
-                                record.getMoneyAmount()
-                        )
-                ).collectList()
-                .map(ImmutableMap::copyOf);
+                .flatMap(entry -> insertStatisticSql(dataPoint, entry.getKey(), entry.getValue(),
+                        reportedAnomalies.contains(entry.getKey())))
+                .collectList();
     }
 
-    private Mono<Integer> deleteStatisticsSql(DataPoint dataPoint) {
+    private Mono<StatisticalMetricsRecord> insertStatisticSql(DataPoint dataPoint, StatisticalMetric metric,
+                                                              BigDecimal amount, boolean anomalyReported) {
+        // the baseline is calculated by the statement that inserts the statistic, so it costs no extra queries:
+        // the last value of the previous data point is added to the baseline of that data point
+        var previous = select(
+                STATISTICAL_METRICS.MONEY_AMOUNT,
+                STATISTICAL_METRICS.MEAN,
+                STATISTICAL_METRICS.VARIANCE,
+                STATISTICAL_METRICS.SAMPLES
+        ).from(STATISTICAL_METRICS)
+                .where(STATISTICAL_METRICS.ACCOUNT_NAME.eq(dataPoint.getAccountName())
+                        .and(STATISTICAL_METRICS.STATISTICAL_METRIC.eq(metric))
+                        .and(STATISTICAL_METRICS.DATA_POINT_DATE.lt(dataPoint.getDate())))
+                .orderBy(STATISTICAL_METRICS.DATA_POINT_DATE.desc())
+                .limit(1)
+                .asTable(PREVIOUS);
+        var value = previous.field(STATISTICAL_METRICS.MONEY_AMOUNT).cast(SQLDataType.DOUBLE);
+        var mean = previous.field(STATISTICAL_METRICS.MEAN);
+        var variance = previous.field(STATISTICAL_METRICS.VARIANCE);
+        var samples = previous.field(STATISTICAL_METRICS.SAMPLES);
+        var diff = value.minus(mean);
         return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(
+                                STATISTICAL_METRICS,
+                                STATISTICAL_METRICS.ACCOUNT_NAME,
+                                STATISTICAL_METRICS.DATA_POINT_DATE,
+                                STATISTICAL_METRICS.STATISTICAL_METRIC,
+                                STATISTICAL_METRICS.MONEY_AMOUNT,
+                                STATISTICAL_METRICS.MEAN,
+                                STATISTICAL_METRICS.VARIANCE,
+                                STATISTICAL_METRICS.SAMPLES,
+                                STATISTICAL_METRICS.ANOMALY_REPORTED
+                        ).select(select(
+                                        val(dataPoint.getAccountName(), STATISTICAL_METRICS.ACCOUNT_NAME),
+                                        val(dataPoint.getDate(), STATISTICAL_METRICS.DATA_POINT_DATE),
+                                        val(metric, STATISTICAL_METRICS.STATISTICAL_METRIC),
+                                        val(amount, STATISTICAL_METRICS.MONEY_AMOUNT),
+                                        when(samples.isNull(), inline(0.0))
+                                                .when(samples.eq(0), value)
+                                                .otherwise(mean.plus(diff.times(smoothingFactor))),
+                                        when(samples.isNull().or(samples.eq(0)), inline(0.0))
+                                                .otherwise(variance.plus(diff.times(diff).times(smoothingFactor))
+                                                        .times(1 - smoothingFactor)),
+                                        coalesce(samples.plus(1), inline(0)),
+                                        val(anomalyReported, STATISTICAL_METRICS.ANOMALY_REPORTED)
+                                ).from(selectOne().asTable(ONE))
+                                .leftJoin(previous).on(trueCondition())
+                        ).returning()
+        );
+    }
+
+    private Mono<List<StatisticalMetricsRecord>> deleteStatistics(DataPoint dataPoint) {
+        return wrapper.withDSLContextMany(ctx ->
                 ctx.deleteFrom(STATISTICAL_METRICS)
                         .where(STATISTICAL_METRICS.ACCOUNT_NAME.eq(dataPoint.getAccountName())
                                 .and(STATISTICAL_METRICS.DATA_POINT_DATE.eq(dataPoint.getDate())))
+                        .returning()
+        ).collectList();
+    }
+
+    private Mono<Integer> updateDailyTotals(LocalDate date, Map<StatisticalMetric, BigDecimal> oldStatistics,
+                                            Map<StatisticalMetric, BigDecimal> newStatistics) {
+        // rows are locked in the order of metrics to avoid deadlocks, unchanged totals aren't touched to avoid contention
+        var rows = Arrays.stream(StatisticalMetric.values())
+                .filter(metric -> newStatistics.containsKey(metric) || oldStatistics.containsKey(metric))
+                .map(metric -> Maps.immutableEntry(metric, newStatistics.getOrDefault(metric, BigDecimal.ZERO)
+                        .subtract(oldStatistics.getOrDefault(metric, BigDecimal.ZERO))))
+                .filter(delta -> !oldStatistics.containsKey(delta.getKey()) || delta.getValue().signum() != 0)
+                .map(delta -> row(date, delta.getKey(), delta.getValue()))
+                .collect(Collectors.toList());
+        if (rows.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(
+                                DAILY_TOTALS,
+                                DAILY_TOTALS.DATA_POINT_DATE,
+                                DAILY_TOTALS.STATISTICAL_METRIC,
+                                DAILY_TOTALS.MONEY_AMOUNT
+                        ).valuesOfRows(rows)
+                        .onConflict(DAILY_TOTALS.DATA_POINT_DATE, DAILY_TOTALS.STATISTICAL_METRIC)
+                        .doUpdate()
+                        .set(DAILY_TOTALS.MONEY_AMOUNT, DAILY_TOTALS.MONEY_AMOUNT.add(excluded(DAILY_TOTALS.MONEY_AMOUNT)))
         );
     }
 
+    private DataPoint toDataPoint(DataPoint.DataPointBuilder builder, List<StatisticalMetricsRecord> records) {
+        records.forEach(record -> builder.statistic(record.getStatisticalMetric(), record.getMoneyAmount())
+                .baseline(record.getStatisticalMetric(), toMetricBaseline(record)));
+        return builder.reportedAnomalies(toReportedAnomalies(records))
+                .build();
+    }
+
+    private Set<StatisticalMetric> toReportedAnomalies(List<StatisticalMetricsRecord> records) {
+        return records.stream()
+                .filter(record -> Boolean.TRUE.equals(record.getAnomalyReported()))
+                .map(StatisticalMetricsRecord::getStatisticalMetric)
+                .collect(ImmutableSet.toImmutableSet());
+    }
+
+    private Map<StatisticalMetric, BigDecimal> toStatistics(List<StatisticalMetricsRecord> records) {
+        return records.stream()
+                .collect(ImmutableMap.toImmutableMap(
+                        StatisticalMetricsRecord::getStatisticalMetric,
+                        StatisticalMetricsRecord::getMoneyAmount
+                ));
+    }
+
     private DataPoint toDataPoint(List<Record> records) {
         if (records.isEmpty()) {
             return null;
         }
 
+        Record record = records.get(0);
+        return toDataPoint(record.get(DATA_POINTS.ACCOUNT_NAME), record.get(DATA_POINTS.DATA_POINT_DATE), records);
+    }
+
+    private DataPoint toDataPoint(String accountName, LocalDate date, List<Record> records) {
         var itemMetrics = records.stream()
                 .filter(r -> r.get(ITEM_METRICS.ID) != null)
                 .map(r -> r.into(ITEM_METRICS))
@@ -204,17 +509,19 @@ public class JooqDataPointRepository implements DataPointRepository {
         var statistics = records.stream()
                 .map(r -> r.into(STATISTICAL_METRICS))
                 .distinct()
-                .collect(ImmutableMap.toImmutableMap(
-                        StatisticalMetricsRecord::getStatisticalMetric,
-                        StatisticalMetricsRecord::getMoneyAmount
-                ));
+                .collect(ImmutableList.toImmutableList());
 
-        Record record = records.get(0);
-        return DataPoint.builder()
-                .accountName(record.get(DATA_POINTS.ACCOUNT_NAME))
-                .date(record.get(DATA_POINTS.DATA_POINT_DATE))
-                .metrics(itemMetrics)
-                .statistics(statistics)
+        return toDataPoint(DataPoint.builder()
+                .accountName(accountName)
+                .date(date)
+                .metrics(itemMetrics), statistics);
+    }
+
+    private MetricBaseline toMetricBaseline(StatisticalMetricsRecord record) {
+        return MetricBaseline.builder()
+                .mean(record.getMean())
+                .variance(record.getVariance())
+                .samples(record.getSamples())
                 .build();
     }
 
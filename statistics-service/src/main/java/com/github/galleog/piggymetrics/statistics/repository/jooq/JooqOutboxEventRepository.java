@@ -0,0 +1,94 @@
+package com.github.galleog.piggymetrics.statistics.repository.jooq;
+
+import static com.github.galleog.piggymetrics.statistics.domain.Sequences.OUTBOX_EVENT_SEQ;
+import static com.github.galleog.piggymetrics.statistics.domain.Tables.OUTBOX_EVENTS;
+import static org.jooq.impl.DSL.row;
+import static org.jooq.impl.DSL.val;
+
+import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.statistics.domain.tables.records.OutboxEventsRecord;
+import com.github.galleog.piggymetrics.statistics.repository.OutboxEventRepository;
+import com.google.common.collect.ImmutableList;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.Validate;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Implementation of {@link OutboxEventRepository} using <a href="https://www.jooq.org/">jOOQ</a>.
+ */
+@Repository
+@RequiredArgsConstructor
+public class JooqOutboxEventRepository implements OutboxEventRepository {
+    private final TransactionAwareJooqWrapper wrapper;
+
+    @Override
+    @Transactional
+    public Mono<Integer> saveAll(@NonNull Collection<OutboxEvent> events) {
+        Validate.noNullElements(events);
+        if (events.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        var now = LocalDateTime.now();
+        var rows = events.stream()
+                .map(event -> row(
+                        OUTBOX_EVENT_SEQ.nextval(),
+                        val(event.getAccountName(), OUTBOX_EVENTS.ACCOUNT_NAME),
+                        val(event.getPayload(), OUTBOX_EVENTS.PAYLOAD),
+                        val(now, OUTBOX_EVENTS.CREATE_TIME)
+                )).collect(ImmutableList.toImmutableList());
+        return wrapper.withDSLContext(ctx ->
+                ctx.insertInto(
+                                OUTBOX_EVENTS,
+                                OUTBOX_EVENTS.ID,
+                                OUTBOX_EVENTS.ACCOUNT_NAME,
+                                OUTBOX_EVENTS.PAYLOAD,
+                                OUTBOX_EVENTS.CREATE_TIME
+                        ).valuesOfRows(rows)
+        );
+    }
+
+    @Override
+    @Transactional
+    public Flux<OutboxEvent> lockOldest(int limit) {
+        Validate.isTrue(limit > 0);
+        return wrapper.withDSLContextMany(ctx ->
+                ctx.selectFrom(OUTBOX_EVENTS)
+                        .orderBy(OUTBOX_EVENTS.ID)
+                        .limit(limit)
+                        .forUpdate()
+                        .skipLocked()
+        ).map(this::toOutboxEvent);
+    }
+
+    @Override
+    @Transactional
+    public Mono<Integer> delete(@NonNull Collection<Long> ids) {
+        Validate.noNullElements(ids);
+        if (ids.isEmpty()) {
+            return Mono.just(0);
+        }
+
+        return wrapper.withDSLContext(ctx ->
+                ctx.deleteFrom(OUTBOX_EVENTS)
+                        .where(OUTBOX_EVENTS.ID.in(ids))
+        );
+    }
+
+    private OutboxEvent toOutboxEvent(OutboxEventsRecord record) {
+        return OutboxEvent.builder()
+                .id(record.getId())
+                .accountName(record.getAccountName())
+                .payload(record.getPayload())
+                .createTime(record.getCreateTime())
+                .build();
+    }
+}
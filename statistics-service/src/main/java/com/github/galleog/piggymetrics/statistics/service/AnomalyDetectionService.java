@@ -0,0 +1,140 @@
+package com.github.galleog.piggymetrics.statistics.service;
+
+import static com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric.EXPENSES_AMOUNT;
+import static com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric.INCOMES_AMOUNT;
+import static com.github.galleog.protobuf.java.type.converter.Converters.bigDecimalConverter;
+import static com.github.galleog.protobuf.java.type.converter.Converters.dateConverter;
+
+import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
+import com.github.galleog.piggymetrics.statistics.domain.MetricBaseline;
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
+import com.github.galleog.piggymetrics.statistics.grpc.StatisticsServiceProto.AnomalyDetectedEvent;
+import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
+import com.github.galleog.piggymetrics.statistics.repository.OutboxEventRepository;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.Validate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.NonNull;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Service to detect unusual changes of account incomes and expenses.
+ */
+@Slf4j
+@Service
+public class AnomalyDetectionService {
+    /**
+     * Statistical metrics checked for anomalies.
+     */
+    @VisibleForTesting
+    static final Set<StatisticalMetric> MONITORED_METRICS = Sets.immutableEnumSet(INCOMES_AMOUNT, EXPENSES_AMOUNT);
+    /**
+     * Lower bound of the standard deviation relative to the expected value.
+     * It keeps small changes of a metric that has been constant so far from being reported.
+     */
+    @VisibleForTesting
+    static final double MIN_RELATIVE_DEVIATION = 0.05;
+
+    private final double threshold;
+    private final int warmUpSamples;
+    private final DataPointRepository dataPointRepository;
+    private final OutboxEventRepository outboxEventRepository;
+
+    /**
+     * Constructs an object instance.
+     */
+    public AnomalyDetectionService(@Value("${statistics.anomaly.threshold}") double threshold,
+                                   @Value("${statistics.anomaly.warm-up-samples}") int warmUpSamples,
+                                   DataPointRepository dataPointRepository,
+                                   OutboxEventRepository outboxEventRepository) {
+        Validate.isTrue(threshold > 0);
+        Validate.isTrue(warmUpSamples >= 0);
+
+        this.threshold = threshold;
+        this.warmUpSamples = warmUpSamples;
+        this.dataPointRepository = dataPointRepository;
+        this.outboxEventRepository = outboxEventRepository;
+    }
+
+    /**
+     * Compares the statistics of a saved data point with their baselines and saves {@link AnomalyDetectedEvent}
+     * to the outbox for every statistic that deviates too much. The baselines are maintained by the repository
+     * when the data point is saved, so only a data point with an anomaly costs extra statements.
+     * An anomaly is reported once for a date, even if the data point is updated again on that date.
+     * Should be called within the transaction that saves the data point, so the events are published
+     * only if the transaction is committed.
+     *
+     * @param dataPoint the saved data point with the baselines of its statistics
+     * @return the signal of completion
+     * @throws NullPointerException if the data point is {@code null}
+     */
+    public Mono<Void> detect(@NonNull DataPoint dataPoint) {
+        Validate.notNull(dataPoint);
+
+        var metrics = EnumSet.noneOf(StatisticalMetric.class);
+        var events = ImmutableList.<OutboxEvent>builder();
+        for (var metric : MONITORED_METRICS) {
+            var value = dataPoint.getStatistics().get(metric);
+            var baseline = dataPoint.getBaselines().get(metric);
+            if (value == null || baseline == null || dataPoint.getReportedAnomalies().contains(metric)) {
+                continue;
+            }
+
+            var score = score(baseline, value.doubleValue());
+            if (score > threshold) {
+                metrics.add(metric);
+                events.add(toOutboxEvent(toEvent(dataPoint, metric, baseline, value, score)));
+            }
+        }
+
+        if (metrics.isEmpty()) {
+            return Mono.empty();
+        }
+        return outboxEventRepository.saveAll(events.build())
+                .then(dataPointRepository.markAnomaliesReported(
+                        dataPoint.getAccountName(), dataPoint.getDate(), metrics
+                ))
+                .then();
+    }
+
+    private double score(MetricBaseline baseline, double value) {
+        if (baseline.getSamples() < warmUpSamples) {
+            return 0;
+        }
+
+        var deviation = Math.max(baseline.getStandardDeviation(), MIN_RELATIVE_DEVIATION * Math.abs(baseline.getMean()));
+        return deviation > 0 ? Math.abs(value - baseline.getMean()) / deviation : 0;
+    }
+
+    private AnomalyDetectedEvent toEvent(DataPoint dataPoint, StatisticalMetric metric, MetricBaseline baseline,
+                                         BigDecimal value, double score) {
+        var expectedValue = BigDecimal.valueOf(baseline.getMean()).setScale(value.scale(), RoundingMode.HALF_UP);
+        return AnomalyDetectedEvent.newBuilder()
+                .setAccountName(dataPoint.getAccountName())
+                .setDate(dateConverter().convert(dataPoint.getDate()))
+                .setStatisticalMetric(metric.name())
+                .setValue(bigDecimalConverter().convert(value))
+                .setExpectedValue(bigDecimalConverter().convert(expectedValue))
+                .setScore(score)
+                .build();
+    }
+
+    private OutboxEvent toOutboxEvent(AnomalyDetectedEvent event) {
+        logger.info("AnomalyDetectedEvent for {} of account '{}' saved to the outbox",
+                event.getStatisticalMetric(), event.getAccountName());
+        return OutboxEvent.builder()
+                .accountName(event.getAccountName())
+                .payload(event.toByteArray())
+                .build();
+    }
+}
@@ -3,18 +3,29 @@ package com.github.galleog.piggymetrics.statistics.service;
 import static com.github.galleog.protobuf.java.type.converter.Converters.bigDecimalConverter;
 import static com.github.galleog.protobuf.java.type.converter.Converters.dateConverter;
 
+import com.github.galleog.piggymetrics.statistics.domain.DailyTotal;
 import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
 import com.github.galleog.piggymetrics.statistics.domain.ItemMetric;
+import com.github.galleog.piggymetrics.statistics.domain.ItemTrendPoint;
 import com.github.galleog.piggymetrics.statistics.grpc.ReactorStatisticsServiceGrpc;
 import com.github.galleog.piggymetrics.statistics.grpc.StatisticsServiceProto;
 import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.type.Date;
 import io.grpc.Status;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.lang.Nullable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -24,12 +35,19 @@ import java.util.stream.Collectors;
 @GrpcService
 @RequiredArgsConstructor
 public class StatisticsService extends ReactorStatisticsServiceGrpc.StatisticsServiceImplBase {
+    /**
+     * Maximum number of accounts whose data points are read by one query.
+     */
+    @VisibleForTesting
+    static final int MAX_ACCOUNTS_PER_QUERY = 500;
+
     private final DataPointRepository dataPointRepository;
 
     @Override
     public Flux<StatisticsServiceProto.DataPoint> listDataPoints(Mono<StatisticsServiceProto.ListDataPointsRequest> request) {
         return request.flatMapMany(req ->
-                dataPointRepository.listByAccountName(req.getAccountName())
+                (req.getDense() ? dataPointRepository.listDenseByAccountName(req.getAccountName()) :
+                        dataPointRepository.listByAccountName(req.getAccountName()))
                         .switchIfEmpty(Flux.error(
                                 Status.NOT_FOUND
                                         .withDescription("No statistics found for account '" + req.getAccountName() + "'")
@@ -38,6 +56,106 @@ public class StatisticsService extends ReactorStatisticsServiceGrpc.StatisticsSe
         ).map(this::toDataPointProto);
     }
 
+    @Override
+    public Flux<StatisticsServiceProto.AccountDataPoints> batchListDataPoints(
+            Mono<StatisticsServiceProto.BatchListDataPointsRequest> request) {
+        return request.flatMapMany(this::doBatchListDataPoints)
+                .bufferUntilChanged(DataPoint::getAccountName)
+                .map(this::toAccountDataPointsProto);
+    }
+
+    @Override
+    public Flux<StatisticsServiceProto.ItemTrendPoint> listItemTrend(
+            Mono<StatisticsServiceProto.ListItemTrendRequest> request) {
+        return request.flatMapMany(this::doListItemTrend)
+                .map(this::toItemTrendPointProto);
+    }
+
+    @Override
+    public Flux<StatisticsServiceProto.DailyTotal> listDailyTotals(
+            Mono<StatisticsServiceProto.ListDailyTotalsRequest> request) {
+        return request.flatMapMany(this::doListDailyTotals)
+                .map(this::toDailyTotalProto);
+    }
+
+    private Flux<DataPoint> doBatchListDataPoints(StatisticsServiceProto.BatchListDataPointsRequest request) {
+        var accountNames = request.getAccountNamesList()
+                .stream()
+                .filter(StringUtils::isNotBlank)
+                .distinct()
+                .sorted()
+                .collect(ImmutableList.toImmutableList());
+        if (accountNames.isEmpty()) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("At least one account name must be specified")
+                    .asRuntimeException();
+        }
+
+        var startDate = request.hasStartDate() ? toLocalDate(request.getStartDate()) : null;
+        var endDate = request.hasEndDate() ? toLocalDate(request.getEndDate()) : null;
+        checkDateRange(startDate, endDate);
+
+        // account names are sorted, so concatenating chunks keeps data points ordered by account
+        return Flux.fromIterable(Lists.partition(accountNames, MAX_ACCOUNTS_PER_QUERY))
+                .concatMap(names -> dataPointRepository.listByAccountNames(names, startDate, endDate));
+    }
+
+    private Flux<ItemTrendPoint> doListItemTrend(StatisticsServiceProto.ListItemTrendRequest request) {
+        if (StringUtils.isBlank(request.getAccountName()) || StringUtils.isBlank(request.getTitle())) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("Account name and item title must be specified")
+                    .asRuntimeException();
+        }
+
+        var startDate = request.hasStartDate() ? toLocalDate(request.getStartDate()) : null;
+        var endDate = request.hasEndDate() ? toLocalDate(request.getEndDate()) : null;
+        checkDateRange(startDate, endDate);
+
+        return dataPointRepository.listItemTrend(request.getAccountName(), request.getTitle(), startDate, endDate)
+                .switchIfEmpty(Flux.error(() ->
+                        Status.NOT_FOUND
+                                .withDescription("No item '" + request.getTitle() + "' found for account '"
+                                        + request.getAccountName() + "'")
+                                .asRuntimeException()
+                ));
+    }
+
+    private Flux<DailyTotal> doListDailyTotals(StatisticsServiceProto.ListDailyTotalsRequest request) {
+        var startDate = request.hasStartDate() ? toLocalDate(request.getStartDate()) : null;
+        var endDate = request.hasEndDate() ? toLocalDate(request.getEndDate()) : null;
+        checkDateRange(startDate, endDate);
+
+        return dataPointRepository.listDailyTotals(startDate, endDate);
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        try {
+            return dateConverter().reverse().convert(date);
+        } catch (DateTimeException e) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription(e.getMessage())
+                    .withCause(e)
+                    .asRuntimeException();
+        }
+    }
+
+    private static void checkDateRange(@Nullable LocalDate startDate, @Nullable LocalDate endDate) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw Status.INVALID_ARGUMENT
+                    .withDescription("Start date " + startDate + " is after end date " + endDate)
+                    .asRuntimeException();
+        }
+    }
+
+    private StatisticsServiceProto.AccountDataPoints toAccountDataPointsProto(List<DataPoint> dataPoints) {
+        return StatisticsServiceProto.AccountDataPoints.newBuilder()
+                .setAccountName(dataPoints.get(0).getAccountName())
+                .addAllDataPoints(dataPoints.stream()
+                        .map(this::toDataPointProto)
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
     private StatisticsServiceProto.DataPoint toDataPointProto(DataPoint dataPoint) {
         return StatisticsServiceProto.DataPoint.newBuilder()
                 .setAccountName(dataPoint.getAccountName())
@@ -54,6 +172,26 @@ public class StatisticsService extends ReactorStatisticsServiceGrpc.StatisticsSe
                 .build();
     }
 
+    private StatisticsServiceProto.DailyTotal toDailyTotalProto(DailyTotal total) {
+        return StatisticsServiceProto.DailyTotal.newBuilder()
+                .setDate(dateConverter().convert(total.getDate()))
+                .putAllStatistics(total.getStatistics().entrySet()
+                        .stream()
+                        .collect(Collectors.toMap(
+                                entry -> entry.getKey().name(),
+                                entry -> bigDecimalConverter().convert(entry.getValue())
+                        )))
+                .build();
+    }
+
+    private StatisticsServiceProto.ItemTrendPoint toItemTrendPointProto(ItemTrendPoint point) {
+        return StatisticsServiceProto.ItemTrendPoint.newBuilder()
+                .setDate(dateConverter().convert(point.getDate()))
+                .setType(StatisticsServiceProto.ItemType.valueOf(point.getType().name()))
+                .setMoneyAmount(bigDecimalConverter().convert(point.getMoneyAmount()))
+                .build();
+    }
+
     private StatisticsServiceProto.ItemMetric toItemMetricProto(ItemMetric metric) {
         return StatisticsServiceProto.ItemMetric.newBuilder()
                 .setType(StatisticsServiceProto.ItemType.valueOf(metric.getType().name()))
@@ -6,7 +6,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -22,7 +25,9 @@ import com.github.galleog.piggymetrics.statistics.domain.ItemMetric;
 import com.github.galleog.piggymetrics.statistics.domain.ItemType;
 import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
 import com.github.galleog.piggymetrics.statistics.domain.TimePeriod;
+import com.github.galleog.piggymetrics.statistics.repository.AccountVersionRepository;
 import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
+import com.github.galleog.piggymetrics.statistics.service.AnomalyDetectionService;
 import com.github.galleog.piggymetrics.statistics.service.MonetaryConversionService;
 import com.github.galleog.protobuf.java.type.MoneyProto;
 import net.mguenther.kafka.junit.ExternalKafkaCluster;
@@ -74,6 +79,7 @@ class AccountUpdatedEventConsumerIntegrationTest {
     private static final BigDecimal NORMALIZED_SALARY_AMOUNT = CONVERTED_SALARY_AMOUNT.divide(TimePeriod.YEAR.getBaseRatio())
             .getNumber().numberValue(BigDecimal.class);
     private static final String GROCERY = "Grocery";
+    private static final String RENT = "Rent";
     private static final Money GROCERY_AMOUNT = Money.of(10, EUR);
     private static final MoneyProto.Money GROCERY_PROTO_AMOUNT = moneyConverter().convert(GROCERY_AMOUNT);
     private static final Money CONVERTED_GROCERY_AMOUNT = Money.of(11.2, BASE_CURRENCY);
@@ -82,6 +88,7 @@ class AccountUpdatedEventConsumerIntegrationTest {
     private static final MoneyProto.Money SAVING_PROTO_AMOUNT = moneyConverter().convert(SAVING_AMOUNT);
     private static final Money CONVERTED_SAVING_AMOUNT = Money.of(6608, BASE_CURRENCY);
     private static final BigDecimal NORMALIZED_SAVING_AMOUNT = CONVERTED_SAVING_AMOUNT.getNumber().numberValue(BigDecimal.class);
+    private static final long VERSION = 2L;
     private static final long TIMEOUT = 10000L;
 
     @Container
@@ -90,8 +97,12 @@ class AccountUpdatedEventConsumerIntegrationTest {
     @Autowired
     private DataPointRepository dataPointRepository;
     @Autowired
+    private AccountVersionRepository accountVersionRepository;
+    @Autowired
     private MonetaryConversionService conversionService;
     @Autowired
+    private AnomalyDetectionService anomalyDetectionService;
+    @Autowired
     private TransactionalOperator operator;
     @Value("${spring.kafka.consumer.subscribeTopics}")
     private String topic;
@@ -111,6 +122,7 @@ class AccountUpdatedEventConsumerIntegrationTest {
 
         when(operator.transactional(any(Mono.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
+        when(anomalyDetectionService.detect(any(DataPoint.class))).thenReturn(Mono.empty());
     }
 
     /**
@@ -123,6 +135,7 @@ class AccountUpdatedEventConsumerIntegrationTest {
         when(conversionService.convert(SALARY_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SALARY_AMOUNT);
         when(conversionService.convert(SAVING_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SAVING_AMOUNT);
 
+        when(accountVersionRepository.advance(ACCOUNT_NAME, VERSION)).thenReturn(Mono.just(true));
         when(dataPointRepository.update(any(DataPoint.class))).thenReturn(Mono.empty());
         when(dataPointRepository.save(any(DataPoint.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
@@ -145,6 +158,7 @@ class AccountUpdatedEventConsumerIntegrationTest {
             );
             return true;
         }));
+        verify(anomalyDetectionService, timeout(TIMEOUT)).detect(any(DataPoint.class));
         verify(operator, timeout(TIMEOUT)).transactional(any(Mono.class));
     }
 
@@ -158,6 +172,7 @@ class AccountUpdatedEventConsumerIntegrationTest {
         when(conversionService.convert(SALARY_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SALARY_AMOUNT);
         when(conversionService.convert(SAVING_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SAVING_AMOUNT);
 
+        when(accountVersionRepository.advance(ACCOUNT_NAME, VERSION)).thenReturn(Mono.just(true));
         when(dataPointRepository.update(any(DataPoint.class)))
                 .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
@@ -179,10 +194,78 @@ class AccountUpdatedEventConsumerIntegrationTest {
             );
             return true;
         }));
+        verify(anomalyDetectionService, timeout(TIMEOUT)).detect(any(DataPoint.class));
         verify(operator, timeout(TIMEOUT)).transactional(any(Mono.class));
         verify(dataPointRepository, timeout(TIMEOUT).times(0)).save(any(DataPoint.class));
     }
 
+    /**
+     * Test for {@link AccountUpdatedEventConsumer#apply(Flux)} when applying a delta to the latest data point.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldApplyDeltaToLatestDataPoint() throws InterruptedException {
+        when(conversionService.convert(SALARY_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SALARY_AMOUNT);
+        when(conversionService.convert(SAVING_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SAVING_AMOUNT);
+
+        var latest = DataPoint.builder()
+                .accountName(ACCOUNT_NAME)
+                .date(LocalDate.now().minusDays(1))
+                .metric(ItemMetric.builder()
+                        .id(1L)
+                        .type(ItemType.EXPENSE)
+                        .title(GROCERY)
+                        .moneyAmount(NORMALIZED_GROCERY_AMOUNT)
+                        .build())
+                .metric(ItemMetric.builder()
+                        .id(2L)
+                        .type(ItemType.EXPENSE)
+                        .title(RENT)
+                        .moneyAmount(BigDecimal.TEN)
+                        .build())
+                .build();
+        when(accountVersionRepository.compareAndSet(ACCOUNT_NAME, VERSION, VERSION + 1)).thenReturn(Mono.just(true));
+        when(dataPointRepository.getLatestByAccountName(ACCOUNT_NAME)).thenReturn(Mono.just(latest));
+        when(dataPointRepository.update(any(DataPoint.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        sendEvent(stubDeltaEvent());
+
+        verify(dataPointRepository, timeout(TIMEOUT)).update(argThat(dataPoint -> {
+            assertThat(dataPoint.getDate()).isEqualTo(LocalDate.now());
+            assertThat(dataPoint.getMetrics()).extracting(
+                    ItemMetric::getId, ItemMetric::getType, ItemMetric::getTitle, ItemMetric::getMoneyAmount
+            ).containsExactlyInAnyOrder(
+                    tuple(null, ItemType.EXPENSE, GROCERY, NORMALIZED_GROCERY_AMOUNT),
+                    tuple(null, ItemType.INCOME, SALARY, NORMALIZED_SALARY_AMOUNT)
+            );
+            assertThat(dataPoint.getStatistics()).containsOnly(
+                    new SimpleEntry<>(StatisticalMetric.EXPENSES_AMOUNT, NORMALIZED_GROCERY_AMOUNT),
+                    new SimpleEntry<>(StatisticalMetric.INCOMES_AMOUNT, NORMALIZED_SALARY_AMOUNT),
+                    new SimpleEntry<>(StatisticalMetric.SAVING_AMOUNT, NORMALIZED_SAVING_AMOUNT)
+            );
+            return true;
+        }));
+        verify(conversionService, timeout(TIMEOUT).times(0)).convert(GROCERY_AMOUNT, BASE_CURRENCY);
+    }
+
+    /**
+     * Test for {@link AccountUpdatedEventConsumer#apply(Flux)} when a delta doesn't follow the applied version.
+     */
+    @Test
+    void shouldSkipDeltaIfVersionMissed() throws InterruptedException {
+        when(conversionService.convert(SAVING_AMOUNT, BASE_CURRENCY)).thenReturn(CONVERTED_SAVING_AMOUNT);
+        when(accountVersionRepository.compareAndSet(ACCOUNT_NAME, VERSION, VERSION + 1)).thenReturn(Mono.just(false));
+
+        sendEvent(stubDeltaEvent());
+
+        verify(accountVersionRepository, timeout(TIMEOUT)).compareAndSet(ACCOUNT_NAME, VERSION, VERSION + 1);
+        verify(dataPointRepository, never()).getLatestByAccountName(anyString());
+        verify(dataPointRepository, never()).update(any(DataPoint.class));
+        verify(dataPointRepository, never()).save(any(DataPoint.class));
+        verify(accountVersionRepository, never()).advance(anyString(), anyLong());
+    }
+
     private KeyValue<String, AccountUpdatedEvent> stubEvent() {
         var grocery = AccountServiceProto.Item.newBuilder()
                 .setType(AccountServiceProto.ItemType.EXPENSE)
@@ -204,12 +287,42 @@ class AccountUpdatedEventConsumerIntegrationTest {
                 .addItems(grocery)
                 .addItems(salary)
                 .setSaving(saving)
+                .setVersion(VERSION)
+                .build();
+        return new KeyValue<>(ACCOUNT_NAME, event);
+    }
+
+    private KeyValue<String, AccountUpdatedEvent> stubDeltaEvent() {
+        var salary = AccountServiceProto.Item.newBuilder()
+                .setType(AccountServiceProto.ItemType.INCOME)
+                .setTitle(SALARY)
+                .setMoney(SALARY_PROTO_AMOUNT)
+                .setPeriod(AccountServiceProto.TimePeriod.YEAR)
+                .build();
+        var rent = AccountServiceProto.ItemKey.newBuilder()
+                .setType(AccountServiceProto.ItemType.EXPENSE)
+                .setTitle(RENT)
+                .build();
+        var saving = AccountServiceProto.Saving.newBuilder()
+                .setMoney(SAVING_PROTO_AMOUNT)
+                .build();
+        var event = AccountUpdatedEvent.newBuilder()
+                .setAccountName(ACCOUNT_NAME)
+                .addItems(salary)
+                .addRemovedItems(rent)
+                .setSaving(saving)
+                .setVersion(VERSION + 1)
+                .setDelta(true)
                 .build();
         return new KeyValue<>(ACCOUNT_NAME, event);
     }
 
     private void sendEvent() throws InterruptedException {
-        kafka.send(SendKeyValues.to(topic, ImmutableList.of(stubEvent()))
+        sendEvent(stubEvent());
+    }
+
+    private void sendEvent(KeyValue<String, AccountUpdatedEvent> event) throws InterruptedException {
+        kafka.send(SendKeyValues.to(topic, ImmutableList.of(event))
                 .with(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, KafkaProtobufSerializer.class));
     }
 
@@ -227,6 +340,16 @@ class AccountUpdatedEventConsumerIntegrationTest {
             return mock(DataPointRepository.class);
         }
 
+        @Bean
+        AccountVersionRepository accountVersionRepository() {
+            return mock(AccountVersionRepository.class);
+        }
+
+        @Bean
+        AnomalyDetectionService anomalyDetectionService() {
+            return mock(AnomalyDetectionService.class);
+        }
+
         @Bean
         TransactionalOperator operator() {
             return mock(TransactionalOperator.class);
@@ -236,9 +359,12 @@ class AccountUpdatedEventConsumerIntegrationTest {
         AccountUpdatedEventConsumer consumer(
                 MonetaryConversionService conversionService,
                 DataPointRepository dataPointRepository,
+                AccountVersionRepository accountVersionRepository,
+                AnomalyDetectionService anomalyDetectionService,
                 TransactionalOperator operator
         ) {
-            return new AccountUpdatedEventConsumer(conversionService, dataPointRepository, operator);
+            return new AccountUpdatedEventConsumer(conversionService, dataPointRepository, accountVersionRepository,
+                    anomalyDetectionService, operator);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,159 @@
+package com.github.galleog.piggymetrics.statistics.event;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.annotation.DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD;
+
+import com.github.galleog.piggymetrics.autoconfigure.kafka.ReactiveKafkaAutoConfiguration;
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.statistics.grpc.StatisticsServiceProto.AnomalyDetectedEvent;
+import com.github.galleog.piggymetrics.statistics.repository.OutboxEventRepository;
+import com.google.common.collect.ImmutableList;
+import net.mguenther.kafka.junit.ExternalKafkaCluster;
+import net.mguenther.kafka.junit.ReadKeyValues;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Integration tests for {@link AnomalyDetectedEventRelay}.
+ */
+@Testcontainers
+@DirtiesContext(classMode = BEFORE_EACH_TEST_METHOD)
+@SpringBootTest(classes = AnomalyDetectedEventRelayIntegrationTest.Config.class)
+class AnomalyDetectedEventRelayIntegrationTest {
+    private static final DockerImageName KAFKA_IMAGE = DockerImageName.parse("confluentinc/cp-kafka:7.2.2");
+    private static final String ACCOUNT_1_NAME = "test1";
+    private static final String ACCOUNT_2_NAME = "test2";
+    private static final String EXPENSES_AMOUNT = "EXPENSES_AMOUNT";
+    private static final String INCOMES_AMOUNT = "INCOMES_AMOUNT";
+
+    @Container
+    private static final KafkaContainer kafkaContainer = new KafkaContainer(KAFKA_IMAGE);
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+    @Autowired
+    private TransactionalOperator operator;
+    @Autowired
+    private AnomalyDetectedEventRelay relay;
+    @Value("${spring.kafka.producer.topic}")
+    private String topic;
+
+    private ExternalKafkaCluster kafka;
+
+    @DynamicPropertySource
+    static void kafkaProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.kafka.bootstrap-servers", kafkaContainer::getBootstrapServers);
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        kafka = ExternalKafkaCluster.at(kafkaContainer.getBootstrapServers());
+
+        when(operator.transactional(any(Mono.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    /**
+     * Test for {@link AnomalyDetectedEventRelay#relay()}.
+     */
+    @Test
+    void shouldPublishAndDeleteEvents() throws Exception {
+        var events = ImmutableList.of(
+                stubEvent(1L, ACCOUNT_1_NAME, EXPENSES_AMOUNT),
+                stubEvent(2L, ACCOUNT_2_NAME, EXPENSES_AMOUNT),
+                stubEvent(3L, ACCOUNT_1_NAME, INCOMES_AMOUNT)
+        );
+        when(outboxEventRepository.lockOldest(100)).thenReturn(Flux.fromIterable(events));
+        when(outboxEventRepository.delete(ImmutableList.of(1L, 2L, 3L))).thenReturn(Mono.just(3));
+
+        relay.relay();
+
+        var consumedRecords = kafka.read(ReadKeyValues.from(topic, byte[].class)
+                .with(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class));
+        assertThat(consumedRecords).hasSize(3);
+
+        var account1Metrics = ImmutableList.<String>builder();
+        for (var record : consumedRecords) {
+            var event = AnomalyDetectedEvent.parseFrom(record.getValue());
+            assertThat(event.getAccountName()).isEqualTo(record.getKey());
+            if (ACCOUNT_1_NAME.equals(record.getKey())) {
+                account1Metrics.add(event.getStatisticalMetric());
+            }
+        }
+        assertThat(account1Metrics.build()).containsExactly(EXPENSES_AMOUNT, INCOMES_AMOUNT);
+    }
+
+    /**
+     * Test for {@link AnomalyDetectedEventRelay#relay()} when an event can't be published.
+     */
+    @Test
+    void shouldKeepEventsWhenPublishingFails() {
+        var event = OutboxEvent.builder()
+                .id(1L)
+                .accountName(ACCOUNT_1_NAME)
+                .payload(new byte[]{(byte) 0xFF})
+                .createTime(LocalDateTime.now())
+                .build();
+        when(outboxEventRepository.lockOldest(100)).thenReturn(Flux.just(event));
+
+        relay.relay();
+
+        verify(outboxEventRepository, never()).delete(anyCollection());
+    }
+
+    private OutboxEvent stubEvent(long id, String accountName, String metric) {
+        var event = AnomalyDetectedEvent.newBuilder()
+                .setAccountName(accountName)
+                .setStatisticalMetric(metric)
+                .build();
+        return OutboxEvent.builder()
+                .id(id)
+                .accountName(accountName)
+                .payload(event.toByteArray())
+                .createTime(LocalDateTime.now())
+                .build();
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @Import(AnomalyDetectedEventRelay.class)
+    @ImportAutoConfiguration(ReactiveKafkaAutoConfiguration.class)
+    static class Config {
+        @Bean
+        OutboxEventRepository outboxEventRepository() {
+            return mock(OutboxEventRepository.class);
+        }
+
+        @Bean
+        TransactionalOperator operator() {
+            return mock(TransactionalOperator.class);
+        }
+    }
+}
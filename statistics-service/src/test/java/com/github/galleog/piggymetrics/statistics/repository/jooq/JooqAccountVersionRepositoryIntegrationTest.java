@@ -0,0 +1,178 @@
+package com.github.galleog.piggymetrics.statistics.repository.jooq;
+
+import static com.github.galleog.piggymetrics.statistics.domain.Tables.ACCOUNT_VERSIONS;
+import static com.ninja_squad.dbsetup.Operations.deleteAllFrom;
+import static com.ninja_squad.dbsetup.Operations.insertInto;
+import static com.ninja_squad.dbsetup.Operations.sequenceOf;
+
+import com.github.galleog.piggymetrics.autoconfigure.jooq.R2dbcJooqAutoConfiguration;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.github.galleog.piggymetrics.statistics.repository.AccountVersionRepository;
+import com.ninja_squad.dbsetup.DbSetup;
+import com.ninja_squad.dbsetup.DbSetupTracker;
+import com.ninja_squad.dbsetup.destination.DataSourceDestination;
+import org.assertj.db.api.Assertions;
+import org.assertj.db.type.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseDataSource;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import javax.sql.DataSource;
+
+/**
+ * Integration tests for {@link JooqAccountVersionRepository}.
+ */
+@DataR2dbcTest
+@Testcontainers
+@ActiveProfiles("test")
+@Import(JooqAccountVersionRepositoryIntegrationTest.DataSourceConfig.class)
+@ImportAutoConfiguration(R2dbcJooqAutoConfiguration.class)
+class JooqAccountVersionRepositoryIntegrationTest {
+    private static final String POSTGRES_IMAGE = "postgres:13.8-alpine";
+    private static final String ACCOUNT_NAME = "test";
+    private static final String NEW_ACCOUNT_NAME = "new";
+    private static final long VERSION = 5L;
+
+    private static final DbSetupTracker DB_SETUP_TRACKER = new DbSetupTracker();
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresql = new PostgreSQLContainer<>(POSTGRES_IMAGE);
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private TransactionAwareJooqWrapper wrapper;
+
+    private AccountVersionRepository repository;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> url("r2dbc"));
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.datasource.url", () -> url("jdbc"));
+        registry.add("spring.datasource.username", postgresql::getUsername);
+        registry.add("spring.datasource.password", postgresql::getPassword);
+    }
+
+    private static String url(String prefix) {
+        return String.format("%s:postgresql://%s:%s/%s", prefix, postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgresql.getDatabaseName());
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new JooqAccountVersionRepository(wrapper);
+
+        var operation = sequenceOf(
+                deleteAllFrom(ACCOUNT_VERSIONS.getName()),
+                insertInto(ACCOUNT_VERSIONS.getName())
+                        .row()
+                        .column(ACCOUNT_VERSIONS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                        .column(ACCOUNT_VERSIONS.VERSION.getName(), VERSION)
+                        .end()
+                        .build()
+        );
+
+        var dbSetup = new DbSetup(DataSourceDestination.with(dataSource), operation);
+        DB_SETUP_TRACKER.launchIfNecessary(dbSetup);
+    }
+
+    /**
+     * Test for {@link JooqAccountVersionRepository#advance(String, long)} when the account has no version yet.
+     */
+    @Test
+    void shouldAdvanceVersionOfNewAccount() {
+        repository.advance(NEW_ACCOUNT_NAME, 1L)
+                .as(StepVerifier::create)
+                .expectNext(true)
+                .verifyComplete();
+
+        var table = new Table(dataSource, ACCOUNT_VERSIONS.getName());
+        Assertions.assertThat(table).hasNumberOfRows(2);
+    }
+
+    /**
+     * Test for {@link JooqAccountVersionRepository#advance(String, long)} with a later version.
+     */
+    @Test
+    void shouldAdvanceVersion() {
+        repository.advance(ACCOUNT_NAME, VERSION + 2)
+                .as(StepVerifier::create)
+                .expectNext(true)
+                .verifyComplete();
+
+        var table = new Table(dataSource, ACCOUNT_VERSIONS.getName());
+        Assertions.assertThat(table).column(ACCOUNT_VERSIONS.VERSION.getName()).value().isEqualTo(VERSION + 2);
+    }
+
+    /**
+     * Test for {@link JooqAccountVersionRepository#advance(String, long)} with a stale version.
+     */
+    @Test
+    void shouldNotAdvanceStaleVersion() {
+        DB_SETUP_TRACKER.skipNextLaunch();
+
+        repository.advance(ACCOUNT_NAME, VERSION)
+                .as(StepVerifier::create)
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    /**
+     * Test for {@link JooqAccountVersionRepository#compareAndSet(String, long, long)}.
+     */
+    @Test
+    void shouldSetVersionIfExpected() {
+        repository.compareAndSet(ACCOUNT_NAME, VERSION, VERSION + 1)
+                .as(StepVerifier::create)
+                .expectNext(true)
+                .verifyComplete();
+
+        var table = new Table(dataSource, ACCOUNT_VERSIONS.getName());
+        Assertions.assertThat(table).column(ACCOUNT_VERSIONS.VERSION.getName()).value().isEqualTo(VERSION + 1);
+    }
+
+    /**
+     * Test for {@link JooqAccountVersionRepository#compareAndSet(String, long, long)} when a version is missed.
+     */
+    @Test
+    void shouldNotSetVersionIfUnexpected() {
+        DB_SETUP_TRACKER.skipNextLaunch();
+
+        repository.compareAndSet(ACCOUNT_NAME, VERSION + 1, VERSION + 2)
+                .as(StepVerifier::create)
+                .expectNext(false)
+                .verifyComplete();
+        repository.compareAndSet(NEW_ACCOUNT_NAME, 0L, 1L)
+                .as(StepVerifier::create)
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    @EnableConfigurationProperties(DataSourceProperties.class)
+    static class DataSourceConfig {
+        @Bean
+        @LiquibaseDataSource
+        DataSource dataSource(DataSourceProperties properties) {
+            return properties.initializeDataSourceBuilder()
+                    .build();
+        }
+    }
+}
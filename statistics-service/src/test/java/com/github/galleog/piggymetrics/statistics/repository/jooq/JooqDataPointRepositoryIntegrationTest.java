@@ -2,6 +2,7 @@ package com.github.galleog.piggymetrics.statistics.repository.jooq;
 
 import static com.github.galleog.piggymetrics.statistics.domain.ItemType.EXPENSE;
 import static com.github.galleog.piggymetrics.statistics.domain.ItemType.INCOME;
+import static com.github.galleog.piggymetrics.statistics.domain.Tables.DAILY_TOTALS;
 import static com.github.galleog.piggymetrics.statistics.domain.Tables.DATA_POINTS;
 import static com.github.galleog.piggymetrics.statistics.domain.Tables.ITEM_METRICS;
 import static com.github.galleog.piggymetrics.statistics.domain.Tables.STATISTICAL_METRICS;
@@ -14,10 +15,12 @@ import static org.assertj.core.api.Assertions.tuple;
 import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
 import com.github.galleog.piggymetrics.statistics.domain.ItemMetric;
 import com.github.galleog.piggymetrics.statistics.domain.ItemType;
+import com.github.galleog.piggymetrics.statistics.domain.MetricBaseline;
 import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
 import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
 import com.github.galleog.piggymetrics.autoconfigure.jooq.R2dbcJooqAutoConfiguration;
 import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.google.common.collect.ImmutableList;
 import com.ninja_squad.dbsetup.DbSetup;
 import com.ninja_squad.dbsetup.DbSetupTracker;
 import com.ninja_squad.dbsetup.destination.DataSourceDestination;
@@ -49,6 +52,7 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.AbstractMap.SimpleEntry;
+import java.util.Collection;
 import java.util.GregorianCalendar;
 
 /**
@@ -61,6 +65,7 @@ import java.util.GregorianCalendar;
 @ImportAutoConfiguration(R2dbcJooqAutoConfiguration.class)
 class JooqDataPointRepositoryIntegrationTest {
     private static final String POSTGRES_IMAGE = "postgres:13.8-alpine";
+    private static final double SMOOTHING_FACTOR = 0.5;
     private static final String ACCOUNT_NAME = "test";
     private static final LocalDate NOW = LocalDate.now();
     private static final LocalDate DAY_BEFORE = NOW.minusDays(1);
@@ -77,6 +82,7 @@ class JooqDataPointRepositoryIntegrationTest {
     private static final BigDecimal EXPENSES_AMOUNT = GROCERY_AMOUNT.add(VACATION_AMOUNT);
     private static final BigDecimal SAVING_AMOUNT = BigDecimal.valueOf(590000, 2);
     private static final BigDecimal ZERO = BigDecimal.valueOf(0, 2);
+    private static final BigDecimal OTHER_ACCOUNTS_AMOUNT = BigDecimal.valueOf(50000, 2);
 
     private static final DbSetupTracker DB_SETUP_TRACKER = new DbSetupTracker();
 
@@ -108,7 +114,7 @@ class JooqDataPointRepositoryIntegrationTest {
 
     @BeforeEach
     void setUp() {
-        repository = new JooqDataPointRepository(wrapper);
+        repository = new JooqDataPointRepository(SMOOTHING_FACTOR, wrapper);
 
         destination = DataSourceDestination.with(dataSource);
     }
@@ -134,6 +140,7 @@ class JooqDataPointRepositoryIntegrationTest {
         void setUp() {
             var operation = sequenceOf(
                     deleteAllFrom(
+                            DAILY_TOTALS.getName(),
                             STATISTICAL_METRICS.getName(),
                             ITEM_METRICS.getName(),
                             DATA_POINTS.getName()
@@ -211,6 +218,28 @@ class JooqDataPointRepositoryIntegrationTest {
                             .column(STATISTICAL_METRICS.STATISTICAL_METRIC.getName(), StatisticalMetric.SAVING_AMOUNT.name())
                             .column(STATISTICAL_METRICS.MONEY_AMOUNT.getName(), SAVING_AMOUNT)
                             .end()
+                            .build(),
+                    insertInto(DAILY_TOTALS.getName())
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), DAY_BEFORE)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.INCOMES_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), SALARY_AMOUNT)
+                            .end()
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), DAY_BEFORE)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.EXPENSES_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), ZERO)
+                            .end()
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), NOW)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.INCOMES_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), ZERO)
+                            .end()
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), NOW)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.EXPENSES_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), EXPENSES_AMOUNT)
+                            .end()
                             .build()
             );
 
@@ -258,6 +287,36 @@ class JooqDataPointRepositoryIntegrationTest {
                     .verifyComplete();
         }
 
+        /**
+         * Test for {@link JooqDataPointRepository#getLatestByAccountName(String)}.
+         */
+        @Test
+        void shouldGetLatestDataPointByAccountName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.getLatestByAccountName(ACCOUNT_NAME)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getDate()).isEqualTo(NOW);
+                        assertThat(dataPoint.getMetrics()).extracting(ItemMetric::getId)
+                                .containsExactlyInAnyOrder(GROCERY_ID, VACATION_ID);
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#getLatestByAccountName(String)}
+         * when the account has no data points.
+         */
+        @Test
+        void shouldNotGetLatestDataPointByAccountName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.getLatestByAccountName("noname")
+                    .as(StepVerifier::create)
+                    .verifyComplete();
+        }
+
         /**
          * Test for {@link JooqDataPointRepository#listByAccountName(String)}.
          */
@@ -297,6 +356,115 @@ class JooqDataPointRepositoryIntegrationTest {
                     }).verifyComplete();
         }
 
+        /**
+         * Test for {@link JooqDataPointRepository#listByAccountNames(Collection, LocalDate, LocalDate)}.
+         */
+        @Test
+        void shouldListDataPointsByAccountNames() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listByAccountNames(ImmutableList.of(ACCOUNT_NAME, "not found"), null, null)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getAccountName()).isEqualTo(ACCOUNT_NAME);
+                        assertThat(dataPoint.getDate()).isEqualTo(DAY_BEFORE);
+                        return true;
+                    }).expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getAccountName()).isEqualTo(ACCOUNT_NAME);
+                        assertThat(dataPoint.getDate()).isEqualTo(NOW);
+                        assertThat(dataPoint.getMetrics()).extracting(ItemMetric::getId)
+                                .containsExactlyInAnyOrder(GROCERY_ID, VACATION_ID);
+                        assertThat(dataPoint.getStatistics()).hasSize(3);
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listByAccountNames(Collection, LocalDate, LocalDate)}
+         * with a date range.
+         */
+        @Test
+        void shouldListDataPointsByAccountNamesWithinDateRange() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listByAccountNames(ImmutableList.of(ACCOUNT_NAME), NOW, NOW)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getAccountName()).isEqualTo(ACCOUNT_NAME);
+                        assertThat(dataPoint.getDate()).isEqualTo(NOW);
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listItemTrend(String, String, LocalDate, LocalDate)}.
+         */
+        @Test
+        void shouldListItemTrend() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listItemTrend(ACCOUNT_NAME, SALARY, null, null)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(point -> {
+                        assertThat(point.getDate()).isEqualTo(DAY_BEFORE);
+                        assertThat(point.getType()).isEqualTo(INCOME);
+                        assertThat(point.getMoneyAmount()).isEqualTo(SALARY_AMOUNT);
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listItemTrend(String, String, LocalDate, LocalDate)}
+         * when the item has no values within the date range.
+         */
+        @Test
+        void shouldReturnEmptyItemTrendOutsideDateRange() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listItemTrend(ACCOUNT_NAME, SALARY, NOW, null)
+                    .as(StepVerifier::create)
+                    .verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listDailyTotals(LocalDate, LocalDate)}.
+         */
+        @Test
+        void shouldListDailyTotals() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listDailyTotals(null, null)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(total -> {
+                        assertThat(total.getDate()).isEqualTo(DAY_BEFORE);
+                        assertThat(total.getStatistics()).containsOnly(
+                                new SimpleEntry<>(StatisticalMetric.INCOMES_AMOUNT, SALARY_AMOUNT),
+                                new SimpleEntry<>(StatisticalMetric.EXPENSES_AMOUNT, ZERO)
+                        );
+                        return true;
+                    }).expectNextMatches(total -> {
+                        assertThat(total.getDate()).isEqualTo(NOW);
+                        assertThat(total.getStatistics()).containsOnly(
+                                new SimpleEntry<>(StatisticalMetric.INCOMES_AMOUNT, ZERO),
+                                new SimpleEntry<>(StatisticalMetric.EXPENSES_AMOUNT, EXPENSES_AMOUNT)
+                        );
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listDailyTotals(LocalDate, LocalDate)} within a date range.
+         */
+        @Test
+        void shouldListDailyTotalsWithinDateRange() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listDailyTotals(NOW, NOW)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(total -> total.getDate().equals(NOW))
+                    .verifyComplete();
+        }
+
         /**
          * Test for {@link JooqDataPointRepository#listByAccountName(String)} when no data points are found.
          */
@@ -310,11 +478,112 @@ class JooqDataPointRepositoryIntegrationTest {
         }
     }
 
+    @Nested
+    class DenseReadTest {
+        private final LocalDate threeDaysAgo = NOW.minusDays(3);
+
+        @BeforeEach
+        void setUp() {
+            var operation = sequenceOf(
+                    deleteAllFrom(
+                            STATISTICAL_METRICS.getName(),
+                            ITEM_METRICS.getName(),
+                            DATA_POINTS.getName()
+                    ),
+                    insertInto(DATA_POINTS.getName())
+                            .row()
+                            .column(DATA_POINTS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(DATA_POINTS.DATA_POINT_DATE.getName(), threeDaysAgo)
+                            .end()
+                            .row()
+                            .column(DATA_POINTS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(DATA_POINTS.DATA_POINT_DATE.getName(), DAY_BEFORE)
+                            .end()
+                            .build(),
+                    insertInto(ITEM_METRICS.getName())
+                            .row()
+                            .column(ITEM_METRICS.ID.getName(), SALARY_ID)
+                            .column(ITEM_METRICS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(ITEM_METRICS.DATA_POINT_DATE.getName(), threeDaysAgo)
+                            .column(ITEM_METRICS.ITEM_TYPE.getName(), INCOME.name())
+                            .column(ITEM_METRICS.TITLE.getName(), SALARY)
+                            .column(ITEM_METRICS.MONEY_AMOUNT.getName(), SALARY_AMOUNT)
+                            .end()
+                            .build(),
+                    insertInto(STATISTICAL_METRICS.getName())
+                            .row()
+                            .column(STATISTICAL_METRICS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(STATISTICAL_METRICS.DATA_POINT_DATE.getName(), threeDaysAgo)
+                            .column(STATISTICAL_METRICS.STATISTICAL_METRIC.getName(), StatisticalMetric.INCOMES_AMOUNT.name())
+                            .column(STATISTICAL_METRICS.MONEY_AMOUNT.getName(), SALARY_AMOUNT)
+                            .end()
+                            .row()
+                            .column(STATISTICAL_METRICS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(STATISTICAL_METRICS.DATA_POINT_DATE.getName(), DAY_BEFORE)
+                            .column(STATISTICAL_METRICS.STATISTICAL_METRIC.getName(), StatisticalMetric.INCOMES_AMOUNT.name())
+                            .column(STATISTICAL_METRICS.MONEY_AMOUNT.getName(), ZERO)
+                            .end()
+                            .build()
+            );
+
+            var dbSetup = new DbSetup(destination, operation);
+            DB_SETUP_TRACKER.launchIfNecessary(dbSetup);
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listDenseByAccountName(String)}.
+         */
+        @Test
+        void shouldListDenseDataPointsByAccountName() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listDenseByAccountName(ACCOUNT_NAME)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getDate()).isEqualTo(threeDaysAgo);
+                        assertThat(dataPoint.getMetrics()).extracting(ItemMetric::getId).containsExactly(SALARY_ID);
+                        return true;
+                    }).expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getAccountName()).isEqualTo(ACCOUNT_NAME);
+                        assertThat(dataPoint.getDate()).isEqualTo(threeDaysAgo.plusDays(1));
+                        assertThat(dataPoint.getMetrics()).extracting(ItemMetric::getId).containsExactly(SALARY_ID);
+                        assertThat(dataPoint.getStatistics()).containsOnly(
+                                new SimpleEntry<>(StatisticalMetric.INCOMES_AMOUNT, SALARY_AMOUNT)
+                        );
+                        return true;
+                    }).expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getDate()).isEqualTo(DAY_BEFORE);
+                        assertThat(dataPoint.getMetrics()).isEmpty();
+                        return true;
+                    }).expectNextMatches(dataPoint -> {
+                        assertThat(dataPoint.getDate()).isEqualTo(NOW);
+                        assertThat(dataPoint.getMetrics()).isEmpty();
+                        assertThat(dataPoint.getStatistics()).containsOnly(
+                                new SimpleEntry<>(StatisticalMetric.INCOMES_AMOUNT, ZERO)
+                        );
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#listDenseByAccountName(String)} when no data points are found.
+         */
+        @Test
+        void shouldReturnEmptyDenseStreamWhenNoDataPointsFound() {
+            DB_SETUP_TRACKER.skipNextLaunch();
+
+            repository.listDenseByAccountName("not found")
+                    .as(StepVerifier::create)
+                    .verifyComplete();
+        }
+    }
+
     @Nested
     class SaveTest {
         @BeforeEach
         void setUp() {
             var operation = deleteAllFrom(
+                    DAILY_TOTALS.getName(),
                     STATISTICAL_METRICS.getName(),
                     ITEM_METRICS.getName(),
                     DATA_POINTS.getName()
@@ -379,6 +648,16 @@ class JooqDataPointRepositoryIntegrationTest {
                                 ).column(STATISTICAL_METRICS.MONEY_AMOUNT.getName())
                                 .containsValues(EXPENSES_AMOUNT, SALARY_AMOUNT, SAVING_AMOUNT);
 
+                        var dailyTotals = new Table(dataSource, DAILY_TOTALS.getName());
+                        Assertions.assertThat(dailyTotals)
+                                .column(DAILY_TOTALS.STATISTICAL_METRIC.getName())
+                                .containsValues(
+                                        StatisticalMetric.EXPENSES_AMOUNT.name(),
+                                        StatisticalMetric.INCOMES_AMOUNT.name(),
+                                        StatisticalMetric.SAVING_AMOUNT.name()
+                                ).column(DAILY_TOTALS.MONEY_AMOUNT.getName())
+                                .containsValues(EXPENSES_AMOUNT, SALARY_AMOUNT, SAVING_AMOUNT);
+
                         assertThat(dp.getAccountName()).isEqualTo(ACCOUNT_NAME);
                         assertThat(dp.getDate()).isEqualTo(NOW);
                         assertThat(dp.getMetrics()).extracting(
@@ -393,6 +672,58 @@ class JooqDataPointRepositoryIntegrationTest {
                                 new SimpleEntry<>(StatisticalMetric.EXPENSES_AMOUNT, EXPENSES_AMOUNT),
                                 new SimpleEntry<>(StatisticalMetric.SAVING_AMOUNT, SAVING_AMOUNT)
                         );
+                        // the first data point has nothing to calculate the baselines from
+                        assertThat(dp.getBaselines().values()).extracting(
+                                MetricBaseline::getMean, MetricBaseline::getVariance, MetricBaseline::getSamples
+                        ).containsOnly(tuple(0.0, 0.0, 0));
+                        assertThat(dp.getReportedAnomalies()).isEmpty();
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#save(DataPoint)} when there is a data point of a preceding date.
+         */
+        @Test
+        void shouldCalculateBaselinesFromPreviousDataPoint() {
+            var operation = sequenceOf(
+                    insertInto(DATA_POINTS.getName())
+                            .row()
+                            .column(DATA_POINTS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(DATA_POINTS.DATA_POINT_DATE.getName(), DAY_BEFORE)
+                            .end()
+                            .build(),
+                    insertInto(STATISTICAL_METRICS.getName())
+                            .row()
+                            .column(STATISTICAL_METRICS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
+                            .column(STATISTICAL_METRICS.DATA_POINT_DATE.getName(), DAY_BEFORE)
+                            .column(STATISTICAL_METRICS.STATISTICAL_METRIC.getName(), StatisticalMetric.EXPENSES_AMOUNT.name())
+                            .column(STATISTICAL_METRICS.MONEY_AMOUNT.getName(), BigDecimal.valueOf(20000, 2))
+                            .column(STATISTICAL_METRICS.MEAN.getName(), 100.0)
+                            .column(STATISTICAL_METRICS.VARIANCE.getName(), 25.0)
+                            .column(STATISTICAL_METRICS.SAMPLES.getName(), 5)
+                            .end()
+                            .build()
+            );
+            new DbSetup(destination, operation).launch();
+
+            var dataPoint = DataPoint.builder()
+                    .accountName(ACCOUNT_NAME)
+                    .date(NOW)
+                    .statistic(StatisticalMetric.INCOMES_AMOUNT, SALARY_AMOUNT)
+                    .statistic(StatisticalMetric.EXPENSES_AMOUNT, EXPENSES_AMOUNT)
+                    .build();
+
+            repository.save(dataPoint)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(dp -> {
+                        // the value of the previous day is added to its baseline
+                        assertThat(dp.getBaselines().get(StatisticalMetric.EXPENSES_AMOUNT)).extracting(
+                                MetricBaseline::getMean, MetricBaseline::getVariance, MetricBaseline::getSamples
+                        ).containsExactly(150.0, 2512.5, 6);
+                        assertThat(dp.getBaselines().get(StatisticalMetric.INCOMES_AMOUNT)).extracting(
+                                MetricBaseline::getMean, MetricBaseline::getVariance, MetricBaseline::getSamples
+                        ).containsExactly(0.0, 0.0, 0);
                         return true;
                     }).verifyComplete();
         }
@@ -404,6 +735,7 @@ class JooqDataPointRepositoryIntegrationTest {
         void setUp() {
             var operation = sequenceOf(
                     deleteAllFrom(
+                            DAILY_TOTALS.getName(),
                             STATISTICAL_METRICS.getName(),
                             ITEM_METRICS.getName(),
                             DATA_POINTS.getName()
@@ -436,6 +768,7 @@ class JooqDataPointRepositoryIntegrationTest {
                             .column(STATISTICAL_METRICS.DATA_POINT_DATE.getName(), NOW)
                             .column(STATISTICAL_METRICS.STATISTICAL_METRIC.getName(), StatisticalMetric.EXPENSES_AMOUNT.name())
                             .column(STATISTICAL_METRICS.MONEY_AMOUNT.getName(), ZERO)
+                            .column(STATISTICAL_METRICS.ANOMALY_REPORTED.getName(), true)
                             .end()
                             .row()
                             .column(STATISTICAL_METRICS.ACCOUNT_NAME.getName(), ACCOUNT_NAME)
@@ -443,6 +776,23 @@ class JooqDataPointRepositoryIntegrationTest {
                             .column(STATISTICAL_METRICS.STATISTICAL_METRIC.getName(), StatisticalMetric.SAVING_AMOUNT.name())
                             .column(STATISTICAL_METRICS.MONEY_AMOUNT.getName(), ZERO)
                             .end()
+                            .build(),
+                    insertInto(DAILY_TOTALS.getName())
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), NOW)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.INCOMES_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), SALARY_AMOUNT.add(OTHER_ACCOUNTS_AMOUNT))
+                            .end()
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), NOW)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.EXPENSES_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), OTHER_ACCOUNTS_AMOUNT)
+                            .end()
+                            .row()
+                            .column(DAILY_TOTALS.DATA_POINT_DATE.getName(), NOW)
+                            .column(DAILY_TOTALS.STATISTICAL_METRIC.getName(), StatisticalMetric.SAVING_AMOUNT.name())
+                            .column(DAILY_TOTALS.MONEY_AMOUNT.getName(), OTHER_ACCOUNTS_AMOUNT)
+                            .end()
                             .build()
             );
 
@@ -508,6 +858,20 @@ class JooqDataPointRepositoryIntegrationTest {
                                 ).column(STATISTICAL_METRICS.MONEY_AMOUNT.getName())
                                 .containsValues(EXPENSES_AMOUNT, ANOTHER_SALARY_AMOUNT, SAVING_AMOUNT);
 
+                        var dailyTotals = new Table(dataSource, DAILY_TOTALS.getName());
+                        Assertions.assertThat(dailyTotals)
+                                .column(DAILY_TOTALS.STATISTICAL_METRIC.getName())
+                                .containsValues(
+                                        StatisticalMetric.EXPENSES_AMOUNT.name(),
+                                        StatisticalMetric.INCOMES_AMOUNT.name(),
+                                        StatisticalMetric.SAVING_AMOUNT.name()
+                                ).column(DAILY_TOTALS.MONEY_AMOUNT.getName())
+                                .containsValues(
+                                        EXPENSES_AMOUNT.add(OTHER_ACCOUNTS_AMOUNT),
+                                        ANOTHER_SALARY_AMOUNT.add(OTHER_ACCOUNTS_AMOUNT),
+                                        SAVING_AMOUNT.add(OTHER_ACCOUNTS_AMOUNT)
+                                );
+
                         assertThat(dp.getAccountName()).isEqualTo(ACCOUNT_NAME);
                         assertThat(dp.getDate()).isEqualTo(NOW);
                         assertThat(dp.getMetrics()).extracting(
@@ -522,6 +886,28 @@ class JooqDataPointRepositoryIntegrationTest {
                                 new SimpleEntry<>(StatisticalMetric.EXPENSES_AMOUNT, EXPENSES_AMOUNT),
                                 new SimpleEntry<>(StatisticalMetric.SAVING_AMOUNT, SAVING_AMOUNT)
                         );
+                        assertThat(dp.getReportedAnomalies()).containsExactly(StatisticalMetric.EXPENSES_AMOUNT);
+                        return true;
+                    }).verifyComplete();
+        }
+
+        /**
+         * Test for {@link JooqDataPointRepository#markAnomaliesReported(String, LocalDate, java.util.Collection)}.
+         */
+        @Test
+        void shouldMarkAnomaliesReported() {
+            repository.markAnomaliesReported(ACCOUNT_NAME, NOW, ImmutableList.of(StatisticalMetric.INCOMES_AMOUNT))
+                    .as(StepVerifier::create)
+                    .expectNext(1)
+                    .verifyComplete();
+
+            repository.getByAccountNameAndDate(ACCOUNT_NAME, NOW)
+                    .as(StepVerifier::create)
+                    .expectNextMatches(dp -> {
+                        assertThat(dp.getReportedAnomalies()).containsExactlyInAnyOrder(
+                                StatisticalMetric.INCOMES_AMOUNT,
+                                StatisticalMetric.EXPENSES_AMOUNT
+                        );
                         return true;
                     }).verifyComplete();
         }
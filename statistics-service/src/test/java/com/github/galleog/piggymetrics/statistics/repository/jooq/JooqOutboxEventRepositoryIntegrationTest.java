@@ -0,0 +1,168 @@
+package com.github.galleog.piggymetrics.statistics.repository.jooq;
+
+import static com.github.galleog.piggymetrics.statistics.domain.Tables.OUTBOX_EVENTS;
+import static com.ninja_squad.dbsetup.Operations.deleteAllFrom;
+import static com.ninja_squad.dbsetup.Operations.insertInto;
+import static com.ninja_squad.dbsetup.Operations.sequenceOf;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.statistics.repository.OutboxEventRepository;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.R2dbcJooqAutoConfiguration;
+import com.github.galleog.piggymetrics.autoconfigure.jooq.TransactionAwareJooqWrapper;
+import com.google.common.collect.ImmutableList;
+import com.ninja_squad.dbsetup.DbSetup;
+import com.ninja_squad.dbsetup.destination.DataSourceDestination;
+import org.assertj.db.api.Assertions;
+import org.assertj.db.type.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.liquibase.LiquibaseDataSource;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.test.StepVerifier;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+
+/**
+ * Integration tests for {@link JooqOutboxEventRepository}.
+ */
+@DataR2dbcTest
+@Testcontainers
+@ActiveProfiles("test")
+@Import(JooqOutboxEventRepositoryIntegrationTest.DataSourceConfig.class)
+@ImportAutoConfiguration(R2dbcJooqAutoConfiguration.class)
+class JooqOutboxEventRepositoryIntegrationTest {
+    private static final String POSTGRES_IMAGE = "postgres:13.8-alpine";
+    private static final String ACCOUNT_1_NAME = "test1";
+    private static final String ACCOUNT_2_NAME = "test2";
+    private static final LocalDateTime NOW = LocalDateTime.now();
+    private static final byte[] PAYLOAD_1 = {1, 2, 3};
+    private static final byte[] PAYLOAD_2 = {4, 5};
+    private static final byte[] PAYLOAD_3 = {6};
+
+    @Container
+    private static final PostgreSQLContainer<?> postgresql = new PostgreSQLContainer<>(POSTGRES_IMAGE);
+
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private TransactionAwareJooqWrapper wrapper;
+    private OutboxEventRepository repository;
+
+    @DynamicPropertySource
+    static void postgresqlProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.r2dbc.url", () -> url("r2dbc"));
+        registry.add("spring.r2dbc.username", postgresql::getUsername);
+        registry.add("spring.r2dbc.password", postgresql::getPassword);
+        registry.add("spring.datasource.url", () -> url("jdbc"));
+        registry.add("spring.datasource.username", postgresql::getUsername);
+        registry.add("spring.datasource.password", postgresql::getPassword);
+    }
+
+    private static String url(String prefix) {
+        return String.format("%s:postgresql://%s:%s/%s", prefix, postgresql.getHost(),
+                postgresql.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT), postgresql.getDatabaseName());
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = new JooqOutboxEventRepository(wrapper);
+
+        // identifiers of the existing events don't clash with the ones generated by the sequence
+        var operation = sequenceOf(
+                deleteAllFrom(OUTBOX_EVENTS.getName()),
+                insertInto(OUTBOX_EVENTS.getName())
+                        .columns(
+                                OUTBOX_EVENTS.ID.getName(),
+                                OUTBOX_EVENTS.ACCOUNT_NAME.getName(),
+                                OUTBOX_EVENTS.PAYLOAD.getName(),
+                                OUTBOX_EVENTS.CREATE_TIME.getName()
+                        ).values(101L, ACCOUNT_1_NAME, PAYLOAD_1, NOW.minusSeconds(2))
+                        .values(102L, ACCOUNT_2_NAME, PAYLOAD_2, NOW.minusSeconds(1))
+                        .values(103L, ACCOUNT_1_NAME, PAYLOAD_3, NOW)
+                        .build()
+        );
+        new DbSetup(DataSourceDestination.with(dataSource), operation).launch();
+    }
+
+    /**
+     * Test for {@link JooqOutboxEventRepository#saveAll(java.util.Collection)}.
+     */
+    @Test
+    void shouldSaveEvents() {
+        var events = ImmutableList.of(
+                OutboxEvent.builder()
+                        .accountName(ACCOUNT_2_NAME)
+                        .payload(PAYLOAD_1)
+                        .build(),
+                OutboxEvent.builder()
+                        .accountName(ACCOUNT_1_NAME)
+                        .payload(PAYLOAD_2)
+                        .build()
+        );
+
+        repository.saveAll(events)
+                .as(StepVerifier::create)
+                .expectNext(2)
+                .verifyComplete();
+
+        Assertions.assertThat(new Table(dataSource, OUTBOX_EVENTS.getName()))
+                .hasNumberOfRows(5);
+    }
+
+    /**
+     * Test for {@link JooqOutboxEventRepository#lockOldest(int)}.
+     */
+    @Test
+    void shouldLockOldestEvents() {
+        repository.lockOldest(2)
+                .collectList()
+                .as(StepVerifier::create)
+                .expectNextMatches(events -> {
+                    assertThat(events).extracting(OutboxEvent::getId, OutboxEvent::getAccountName)
+                            .containsExactly(tuple(101L, ACCOUNT_1_NAME), tuple(102L, ACCOUNT_2_NAME));
+                    assertThat(events.get(0).getPayload()).isEqualTo(PAYLOAD_1);
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link JooqOutboxEventRepository#delete(java.util.Collection)}.
+     */
+    @Test
+    void shouldDeleteEvents() {
+        repository.delete(ImmutableList.of(101L, 103L))
+                .as(StepVerifier::create)
+                .expectNext(2)
+                .verifyComplete();
+
+        Assertions.assertThat(new Table(dataSource, OUTBOX_EVENTS.getName()))
+                .column(OUTBOX_EVENTS.ID.getName()).containsValues(102L);
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    @EnableConfigurationProperties(DataSourceProperties.class)
+    static class DataSourceConfig {
+        @Bean
+        @LiquibaseDataSource
+        DataSource dataSource(DataSourceProperties properties) {
+            return properties.initializeDataSourceBuilder()
+                    .build();
+        }
+    }
+}
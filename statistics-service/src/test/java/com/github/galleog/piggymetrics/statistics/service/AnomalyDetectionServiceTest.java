@@ -0,0 +1,174 @@
+package com.github.galleog.piggymetrics.statistics.service;
+
+import static com.github.galleog.protobuf.java.type.converter.Converters.bigDecimalConverter;
+import static com.github.galleog.protobuf.java.type.converter.Converters.dateConverter;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
+import com.github.galleog.piggymetrics.statistics.domain.MetricBaseline;
+import com.github.galleog.piggymetrics.statistics.domain.OutboxEvent;
+import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
+import com.github.galleog.piggymetrics.statistics.grpc.StatisticsServiceProto.AnomalyDetectedEvent;
+import com.github.galleog.piggymetrics.statistics.repository.DataPointRepository;
+import com.github.galleog.piggymetrics.statistics.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Tests for {@link AnomalyDetectionService}.
+ */
+@ExtendWith(MockitoExtension.class)
+class AnomalyDetectionServiceTest {
+    private static final double THRESHOLD = 3;
+    private static final int WARM_UP_SAMPLES = 5;
+    private static final String ACCOUNT_NAME = "test";
+    private static final LocalDate NOW = LocalDate.now();
+    private static final BigDecimal INCOMES_AMOUNT = BigDecimal.valueOf(300000, 2);
+    private static final BigDecimal EXPENSES_AMOUNT = BigDecimal.valueOf(10000, 2);
+    private static final BigDecimal UNUSUAL_EXPENSES_AMOUNT = BigDecimal.valueOf(20000, 2);
+    private static final BigDecimal SAVING_AMOUNT = BigDecimal.valueOf(590000, 2);
+
+    @Mock
+    private DataPointRepository dataPointRepository;
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+    @Captor
+    private ArgumentCaptor<Collection<OutboxEvent>> eventsCaptor;
+
+    private AnomalyDetectionService anomalyDetectionService;
+
+    @BeforeEach
+    void setUp() {
+        anomalyDetectionService = new AnomalyDetectionService(
+                THRESHOLD, WARM_UP_SAMPLES, dataPointRepository, outboxEventRepository
+        );
+    }
+
+    /**
+     * Test for {@link AnomalyDetectionService#detect(DataPoint)} when expenses jump.
+     */
+    @Test
+    void shouldSaveEventIfExpensesJump() throws Exception {
+        when(outboxEventRepository.saveAll(anyCollection())).thenReturn(Mono.just(1));
+        when(dataPointRepository.markAnomaliesReported(ACCOUNT_NAME, NOW, Set.of(StatisticalMetric.EXPENSES_AMOUNT)))
+                .thenReturn(Mono.just(1));
+
+        anomalyDetectionService.detect(stubDataPoint(UNUSUAL_EXPENSES_AMOUNT,
+                        stubBaseline(INCOMES_AMOUNT.doubleValue(), 0, WARM_UP_SAMPLES),
+                        stubBaseline(EXPENSES_AMOUNT.doubleValue(), 25, WARM_UP_SAMPLES)).build())
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        verify(dataPointRepository).markAnomaliesReported(ACCOUNT_NAME, NOW, Set.of(StatisticalMetric.EXPENSES_AMOUNT));
+        verify(outboxEventRepository).saveAll(eventsCaptor.capture());
+        assertThat(eventsCaptor.getValue()).hasSize(1);
+        var outboxEvent = eventsCaptor.getValue().iterator().next();
+        assertThat(outboxEvent.getAccountName()).isEqualTo(ACCOUNT_NAME);
+        var event = AnomalyDetectedEvent.parseFrom(outboxEvent.getPayload());
+        assertThat(event.getAccountName()).isEqualTo(ACCOUNT_NAME);
+        assertThat(event.getDate()).isEqualTo(dateConverter().convert(NOW));
+        assertThat(event.getStatisticalMetric()).isEqualTo(StatisticalMetric.EXPENSES_AMOUNT.name());
+        assertThat(bigDecimalConverter().reverse().convert(event.getValue())).isEqualTo(UNUSUAL_EXPENSES_AMOUNT);
+        assertThat(bigDecimalConverter().reverse().convert(event.getExpectedValue())).isEqualTo(EXPENSES_AMOUNT);
+        assertThat(event.getScore()).isEqualTo(20.0);
+    }
+
+    /**
+     * Test for {@link AnomalyDetectionService#detect(DataPoint)} when expenses stay close to the expected value.
+     */
+    @Test
+    void shouldNotSaveEventIfExpensesAreUsual() {
+        anomalyDetectionService.detect(stubDataPoint(EXPENSES_AMOUNT,
+                        stubBaseline(INCOMES_AMOUNT.doubleValue(), 0, WARM_UP_SAMPLES),
+                        stubBaseline(98, 0, WARM_UP_SAMPLES)).build())
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        verifyNoInteractions(dataPointRepository, outboxEventRepository);
+    }
+
+    /**
+     * Test for {@link AnomalyDetectionService#detect(DataPoint)} when the anomaly of expenses
+     * has already been reported for the data point date.
+     */
+    @Test
+    void shouldNotSaveEventIfAnomalyAlreadyReported() {
+        anomalyDetectionService.detect(stubDataPoint(UNUSUAL_EXPENSES_AMOUNT,
+                        stubBaseline(INCOMES_AMOUNT.doubleValue(), 0, WARM_UP_SAMPLES),
+                        stubBaseline(EXPENSES_AMOUNT.doubleValue(), 25, WARM_UP_SAMPLES))
+                        .reportedAnomaly(StatisticalMetric.EXPENSES_AMOUNT)
+                        .build())
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        verifyNoInteractions(dataPointRepository, outboxEventRepository);
+    }
+
+    /**
+     * Test for {@link AnomalyDetectionService#detect(DataPoint)} when the baselines are calculated
+     * from too few samples.
+     */
+    @Test
+    void shouldNotSaveEventIfBaselinesWarmUp() {
+        anomalyDetectionService.detect(stubDataPoint(UNUSUAL_EXPENSES_AMOUNT,
+                        stubBaseline(INCOMES_AMOUNT.doubleValue(), 0, WARM_UP_SAMPLES - 1),
+                        stubBaseline(EXPENSES_AMOUNT.doubleValue(), 25, WARM_UP_SAMPLES - 1)).build())
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        verifyNoInteractions(dataPointRepository, outboxEventRepository);
+    }
+
+    /**
+     * Test for {@link AnomalyDetectionService#detect(DataPoint)} when the data point has no baselines.
+     */
+    @Test
+    void shouldNotSaveEventWithoutBaselines() {
+        var dataPoint = DataPoint.builder()
+                .accountName(ACCOUNT_NAME)
+                .date(NOW)
+                .statistic(StatisticalMetric.EXPENSES_AMOUNT, UNUSUAL_EXPENSES_AMOUNT)
+                .build();
+        anomalyDetectionService.detect(dataPoint)
+                .as(StepVerifier::create)
+                .verifyComplete();
+
+        verifyNoInteractions(dataPointRepository, outboxEventRepository);
+    }
+
+    private MetricBaseline stubBaseline(double mean, double variance, int samples) {
+        return MetricBaseline.builder()
+                .mean(mean)
+                .variance(variance)
+                .samples(samples)
+                .build();
+    }
+
+    private DataPoint.DataPointBuilder stubDataPoint(BigDecimal expensesAmount, MetricBaseline incomesBaseline,
+                                                     MetricBaseline expensesBaseline) {
+        return DataPoint.builder()
+                .accountName(ACCOUNT_NAME)
+                .date(NOW)
+                .statistic(StatisticalMetric.INCOMES_AMOUNT, INCOMES_AMOUNT)
+                .statistic(StatisticalMetric.EXPENSES_AMOUNT, expensesAmount)
+                .statistic(StatisticalMetric.SAVING_AMOUNT, SAVING_AMOUNT)
+                .baseline(StatisticalMetric.INCOMES_AMOUNT, incomesBaseline)
+                .baseline(StatisticalMetric.EXPENSES_AMOUNT, expensesBaseline);
+    }
+}
@@ -7,8 +7,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.Mockito.when;
 
+import com.github.galleog.piggymetrics.statistics.domain.DailyTotal;
 import com.github.galleog.piggymetrics.statistics.domain.DataPoint;
 import com.github.galleog.piggymetrics.statistics.domain.ItemMetric;
+import com.github.galleog.piggymetrics.statistics.domain.ItemTrendPoint;
 import com.github.galleog.piggymetrics.statistics.domain.ItemType;
 import com.github.galleog.piggymetrics.statistics.domain.StatisticalMetric;
 import com.github.galleog.piggymetrics.statistics.grpc.StatisticsServiceProto;
@@ -35,6 +37,7 @@ import java.util.AbstractMap.SimpleEntry;
 @ExtendWith(MockitoExtension.class)
 class StatisticsServiceTest {
     private static final String ACCOUNT_NAME = "test";
+    private static final String ANOTHER_ACCOUNT_NAME = "another";
     private static final LocalDate DATE_1 = LocalDate.now().minusDays(5);
     private static final LocalDate DATE_2 = LocalDate.now().minusDays(2);
     private static final String SALARY = "Salary";
@@ -110,6 +113,29 @@ class StatisticsServiceTest {
                 }).verifyComplete();
     }
 
+    /**
+     * Test for {@link StatisticsService#listDataPoints(Mono)} in the dense mode.
+     */
+    @Test
+    void shouldListDenseDataPoints() {
+        when(dataPointRepository.listDenseByAccountName(ACCOUNT_NAME)).thenReturn(
+                Flux.just(
+                        stubDataPoint(DATE_1, SAVING_AMOUNT, salary()),
+                        stubDataPoint(DATE_1.plusDays(1), SAVING_AMOUNT, salary())
+                )
+        );
+
+        var request = StatisticsServiceProto.ListDataPointsRequest.newBuilder()
+                .setAccountName(ACCOUNT_NAME)
+                .setDense(true)
+                .build();
+        statisticsService.listDataPoints(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextMatches(dp -> dp.getDate().equals(dateConverter().convert(DATE_1)))
+                .expectNextMatches(dp -> dp.getDate().equals(dateConverter().convert(DATE_1.plusDays(1))))
+                .verifyComplete();
+    }
+
     /**
      * Test for {@link StatisticsService#listDataPoints(Mono)} when no data points are found.
      */
@@ -126,6 +152,175 @@ class StatisticsServiceTest {
                 }).verify();
     }
 
+    /**
+     * Test for {@link StatisticsService#batchListDataPoints(Mono)}.
+     */
+    @Test
+    void shouldBatchListDataPoints() {
+        when(dataPointRepository.listByAccountNames(ImmutableList.of(ANOTHER_ACCOUNT_NAME, ACCOUNT_NAME), DATE_1, null))
+                .thenReturn(Flux.just(
+                        stubDataPoint(ANOTHER_ACCOUNT_NAME, DATE_2, SAVING_AMOUNT, grocery()),
+                        stubDataPoint(ACCOUNT_NAME, DATE_1, SAVING_AMOUNT, salary()),
+                        stubDataPoint(ACCOUNT_NAME, DATE_2, SAVING_AMOUNT, grocery(), vacation())
+                ));
+
+        var request = StatisticsServiceProto.BatchListDataPointsRequest.newBuilder()
+                .addAccountNames(ACCOUNT_NAME)
+                .addAccountNames(ANOTHER_ACCOUNT_NAME)
+                .addAccountNames(ACCOUNT_NAME)
+                .setStartDate(dateConverter().convert(DATE_1))
+                .build();
+        statisticsService.batchListDataPoints(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextMatches(adp -> {
+                    assertThat(adp.getAccountName()).isEqualTo(ANOTHER_ACCOUNT_NAME);
+                    assertThat(adp.getDataPointsList()).extracting(
+                            StatisticsServiceProto.DataPoint::getAccountName,
+                            StatisticsServiceProto.DataPoint::getDate
+                    ).containsExactly(tuple(ANOTHER_ACCOUNT_NAME, dateConverter().convert(DATE_2)));
+                    return true;
+                }).expectNextMatches(adp -> {
+                    assertThat(adp.getAccountName()).isEqualTo(ACCOUNT_NAME);
+                    assertThat(adp.getDataPointsList()).extracting(
+                            StatisticsServiceProto.DataPoint::getAccountName,
+                            StatisticsServiceProto.DataPoint::getDate
+                    ).containsExactly(
+                            tuple(ACCOUNT_NAME, dateConverter().convert(DATE_1)),
+                            tuple(ACCOUNT_NAME, dateConverter().convert(DATE_2))
+                    );
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link StatisticsService#batchListDataPoints(Mono)} when no account names are specified.
+     */
+    @Test
+    void shouldFailToBatchListDataPointsWithoutAccountNames() {
+        statisticsService.batchListDataPoints(Mono.just(StatisticsServiceProto.BatchListDataPointsRequest.getDefaultInstance()))
+                .as(StepVerifier::create)
+                .expectErrorMatches(e -> {
+                    assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+                    return true;
+                }).verify();
+    }
+
+    /**
+     * Test for {@link StatisticsService#batchListDataPoints(Mono)} when the start date is after the end date.
+     */
+    @Test
+    void shouldFailToBatchListDataPointsWithInvalidDateRange() {
+        var request = StatisticsServiceProto.BatchListDataPointsRequest.newBuilder()
+                .addAccountNames(ACCOUNT_NAME)
+                .setStartDate(dateConverter().convert(DATE_2))
+                .setEndDate(dateConverter().convert(DATE_1))
+                .build();
+        statisticsService.batchListDataPoints(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectErrorMatches(e -> {
+                    assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+                    return true;
+                }).verify();
+    }
+
+    /**
+     * Test for {@link StatisticsService#listItemTrend(Mono)}.
+     */
+    @Test
+    void shouldListItemTrend() {
+        when(dataPointRepository.listItemTrend(ACCOUNT_NAME, SALARY, null, DATE_2)).thenReturn(
+                Flux.just(
+                        ItemTrendPoint.builder()
+                                .date(DATE_1)
+                                .type(ItemType.INCOME)
+                                .moneyAmount(SALARY_AMOUNT)
+                                .build()
+                )
+        );
+
+        var request = StatisticsServiceProto.ListItemTrendRequest.newBuilder()
+                .setAccountName(ACCOUNT_NAME)
+                .setTitle(SALARY)
+                .setEndDate(dateConverter().convert(DATE_2))
+                .build();
+        statisticsService.listItemTrend(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextMatches(point -> {
+                    assertThat(point.getDate()).isEqualTo(dateConverter().convert(DATE_1));
+                    assertThat(point.getType()).isEqualTo(StatisticsServiceProto.ItemType.INCOME);
+                    assertThat(point.getMoneyAmount()).isEqualTo(SALARY_PROTO_AMOUNT);
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link StatisticsService#listItemTrend(Mono)} when the item isn't found.
+     */
+    @Test
+    void shouldFailToListItemTrend() {
+        when(dataPointRepository.listItemTrend(ACCOUNT_NAME, SALARY, null, null)).thenReturn(Flux.empty());
+
+        var request = StatisticsServiceProto.ListItemTrendRequest.newBuilder()
+                .setAccountName(ACCOUNT_NAME)
+                .setTitle(SALARY)
+                .build();
+        statisticsService.listItemTrend(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectErrorMatches(e -> {
+                    assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.NOT_FOUND);
+                    return true;
+                }).verify();
+    }
+
+    /**
+     * Test for {@link StatisticsService#listDailyTotals(Mono)}.
+     */
+    @Test
+    void shouldListDailyTotals() {
+        when(dataPointRepository.listDailyTotals(DATE_1, null)).thenReturn(
+                Flux.just(
+                        DailyTotal.builder()
+                                .date(DATE_2)
+                                .statistic(StatisticalMetric.INCOMES_AMOUNT, SALARY_AMOUNT)
+                                .statistic(StatisticalMetric.EXPENSES_AMOUNT, EXPENSES_AMOUNT)
+                                .statistic(StatisticalMetric.SAVING_AMOUNT, SAVING_AMOUNT)
+                                .build()
+                )
+        );
+
+        var request = StatisticsServiceProto.ListDailyTotalsRequest.newBuilder()
+                .setStartDate(dateConverter().convert(DATE_1))
+                .build();
+        statisticsService.listDailyTotals(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectNextMatches(total -> {
+                    assertThat(total.getDate()).isEqualTo(dateConverter().convert(DATE_2));
+                    assertThat(total.getStatisticsMap()).containsOnly(
+                            new SimpleEntry<>(StatisticalMetric.INCOMES_AMOUNT.name(), SALARY_PROTO_AMOUNT),
+                            new SimpleEntry<>(StatisticalMetric.EXPENSES_AMOUNT.name(), EXPENSES_PROTO_AMOUNT),
+                            new SimpleEntry<>(StatisticalMetric.SAVING_AMOUNT.name(), SAVING_PROTO_AMOUNT)
+                    );
+                    return true;
+                }).verifyComplete();
+    }
+
+    /**
+     * Test for {@link StatisticsService#listDailyTotals(Mono)} when the start date is after the end date.
+     */
+    @Test
+    void shouldFailToListDailyTotalsWithInvalidDateRange() {
+        var request = StatisticsServiceProto.ListDailyTotalsRequest.newBuilder()
+                .setStartDate(dateConverter().convert(DATE_2))
+                .setEndDate(dateConverter().convert(DATE_1))
+                .build();
+        statisticsService.listDailyTotals(Mono.just(request))
+                .as(StepVerifier::create)
+                .expectErrorMatches(e -> {
+                    assertThat(Status.fromThrowable(e).getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT);
+                    return true;
+                }).verify();
+    }
+
     private Mono<StatisticsServiceProto.ListDataPointsRequest> stubListDataPointsRequest() {
         return Mono.just(StatisticsServiceProto.ListDataPointsRequest.newBuilder()
                 .setAccountName(ACCOUNT_NAME)
@@ -157,9 +352,13 @@ class StatisticsServiceTest {
     }
 
     private DataPoint stubDataPoint(LocalDate date, BigDecimal saving, ItemMetric... metrics) {
-        var dataPoint = updateStatistics(ACCOUNT_NAME, ImmutableList.copyOf(metrics), saving);
+        return stubDataPoint(ACCOUNT_NAME, date, saving, metrics);
+    }
+
+    private DataPoint stubDataPoint(String accountName, LocalDate date, BigDecimal saving, ItemMetric... metrics) {
+        var dataPoint = updateStatistics(accountName, ImmutableList.copyOf(metrics), saving);
         return DataPoint.builder()
-                .accountName(ACCOUNT_NAME)
+                .accountName(accountName)
                 .date(date)
                 .metrics(dataPoint.getMetrics())
                 .statistics(dataPoint.getStatistics())